@@ -0,0 +1,84 @@
+package com.perfume.shop.config;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking-heavy request load: Tomcat's default 200 platform threads vs a virtual thread per request.
+ *
+ * Each simulated request holds one of 10 database connections for a short query and then
+ * waits on a slower remote call (gateway, OAuth provider, SMTP) capped by its own bulkhead,
+ * the same shape as checkout and login. One operation is a burst of concurrent requests.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.includes=BlockingLoadBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockingLoadBenchmark {
+
+    private static final int DATABASE_CONNECTIONS = 10;
+    private static final int REMOTE_CALLS = 100;
+    private static final long QUERY_MS = 2;
+    private static final long REMOTE_CALL_MS = 50;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"200", "1000"})
+    private int burst;
+
+    private ExecutorService executor;
+    private Semaphore databasePool;
+    private Semaphore remoteBulkhead;
+
+    @Setup
+    public void setUp() {
+        executor = threads.equals("virtual")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(200); // server.tomcat.threads.max default
+        databasePool = new Semaphore(DATABASE_CONNECTIONS);
+        remoteBulkhead = new Semaphore(REMOTE_CALLS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void requests() throws Exception {
+        List<Future<?>> results = new ArrayList<>(burst);
+        for (int i = 0; i < burst; i++) {
+            results.add(executor.submit(this::handleRequest));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+    }
+
+    private Void handleRequest() throws InterruptedException {
+        hold(databasePool, QUERY_MS);
+        hold(remoteBulkhead, REMOTE_CALL_MS);
+        return null;
+    }
+
+    private static void hold(Semaphore resource, long millis) throws InterruptedException {
+        resource.acquire();
+        try {
+            Thread.sleep(millis);
+        } finally {
+            resource.release();
+        }
+    }
+}
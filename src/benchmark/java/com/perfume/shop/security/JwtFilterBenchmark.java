@@ -0,0 +1,109 @@
+package com.perfume.shop.security;
+
+import com.perfume.shop.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT filter path for one authenticated request.
+ *
+ * legacy: the token handling the filter did before - four verifications, each
+ * decoding the Base64 secret and building a parser (token handling only, so it
+ * is a lower bound for the old filter). parseOnce: one verification
+ * per request (verified-token cache disabled). cached: repeated token served
+ * from the verified-token cache. parseOnce and cached run the whole filter, with
+ * the revocation check and the user served from UserPrincipalCache.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.includes=JwtFilterBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtFilterBenchmark {
+
+    private static final String SECRET = "dGhpc2lzYXNlY3JldGtleWZvcnRlc3RpbmdwdXJwb3Nlc29ubHljaGFuZ2VpdGlucHJvZHVjdGlvbg==";
+
+    @Param({"legacy", "parseOnce", "cached"})
+    private String mode;
+
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private String jwt;
+
+    @Setup
+    public void setUp() throws Exception {
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 86400000L);
+        ReflectionTestUtils.setField(jwtService, "refreshTokenExpiration", 604800000L);
+        ReflectionTestUtils.setField(jwtService, "gracePeriodMs", 60000L);
+        ReflectionTestUtils.setField(jwtService, "verifiedCacheSize", mode.equals("cached") ? 10000L : 0L);
+        jwtService.init();
+
+        User user = User.builder().email("customer@example.com").role(User.Role.CUSTOMER).active(true).build();
+        user.setId(1L);
+        UserDetailsService userDetailsService = email -> user;
+
+        UserPrincipalCache principalCache = new UserPrincipalCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(principalCache, "maxSize", 10000L);
+        ReflectionTestUtils.setField(principalCache, "ttlSeconds", 3600L);
+        principalCache.init();
+
+        TokenRevocationService revocationService = new TokenRevocationService(null, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(revocationService, "expectedEntries", 100000L);
+        ReflectionTestUtils.setField(revocationService, "falsePositiveRate", 0.01);
+        revocationService.init(); // empty revocation list, nothing loaded
+        ReflectionTestUtils.setField(revocationService, "enabled", true);
+
+        filter = new JwtAuthenticationFilter(jwtService, userDetailsService, principalCache, revocationService);
+        jwt = jwtService.generateToken(user);
+        request = new MockHttpServletRequest("GET", "/api/orders");
+        request.addHeader("Authorization", "Bearer " + jwt);
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        if (mode.equals("legacy")) {
+            return legacyVerification();
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> { });
+        Object principal = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+
+    /**
+     * extractUsername, isTokenValid (username + expiry), isTokenExpired - each a full parse
+     */
+    private Object legacyVerification() {
+        String subject = legacyParse().getSubject();
+        boolean valid = subject.equals(legacyParse().getSubject())
+                && !legacyParse().getExpiration().before(new Date());
+        boolean expired = legacyParse().getExpiration().before(new Date());
+        return valid && !expired;
+    }
+
+    private Claims legacyParse() {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .build()
+                .parseSignedClaims(jwt)
+                .getPayload();
+    }
+}
@@ -0,0 +1,92 @@
+package com.perfume.shop.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order confirmation rendering: compiled templates vs the previous String.format approach.
+ * The String.format baseline is derived from the same template files, so both produce the same HTML.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailTemplateBenchmark {
+
+    @Param({"1", "5", "20"})
+    private int itemCount;
+
+    private EmailTemplates emailTemplates;
+    private String legacyPage;
+    private String legacyRow;
+
+    private String[] names;
+    private int[] quantities;
+    private BigDecimal[] prices;
+    private final LocalDateTime createdAt = LocalDateTime.of(2026, 3, 1, 10, 30);
+
+    @Setup
+    public void setUp() throws IOException {
+        emailTemplates = new EmailTemplates();
+        legacyPage = toFormatString(read("order-confirmation.html"));
+        legacyRow = toFormatString(read("item-row.html"));
+
+        names = new String[itemCount];
+        quantities = new int[itemCount];
+        prices = new BigDecimal[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            names[i] = "Oud Royale " + i + " - 100ml Eau de Parfum";
+            quantities[i] = 1 + i % 3;
+            prices[i] = new BigDecimal("2499.50").add(BigDecimal.valueOf(i));
+        }
+    }
+
+    @Benchmark
+    public String stringFormat() {
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; i < itemCount; i++) {
+            items.append(String.format(legacyRow, names[i], quantities[i], prices[i]));
+        }
+        return String.format(legacyPage, "customer", "ORD-20260301-0001", createdAt, items.toString(),
+                new BigDecimal("12497.50"), new BigDecimal("2249.55"), BigDecimal.ZERO, new BigDecimal("14747.05"),
+                "12 Rose Street", "Chennai", "India", "600001");
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        EmailTemplate.Fragment items = out -> {
+            for (int i = 0; i < itemCount; i++) {
+                emailTemplates.itemRow.render(out, names[i], quantities[i], prices[i]);
+            }
+        };
+        return emailTemplates.render(emailTemplates.orderConfirmation, "customer", "ORD-20260301-0001", createdAt,
+                items, new BigDecimal("12497.50"), new BigDecimal("2249.55"), BigDecimal.ZERO,
+                new BigDecimal("14747.05"), "12 Rose Street", "Chennai", "India", "600001");
+    }
+
+    private static String read(String file) throws IOException {
+        try (InputStream in = EmailTemplateBenchmark.class.getResourceAsStream("/templates/email/" + file)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Placeholders back to format specifiers, as the templates were written before
+     */
+    static String toFormatString(String template) {
+        return template.replace("%", "%%")
+                .replaceAll("\\{\\{\\w+:money}}", "%.2f")
+                .replaceAll("\\{\\{\\w+:int}}", "%d")
+                .replaceAll("\\{\\{\\w+(:\\w+)?}}", "%s");
+    }
+}
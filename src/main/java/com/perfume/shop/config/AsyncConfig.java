@@ -1,79 +1,223 @@
 package com.perfume.shop.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import java.util.concurrent.Executor;
-
 /**
  * Configuration for async task execution.
  * Enables @Async annotation processing with thread pool executor.
+ * In virtual thread mode the I/O executors start a new virtual thread per task
+ * instead of pooling threads; a concurrency limit equal to the platform pool's
+ * max size still caps how many tasks hit the database, SMTP or the gateway at
+ * once, and submitters block at the limit instead of queueing.
  */
 @Configuration
 @EnableAsync
 @Slf4j
 public class AsyncConfig {
     
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    
+    /**
+     * Configure thread pool for email retry tasks
+     * Separate from the mail pool so retries never hold up fresh order mail
+     */
+    @Bean(name = "emailRetryExecutor")
+    public AsyncTaskExecutor emailRetryExecutor() {
+        if (virtualThreads) {
+            return virtualExecutor("email-retry-task-", 5, 20);
+        }
+        
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        // Smaller thread pool for retry tasks
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(5);
+        executor.setQueueCapacity(50);
+        
+        executor.setThreadNamePrefix("email-retry-task-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(20);
+        
+        executor.initialize();
+        
+        log.info("Email retry executor configured: coreSize=2, maxSize=5, queueCapacity=50");
+        return executor;
+    }
+    
     /**
-     * Configure thread pool for email sending tasks
-     * Prevents blocking of main request thread
+     * Configure thread pool for invoice PDF rendering
+     * Bounded to the CPU so bursts of downloads or exports cannot starve request threads.
+     * Rejects when full - callers fall back to rendering inline or skip pre-rendering.
      */
-    @Bean(name = "emailExecutor")
-    public Executor emailExecutor() {
+    @Bean(name = "invoiceExecutor")
+    public ThreadPoolTaskExecutor invoiceExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         
-        // Core threads that are always active
-        executor.setCorePoolSize(5);
+        // Rendering is CPU bound - never more threads than cores
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(200);
+        
+        executor.setThreadNamePrefix("invoice-render-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(20);
+        
+        executor.initialize();
         
-        // Maximum threads allowed
-        executor.setMaxPoolSize(20);
+        log.info("Invoice executor configured: coreSize={}, maxSize={}, queueCapacity=200", threads, threads);
+        return executor;
+    }
+    
+    /**
+     * Configure thread pool for the outbox relay
+     * Runs handler deliveries (emails, metrics, cache invalidation) claimed from the outbox.
+     * The relay waits for each batch, so the queue never holds more than one batch.
+     */
+    @Bean(name = "outboxExecutor")
+    public AsyncTaskExecutor outboxExecutor() {
+        if (virtualThreads) {
+            return virtualExecutor("outbox-relay-", 8, 30);
+        }
         
-        // Queue capacity before creating new threads
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
         executor.setQueueCapacity(100);
         
-        // Thread name prefix for debugging
-        executor.setThreadNamePrefix("email-task-");
+        executor.setThreadNamePrefix("outbox-relay-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        
+        // Run in the relay thread if saturated - claimed rows are leased and must be processed
+        executor.setRejectedExecutionHandler(
+                new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        
+        executor.initialize();
+        
+        log.info("Outbox executor configured: coreSize=4, maxSize=8, queueCapacity=100");
+        return executor;
+    }
+    
+    /**
+     * Configure thread pool for the webhook worker
+     * Applies queued payment webhooks; the worker waits for each batch before claiming the next.
+     */
+    @Bean(name = "webhookExecutor")
+    public AsyncTaskExecutor webhookExecutor() {
+        if (virtualThreads) {
+            return virtualExecutor("webhook-worker-", 4, 30);
+        }
+        
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(100);
         
-        // Wait for tasks to complete on shutdown
+        executor.setThreadNamePrefix("webhook-worker-");
         executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        
+        // Run in the worker thread if saturated - claimed rows are leased and must be processed
+        executor.setRejectedExecutionHandler(
+                new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        
+        executor.initialize();
+        
+        log.info("Webhook executor configured: coreSize=4, maxSize=4, queueCapacity=100");
+        return executor;
+    }
+    
+    /**
+     * Configure thread pool for abandoned cart emails
+     * Sized by app.abandoned-cart.concurrency; the job waits for each batch before claiming the next.
+     */
+    @Bean(name = "abandonedCartExecutor")
+    public AsyncTaskExecutor abandonedCartExecutor(
+            @Value("${app.abandoned-cart.concurrency:4}") int concurrency) {
+        if (virtualThreads) {
+            return virtualExecutor("abandoned-cart-", concurrency, 30);
+        }
+        
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         
-        // Wait up to 30 seconds for tasks to complete
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(500);
+        
+        executor.setThreadNamePrefix("abandoned-cart-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(30);
         
-        // Reject policy: run in caller thread if queue is full
+        // Send from the job thread if saturated - claimed carts are leased
         executor.setRejectedExecutionHandler(
                 new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy()
         );
         
         executor.initialize();
         
-        log.info("Email executor configured: coreSize=5, maxSize=20, queueCapacity=100");
+        log.info("Abandoned cart executor configured: coreSize={}, maxSize={}, queueCapacity=500",
+                concurrency, concurrency);
         return executor;
     }
     
     /**
-     * Configure thread pool for email retry tasks
-     * Separate from main email executor for better resource management
+     * Configure thread pool for payment reconciliation gateway lookups
+     * Sized by app.payments.reconciliation.concurrency; the job waits for each page before loading the next.
      */
-    @Bean(name = "emailRetryExecutor")
-    public Executor emailRetryExecutor() {
+    @Bean(name = "reconciliationExecutor")
+    public AsyncTaskExecutor reconciliationExecutor(
+            @Value("${app.payments.reconciliation.concurrency:4}") int concurrency) {
+        if (virtualThreads) {
+            return virtualExecutor("payment-reconcile-", concurrency, 30);
+        }
+        
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         
-        // Smaller thread pool for retry tasks
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(5);
-        executor.setQueueCapacity(50);
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(500);
         
-        executor.setThreadNamePrefix("email-retry-task-");
+        executor.setThreadNamePrefix("payment-reconcile-");
         executor.setWaitForTasksToCompleteOnShutdown(true);
-        executor.setAwaitTerminationSeconds(20);
+        executor.setAwaitTerminationSeconds(30);
+        
+        // Look up from the job thread if saturated rather than dropping an order
+        executor.setRejectedExecutionHandler(
+                new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy()
+        );
         
         executor.initialize();
         
-        log.info("Email retry executor configured: coreSize=2, maxSize=5, queueCapacity=50");
+        log.info("Reconciliation executor configured: coreSize={}, maxSize={}, queueCapacity=500",
+                concurrency, concurrency);
+        return executor;
+    }
+    
+    /**
+     * Blocking I/O executor for virtual thread mode: one virtual thread per task, at most
+     * {@code concurrencyLimit} running. Not used for invoiceExecutor - rendering is CPU bound.
+     */
+    private AsyncTaskExecutor virtualExecutor(String threadNamePrefix, int concurrencyLimit, int awaitTerminationSeconds) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(concurrencyLimit);
+        executor.setTaskTerminationTimeout(awaitTerminationSeconds * 1000L);
+        
+        log.info("Virtual thread executor {}* configured: concurrencyLimit={}",
+                threadNamePrefix, concurrencyLimit);
         return executor;
     }
 }
@@ -0,0 +1,82 @@
+package com.perfume.shop.config;
+
+import com.perfume.shop.service.PooledMailSender;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.util.Properties;
+
+/**
+ * Mail transport configuration.
+ * Replaces Boot's per-message JavaMailSenderImpl with a pooled sender built from the
+ * same spring.mail.* properties. With app.email.pool.enabled=false Boot's default
+ * sender is used again.
+ * Order mail and marketing mail get separate lanes of the pool, see PooledMailSender.
+ */
+@Configuration
+@EnableConfigurationProperties(MailProperties.class)
+public class MailConfig {
+
+    @Value("${app.email.pool.connections:3}")
+    private int connections;
+
+    @Value("${app.email.pool.batch-size:20}")
+    private int batchSize;
+
+    @Value("${app.email.pool.lanes.transactional.queue-capacity:500}")
+    private int transactionalQueueCapacity;
+
+    @Value("${app.email.pool.lanes.marketing.queue-capacity:200}")
+    private int marketingQueueCapacity;
+
+    // Connections marketing mail may occupy at once; the rest stay free for order mail
+    @Value("${app.email.pool.lanes.marketing.max-connections:1}")
+    private int marketingMaxConnections;
+
+    @Value("${app.email.pool.lanes.marketing.messages-per-second:5}")
+    private int marketingMessagesPerSecond;
+
+    @Value("${app.email.pool.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection;
+
+    @Value("${app.email.pool.idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    @Value("${app.email.pool.send-timeout-ms:60000}")
+    private long sendTimeoutMs;
+
+    @Bean
+    @ConditionalOnProperty(name = "app.email.pool.enabled", havingValue = "true", matchIfMissing = true)
+    public JavaMailSender javaMailSender(MailProperties mailProperties, MeterRegistry meterRegistry) {
+        PooledMailSender sender = new PooledMailSender(meterRegistry, connections, batchSize,
+                maxMessagesPerConnection, idleTimeoutMs, sendTimeoutMs,
+                new PooledMailSender.LaneConfig(transactionalQueueCapacity, 0, 0),
+                new PooledMailSender.LaneConfig(marketingQueueCapacity, marketingMaxConnections,
+                        marketingMessagesPerSecond));
+
+        sender.setHost(mailProperties.getHost());
+        if (mailProperties.getPort() != null) {
+            sender.setPort(mailProperties.getPort());
+        }
+        sender.setUsername(mailProperties.getUsername());
+        sender.setPassword(mailProperties.getPassword());
+        sender.setProtocol(mailProperties.getProtocol());
+        if (mailProperties.getDefaultEncoding() != null) {
+            sender.setDefaultEncoding(mailProperties.getDefaultEncoding().name());
+        }
+        if (!mailProperties.getProperties().isEmpty()) {
+            Properties properties = new Properties();
+            properties.putAll(mailProperties.getProperties());
+            sender.setJavaMailProperties(properties);
+        }
+
+        sender.start();
+        return sender;
+    }
+}
@@ -0,0 +1,54 @@
+package com.perfume.shop.config;
+
+import com.perfume.shop.security.ConcurrencyLimitFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Virtual thread mode (spring.threads.virtual.enabled=true).
+ *
+ * Boot then runs Tomcat requests and @Scheduled jobs on virtual threads, and
+ * AsyncConfig runs the I/O executors as per-task virtual threads. Thread count no longer
+ * limits concurrency, so the real resources are bounded explicitly: API requests
+ * by the ConcurrencyLimitFilter (in front of the database pool), Razorpay calls
+ * by the gateway bulkhead, SMTP by the mail pool lanes and OAuth provider calls
+ * by OAuth2Service. Pinned carriers are reported by the pinning monitor.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Value("${app.threads.max-concurrent-requests:200}")
+    private int maxConcurrentRequests;
+
+    @Value("${app.threads.request-wait-ms:1000}")
+    private long requestWaitMs;
+
+    @Value("${app.threads.pinning-threshold-ms:20}")
+    private long pinningThresholdMs;
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilterRegistration(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(new ConcurrencyLimitFilter(maxConcurrentRequests, requestWaitMs, meterRegistry));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(2); // After rate limiting, so throttled clients never hold a slot
+        registration.setName("concurrencyLimitFilter");
+        return registration;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.threads.pinning-monitor.enabled", havingValue = "true", matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(MeterRegistry meterRegistry) {
+        VirtualThreadPinningMonitor monitor =
+                new VirtualThreadPinningMonitor(meterRegistry, Duration.ofMillis(pinningThresholdMs));
+        monitor.start();
+        return monitor;
+    }
+}
@@ -0,0 +1,102 @@
+package com.perfume.shop.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier thread.
+ *
+ * Streams the JFR jdk.VirtualThreadPinned event in-process: a virtual thread that
+ * blocks inside a synchronized block or a native frame (old JDBC drivers, some
+ * client libraries) holds its carrier, and enough of them stall every virtual
+ * thread. Each pinning is timed as shop.threads.virtual.pinned, tagged with the
+ * first application frame (or the top frame), and the first occurrence per frame
+ * is logged with its stack.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor implements AutoCloseable {
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.perfume.shop.";
+
+    private final MeterRegistry meterRegistry;
+    private final Duration threshold;
+    private final Set<String> reportedFrames = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry, Duration threshold) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = threshold;
+    }
+
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Virtual thread pinning monitor started: threshold={}ms", threshold.toMillis());
+    }
+
+    void onPinned(RecordedEvent event) {
+        String frame = blamedFrame(event.getStackTrace());
+        Timer.builder("shop.threads.virtual.pinned")
+                .description("Time virtual threads spent blocked while pinned to a carrier")
+                .tag("frame", frame)
+                .register(meterRegistry)
+                .record(event.getDuration());
+
+        if (reportedFrames.add(frame)) {
+            log.warn("Virtual thread pinned for {}ms at {}:\n{}",
+                    event.getDuration().toMillis(), frame, format(event.getStackTrace()));
+        } else {
+            log.debug("Virtual thread pinned for {}ms at {}", event.getDuration().toMillis(), frame);
+        }
+    }
+
+    /**
+     * First frame in our own code, so the metric points at something we can fix
+     */
+    static String blamedFrame(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        RecordedFrame blamed = frames.stream()
+                .filter(frame -> frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE))
+                .findFirst()
+                .orElse(frames.get(0));
+        return blamed.getMethod().getType().getName() + "." + blamed.getMethod().getName();
+    }
+
+    private static String format(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "\t(no stack trace)";
+        }
+        StringBuilder out = new StringBuilder();
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            out.append("\tat ")
+                    .append(frame.getMethod().getType().getName()).append('.')
+                    .append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber())
+                    .append('\n');
+        }
+        return out.toString();
+    }
+
+    @Override
+    public void close() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
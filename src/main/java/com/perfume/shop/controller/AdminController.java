@@ -4,15 +4,25 @@ import com.perfume.shop.dto.*;
 import com.perfume.shop.entity.Order;
 import com.perfume.shop.entity.OrderHistory;
 import com.perfume.shop.entity.OrderItem;
+import com.perfume.shop.entity.PaymentRefundTask;
 import com.perfume.shop.entity.Product;
 import com.perfume.shop.entity.User;
+import com.perfume.shop.exception.ApplicationException;
+import com.perfume.shop.exception.ErrorType;
 import com.perfume.shop.repository.OrderHistoryRepository;
 import com.perfume.shop.repository.OrderRepository;
+import com.perfume.shop.repository.PaymentRefundTaskRepository;
 import com.perfume.shop.repository.ProductRepository;
 import com.perfume.shop.repository.UserRepository;
+import com.perfume.shop.service.AdminOrderQueryService;
+import com.perfume.shop.service.AdminService;
 import com.perfume.shop.service.AnalyticsService;
+import com.perfume.shop.service.BulkOrderStatusService;
 import com.perfume.shop.service.InventoryService;
+import com.perfume.shop.service.InvoiceExportService;
 import com.perfume.shop.service.OrderService;
+import com.perfume.shop.service.OrderSummaryCache;
+import com.perfume.shop.service.PaymentReconciliationService;
 import com.perfume.shop.service.ProductService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -20,13 +30,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -53,6 +69,13 @@ public class AdminController {
     private final InventoryService inventoryService;
     private final AnalyticsService analyticsService;
     private final com.perfume.shop.service.CouponService couponService;
+    private final InvoiceExportService invoiceExportService;
+    private final OrderSummaryCache orderSummaryCache;
+    private final AdminOrderQueryService adminOrderQueryService;
+    private final BulkOrderStatusService bulkOrderStatusService;
+    private final PaymentReconciliationService paymentReconciliationService;
+    private final PaymentRefundTaskRepository paymentRefundTaskRepository;
+    private final AdminService adminService;
 
     /**
      * Create pageable with sort configuration.
@@ -309,6 +332,92 @@ public class AdminController {
         return ResponseEntity.ok(orderService.getAllOrders(pageable));
     }
 
+    /**
+     * Search orders with composite filters. All filters are optional and combined with AND.
+     * 
+     * Example: all SHIPPED orders for Mumbai last week over 5000:
+     * {@code /orders/search?status=SHIPPED&city=Mumbai&from=2026-02-02&to=2026-02-08&minAmount=5000}
+     * 
+     * @param status     Order statuses (repeatable)
+     * @param from       First day, inclusive (yyyy-MM-dd)
+     * @param to         Last day, inclusive (yyyy-MM-dd)
+     * @param minAmount  Minimum order total, inclusive
+     * @param maxAmount  Maximum order total, inclusive
+     * @param city       Shipping city (case-insensitive)
+     * @param email      Customer email (case-insensitive)
+     * @param couponCode Coupon code used
+     * @param sortBy     createdAt, totalAmount, orderNumber or status (default: createdAt)
+     * @param sortDir    Sort direction (default: DESC)
+     * @return Page of flat order rows
+     */
+    @GetMapping("/orders/search")
+    public ResponseEntity<Page<AdminOrderRow>> searchOrders(
+            @RequestParam(required = false) List<Order.OrderStatus> status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) String city,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String couponCode,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "DESC") String sortDir) {
+        OrderSearchCriteria criteria = OrderSearchCriteria.builder()
+                .statuses(status).from(from).to(to)
+                .minAmount(minAmount).maxAmount(maxAmount)
+                .city(city).email(email).couponCode(couponCode)
+                .build();
+        return ResponseEntity.ok(adminOrderQueryService.search(criteria, page, size, sortBy, sortDir));
+    }
+
+    /**
+     * Stream all orders matching the search filters as CSV or JSON Lines.
+     * Rows are written as they are read from the database, so large ranges
+     * (e.g. a full year) download without loading the orders into memory.
+     * 
+     * Accepts the same filters as {@code /orders/search}.
+     * 
+     * @param format csv (default) or jsonl
+     * @return Streamed export file
+     */
+    @GetMapping("/orders/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(required = false) List<Order.OrderStatus> status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) String city,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String couponCode,
+            @RequestParam(defaultValue = "csv") String format) {
+        AdminOrderQueryService.ExportFormat exportFormat;
+        try {
+            exportFormat = AdminOrderQueryService.ExportFormat.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ApplicationException("Unsupported export format: " + format + ". Use csv or jsonl",
+                    ErrorType.VALIDATION_ERROR);
+        }
+
+        OrderSearchCriteria criteria = OrderSearchCriteria.builder()
+                .statuses(status).from(from).to(to)
+                .minAmount(minAmount).maxAmount(maxAmount)
+                .city(city).email(email).couponCode(couponCode)
+                .build();
+        adminOrderQueryService.validate(criteria);
+
+        StreamingResponseBody body = out -> adminOrderQueryService.export(criteria, exportFormat, out);
+
+        boolean csv = exportFormat == AdminOrderQueryService.ExportFormat.CSV;
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=orders_" + LocalDate.now()
+                        + (csv ? ".csv" : ".jsonl"))
+                .contentType(MediaType.parseMediaType(csv ? "text/csv; charset=UTF-8" : "application/x-ndjson"))
+                .body(body);
+    }
+
     /**
      * Get a single order by ID (admin view).
      */
@@ -335,6 +444,89 @@ public class AdminController {
         return ResponseEntity.ok(orderService.updateOrderStatus(id, status, adminEmail, request.getNotes()));
     }
 
+    /**
+     * Move many orders to a fulfilment status in one request (e.g. mark a day's dispatch SHIPPED).
+     * Orders that are missing or cannot make the transition are skipped and reported;
+     * cancellations and refunds must use the single-order endpoint.
+     * 
+     * @param request Order IDs, target status and optional notes
+     * @return Updated order IDs and rejection reasons
+     */
+    @PostMapping("/orders/status/bulk")
+    public ResponseEntity<BulkOrderStatusUpdateResponse> bulkUpdateOrderStatus(
+            @Valid @RequestBody BulkOrderStatusUpdateRequest request) {
+        String adminEmail = SecurityContextHolder.getContext().getAuthentication().getName();
+        Order.OrderStatus status;
+        try {
+            status = Order.OrderStatus.valueOf(request.getStatus().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ApplicationException("Invalid status: " + request.getStatus(), ErrorType.VALIDATION_ERROR);
+        }
+        return ResponseEntity.ok(bulkOrderStatusService.updateStatuses(
+                request.getOrderIds(), status, adminEmail, request.getNotes()));
+    }
+
+    /**
+     * Reconcile unconfirmed Razorpay payments against the gateway now.
+     * Confirms paid orders and cancels orders whose payments all failed.
+     * 
+     * @return Run report
+     */
+    @PostMapping("/payments/reconcile")
+    public ResponseEntity<PaymentReconciliationReport> reconcilePayments() {
+        return ResponseEntity.ok(paymentReconciliationService.reconcile());
+    }
+
+    /**
+     * Report of the most recent payment reconciliation run on this node.
+     * 
+     * @return Last run report, or 204 if none has run yet
+     */
+    @GetMapping("/payments/reconcile/last")
+    public ResponseEntity<PaymentReconciliationReport> getLastReconciliationReport() {
+        PaymentReconciliationReport report = paymentReconciliationService.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Payments captured for orders that were already cancelled, waiting for a refund
+     * or a reinstated order.
+     * 
+     * @return Open refund tasks, oldest first
+     */
+    @GetMapping("/payments/refund-tasks")
+    public ResponseEntity<List<PaymentRefundTask>> getOpenRefundTasks() {
+        return ResponseEntity.ok(paymentRefundTaskRepository.findByStatusOrderByCreatedAtAsc(PaymentRefundTask.Status.OPEN));
+    }
+
+    /**
+     * Close a refund task once the payment was refunded or the order reinstated.
+     * Only an OPEN task can be resolved; resolving it again is rejected with 409 so
+     * the first outcome is kept.
+     * 
+     * This only records the outcome: refunding at the gateway and reinstating the
+     * order (moving it back out of CANCELLED) are manual steps done beforehand.
+     * 
+     * @param id     Task ID
+     * @param status REFUNDED or REINSTATED
+     * @return Updated task
+     */
+    @PatchMapping("/payments/refund-tasks/{id}")
+    public ResponseEntity<PaymentRefundTask> resolveRefundTask(
+            @PathVariable Long id,
+            @RequestParam PaymentRefundTask.Status status) {
+        if (status == PaymentRefundTask.Status.OPEN) {
+            throw new ApplicationException("Resolve a refund task as REFUNDED or REINSTATED", ErrorType.VALIDATION_ERROR);
+        }
+        int resolved = paymentRefundTaskRepository.resolveOpen(id, status, LocalDateTime.now());
+        PaymentRefundTask task = paymentRefundTaskRepository.findById(id)
+                .orElseThrow(() -> new ApplicationException("Refund task not found", ErrorType.NOT_FOUND, 404));
+        if (resolved == 0) {
+            throw new ApplicationException("Refund task is already " + task.getStatus(), ErrorType.CONFLICT, 409);
+        }
+        return ResponseEntity.ok(task);
+    }
+
     /**
      * Update order status (legacy endpoint for backward compatibility).
      * 
@@ -401,10 +593,45 @@ public class AdminController {
         // Create history entry
         String adminEmail = SecurityContextHolder.getContext().getAuthentication().getName();
         createOrderHistoryEntry(order, Order.OrderStatus.CANCELLED, adminEmail, "Order cancelled by admin");
+        orderSummaryCache.evict(order.getUser().getId());
 
         return ResponseEntity.ok(order);
     }
 
+    // ==================== Invoice Export ====================
+
+    /**
+     * Stream a ZIP of invoices for a date range (e.g. a month for GST filing).
+     * 
+     * Entries are written as they are rendered, so the download starts immediately
+     * and memory use does not grow with the number of orders.
+     * 
+     * @param from   First day, inclusive (yyyy-MM-dd)
+     * @param to     Last day, inclusive (yyyy-MM-dd)
+     * @param status Optional status filter (default: all paid, non-cancelled orders)
+     * @return ZIP archive of invoice PDFs
+     */
+    @GetMapping("/invoices/export")
+    public ResponseEntity<StreamingResponseBody> exportInvoices(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Order.OrderStatus status) {
+        if (to.isBefore(from)) {
+            throw new ApplicationException("'to' date must not be before 'from' date", ErrorType.VALIDATION_ERROR);
+        }
+        if (status != null && !InvoiceExportService.isInvoiceable(status)) {
+            throw new ApplicationException("Invoices are not available for " + status + " orders",
+                    ErrorType.VALIDATION_ERROR);
+        }
+
+        StreamingResponseBody body = out -> invoiceExportService.exportZip(from, to, status, out);
+
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=invoices_" + from + "_" + to + ".zip")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
     // ==================== User Management ====================
 
     /**
@@ -443,7 +670,7 @@ public class AdminController {
 
     /**
      * Block a user (set active = false).
-     * Blocked users cannot log in.
+     * Blocked users cannot log in and their issued tokens are revoked.
      * 
      * @param id User ID
      * @return Success message
@@ -451,10 +678,7 @@ public class AdminController {
      */
     @PatchMapping("/users/{id}/block")
     public ResponseEntity<ApiResponse> blockUser(@PathVariable Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("User not found with ID: " + id));
-        user.setActive(false);
-        userRepository.save(user);
+        adminService.updateUserStatus(id, false);
         return ResponseEntity.ok(ApiResponse.success("User blocked successfully"));
     }
 
@@ -467,10 +691,7 @@ public class AdminController {
      */
     @PatchMapping("/users/{id}/unblock")
     public ResponseEntity<ApiResponse> unblockUser(@PathVariable Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("User not found with ID: " + id));
-        user.setActive(true);
-        userRepository.save(user);
+        adminService.updateUserStatus(id, true);
         return ResponseEntity.ok(ApiResponse.success("User unblocked successfully"));
     }
 
@@ -486,12 +707,8 @@ public class AdminController {
     public ResponseEntity<UserResponse> updateUserStatus(
             @PathVariable Long id,
             @RequestBody Map<String, Boolean> body) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("User not found with ID: " + id));
         Boolean active = body.get("active");
-        user.setActive(active != null ? active : false);
-        userRepository.save(user);
-        return ResponseEntity.ok(UserResponse.fromEntity(user));
+        return ResponseEntity.ok(adminService.updateUserStatus(id, active != null ? active : false));
     }
 
     /**
@@ -506,12 +723,7 @@ public class AdminController {
     public ResponseEntity<UserResponse> updateUserRole(
             @PathVariable Long id,
             @RequestBody Map<String, String> body) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("User not found with ID: " + id));
-        String roleStr = body.get("role");
-        user.setRole(User.Role.valueOf(roleStr));
-        userRepository.save(user);
-        return ResponseEntity.ok(UserResponse.fromEntity(user));
+        return ResponseEntity.ok(adminService.updateUserRole(id, body.get("role")));
     }
 
     /**
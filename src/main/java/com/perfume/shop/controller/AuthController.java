@@ -107,6 +107,22 @@ public class AuthController {
         return ResponseEntity.ok(authService.refreshToken(refreshToken));
     }
     
+    /**
+     * Logout: revoke the access token (Authorization header) and optionally the refresh token.
+     * 
+     * @param authorization Bearer access token
+     * @param refreshToken Refresh token from login/register response (optional)
+     * @return Success message
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Map<String, String>> logout(
+            @RequestHeader(value = "Authorization", required = false) String authorization,
+            @RequestParam(required = false) String refreshToken) {
+        String accessToken = authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring(7) : null;
+        return ResponseEntity.ok(authService.logout(accessToken, refreshToken));
+    }
+    
     /**
      * Update user role (admin endpoint for initial setup).
      * 
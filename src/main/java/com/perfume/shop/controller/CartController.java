@@ -2,6 +2,8 @@ package com.perfume.shop.controller;
 
 import com.perfume.shop.dto.AddToCartRequest;
 import com.perfume.shop.dto.ApiResponse;
+import com.perfume.shop.dto.CartBatchRequest;
+import com.perfume.shop.dto.CartBatchResponse;
 import com.perfume.shop.dto.CartResponse;
 import com.perfume.shop.entity.User;
 import com.perfume.shop.service.CartService;
@@ -43,6 +45,14 @@ public class CartController {
         return ResponseEntity.ok(cartService.addToCart(user, request));
     }
     
+    @PostMapping("/batch")
+    public ResponseEntity<CartBatchResponse> applyBatch(
+            @AuthenticationPrincipal User user,
+            @Valid @RequestBody CartBatchRequest request
+    ) {
+        return ResponseEntity.ok(cartService.applyBatch(user, request));
+    }
+    
     @PutMapping("/items/{itemId}")
     public ResponseEntity<CartResponse> updateCartItem(
             @AuthenticationPrincipal User user,
@@ -1,5 +1,6 @@
 package com.perfume.shop.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.perfume.shop.dto.CheckoutRequest;
 import com.perfume.shop.dto.OrderPageResponse;
 import com.perfume.shop.dto.OrderSummaryDto;
@@ -8,18 +9,24 @@ import com.perfume.shop.dto.RazorpayOrderResponse;
 import com.perfume.shop.dto.RazorpayPaymentVerificationRequest;
 import com.perfume.shop.entity.Order;
 import com.perfume.shop.entity.User;
+import com.perfume.shop.service.IdempotencyService;
+import com.perfume.shop.service.InvoiceService;
 import com.perfume.shop.service.OrderService;
 import com.perfume.shop.service.RazorpayService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
@@ -37,24 +44,32 @@ public class OrderController {
     
     private final OrderService orderService;
     private final RazorpayService razorpayService;
+    private final IdempotencyService idempotencyService;
+    private final InvoiceService invoiceService;
     
     /**
      * Create order and initialize Razorpay payment.
      * 
      * Validates cart, locks prices, and creates Razorpay order.
      * Stock is reserved but not deducted until payment is verified.
+     * Retries carrying the same Idempotency-Key replay the first response
+     * instead of creating another order.
      * 
      * @param user Authenticated user
+     * @param idempotencyKey Optional client-generated key for safe retries
      * @param request Checkout request with shipping details
      * @return Razorpay order details for payment processing
      */
     @PostMapping("/checkout")
     public ResponseEntity<RazorpayOrderResponse> createOrder(
             @AuthenticationPrincipal User user,
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody CheckoutRequest request
     ) {
         log.info("Creating order for user: {}", user.getEmail());
-        return ResponseEntity.ok(orderService.createOrder(user, request));
+        return idempotencyService.execute(idempotencyKey, user, "orders.checkout", request,
+                new TypeReference<RazorpayOrderResponse>() {},
+                () -> ResponseEntity.ok(orderService.createOrder(user, request)));
     }
     
     /**
@@ -63,8 +78,10 @@ public class OrderController {
      * Called by frontend after successful payment.
      * Verifies payment signature using HMAC SHA256.
      * Atomically deducts stock and updates order status on success.
+     * Retries carrying the same Idempotency-Key replay the first response.
      * 
      * @param user Authenticated user
+     * @param idempotencyKey Optional client-generated key for safe retries
      * @param request Payment verification request with Razorpay IDs and signature
      * @return Confirmed order
      * @throws RuntimeException if signature invalid or user doesn't own order
@@ -72,7 +89,17 @@ public class OrderController {
     @PostMapping("/verify-payment")
     public ResponseEntity<Map<String, Object>> verifyPayment(
             @AuthenticationPrincipal User user,
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody RazorpayPaymentVerificationRequest request
+    ) {
+        return idempotencyService.execute(idempotencyKey, user, "orders.verify-payment", request,
+                new TypeReference<Map<String, Object>>() {},
+                () -> confirmVerifiedPayment(user, request));
+    }
+    
+    private ResponseEntity<Map<String, Object>> confirmVerifiedPayment(
+            User user,
+            RazorpayPaymentVerificationRequest request
     ) {
         log.info("Verifying payment for order: {} by user: {}", 
                 request.getRazorpayOrderId(), user.getEmail());
@@ -144,11 +171,14 @@ public class OrderController {
     /**
      * Get all user orders.
      * 
+     * Returns flat summaries (number, status, totals, item count, first image)
+     * served from the per-user order cache.
+     * 
      * @param user Authenticated user
-     * @return List of user's orders
+     * @return List of user's order summaries
      */
     @GetMapping
-    public ResponseEntity<List<Order>> getUserOrders(
+    public ResponseEntity<List<OrderSummaryDto>> getUserOrders(
             @AuthenticationPrincipal User user
     ) {
         return ResponseEntity.ok(orderService.getUserOrders(user));
@@ -170,19 +200,10 @@ public class OrderController {
     ) {
         try {
             Pageable pageable = PageRequest.of(page, size);
-            Page<Order> orders = orderService.getUserOrdersPage(user, pageable);
+            Page<OrderSummaryDto> orders = orderService.getUserOrdersPage(user, pageable);
             
             OrderPageResponse response = OrderPageResponse.builder()
-                    .content(orders.getContent().stream()
-                            .map(order -> OrderSummaryDto.builder()
-                                    .id(order.getId())
-                                    .orderNumber(order.getOrderNumber())
-                                    .status(order.getStatus().toString())
-                                    .totalAmount(order.getTotalAmount())
-                                    .createdAt(order.getCreatedAt())
-                                    .itemCount(order.getItems() != null ? order.getItems().size() : 0)
-                                    .build())
-                            .collect(java.util.stream.Collectors.toList()))
+                    .content(orders.getContent())
                     .page(page)
                     .size(size)
                     .totalElements(orders.getTotalElements())
@@ -210,6 +231,9 @@ public class OrderController {
     /**
      * Get order by ID.
      * 
+     * Items, products and variants are fetched together so rendering the
+     * response does not trigger lazy loads.
+     * 
      * @param id Order ID
      * @param user Authenticated user
      * @return Order details
@@ -220,7 +244,7 @@ public class OrderController {
             @PathVariable Long id,
             @AuthenticationPrincipal User user
     ) {
-        return ResponseEntity.ok(orderService.getOrderById(id, user));
+        return ResponseEntity.ok(orderService.getOrderDetails(id, user));
     }
     
     /**
@@ -280,14 +304,15 @@ public class OrderController {
      * Download invoice PDF for delivered order.
      * 
      * Invoice is only available for delivered orders.
+     * Served from the invoice cache; rendered on first request if not cached yet.
      * 
      * @param id Order ID
      * @param user Authenticated user
-     * @return PDF invoice as byte array
+     * @return PDF invoice streamed from the cache
      * @throws RuntimeException if order not delivered or user doesn't own it
      */
     @GetMapping("/{id}/invoice")
-    public ResponseEntity<byte[]> downloadInvoice(
+    public ResponseEntity<Resource> downloadInvoice(
             @PathVariable Long id,
             @AuthenticationPrincipal User user
     ) {
@@ -298,13 +323,13 @@ public class OrderController {
             throw new RuntimeException("Invoice not available for cancelled or refunded orders");
         }
         
-        byte[] pdf = orderService.generateInvoicePdf(order);
-        log.info("Generated invoice for order: {}", order.getOrderNumber());
+        Path invoice = invoiceService.getInvoice(order);
+        log.info("Serving invoice for order: {}", order.getOrderNumber());
         
         return ResponseEntity.ok()
                 .header("Content-Disposition", 
                         "attachment; filename=Invoice_" + order.getOrderNumber() + ".pdf")
-                .header("Content-Type", "application/pdf")
-                .body(pdf);
+                .contentType(MediaType.APPLICATION_PDF)
+                .body(new FileSystemResource(invoice));
     }
 }
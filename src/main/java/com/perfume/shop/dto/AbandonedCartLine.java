@@ -0,0 +1,25 @@
+package com.perfume.shop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * One cart line with its owner's contact details, for abandoned cart emails.
+ * Populated directly by a JPQL constructor expression so emails can be built outside a transaction.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AbandonedCartLine {
+    private Long cartId;
+    private String email;
+    private String firstName;
+    private String productName;
+    private Integer quantity;
+    private BigDecimal price;
+}
@@ -0,0 +1,33 @@
+package com.perfume.shop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Flat order row for admin search results and exports.
+ * Read straight from JDBC - no entities or lazy associations.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AdminOrderRow {
+    private Long id;
+    private String orderNumber;
+    private String status;
+    private LocalDateTime createdAt;
+    private String customerName;
+    private String customerEmail;
+    private String shippingCity;
+    private BigDecimal subtotal;
+    private BigDecimal discount;
+    private BigDecimal totalAmount;
+    private String couponCode;
+    private String paymentMethod;
+    private String trackingNumber;
+}
@@ -0,0 +1,25 @@
+package com.perfume.shop.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkOrderStatusUpdateRequest {
+
+    @NotEmpty(message = "At least one order ID is required")
+    private List<Long> orderIds;
+
+    @NotBlank(message = "Status is required")
+    private String status;
+
+    private String notes;
+}
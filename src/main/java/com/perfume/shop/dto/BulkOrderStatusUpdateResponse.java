@@ -0,0 +1,24 @@
+package com.perfume.shop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk status transition: orders that moved, and the reason each rejected order did not.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkOrderStatusUpdateResponse {
+    private String status;
+    private int requested;
+    private int updated;
+    private List<Long> updatedOrderIds;
+    private Map<Long, String> rejected;
+}
@@ -0,0 +1,22 @@
+package com.perfume.shop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a batch cart change: a result per operation, and the cart after all of them.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartBatchResponse {
+    private int applied;
+    private int failed;
+    private List<CartOperationResult> results;
+    private CartResponse cart;
+}
@@ -0,0 +1,29 @@
+package com.perfume.shop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Flat cart line read model with just what the cart view needs.
+ * Populated directly by a JPQL constructor expression - products and variants are not loaded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartItemView {
+    private Long id;
+    private Long productId;
+    private Long variantId;
+    private String productName;
+    private String productBrand;
+    private String productImage;
+    private Integer variantSize;
+    private Integer availableStock;   // Variant stock when a variant is selected, else product stock
+    private Integer quantity;
+    private BigDecimal price;
+}
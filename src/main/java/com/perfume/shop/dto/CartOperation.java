@@ -0,0 +1,33 @@
+package com.perfume.shop.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One step of a batch cart change.
+ * ADD uses productId/variantId/quantity; UPDATE uses itemId/quantity (0 removes); REMOVE uses itemId.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartOperation {
+
+    public enum Type {
+        ADD, UPDATE, REMOVE
+    }
+
+    @NotNull(message = "Operation type is required")
+    private Type type;
+
+    private Long productId;
+
+    private Long variantId;
+
+    private Long itemId;
+
+    private Integer quantity;
+}
@@ -0,0 +1,18 @@
+package com.perfume.shop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartOperationResult {
+    private int index;              // Position in the request
+    private CartOperation.Type type;
+    private boolean success;
+    private Long itemId;            // Cart item added, changed or removed
+    private String error;
+}
@@ -0,0 +1,43 @@
+package com.perfume.shop.dto;
+
+import com.perfume.shop.entity.Order;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One invoice line with its order header, for bulk invoice export.
+ * Populated directly by a JPQL constructor expression - orders and items are not loaded.
+ * Item columns are null for an order that has no items left.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InvoiceRow {
+    private Long orderId;
+    private String orderNumber;
+    private LocalDateTime createdAt;
+    private Order.OrderStatus status;
+    private String firstName;
+    private String lastName;
+    private String email;
+    private String phoneNumber;
+    private String shippingAddress;
+    private String shippingCity;
+    private String shippingZipCode;
+    private String shippingCountry;
+    private String shippingPhone;
+    private String paymentMethod;
+    private BigDecimal subtotal;
+    private BigDecimal tax;
+    private BigDecimal shippingCost;
+    private BigDecimal totalAmount;
+    private String productName;   // Null once the product is deleted
+    private Integer quantity;
+    private BigDecimal price;
+}
@@ -0,0 +1,41 @@
+package com.perfume.shop.dto;
+
+import com.perfume.shop.entity.Order;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Snapshot of an order carried by an outbox event.
+ * Captured when the event is published so handlers see the state that triggered it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderEventPayload {
+    private Long orderId;
+    private String orderNumber;
+    private Long userId;
+    private Order.OrderStatus status;
+    private BigDecimal totalAmount;
+    private List<Long> productIds;
+
+    public static OrderEventPayload from(Order order) {
+        return OrderEventPayload.builder()
+                .orderId(order.getId())
+                .orderNumber(order.getOrderNumber())
+                .userId(order.getUser().getId())
+                .status(order.getStatus())
+                .totalAmount(order.getTotalAmount())
+                .productIds(order.getItems().stream()
+                        .map(item -> item.getProduct().getId())
+                        .distinct()
+                        .toList())
+                .build();
+    }
+}
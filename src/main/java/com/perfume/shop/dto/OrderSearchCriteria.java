@@ -0,0 +1,29 @@
+package com.perfume.shop.dto;
+
+import com.perfume.shop.entity.Order;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Admin order search filters. Every field is optional; set fields are ANDed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderSearchCriteria {
+    private List<Order.OrderStatus> statuses;
+    private LocalDate from;          // Inclusive
+    private LocalDate to;            // Inclusive
+    private BigDecimal minAmount;    // Inclusive, on total amount
+    private BigDecimal maxAmount;    // Inclusive, on total amount
+    private String city;             // Case-insensitive exact match
+    private String email;            // Customer email, case-insensitive exact match
+    private String couponCode;       // Case-insensitive exact match
+}
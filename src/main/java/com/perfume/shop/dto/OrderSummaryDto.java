@@ -1,5 +1,6 @@
 package com.perfume.shop.dto;
 
+import com.perfume.shop.entity.Order;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -8,6 +9,10 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+/**
+ * Flat order read model for order lists.
+ * Populated directly by a JPQL constructor expression - no entities are loaded.
+ */
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,4 +24,29 @@ public class OrderSummaryDto {
     private BigDecimal totalAmount;
     private LocalDateTime createdAt;
     private Integer itemCount;
+    private BigDecimal subtotal;
+    private BigDecimal tax;
+    private BigDecimal shippingCost;
+    private BigDecimal discount;
+    private String firstItemImage;
+
+    /**
+     * Constructor used by OrderRepository summary queries
+     */
+    public OrderSummaryDto(Long id, String orderNumber, Order.OrderStatus status,
+                           BigDecimal subtotal, BigDecimal tax, BigDecimal shippingCost,
+                           BigDecimal discount, BigDecimal totalAmount, LocalDateTime createdAt,
+                           Long itemCount, String firstItemImage) {
+        this.id = id;
+        this.orderNumber = orderNumber;
+        this.status = status != null ? status.name() : null;
+        this.subtotal = subtotal;
+        this.tax = tax;
+        this.shippingCost = shippingCost;
+        this.discount = discount;
+        this.totalAmount = totalAmount;
+        this.createdAt = createdAt;
+        this.itemCount = itemCount != null ? itemCount.intValue() : 0;
+        this.firstItemImage = firstItemImage;
+    }
 }
@@ -0,0 +1,35 @@
+package com.perfume.shop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of one payment reconciliation run: what was checked against the gateway and what changed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentReconciliationReport {
+    private LocalDateTime startedAt;
+    private long durationMs;
+    private int scanned;
+    private int confirmed;
+    private int cancelled;
+    private int expired;    // No payment attempted within the unpaid-order window
+    private int refundTasks; // Payments found on cancelled orders, recorded for refund
+    private int pending;
+    private int errors;
+    private boolean aborted; // Stopped early because the gateway circuit opened
+    private List<String> confirmedOrders;
+    private List<String> cancelledOrders;
+    private List<String> expiredOrders;
+    private List<String> refundTaskOrders;
+    private Map<String, String> failedOrders;
+}
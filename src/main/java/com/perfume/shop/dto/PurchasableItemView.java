@@ -0,0 +1,33 @@
+package com.perfume.shop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Price and stock of a product and one of its variants, for cart validation.
+ * One row per variant (variant fields null when the product has none).
+ * Populated directly by a JPQL constructor expression - product collections are not loaded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PurchasableItemView {
+    private Long productId;
+    private String productName;
+    private String productBrand;
+    private String productImage;
+    private BigDecimal productPrice;
+    private BigDecimal productDiscountPrice;
+    private Integer productStock;
+    private Long variantId;
+    private Integer variantSize;
+    private BigDecimal variantPrice;
+    private BigDecimal variantDiscountPrice;
+    private Integer variantStock;
+    private Boolean variantActive;
+}
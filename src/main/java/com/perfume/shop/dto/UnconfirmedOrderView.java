@@ -0,0 +1,24 @@
+package com.perfume.shop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Flat row for payment reconciliation: a PLACED or CANCELLED order that has a Razorpay order.
+ * Populated directly by a JPQL constructor expression - no entities are loaded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UnconfirmedOrderView {
+    private Long id;
+    private Long userId;
+    private String orderNumber;
+    private String razorpayOrderId;
+    private LocalDateTime createdAt;
+}
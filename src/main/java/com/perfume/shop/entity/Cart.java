@@ -32,10 +32,18 @@ public class Cart extends BaseEntity {
     @Column(name = "last_updated")
     private LocalDateTime lastUpdated;
 
-    @Column(name = "abandoned_email_sent")
+    // Written only by the abandoned cart job's own updates, so a cart save never undoes a claim
+    @Column(name = "abandoned_email_sent", updatable = false)
     @Builder.Default
     private Boolean abandonedEmailSent = false;
 
+    @Column(name = "abandoned_email_locked_until", insertable = false, updatable = false)
+    private LocalDateTime abandonedEmailLockedUntil; // email lease - set while a node is sending the cart's email
+
+    @Column(name = "abandoned_email_attempts", nullable = false, updatable = false)
+    @Builder.Default
+    private Integer abandonedEmailAttempts = 0; // failed abandoned cart emails - the job gives up at its max attempts
+
     public void addItem(CartItem item) {
         items.add(item);
         item.setCart(this);
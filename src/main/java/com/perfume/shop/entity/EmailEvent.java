@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
         @Index(name = "idx_email_order_id", columnList = "order_id"),
         @Index(name = "idx_email_type", columnList = "emailType"),
         @Index(name = "idx_email_status", columnList = "status"),
-        @Index(name = "idx_email_created", columnList = "created_at")
+        @Index(name = "idx_email_created", columnList = "created_at"),
+        @Index(name = "idx_email_status_next_retry", columnList = "status, nextRetryAt")
 })
 @Data
 @NoArgsConstructor
@@ -64,6 +65,9 @@ public class EmailEvent {
     @Builder.Default
     private LocalDateTime sentAt = null;
 
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil; // retry lease - set while a retry worker owns the row
+
     public enum EmailStatus {
         PENDING, // Waiting to be sent
         SENT, // Successfully sent
@@ -0,0 +1,50 @@
+package com.perfume.shop.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Compressed archive chunk for retired event rows.
+ * One row per retention batch: the batch's rows as a gzipped JSON array, with
+ * the id and created_at range so a chunk can be found again for an audit.
+ */
+@Entity
+@Table(name = "event_archive", indexes = {
+        @Index(name = "idx_event_archive_source_created", columnList = "source, from_created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EventArchive {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String source; // webhook_events, email_events
+
+    @Column(name = "first_id", nullable = false)
+    private Long firstId;
+
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    @Column(name = "row_count", nullable = false)
+    private Integer rowCount;
+
+    @Column(name = "from_created_at", nullable = false)
+    private LocalDateTime fromCreatedAt;
+
+    @Column(name = "to_created_at", nullable = false)
+    private LocalDateTime toCreatedAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    @Column(nullable = false, length = 100_000_000)
+    private byte[] data; // gzip(JSON array of the archived rows)
+}
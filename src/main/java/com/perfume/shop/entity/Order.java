@@ -15,7 +15,9 @@ import java.util.List;
         @Index(name = "idx_order_status", columnList = "status"),
         @Index(name = "idx_order_payment_intent", columnList = "paymentIntentId"),
         @Index(name = "idx_order_razorpay_id", columnList = "razorpayOrderId"),
-        @Index(name = "idx_order_created", columnList = "created_at")
+        @Index(name = "idx_order_created", columnList = "created_at"),
+        @Index(name = "idx_order_user_created", columnList = "user_id, created_at"),
+        @Index(name = "idx_order_status_created", columnList = "status, created_at")
 })
 @Data
 @EqualsAndHashCode(callSuper = true, exclude = { "items" })
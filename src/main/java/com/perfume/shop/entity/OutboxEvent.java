@@ -0,0 +1,87 @@
+package com.perfume.shop.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Transactional outbox entry for an order side effect.
+ * Written in the same transaction as the order change, then claimed and
+ * delivered by the outbox relay. One row per (event, handler) so each
+ * handler retries independently.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_status_next", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_outbox_aggregate", columnList = "aggregate_type, aggregate_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "aggregate_type", nullable = false, length = 50)
+    private String aggregateType; // ORDER
+
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 50)
+    private EventType eventType;
+
+    @Column(nullable = false, length = 50)
+    private String handler; // email, analytics, cache-invalidation
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload; // JSON snapshot taken at publish time
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "max_attempts", nullable = false)
+    @Builder.Default
+    private Integer maxAttempts = 8;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil; // Lease held by the relay node processing the row
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    public enum EventType {
+        ORDER_CONFIRMED,      // Payment captured
+        ORDER_STATUS_CHANGED, // Admin/system status transition
+        ORDER_SHIPPED         // Tracking number assigned
+    }
+
+    public enum Status {
+        PENDING,    // Waiting for delivery or retry
+        PROCESSING, // Claimed by a relay node
+        DONE,       // Delivered to its handler
+        FAILED      // Gave up after max attempts
+    }
+}
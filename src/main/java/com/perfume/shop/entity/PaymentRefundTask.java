@@ -0,0 +1,60 @@
+package com.perfume.shop.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A payment captured for an order that had already been cancelled (expired or
+ * payment failed). The customer has been charged without an order, so an admin
+ * must either refund the payment or reinstate the order. One row per payment.
+ */
+@Entity
+@Table(name = "payment_refund_tasks",
+        uniqueConstraints = @UniqueConstraint(name = "uk_refund_task_payment", columnNames = "razorpay_payment_id"),
+        indexes = {
+                @Index(name = "idx_refund_task_status", columnList = "status, created_at")
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentRefundTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "order_number", nullable = false, length = 100)
+    private String orderNumber;
+
+    @Column(name = "razorpay_order_id", nullable = false, length = 100)
+    private String razorpayOrderId;
+
+    @Column(name = "razorpay_payment_id", nullable = false, length = 100)
+    private String razorpayPaymentId;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal amount; // Order total at cancellation
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "resolved_at")
+    private LocalDateTime resolvedAt;
+
+    public enum Status {
+        OPEN,       // Waiting for an admin
+        REFUNDED,   // Payment refunded at the gateway
+        REINSTATED  // Order reinstated (manually, by an admin) and fulfilled
+    }
+}
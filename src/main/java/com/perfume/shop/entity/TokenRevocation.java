@@ -0,0 +1,46 @@
+package com.perfume.shop.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A revoked JWT or a per-user revocation.
+ * Either tokenId is set (one token, by its jti) or userEmail and notBefore are
+ * set (every token of the user issued before notBefore). Rows are purged after
+ * expiresAt, when every token they cover has expired anyway.
+ */
+@Entity
+@Table(name = "token_revocations", indexes = {
+        @Index(name = "idx_token_revocation_created", columnList = "created_at"),
+        @Index(name = "idx_token_revocation_expires", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TokenRevocation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token_id", length = 64)
+    private String tokenId; // jti
+
+    @Column(name = "user_email", length = 100)
+    private String userEmail;
+
+    @Column(name = "not_before")
+    private LocalDateTime notBefore;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(length = 50)
+    private String reason; // logout, blocked, password_reset
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -9,13 +9,17 @@ import java.time.LocalDateTime;
 /**
  * Entity to track webhook events for idempotency.
  * Prevents duplicate processing of the same webhook event.
+ *
+ * Doubles as the webhook ingestion queue: the endpoint appends the raw event
+ * (the unique event id is the dedup check) and acks, then the webhook worker
+ * claims PENDING rows and applies them, one event per order at a time.
  */
 @Entity
 @Table(name = "webhook_events", indexes = {
-        @Index(name = "idx_webhook_event_id", columnList = "eventId"),
         @Index(name = "idx_webhook_event_type", columnList = "eventType"),
-        @Index(name = "idx_webhook_processed", columnList = "processed"),
-        @Index(name = "idx_webhook_created", columnList = "created_at")
+        @Index(name = "idx_webhook_created", columnList = "created_at"),
+        @Index(name = "idx_webhook_status_next", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_webhook_order_key", columnList = "order_key")
 })
 @Data
 @NoArgsConstructor
@@ -33,12 +37,31 @@ public class WebhookEvent {
     @Column(nullable = false, length = 50)
     private String eventType; // payment.authorized, payment.failed, etc.
 
+    @Column(name = "order_key", length = 100)
+    private String orderKey; // Razorpay order ID - events for the same order are applied in order
+
     @Column(nullable = false, columnDefinition = "TEXT")
     private String payload; // Raw webhook payload
 
     @Column(nullable = false)
+    @Builder.Default
     private Boolean processed = false;
 
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil; // Lease held by the worker node processing the row
+
     @Column(length = 500)
     private String processingResult;
 
@@ -46,10 +69,15 @@ public class WebhookEvent {
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
-    @Column(nullable = false)
-    @Builder.Default
-    private LocalDateTime processedAt = null;
+    private LocalDateTime processedAt;
 
     @Column(length = 1000)
     private String errorMessage;
+
+    public enum Status {
+        PENDING,    // Received, waiting for the worker or a retry
+        PROCESSING, // Claimed by a worker node
+        DONE,       // Applied
+        FAILED      // Gave up after max attempts
+    }
 }
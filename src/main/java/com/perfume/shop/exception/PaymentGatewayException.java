@@ -0,0 +1,35 @@
+package com.perfume.shop.exception;
+
+/**
+ * Exception for failed payment gateway calls.
+ *
+ * Carries the gateway's HTTP status when it answered (0 when it did not), so
+ * callers can tell a rejected request apart from an unreachable gateway.
+ */
+public class PaymentGatewayException extends ApplicationException {
+
+    private final int gatewayStatus;
+
+    public PaymentGatewayException(String message, int gatewayStatus, int httpStatus) {
+        super(message, ErrorType.INTERNAL_ERROR, httpStatus);
+        this.gatewayStatus = gatewayStatus;
+    }
+
+    /**
+     * Gateway unhealthy or saturated - the client should retry shortly (503)
+     */
+    public static PaymentGatewayException unavailable(String message) {
+        return new PaymentGatewayException(message, 0, 503);
+    }
+
+    /**
+     * Gateway answered with an error status (502)
+     */
+    public static PaymentGatewayException rejected(String message, int gatewayStatus) {
+        return new PaymentGatewayException(message, gatewayStatus, 502);
+    }
+
+    public int getGatewayStatus() {
+        return gatewayStatus;
+    }
+}
@@ -0,0 +1,28 @@
+package com.perfume.shop.exception;
+
+/**
+ * Thrown when a payment is confirmed for an order that was already cancelled.
+ *
+ * The payment has been recorded as a refund task by the time this is thrown,
+ * so callers report it as a failure (409) without retrying.
+ */
+public class PaymentOnCancelledOrderException extends ApplicationException {
+
+    private final String orderNumber;
+    private final String paymentId;
+
+    public PaymentOnCancelledOrderException(String orderNumber, String paymentId) {
+        super("Order " + orderNumber + " was cancelled before payment " + paymentId
+                + " arrived. The payment will be refunded.", ErrorType.CONFLICT, 409);
+        this.orderNumber = orderNumber;
+        this.paymentId = paymentId;
+    }
+
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+
+    public String getPaymentId() {
+        return paymentId;
+    }
+}
@@ -1,9 +1,15 @@
 package com.perfume.shop.repository;
 
+import com.perfume.shop.dto.AbandonedCartLine;
+import com.perfume.shop.dto.CartItemView;
 import com.perfume.shop.entity.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,4 +22,19 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     Optional<CartItem> findByCartIdAndProductIdAndVariantId(Long cartId, Long productId, Long variantId);
 
     void deleteByCartIdAndProductId(Long cartId, Long productId);
+
+    // Cart view in one query regardless of item count: no product/variant entities or their EAGER collections
+    @Query("SELECT new com.perfume.shop.dto.CartItemView(" +
+            "ci.id, p.id, v.id, p.name, p.brand, p.imageUrl, v.size, " +
+            "CASE WHEN v.id IS NULL THEN p.stock ELSE v.stock END, ci.quantity, ci.price) " +
+            "FROM CartItem ci JOIN ci.product p LEFT JOIN ci.variant v " +
+            "WHERE ci.cart.user.id = :userId ORDER BY ci.id")
+    List<CartItemView> findViewsByUserId(@Param("userId") Long userId);
+
+    // Abandoned cart emails: lines and contact details for a batch of carts in one query
+    @Query("SELECT new com.perfume.shop.dto.AbandonedCartLine(" +
+            "c.id, u.email, u.firstName, p.name, ci.quantity, ci.price) " +
+            "FROM CartItem ci JOIN ci.cart c JOIN c.user u JOIN ci.product p " +
+            "WHERE c.id IN :cartIds ORDER BY c.id, ci.id")
+    List<AbandonedCartLine> findAbandonedCartLines(@Param("cartIds") Collection<Long> cartIds);
 }
@@ -3,11 +3,14 @@ package com.perfume.shop.repository;
 import com.perfume.shop.entity.Cart;
 import com.perfume.shop.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,8 +21,60 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
 
     Optional<Cart> findByUserId(Long userId);
 
-    @Query("SELECT c FROM Cart c WHERE c.lastUpdated < :threshold " +
-            "AND c.abandonedEmailSent = false " +
-            "AND SIZE(c.items) > 0")
-    List<Cart> findAbandonedCarts(@Param("threshold") LocalDateTime threshold);
+    /**
+     * Carts with their items for a batch of users (cart store flush)
+     */
+    @Query("SELECT DISTINCT c FROM Cart c LEFT JOIN FETCH c.items WHERE c.user.id IN :userIds")
+    List<Cart> findAllWithItemsByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Lock a batch of abandoned carts (idle, not yet emailed, not empty, no live email lease).
+     * SKIP LOCKED lets several nodes claim disjoint batches. Must run inside a transaction.
+     */
+    @Query(value = """
+        SELECT c.id FROM carts c
+        WHERE c.last_updated < :threshold
+          AND c.abandoned_email_sent = false
+          AND (c.abandoned_email_locked_until IS NULL OR c.abandoned_email_locked_until < :now)
+          AND EXISTS (SELECT 1 FROM cart_items ci WHERE ci.cart_id = c.id)
+        ORDER BY c.id
+        LIMIT :limit
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    List<Long> lockAbandonedCartIds(@Param("threshold") LocalDateTime threshold,
+                                    @Param("now") LocalDateTime now,
+                                    @Param("limit") int limit);
+
+    /**
+     * Take the email lease on locked carts
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE carts SET abandoned_email_locked_until = :lockedUntil WHERE id IN (:ids)",
+            nativeQuery = true)
+    int claimAbandonedEmail(@Param("ids") Collection<Long> ids, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    /**
+     * Record sent emails and drop their leases
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = """
+        UPDATE carts SET abandoned_email_sent = true, abandoned_email_locked_until = NULL
+        WHERE id IN (:ids)
+    """, nativeQuery = true)
+    int markAbandonedEmailSent(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Count a failed email and give back the lease, so the next run retries the cart.
+     * The cart is marked done instead once it has failed {@code maxAttempts} times.
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = """
+        UPDATE carts SET abandoned_email_sent = (abandoned_email_attempts + 1 >= :maxAttempts),
+                         abandoned_email_attempts = abandoned_email_attempts + 1,
+                         abandoned_email_locked_until = NULL
+        WHERE id IN (:ids)
+    """, nativeQuery = true)
+    int releaseAbandonedEmailClaims(@Param("ids") Collection<Long> ids, @Param("maxAttempts") int maxAttempts);
 }
@@ -2,27 +2,71 @@ package com.perfume.shop.repository;
 
 import com.perfume.shop.entity.EmailEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface EmailEventRepository extends JpaRepository<EmailEvent, Long> {
     
     /**
-     * Find all emails ready for retry (time has come and not exceeded max retries)
+     * Lock a page of emails due for retry: retry time has come (or a first send
+     * never finished), retries left and no live lease.
+     * SKIP LOCKED lets several nodes claim disjoint pages without blocking.
+     * Must run inside a transaction.
+     */
+    @Query(value = """
+        SELECT e.id FROM email_events e
+        WHERE e.status = 'PENDING'
+          AND e.attempt_count < e.max_retries
+          AND (e.next_retry_at <= :now OR (e.next_retry_at IS NULL AND e.created_at < :staleBefore))
+          AND (e.locked_until IS NULL OR e.locked_until < :now)
+        ORDER BY e.next_retry_at NULLS FIRST, e.id
+        LIMIT :limit
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    List<Long> lockDueIds(@Param("now") LocalDateTime now,
+                          @Param("staleBefore") LocalDateTime staleBefore,
+                          @Param("limit") int limit);
+
+    /**
+     * Take the retry lease on locked rows
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE EmailEvent e SET e.lockedUntil = :lockedUntil WHERE e.id IN :ids")
+    int claim(@Param("ids") Collection<Long> ids, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    /**
+     * Give back leases for rows that were claimed but not dispatched
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailEvent e SET e.lockedUntil = NULL WHERE e.id IN :ids")
+    int releaseClaims(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Count emails due for retry (monitoring)
      */
     @Query("""
-        SELECT e FROM EmailEvent e 
-        WHERE e.status = 'PENDING' 
-        AND e.attemptCount < e.maxRetries 
-        AND (e.nextRetryAt IS NULL OR e.nextRetryAt <= CURRENT_TIMESTAMP)
-        ORDER BY e.nextRetryAt ASC NULLS FIRST
+        SELECT COUNT(e) FROM EmailEvent e
+        WHERE e.status = 'PENDING'
+        AND e.attemptCount < e.maxRetries
+        AND (e.nextRetryAt <= :now OR (e.nextRetryAt IS NULL AND e.createdAt < :staleBefore))
     """)
-    List<EmailEvent> findPendingEmailsForRetry();
+    long countDueForRetry(@Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Load an email event with the order and customer needed to render it
+     */
+    @Query("SELECT e FROM EmailEvent e JOIN FETCH e.order o JOIN FETCH o.user WHERE e.id = :id")
+    Optional<EmailEvent> findWithOrderById(@Param("id") Long id);
     
     /**
      * Find emails by order ID and type
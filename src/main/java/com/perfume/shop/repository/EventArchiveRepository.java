@@ -0,0 +1,52 @@
+package com.perfume.shop.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC access for event retention: lock a batch of retired rows in a live event
+ * table, write its archive chunk and delete the batch.
+ * Table and status filters come from code, never from input. Joins the caller's transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EventArchiveRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO event_archive (source, first_id, last_id, row_count, from_created_at, to_created_at, " +
+            "archived_at, data) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Lock up to {@code limit} rows created before {@code cutoff} that match {@code retiredFilter}.
+     * SKIP LOCKED leaves rows a worker is still holding for a later run.
+     */
+    public List<Map<String, Object>> lockRetiredRows(String table, String retiredFilter,
+                                                     LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT * FROM " + table + " WHERE " + retiredFilter + " AND created_at < ? " +
+                "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED",
+                Timestamp.valueOf(cutoff), limit);
+    }
+
+    public void insertChunk(String source, long firstId, long lastId, int rowCount,
+                            LocalDateTime fromCreatedAt, LocalDateTime toCreatedAt, byte[] data) {
+        jdbcTemplate.update(INSERT_SQL, source, firstId, lastId, rowCount,
+                Timestamp.valueOf(fromCreatedAt), Timestamp.valueOf(toCreatedAt),
+                Timestamp.valueOf(LocalDateTime.now()), data);
+    }
+
+    public int deleteByIds(String table, Collection<Long> ids) {
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        return jdbcTemplate.update("DELETE FROM " + table + " WHERE id IN (" + placeholders + ")", ids.toArray());
+    }
+}
@@ -0,0 +1,30 @@
+package com.perfume.shop.repository;
+
+import com.perfume.shop.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    /**
+     * Find the stored record for a user's Idempotency-Key on an endpoint
+     */
+    Optional<IdempotencyRecord> findByUserIdAndEndpointAndIdempotencyKey(
+            Long userId, String endpoint, String idempotencyKey);
+
+    /**
+     * Remove records whose replay window has passed
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,57 @@
+package com.perfume.shop.repository;
+
+import com.perfume.shop.entity.Order;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC batch writer for order history rows produced by bulk status changes.
+ * One prepared statement executed in batches instead of one persist per order.
+ * Joins the caller's transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderHistoryBatchRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO order_history (order_id, status, timestamp, notes, updated_by, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert the same history entry for every order id.
+     *
+     * @return Number of rows inserted
+     */
+    public int insertAll(List<Long> orderIds, Order.OrderStatus status, String updatedBy, String notes,
+                         LocalDateTime timestamp) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp ts = Timestamp.valueOf(timestamp);
+        int[][] results = jdbcTemplate.batchUpdate(INSERT_SQL, orderIds, BATCH_SIZE, (ps, orderId) -> {
+            ps.setLong(1, orderId);
+            ps.setString(2, status.name());
+            ps.setTimestamp(3, ts);
+            ps.setString(4, notes);
+            ps.setString(5, updatedBy);
+            ps.setTimestamp(6, ts);
+            ps.setTimestamp(7, ts);
+        });
+
+        int inserted = 0;
+        for (int[] batch : results) {
+            inserted += batch.length;
+        }
+        return inserted;
+    }
+}
@@ -1,15 +1,23 @@
 package com.perfume.shop.repository;
 
+import com.perfume.shop.dto.InvoiceRow;
+import com.perfume.shop.dto.OrderSummaryDto;
+import com.perfume.shop.dto.UnconfirmedOrderView;
 import com.perfume.shop.entity.Order;
 import com.perfume.shop.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,10 +34,101 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
        Page<Order> findAllByOrderByCreatedAtDesc(Pageable pageable);
 
+       // Order read model: one query on (user_id, created_at), item count and first image via subqueries
+       String ORDER_SUMMARY_SELECT = "SELECT new com.perfume.shop.dto.OrderSummaryDto(" +
+                     "o.id, o.orderNumber, o.status, o.subtotal, o.tax, o.shippingCost, o.discount, " +
+                     "o.totalAmount, o.createdAt, " +
+                     "(SELECT COUNT(ci) FROM OrderItem ci WHERE ci.order = o), " +
+                     "(SELECT p.imageUrl FROM OrderItem fi JOIN fi.product p WHERE fi.id = " +
+                     "(SELECT MIN(mi.id) FROM OrderItem mi WHERE mi.order = o))) " +
+                     "FROM Order o WHERE o.user.id = :userId ";
+
+       @Query(ORDER_SUMMARY_SELECT + "ORDER BY o.createdAt DESC")
+       List<OrderSummaryDto> findSummariesByUserId(@Param("userId") Long userId);
+
+       @Query(value = ORDER_SUMMARY_SELECT + "ORDER BY o.createdAt DESC",
+                     countQuery = "SELECT COUNT(o) FROM Order o WHERE o.user.id = :userId")
+       Page<OrderSummaryDto> findSummariesByUserId(@Param("userId") Long userId, Pageable pageable);
+
+       // Order detail view: load items with products and variants up front so JSON rendering does not lazy load
+       @EntityGraph(attributePaths = { "user", "items", "items.product", "items.variant" })
+       @Query("SELECT o FROM Order o WHERE o.id = :id")
+       Optional<Order> findWithDetailsById(@Param("id") Long id);
+
        Optional<Order> findByPaymentIntentId(String paymentIntentId);
 
        Optional<Order> findByRazorpayOrderId(String razorpayOrderId);
 
+       // Payment confirmation: row lock so confirmation and unpaid-order expiry serialize on the order
+       @Lock(LockModeType.PESSIMISTIC_WRITE)
+       @Query("SELECT o FROM Order o WHERE o.razorpayOrderId = :razorpayOrderId")
+       Optional<Order> findByRazorpayOrderIdForUpdate(@Param("razorpayOrderId") String razorpayOrderId);
+
+       // Unpaid order expiry: lock a batch of stale orders via (status, created_at), skipping rows
+       // held by another node or an in-flight payment confirmation. Orders with a real Razorpay
+       // order may still be paid at the gateway, so they only expire past gatewayCutoff.
+       // Returns [id, user_id] rows.
+       @Query(value = "SELECT o.id, o.user_id FROM orders o " +
+                     "WHERE o.status = :status AND o.created_at < :cutoff " +
+                     "AND (o.created_at < :gatewayCutoff OR o.razorpay_order_id IS NULL " +
+                     "OR o.razorpay_order_id LIKE 'order_demo_%') " +
+                     "ORDER BY o.created_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+       List<Object[]> lockStaleOrders(@Param("status") String status,
+                     @Param("cutoff") LocalDateTime cutoff,
+                     @Param("gatewayCutoff") LocalDateTime gatewayCutoff,
+                     @Param("limit") int limit);
+
+       // Payment reconciliation: keyset page of PLACED orders with a real Razorpay order in a
+       // created_at window, served by (status, created_at)
+       @Query("SELECT new com.perfume.shop.dto.UnconfirmedOrderView(" +
+                     "o.id, o.user.id, o.orderNumber, o.razorpayOrderId, o.createdAt) " +
+                     "FROM Order o WHERE o.status = :status AND o.razorpayOrderId IS NOT NULL " +
+                     "AND o.razorpayOrderId NOT LIKE 'order_demo_%' " +
+                     "AND o.createdAt >= :from AND o.createdAt < :to AND o.id > :afterId ORDER BY o.id")
+       List<UnconfirmedOrderView> findUnconfirmedRazorpayOrders(@Param("status") Order.OrderStatus status,
+                     @Param("from") LocalDateTime from,
+                     @Param("to") LocalDateTime to,
+                     @Param("afterId") Long afterId,
+                     Pageable pageable);
+
+       // Payment reconciliation: keyset page of CANCELLED orders with a real Razorpay order and no
+       // refund task yet - a payment that still went through must be refunded or the order reinstated
+       @Query("SELECT new com.perfume.shop.dto.UnconfirmedOrderView(" +
+                     "o.id, o.user.id, o.orderNumber, o.razorpayOrderId, o.createdAt) " +
+                     "FROM Order o WHERE o.status = :status " +
+                     "AND o.razorpayOrderId IS NOT NULL AND o.razorpayOrderId NOT LIKE 'order_demo_%' " +
+                     "AND o.createdAt >= :from AND o.createdAt < :to AND o.id > :afterId " +
+                     "AND NOT EXISTS (SELECT 1 FROM PaymentRefundTask t WHERE t.orderId = o.id) ORDER BY o.id")
+       List<UnconfirmedOrderView> findRazorpayOrdersWithoutRefundTask(@Param("status") Order.OrderStatus status,
+                     @Param("from") LocalDateTime from,
+                     @Param("to") LocalDateTime to,
+                     @Param("afterId") Long afterId,
+                     Pageable pageable);
+
+       // Reconciliation cancel: lock the orders that are still PLACED, skipping rows held by an
+       // in-flight payment confirmation
+       @Query(value = "SELECT o.id FROM orders o WHERE o.id IN (:ids) AND o.status = :status " +
+                     "ORDER BY o.id FOR UPDATE SKIP LOCKED", nativeQuery = true)
+       List<Long> lockOrderIdsInStatus(@Param("ids") Collection<Long> ids, @Param("status") String status);
+
+       // Bulk status transition: lock the target rows in id order (deadlock-free across admins)
+       // and return [id, status, user_id, order_number, total_amount] for validation
+       @Query(value = "SELECT o.id, o.status, o.user_id, o.order_number, o.total_amount FROM orders o " +
+                     "WHERE o.id IN (:ids) ORDER BY o.id FOR UPDATE", nativeQuery = true)
+       List<Object[]> lockOrderRows(@Param("ids") Collection<Long> ids);
+
+       // [order_id, product_id] pairs for a set of orders (event payloads without loading entities)
+       @Query("SELECT oi.order.id, oi.product.id FROM OrderItem oi WHERE oi.order.id IN :ids")
+       List<Object[]> findProductIdsByOrderIds(@Param("ids") Collection<Long> ids);
+
+       // Set-based status transition; the status guard makes it a no-op for rows that moved on
+       @Modifying(clearAutomatically = true)
+       @Query("UPDATE Order o SET o.status = :to, o.updatedAt = :now WHERE o.id IN :ids AND o.status IN :from")
+       int updateStatusBulk(@Param("ids") Collection<Long> ids,
+                     @Param("from") Collection<Order.OrderStatus> from,
+                     @Param("to") Order.OrderStatus to,
+                     @Param("now") LocalDateTime now);
+
        @Query("SELECT CASE WHEN COUNT(oi) > 0 THEN true ELSE false END " +
                      "FROM OrderItem oi " +
                      "WHERE oi.order.user.id = :userId " +
@@ -65,4 +164,28 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
                      "GROUP BY YEAR(o.createdAt), MONTH(o.createdAt) " +
                      "ORDER BY year, month")
        List<Object[]> findMonthlySalesData(@Param("startDate") LocalDateTime startDate);
+
+       // Invoice export: forward-only keyset paging over order ids
+       @Query("SELECT o.id FROM Order o " +
+                     "WHERE o.id > :afterId " +
+                     "AND o.createdAt >= :from AND o.createdAt < :to " +
+                     "AND o.status IN :statuses " +
+                     "ORDER BY o.id")
+       List<Long> findInvoiceExportIds(@Param("afterId") Long afterId,
+                     @Param("from") LocalDateTime from,
+                     @Param("to") LocalDateTime to,
+                     @Param("statuses") Collection<Order.OrderStatus> statuses,
+                     Pageable pageable);
+
+       // Flat invoice rows (one per order item) for a page of orders, without loading entities.
+       // Outer joins keep an order whose items or products are gone: it exports with whatever lines remain.
+       @Query("SELECT new com.perfume.shop.dto.InvoiceRow(o.id, o.orderNumber, o.createdAt, o.status, " +
+                     "u.firstName, u.lastName, u.email, u.phoneNumber, " +
+                     "o.shippingAddress, o.shippingCity, o.shippingZipCode, o.shippingCountry, o.shippingPhone, " +
+                     "o.paymentMethod, o.subtotal, o.tax, o.shippingCost, o.totalAmount, " +
+                     "p.name, i.quantity, i.price) " +
+                     "FROM Order o JOIN o.user u LEFT JOIN o.items i LEFT JOIN i.product p " +
+                     "WHERE o.id IN :orderIds " +
+                     "ORDER BY o.id, i.id")
+       List<InvoiceRow> findInvoiceRows(@Param("orderIds") Collection<Long> orderIds);
 }
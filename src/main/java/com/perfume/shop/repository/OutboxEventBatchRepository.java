@@ -0,0 +1,47 @@
+package com.perfume.shop.repository;
+
+import com.perfume.shop.entity.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC batch writer for outbox rows produced by bulk order changes.
+ * IDENTITY ids keep Hibernate from batching inserts; this writes all rows with
+ * one prepared statement. Joins the caller's transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OutboxEventBatchRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO outbox_events (aggregate_type, aggregate_id, event_type, handler, payload, status, " +
+            "attempts, max_attempts, next_attempt_at, created_at) VALUES (?, ?, ?, ?, ?, ?, 0, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, BATCH_SIZE, (ps, event) -> {
+            ps.setString(1, event.getAggregateType());
+            ps.setLong(2, event.getAggregateId());
+            ps.setString(3, event.getEventType().name());
+            ps.setString(4, event.getHandler());
+            ps.setString(5, event.getPayload());
+            ps.setString(6, event.getStatus().name());
+            ps.setInt(7, event.getMaxAttempts());
+            ps.setTimestamp(8, Timestamp.valueOf(event.getNextAttemptAt()));
+            ps.setTimestamp(9, now);
+        });
+    }
+}
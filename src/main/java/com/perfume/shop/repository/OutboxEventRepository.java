@@ -0,0 +1,101 @@
+package com.perfume.shop.repository;
+
+import com.perfume.shop.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Lock a batch of due events - pending rows whose retry time has come, plus
+     * rows whose relay lease expired (node died mid-batch).
+     * SKIP LOCKED lets several relay nodes claim disjoint batches without blocking.
+     * An event is held back while an earlier event of the same order and handler
+     * is still pending or processing, so no node can deliver it out of sequence.
+     * Must run inside a transaction.
+     */
+    @Query(value = """
+        SELECT e.id FROM outbox_events e
+        WHERE ((e.status = 'PENDING' AND e.next_attempt_at <= :now)
+            OR (e.status = 'PROCESSING' AND e.locked_until < :now))
+          AND NOT EXISTS (
+              SELECT 1 FROM outbox_events p
+              WHERE p.aggregate_type = e.aggregate_type
+                AND p.aggregate_id = e.aggregate_id
+                AND p.handler = e.handler
+                AND p.id < e.id
+                AND p.status IN ('PENDING', 'PROCESSING'))
+        ORDER BY e.id
+        LIMIT :limit
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    List<Long> lockDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Take the lease on locked rows and count the delivery attempt
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("""
+        UPDATE OutboxEvent e
+        SET e.status = :status, e.lockedUntil = :lockedUntil, e.attempts = e.attempts + 1
+        WHERE e.id IN :ids
+    """)
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("status") OutboxEvent.Status status,
+              @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    List<OutboxEvent> findByIdInOrderByIdAsc(Collection<Long> ids);
+
+    /**
+     * Record successful delivery
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+        UPDATE OutboxEvent e
+        SET e.status = :status, e.processedAt = :now, e.lockedUntil = NULL, e.lastError = NULL
+        WHERE e.id = :id
+    """)
+    int markDone(@Param("id") Long id,
+                 @Param("status") OutboxEvent.Status status,
+                 @Param("now") LocalDateTime now);
+
+    /**
+     * Release a row for a later attempt, or park it as FAILED
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+        UPDATE OutboxEvent e
+        SET e.status = :status, e.nextAttemptAt = :nextAttemptAt, e.lockedUntil = NULL,
+            e.lastError = :error
+        WHERE e.id = :id
+    """)
+    int release(@Param("id") Long id,
+                @Param("status") OutboxEvent.Status status,
+                @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                @Param("error") String error);
+
+    /**
+     * Count events by status (monitoring)
+     */
+    long countByStatus(OutboxEvent.Status status);
+
+    /**
+     * Remove delivered events past the retention window
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutboxEvent e WHERE e.status = :status AND e.processedAt < :before")
+    int deleteProcessedBefore(@Param("status") OutboxEvent.Status status,
+                              @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,36 @@
+package com.perfume.shop.repository;
+
+import com.perfume.shop.entity.PaymentRefundTask;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentRefundTaskRepository extends JpaRepository<PaymentRefundTask, Long> {
+
+    boolean existsByRazorpayPaymentId(String razorpayPaymentId);
+
+    /**
+     * Admin work queue, oldest first
+     */
+    List<PaymentRefundTask> findByStatusOrderByCreatedAtAsc(PaymentRefundTask.Status status);
+
+    /**
+     * Close a task only while it is still OPEN, so two admins cannot both resolve it
+     *
+     * @return 1 if this call resolved the task, 0 if it was missing or already resolved
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE PaymentRefundTask t SET t.status = :status, t.resolvedAt = :resolvedAt " +
+            "WHERE t.id = :id AND t.status = com.perfume.shop.entity.PaymentRefundTask.Status.OPEN")
+    int resolveOpen(@Param("id") Long id,
+                    @Param("status") PaymentRefundTask.Status status,
+                    @Param("resolvedAt") LocalDateTime resolvedAt);
+}
@@ -1,5 +1,6 @@
 package com.perfume.shop.repository;
 
+import com.perfume.shop.dto.PurchasableItemView;
 import com.perfume.shop.entity.Product;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
@@ -11,6 +12,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -110,6 +112,13 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT p FROM Product p WHERE p.id IN :ids")
     List<Product> findAllByIdWithLock(@Param("ids") List<Long> ids);
+
+    // Cart validation: price/stock for many products and their variants in one query
+    @Query("SELECT new com.perfume.shop.dto.PurchasableItemView(" +
+            "p.id, p.name, p.brand, p.imageUrl, p.price, p.discountPrice, p.stock, " +
+            "v.id, v.size, v.price, v.discountPrice, v.stock, v.active) " +
+            "FROM Product p LEFT JOIN p.variants v WHERE p.id IN :ids")
+    List<PurchasableItemView> findPurchasableViews(@Param("ids") Collection<Long> ids);
     
     // Admin dashboard methods
     Long countByActiveTrue();
@@ -0,0 +1,48 @@
+package com.perfume.shop.repository;
+
+import com.perfume.shop.entity.WebhookEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Append-only JDBC writer for incoming webhook events.
+ * One INSERT per event with no prior lookup; the unique event_id constraint
+ * is the dedup check, so a redelivered event costs a single failed insert.
+ * Runs in its own auto-commit statement so the row is durable before the ack.
+ */
+@Repository
+@RequiredArgsConstructor
+public class WebhookEventAppendRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO webhook_events (event_id, event_type, order_key, payload, processed, status, " +
+            "attempts, next_attempt_at, created_at) VALUES (?, ?, ?, ?, false, ?, 0, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return true if the event was stored, false if it had already been received
+     */
+    public boolean append(WebhookEvent event) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            jdbcTemplate.update(INSERT_SQL, ps -> {
+                ps.setString(1, event.getEventId());
+                ps.setString(2, event.getEventType());
+                ps.setString(3, event.getOrderKey());
+                ps.setString(4, event.getPayload());
+                ps.setString(5, WebhookEvent.Status.PENDING.name());
+                ps.setTimestamp(6, now);
+                ps.setTimestamp(7, now);
+            });
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+}
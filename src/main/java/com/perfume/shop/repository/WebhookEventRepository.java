@@ -2,8 +2,15 @@ package com.perfume.shop.repository;
 
 import com.perfume.shop.entity.WebhookEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +20,80 @@ public interface WebhookEventRepository extends JpaRepository<WebhookEvent, Long
      * Find webhook event by Razorpay event ID for idempotency check
      */
     Optional<WebhookEvent> findByEventId(String eventId);
+
+    /**
+     * Lock a batch of due events - pending rows whose retry time has come, plus
+     * rows whose worker lease expired (node died mid-batch).
+     * A row is skipped while an earlier event for the same order is still pending
+     * or in flight, so each order's events are applied in arrival order.
+     * SKIP LOCKED lets several worker nodes claim disjoint batches without blocking.
+     * Must run inside a transaction.
+     */
+    @Query(value = """
+        SELECT w.id FROM webhook_events w
+        WHERE ((w.status = 'PENDING' AND w.next_attempt_at <= :now)
+            OR (w.status = 'PROCESSING' AND w.locked_until < :now))
+          AND NOT EXISTS (
+              SELECT 1 FROM webhook_events p
+              WHERE p.order_key = w.order_key
+                AND p.id < w.id
+                AND p.status IN ('PENDING', 'PROCESSING'))
+        ORDER BY w.id
+        LIMIT :limit
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    List<Long> lockDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Take the lease on locked rows and count the processing attempt
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("""
+        UPDATE WebhookEvent w
+        SET w.status = :status, w.lockedUntil = :lockedUntil, w.attempts = w.attempts + 1
+        WHERE w.id IN :ids
+    """)
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("status") WebhookEvent.Status status,
+              @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    List<WebhookEvent> findByIdInOrderByIdAsc(Collection<Long> ids);
+
+    /**
+     * Record a successfully applied event
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+        UPDATE WebhookEvent w
+        SET w.status = :status, w.processed = true, w.processingResult = :result,
+            w.processedAt = :now, w.lockedUntil = NULL, w.errorMessage = NULL
+        WHERE w.id = :id
+    """)
+    int markDone(@Param("id") Long id,
+                 @Param("status") WebhookEvent.Status status,
+                 @Param("result") String result,
+                 @Param("now") LocalDateTime now);
+
+    /**
+     * Release a row for a later attempt, or park it as FAILED
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+        UPDATE WebhookEvent w
+        SET w.status = :status, w.nextAttemptAt = :nextAttemptAt, w.lockedUntil = NULL,
+            w.errorMessage = :error, w.processedAt = :now
+        WHERE w.id = :id
+    """)
+    int release(@Param("id") Long id,
+                @Param("status") WebhookEvent.Status status,
+                @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                @Param("error") String error,
+                @Param("now") LocalDateTime now);
+
+    /**
+     * Count events by status (monitoring)
+     */
+    long countByStatus(WebhookEvent.Status status);
 }
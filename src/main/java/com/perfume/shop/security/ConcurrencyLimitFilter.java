@@ -0,0 +1,80 @@
+package com.perfume.shop.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency Limit Filter
+ *
+ * Caps the number of API requests being processed at once. On platform threads
+ * Tomcat's worker pool did this implicitly; on virtual threads every connection
+ * gets its own thread, so without this cap a burst would pile thousands of
+ * requests onto the database pool and the gateways. A request that cannot get
+ * a slot within the wait time is answered with 503 and Retry-After.
+ */
+@Slf4j
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final long waitMs;
+    private final Counter rejected;
+
+    public ConcurrencyLimitFilter(int maxConcurrentRequests, long waitMs, MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrentRequests);
+        this.waitMs = waitMs;
+
+        Gauge.builder("shop.http.inflight", permits, p -> maxConcurrentRequests - p.availablePermits())
+                .description("API requests being processed")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("shop.http.rejected")
+                .description("API requests refused because the concurrency limit was reached")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+
+        boolean permitted;
+        try {
+            permitted = permits.tryAcquire(waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permitted = false;
+        }
+
+        if (!permitted) {
+            rejected.increment();
+            log.warn("Concurrency limit reached, rejecting {} {}", request.getMethod(), request.getRequestURI());
+            sendBusyResponse(response);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void sendBusyResponse(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setContentType("application/json");
+        response.setHeader("Retry-After", "1");
+        response.getWriter().write(
+                "{\"error\": \"Service Unavailable\", \"message\": \"Server is busy. Please try again.\", \"retryAfter\": 1}");
+    }
+}
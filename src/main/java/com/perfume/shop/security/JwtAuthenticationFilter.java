@@ -23,8 +23,10 @@ import java.io.IOException;
  * 
  * Responsibilities:
  * - Extract JWT from Authorization header (Bearer token)
- * - Validate token signature and expiration
+ * - Validate token signature and expiration (verified once per request into a VerifiedToken)
  * - Handle grace period for token refresh
+ * - Reject revoked tokens (TokenRevocationService, in memory)
+ * - Resolve the user from UserPrincipalCache (no database hit per request)
  * - Set authenticated user in SecurityContext
  * - Handle token validation exceptions
  */
@@ -34,6 +36,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final UserPrincipalCache principalCache;
+    private final TokenRevocationService revocationService;
     
     private static final String AUTHORIZATION_HEADER = "Authorization";
     private static final String BEARER_PREFIX = "Bearer ";
@@ -81,19 +85,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
      */
     private boolean validateAndAuthenticateToken(String jwt, HttpServletRequest request, HttpServletResponse response) {
         try {
-            final String userEmail = jwtService.extractUsername(jwt);
+            final VerifiedToken token = jwtService.verify(jwt);
+            final String userEmail = token.subject();
+            
+            if (revocationService.isRevoked(token)) {
+                log.debug("Revoked token presented for user: {}", userEmail);
+                return false;
+            }
             
             // Skip if already authenticated
             if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                 
-                // Load user details
-                UserDetails userDetails = userDetailsService.loadUserByUsername(userEmail);
+                // Load user details (cached; evicted when the user changes)
+                UserDetails userDetails = principalCache.get(userEmail, userDetailsService::loadUserByUsername);
                 
                 // Check if token is valid
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                if (jwtService.isTokenValid(token, userDetails)) {
                     
                     // Check if token is within grace period
-                    if (jwtService.isTokenExpired(jwt) && jwtService.isWithinGracePeriod(jwt)) {
+                    if (jwtService.isTokenExpired(token) && jwtService.isWithinGracePeriod(token)) {
                         log.debug("Token within grace period for user: {}", userEmail);
                         response.addHeader("X-Token-Expiring", "true");
                     }
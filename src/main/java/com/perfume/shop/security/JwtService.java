@@ -1,20 +1,30 @@
 package com.perfume.shop.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 /**
@@ -26,6 +36,10 @@ import java.util.function.Function;
  * - Token expiry validation with grace period
  * - Token claim extraction
  * - Secure signature verification (HS256)
+ * - Parse-once verification: each token is verified into one VerifiedToken that
+ *   every check uses, and recently verified tokens are cached (keyed by a SHA-256
+ *   of the token, kept until expiry plus grace period) so repeated requests with
+ *   the same token skip the signature check and JSON parsing
  */
 @Service
 @Slf4j
@@ -43,11 +57,100 @@ public class JwtService {
     @Value("${app.jwt.grace-period:60000}")
     private Long gracePeriodMs; // 1 minute grace period for token refresh
     
+    @Value("${app.jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheSize; // 0 disables the cache
+    
+    private SecretKey signInKey;
+    private JwtParser parser;
+    private Cache<String, VerifiedToken> verifiedTokens;
+    
+    @PostConstruct
+    public void init() {
+        this.signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.parser = Jwts.parser()
+                .verifyWith(signInKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        return usefulForNanos(token);
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return usefulForNanos(token);
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+    
+    /**
+     * Verify the signature and parse the claims, once per distinct token.
+     * Expired tokens are returned too (the signature is still checked); use
+     * {@link #isTokenValid(VerifiedToken, UserDetails)} to apply expiry and grace.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed or its signature is invalid
+     */
+    public VerifiedToken verify(String token) {
+        if (verifiedCacheSize <= 0) {
+            return parse(token);
+        }
+        String key = cacheKey(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        VerifiedToken verified = parse(token);
+        if (usefulForNanos(verified) > 0) {
+            verifiedTokens.put(key, verified);
+        }
+        return verified;
+    }
+    
+    private VerifiedToken parse(String token) {
+        try {
+            return VerifiedToken.of(extractAllClaims(token));
+        } catch (ExpiredJwtException e) {
+            // Signature was verified before the expiry check
+            return VerifiedToken.of(e.getClaims());
+        }
+    }
+    
+    /**
+     * How long a verified token can still authenticate: until expiry plus grace period
+     */
+    private long usefulForNanos(VerifiedToken token) {
+        if (token.expiresAtMs() == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        long remainingMs = token.expiresAtMs() + gracePeriodMs - System.currentTimeMillis();
+        return Math.max(0, remainingMs) * 1_000_000L;
+    }
+    
+    /**
+     * SHA-256 of the token, so raw tokens are not kept in memory
+     */
+    private static String cacheKey(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
     /**
      * Extract username from token
      */
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).subject();
     }
     
     /**
@@ -67,7 +170,7 @@ public class JwtService {
      * Extract token expiration time
      */
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return new Date(verify(token).expiresAtMs());
     }
     
     /**
@@ -100,6 +203,7 @@ public class JwtService {
         return Jwts.builder()
                 .setClaims(extraClaims)
                 .setSubject(userDetails.getUsername())
+                .setId(UUID.randomUUID().toString()) // jti, for revocation
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
                 .signWith(getSignInKey(), SignatureAlgorithm.HS256)
@@ -111,36 +215,34 @@ public class JwtService {
      */
     public boolean isTokenValid(String token, UserDetails userDetails) {
         try {
-            final String username = extractUsername(token);
-            boolean isExpired = isTokenExpired(token);
-            
-            if (isExpired && !isWithinGracePeriod(token)) {
-                log.warn("Token expired for user: {}", username);
-                return false;
-            }
-            
-            return username.equals(userDetails.getUsername());
-        } catch (ExpiredJwtException e) {
-            if (isWithinGracePeriod(e.getClaims().getExpiration())) {
-                log.debug("Token within grace period, allowing refresh");
-                return true;
-            }
-            return false;
+            return isTokenValid(verify(token), userDetails);
         } catch (Exception e) {
             log.error("Token validation error: {}", e.getMessage());
             return false;
         }
     }
     
+    /**
+     * Validate a verified token against user details: subject matches and the
+     * token is unexpired or within its grace period
+     */
+    public boolean isTokenValid(VerifiedToken token, UserDetails userDetails) {
+        if (isTokenExpired(token) && !isWithinGracePeriod(token)) {
+            log.warn("Token expired for user: {}", token.subject());
+            return false;
+        }
+        return token.subject() != null && token.subject().equals(userDetails.getUsername());
+    }
+    
     /**
      * Check if token is expired
      */
     public boolean isTokenExpired(String token) {
-        try {
-            return extractExpiration(token).before(new Date());
-        } catch (ExpiredJwtException e) {
-            return true;
-        }
+        return isTokenExpired(verify(token));
+    }
+    
+    public boolean isTokenExpired(VerifiedToken token) {
+        return token.isExpired(System.currentTimeMillis());
     }
     
     /**
@@ -148,24 +250,14 @@ public class JwtService {
      */
     public boolean isWithinGracePeriod(String token) {
         try {
-            Date expiration = extractExpiration(token);
-            return isWithinGracePeriod(expiration);
+            return isWithinGracePeriod(verify(token));
         } catch (Exception e) {
             return false;
         }
     }
     
-    /**
-     * Check if expiration time is within grace period
-     */
-    private boolean isWithinGracePeriod(Date expirationTime) {
-        if (expirationTime == null) {
-            return false;
-        }
-        long expirationMs = expirationTime.getTime();
-        long currentMs = System.currentTimeMillis();
-        long timeSinceExpiry = currentMs - expirationMs;
-        
+    public boolean isWithinGracePeriod(VerifiedToken token) {
+        long timeSinceExpiry = System.currentTimeMillis() - token.expiresAtMs();
         return timeSinceExpiry >= 0 && timeSinceExpiry <= gracePeriodMs;
     }
     
@@ -174,10 +266,7 @@ public class JwtService {
      */
     public long getTimeUntilExpiration(String token) {
         try {
-            Date expiration = extractExpiration(token);
-            long expirationMs = expiration.getTime();
-            long currentMs = System.currentTimeMillis();
-            return Math.max(0, expirationMs - currentMs);
+            return Math.max(0, verify(token).expiresAtMs() - System.currentTimeMillis());
         } catch (Exception e) {
             return -1;
         }
@@ -188,8 +277,7 @@ public class JwtService {
      */
     public boolean isRefreshToken(String token) {
         try {
-            Claims claims = extractAllClaims(token);
-            return "refresh".equals(claims.get("type"));
+            return verify(token).refresh();
         } catch (Exception e) {
             return false;
         }
@@ -199,18 +287,13 @@ public class JwtService {
      * Extract all claims from token
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignInKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
     
     /**
-     * Get signing key from secret
+     * Get signing key from secret (decoded once at startup)
      */
     private SecretKey getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signInKey;
     }
 }
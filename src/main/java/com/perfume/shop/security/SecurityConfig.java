@@ -30,6 +30,8 @@ public class SecurityConfig {
 
         private final JwtService jwtService;
         private final UserDetailsService userDetailsService;
+        private final UserPrincipalCache principalCache;
+        private final TokenRevocationService revocationService;
 
         @Value("${app.security.cors-origins:http://localhost:3000,http://localhost:5173,https://muwas.in,https://www.muwas.in}")
         private String corsOrigins;
@@ -40,14 +42,18 @@ public class SecurityConfig {
         @Value("${app.security.password-encoder-strength:12}")
         private int passwordEncoderStrength;
 
-        public SecurityConfig(JwtService jwtService, @Lazy UserDetailsService userDetailsService) {
+        public SecurityConfig(JwtService jwtService, @Lazy UserDetailsService userDetailsService,
+                        UserPrincipalCache principalCache, TokenRevocationService revocationService) {
                 this.jwtService = jwtService;
                 this.userDetailsService = userDetailsService;
+                this.principalCache = principalCache;
+                this.revocationService = revocationService;
         }
 
         @Bean
         public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
-                JwtAuthenticationFilter jwtFilter = new JwtAuthenticationFilter(jwtService, userDetailsService);
+                JwtAuthenticationFilter jwtFilter = new JwtAuthenticationFilter(jwtService, userDetailsService,
+                                principalCache, revocationService);
 
                 http
                                 .csrf(AbstractHttpConfigurer::disable)
@@ -74,6 +80,7 @@ public class SecurityConfig {
                                                                 "/api/auth/register",
                                                                 "/api/auth/login",
                                                                 "/api/auth/refresh-token",
+                                                                "/api/auth/logout",
                                                                 "/api/auth/forgot-password",
                                                                 "/api/auth/reset-password",
                                                                 "/api/auth/update-role",
@@ -172,8 +179,9 @@ public class SecurityConfig {
                 configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
                 configuration.setAllowedHeaders(
                                 Arrays.asList("Authorization", "Content-Type", "Accept", "X-Requested-With", "Origin",
-                                                "Access-Control-Request-Method", "Access-Control-Request-Headers"));
-                configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type"));
+                                                "Access-Control-Request-Method", "Access-Control-Request-Headers",
+                                                "Idempotency-Key"));
+                configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type", "Idempotent-Replayed"));
                 configuration.setAllowCredentials(true);
                 configuration.setMaxAge(corsMaxAge);
                 UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,266 @@
+package com.perfume.shop.security;
+
+import com.perfume.shop.entity.TokenRevocation;
+import com.perfume.shop.repository.TokenRevocationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JWT revocation list.
+ *
+ * Revocations are persisted in token_revocations, either for a single token
+ * (its jti, e.g. on logout) or for every token of a user issued before a point
+ * in time (blocked account, password reset). Each node keeps the live entries in
+ * memory - an exact map behind a Bloom filter, so the check on every request is a
+ * few hash probes and almost never touches the map - and picks up other nodes'
+ * revocations every few seconds. A row expires when the tokens it covers would
+ * have expired anyway, and is then purged from the table and from memory.
+ * Inside a transaction a new revocation reaches memory only once it commits, so
+ * a rolled-back logout or password reset leaves the tokens valid.
+ */
+@Service
+@Slf4j
+public class TokenRevocationService {
+
+    private final TokenRevocationRepository revocationRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.revocation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.security.revocation.expected-entries:100000}")
+    private long expectedEntries;
+
+    @Value("${app.security.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    // Re-read this far back on every sync: rows from transactions that committed late
+    @Value("${app.security.revocation.sync-overlap-seconds:60}")
+    private long syncOverlapSeconds;
+
+    @Value("${app.jwt.refresh-expiration:604800000}")
+    private long refreshTokenExpirationMs;
+
+    @Value("${app.jwt.grace-period:60000}")
+    private long gracePeriodMs;
+
+    private volatile State state;
+    private volatile LocalDateTime lastSyncAt;
+    private Counter rejected;
+
+    /**
+     * Per-user cut-off: tokens issued before notBeforeMs are revoked
+     */
+    private record Cutoff(long notBeforeMs, long expiresAtMs) {
+    }
+
+    /**
+     * In-memory revocations. Replaced as a whole on reload, added to in place otherwise.
+     */
+    private record State(BloomFilter tokenFilter,
+                         ConcurrentHashMap<String, Long> tokens,
+                         ConcurrentHashMap<String, Cutoff> users) {
+    }
+
+    public TokenRevocationService(TokenRevocationRepository revocationRepository, MeterRegistry meterRegistry) {
+        this.revocationRepository = revocationRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.state = emptyState(expectedEntries);
+        this.rejected = Counter.builder("shop.security.revocation.rejected")
+                .description("Requests refused because their token was revoked")
+                .register(meterRegistry);
+        Gauge.builder("shop.security.revocations", this, service -> service.state.tokens().size())
+                .description("Revocations held in memory")
+                .tag("type", "token")
+                .register(meterRegistry);
+        Gauge.builder("shop.security.revocations", this, service -> service.state.users().size())
+                .description("Revocations held in memory")
+                .tag("type", "user")
+                .register(meterRegistry);
+
+        if (enabled) {
+            try {
+                reload();
+            } catch (Exception e) {
+                log.error("Could not load token revocations, retrying on the next sync", e);
+            }
+        }
+    }
+
+    /**
+     * Whether a verified token has been revoked. Called for every authenticated request.
+     */
+    public boolean isRevoked(VerifiedToken token) {
+        if (!enabled || token == null) {
+            return false;
+        }
+        State current = state;
+        boolean revoked = token.id() != null
+                && current.tokenFilter().mightContain(token.id())
+                && current.tokens().containsKey(token.id());
+
+        if (!revoked && token.subject() != null && !current.users().isEmpty()) {
+            Cutoff cutoff = current.users().get(token.subject());
+            revoked = cutoff != null && token.issuedAtMs() < cutoff.notBeforeMs();
+        }
+
+        if (revoked) {
+            rejected.increment();
+        }
+        return revoked;
+    }
+
+    /**
+     * Revoke one token (logout). Tokens issued without a jti cannot be revoked singly.
+     */
+    public void revokeToken(VerifiedToken token, String reason) {
+        if (token.id() == null) {
+            log.warn("Token of {} has no id and cannot be revoked, it expires on its own", token.subject());
+            return;
+        }
+        TokenRevocation revocation = revocationRepository.save(TokenRevocation.builder()
+                .tokenId(token.id())
+                // No token outlives a refresh token, whatever its exp claim says
+                .expiresAt(toDateTime(Math.min(token.expiresAtMs(), System.currentTimeMillis() + refreshTokenExpirationMs)
+                        + gracePeriodMs))
+                .reason(reason)
+                .createdAt(LocalDateTime.now())
+                .build());
+        applyAfterCommit(revocation);
+        log.info("Token revoked: user={}, reason={}", token.subject(), reason);
+    }
+
+    /**
+     * Revoke every token of a user issued until now (blocked account, password reset).
+     * JWT issue times have second precision, so the cut-off is the start of the current second.
+     */
+    public void revokeAllForUser(String email, String reason) {
+        LocalDateTime now = LocalDateTime.now();
+        TokenRevocation revocation = revocationRepository.save(TokenRevocation.builder()
+                .userEmail(email)
+                .notBefore(now.truncatedTo(ChronoUnit.SECONDS))
+                .expiresAt(now.plusNanos((refreshTokenExpirationMs + gracePeriodMs) * 1_000_000L))
+                .reason(reason)
+                .createdAt(now)
+                .build());
+        applyAfterCommit(revocation);
+        log.info("All tokens revoked: user={}, reason={}", email, reason);
+    }
+
+    /**
+     * Pick up revocations recorded by other nodes
+     */
+    @Scheduled(fixedDelayString = "${app.security.revocation.sync-interval-ms:5000}", initialDelay = 5000)
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (lastSyncAt == null) {
+                reload(); // startup load failed
+                return;
+            }
+            LocalDateTime startedAt = LocalDateTime.now();
+            LocalDateTime since = lastSyncAt.minusSeconds(syncOverlapSeconds);
+            State current = state;
+            revocationRepository.findByCreatedAtAfterAndExpiresAtAfter(since, startedAt)
+                    .forEach(revocation -> apply(current, revocation));
+            lastSyncAt = startedAt;
+        } catch (Exception e) {
+            log.error("Token revocation sync failed", e);
+        }
+    }
+
+    /**
+     * Delete expired revocations and rebuild the in-memory state from the table
+     */
+    @Scheduled(cron = "${app.security.revocation.purge-cron:0 30 * * * *}")
+    public void purgeExpired() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int deleted = revocationRepository.deleteExpired(LocalDateTime.now());
+            reload();
+            if (deleted > 0) {
+                log.info("Purged {} expired token revocations", deleted);
+            }
+        } catch (Exception e) {
+            log.error("Token revocation purge failed", e);
+        }
+    }
+
+    /**
+     * Replace the in-memory state with the revocations still in force
+     */
+    void reload() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<TokenRevocation> live = revocationRepository.findByExpiresAtAfter(startedAt);
+
+        State fresh = emptyState(Math.max(expectedEntries, 2L * live.size()));
+        live.forEach(revocation -> apply(fresh, revocation));
+        state = fresh;
+        lastSyncAt = startedAt;
+        log.info("Token revocations loaded: tokens={}, users={}", fresh.tokens().size(), fresh.users().size());
+    }
+
+    /**
+     * Apply a revocation saved by this node once its transaction commits, or now outside one
+     */
+    private void applyAfterCommit(TokenRevocation revocation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(state, revocation);
+                }
+            });
+        } else {
+            apply(state, revocation);
+        }
+    }
+
+    private void apply(State target, TokenRevocation revocation) {
+        long expiresAtMs = toMillis(revocation.getExpiresAt());
+        if (revocation.getTokenId() != null) {
+            target.tokens().put(revocation.getTokenId(), expiresAtMs);
+            target.tokenFilter().put(revocation.getTokenId());
+        } else if (revocation.getUserEmail() != null && revocation.getNotBefore() != null) {
+            Cutoff cutoff = new Cutoff(toMillis(revocation.getNotBefore()), expiresAtMs);
+            target.users().merge(revocation.getUserEmail(), cutoff, (a, b) -> new Cutoff(
+                    Math.max(a.notBeforeMs(), b.notBeforeMs()), Math.max(a.expiresAtMs(), b.expiresAtMs())));
+        }
+    }
+
+    private State emptyState(long capacity) {
+        return new State(BloomFilter.create(capacity, falsePositiveRate),
+                new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
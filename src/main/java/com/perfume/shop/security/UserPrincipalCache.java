@@ -0,0 +1,109 @@
+package com.perfume.shop.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.perfume.shop.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Short-lived cache of authenticated principals, keyed by email (the JWT subject).
+ *
+ * Lets the JWT filter authenticate a request without loading the user from the
+ * database. Entries are bounded and expire quickly; role, status, password and
+ * profile changes evict the user explicitly, again after commit so a request
+ * racing with the transaction cannot re-cache the old state. Every caller gets
+ * its own copy of the user, so a request that modifies its principal never
+ * changes what other requests see.
+ */
+@Component
+public class UserPrincipalCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.principal-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.security.principal-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    private Cache<String, UserDetails> principals;
+
+    public UserPrincipalCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "principals");
+    }
+
+    /**
+     * Get a user's principal, loading it on a miss.
+     */
+    public UserDetails get(String email, Function<String, UserDetails> loader) {
+        return copyOf(principals.get(email, key -> copyOf(loader.apply(key))));
+    }
+
+    /**
+     * Evict one user now and, inside a transaction, again after commit.
+     */
+    public void evict(String email) {
+        if (email == null) {
+            return;
+        }
+        principals.invalidate(email);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    principals.invalidate(email);
+                }
+            });
+        }
+    }
+
+    /**
+     * Detached copy of the user's own columns; associations and reset tokens are left out
+     */
+    static UserDetails copyOf(UserDetails userDetails) {
+        if (!(userDetails instanceof User user)) {
+            return userDetails;
+        }
+        User copy = User.builder()
+                .email(user.getEmail())
+                .password(user.getPassword())
+                .oauthProvider(user.getOauthProvider())
+                .oauthId(user.getOauthId())
+                .profilePictureUrl(user.getProfilePictureUrl())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .phoneNumber(user.getPhoneNumber())
+                .address(user.getAddress())
+                .city(user.getCity())
+                .country(user.getCountry())
+                .zipCode(user.getZipCode())
+                .role(user.getRole())
+                .active(user.getActive())
+                .build();
+        copy.setId(user.getId());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setUpdatedAt(user.getUpdatedAt());
+        return copy;
+    }
+}
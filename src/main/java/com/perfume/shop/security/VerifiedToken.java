@@ -0,0 +1,31 @@
+package com.perfume.shop.security;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * The claims of a JWT whose signature has been checked, parsed once and shared
+ * by every check of the request. Expiry is not enforced here: an expired token
+ * is still a VerifiedToken, and JwtService decides whether its grace period
+ * still applies.
+ *
+ * @param subject Username (email)
+ * @param id Token id (jti), null for tokens issued without one
+ * @param issuedAtMs Issue time in epoch milliseconds, 0 if absent
+ * @param expiresAtMs Expiry in epoch milliseconds, Long.MAX_VALUE if absent
+ * @param refresh Whether this is a refresh token
+ */
+public record VerifiedToken(String subject, String id, long issuedAtMs, long expiresAtMs, boolean refresh) {
+
+    static VerifiedToken of(Claims claims) {
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.getId(),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0,
+                claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE,
+                "refresh".equals(claims.get("type")));
+    }
+
+    public boolean isExpired(long nowMs) {
+        return expiresAtMs < nowMs;
+    }
+}
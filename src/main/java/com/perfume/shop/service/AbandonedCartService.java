@@ -1,65 +1,190 @@
 package com.perfume.shop.service;
 
-import com.perfume.shop.entity.Cart;
+import com.perfume.shop.dto.AbandonedCartLine;
+import com.perfume.shop.repository.CartItemRepository;
 import com.perfume.shop.repository.CartRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Service for handling abandoned cart recovery
  * Automatically sends emails to users who abandoned their carts
+ *
+ * Runs as a paged pipeline, one batch at a time:
+ * - claim: a short transaction locks idle carts with FOR UPDATE SKIP LOCKED, reads their
+ *   lines and leases the whole batch with one update, so other nodes skip them
+ * - send: emails go out on the abandonedCartExecutor, outside any transaction
+ * - settle: sent carts are marked as emailed and failed ones released, one update each
+ *
+ * A cart is only marked as emailed once its email went out. Failed sends are counted
+ * per cart; after max-attempts failures (a dead address, say) the cart is marked done
+ * so it stops coming back at the head of every batch. If a node dies mid-batch
+ * its leases run out and another node sends those carts again.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AbandonedCartService {
 
     private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
     private final EmailService emailService;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor executor;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Timer batchTimer;
+
+    @Value("${app.abandoned-cart.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.abandoned-cart.idle-minutes:30}")
+    private long idleMinutes;
+
+    @Value("${app.abandoned-cart.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.abandoned-cart.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${app.abandoned-cart.lease-minutes:10}")
+    private long leaseMinutes;
+
+    @Value("${app.abandoned-cart.max-attempts:3}")
+    private int maxAttempts;
+
+    public AbandonedCartService(CartRepository cartRepository,
+                                CartItemRepository cartItemRepository,
+                                EmailService emailService,
+                                TransactionTemplate transactionTemplate,
+                                @Qualifier("abandonedCartExecutor") Executor executor,
+                                MeterRegistry meterRegistry) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.emailService = emailService;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.sentCounter = Counter.builder("shop.abandoned_carts.emails")
+                .tag("result", "sent")
+                .description("Abandoned cart emails sent")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("shop.abandoned_carts.emails")
+                .tag("result", "failed")
+                .description("Abandoned cart emails that failed and were released for retry")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("shop.abandoned_carts.batch")
+                .description("Time to claim, email and release one batch of abandoned carts")
+                .register(meterRegistry);
+    }
 
     /**
      * Check for abandoned carts every 5 minutes
-     * Sends recovery emails for carts abandoned for 30+ minutes
+     * Sends recovery emails for carts abandoned for 30+ minutes, bounded per run
      */
-    @Scheduled(fixedRate = 300000) // 5 minutes
-    @Transactional
+    @Scheduled(fixedDelayString = "${app.abandoned-cart.poll-interval-ms:300000}", initialDelay = 60000)
     public void processAbandonedCarts() {
-        log.info("🔍 Checking for abandoned carts...");
+        if (!enabled) {
+            return;
+        }
 
-        LocalDateTime threshold = LocalDateTime.now().minusMinutes(30);
-        List<Cart> abandonedCarts = cartRepository.findAbandonedCarts(threshold);
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(idleMinutes);
+        int sent = 0;
+        int failed = 0;
 
-        if (abandonedCarts.isEmpty()) {
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                BatchResult result = processBatch(threshold);
+                sent += result.sent();
+                failed += result.failed();
+                if (result.claimed() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Abandoned cart processing failed after {} sent", sent, e);
+        }
+
+        if (sent > 0 || failed > 0) {
+            log.info("📊 Abandoned cart processing complete: {} sent, {} failed", sent, failed);
+        } else {
             log.debug("No abandoned carts found");
-            return;
         }
+    }
 
-        log.info("📧 Found {} abandoned cart(s), sending recovery emails...", abandonedCarts.size());
+    /**
+     * Claim, email and release one batch
+     */
+    BatchResult processBatch(LocalDateTime threshold) {
+        Timer.Sample sample = Timer.start();
+
+        // Step 1: Claim a batch in a short transaction
+        Map<Long, List<AbandonedCartLine>> carts = transactionTemplate.execute(status -> claimBatch(threshold));
+        if (carts == null || carts.isEmpty()) {
+            return new BatchResult(0, 0, 0);
+        }
 
-        int successCount = 0;
-        int failureCount = 0;
+        // Step 2: Send concurrently, outside the transaction
+        Map<Long, CompletableFuture<Void>> sends = new LinkedHashMap<>();
+        carts.forEach((cartId, lines) -> sends.put(cartId,
+                CompletableFuture.runAsync(() -> emailService.sendAbandonedCartEmail(lines), executor)));
 
-        for (Cart cart : abandonedCarts) {
+        List<Long> sentIds = new ArrayList<>();
+        List<Long> failedIds = new ArrayList<>();
+        sends.forEach((cartId, send) -> {
             try {
-                emailService.sendAbandonedCartEmail(cart);
-                cart.setAbandonedEmailSent(true);
-                cartRepository.save(cart);
-                successCount++;
-                log.info("✅ Sent abandoned cart email to: {}", cart.getUser().getEmail());
+                send.join();
+                sentIds.add(cartId);
             } catch (Exception e) {
-                failureCount++;
-                log.error("❌ Failed to send abandoned cart email for cart ID {}: {}",
-                        cart.getId(), e.getMessage());
+                failedIds.add(cartId);
+                log.error("❌ Failed to send abandoned cart email for cart ID {}: {}", cartId, e.getMessage());
             }
+        });
+
+        // Step 3: Mark what was sent; release failures so the next run retries them, up to max attempts
+        if (!sentIds.isEmpty()) {
+            cartRepository.markAbandonedEmailSent(sentIds);
+        }
+        if (!failedIds.isEmpty()) {
+            cartRepository.releaseAbandonedEmailClaims(failedIds, maxAttempts);
+        }
+
+        int sent = sentIds.size();
+        sentCounter.increment(sent);
+        failedCounter.increment(failedIds.size());
+        sample.stop(batchTimer);
+
+        return new BatchResult(carts.size(), sent, failedIds.size());
+    }
+
+    private Map<Long, List<AbandonedCartLine>> claimBatch(LocalDateTime threshold) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> cartIds = cartRepository.lockAbandonedCartIds(threshold, now, batchSize);
+        if (cartIds.isEmpty()) {
+            return Map.of();
         }
 
-        log.info("📊 Abandoned cart processing complete: {} sent, {} failed",
-                successCount, failureCount);
+        Map<Long, List<AbandonedCartLine>> carts = new LinkedHashMap<>();
+        for (AbandonedCartLine line : cartItemRepository.findAbandonedCartLines(cartIds)) {
+            carts.computeIfAbsent(line.getCartId(), id -> new ArrayList<>()).add(line);
+        }
+        cartRepository.claimAbandonedEmail(cartIds, now.plusMinutes(leaseMinutes));
+        return carts;
+    }
+
+    record BatchResult(int claimed, int sent, int failed) {
     }
 }
@@ -0,0 +1,32 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.OrderEventPayload;
+import com.perfume.shop.entity.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends the admin new-order notification from the outbox.
+ * Kept apart from the customer confirmation so a retry of one never re-sends the other.
+ */
+@Component
+@RequiredArgsConstructor
+public class AdminEmailOutboxHandler implements OutboxEventHandler {
+
+    private final EmailService emailService;
+
+    @Override
+    public String name() {
+        return "admin-email";
+    }
+
+    @Override
+    public boolean supports(OutboxEvent.EventType eventType) {
+        return eventType == OutboxEvent.EventType.ORDER_CONFIRMED;
+    }
+
+    @Override
+    public void handle(OutboxEvent.EventType eventType, OrderEventPayload payload) {
+        emailService.sendAdminOrderNotification(emailService.loadOrderEmail(payload.getOrderId()));
+    }
+}
@@ -0,0 +1,292 @@
+package com.perfume.shop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfume.shop.dto.AdminOrderRow;
+import com.perfume.shop.dto.OrderSearchCriteria;
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.exception.ApplicationException;
+import com.perfume.shop.exception.ErrorType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Admin order search and export.
+ *
+ * Filters are translated to one parameterized SQL WHERE clause shared by the
+ * paged search and the export, so both hit the same composite indexes
+ * (status/created_at, city/created_at, customer email, coupon). Exports stream
+ * rows through a forward-only JDBC cursor with a bounded fetch size and write
+ * each row as it arrives - heap use stays flat no matter how many orders match.
+ */
+@Service
+@Slf4j
+public class AdminOrderQueryService {
+
+    public enum ExportFormat { CSV, JSONL }
+
+    private static final String SELECT_ROWS = """
+            SELECT o.id, o.order_number, o.status, o.created_at,
+                   COALESCE(o.customer_name, CONCAT_WS(' ', u.first_name, u.last_name)) AS customer_name,
+                   COALESCE(o.customer_email, u.email) AS customer_email,
+                   o.shipping_city, o.subtotal, o.discount, o.total_amount,
+                   o.coupon_code, o.payment_method, o.tracking_number
+            FROM orders o
+            JOIN users u ON u.id = o.user_id
+            """;
+
+    // API sort keys -> indexed columns; anything else is rejected
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "createdAt", "o.created_at",
+            "totalAmount", "o.total_amount",
+            "orderNumber", "o.order_number",
+            "status", "o.status");
+
+    private static final String[] CSV_HEADER = {
+            "id", "orderNumber", "status", "createdAt", "customerName", "customerEmail", "shippingCity",
+            "subtotal", "discount", "totalAmount", "couponCode", "paymentMethod", "trackingNumber" };
+
+    private static final RowMapper<AdminOrderRow> ROW_MAPPER = (rs, rowNum) -> {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return AdminOrderRow.builder()
+                .id(rs.getLong("id"))
+                .orderNumber(rs.getString("order_number"))
+                .status(rs.getString("status"))
+                .createdAt(createdAt != null ? createdAt.toLocalDateTime() : null)
+                .customerName(rs.getString("customer_name"))
+                .customerEmail(rs.getString("customer_email"))
+                .shippingCity(rs.getString("shipping_city"))
+                .subtotal(rs.getBigDecimal("subtotal"))
+                .discount(rs.getBigDecimal("discount"))
+                .totalAmount(rs.getBigDecimal("total_amount"))
+                .couponCode(rs.getString("coupon_code"))
+                .paymentMethod(rs.getString("payment_method"))
+                .trackingNumber(rs.getString("tracking_number"))
+                .build();
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate exportJdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.admin.order-search.max-page-size:200}")
+    private int maxPageSize;
+
+    public AdminOrderQueryService(DataSource dataSource,
+                                  ObjectMapper objectMapper,
+                                  @Value("${app.admin.order-export.fetch-size:500}") int exportFetchSize) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+
+        // Separate template so the cursor fetch size never leaks into other queries
+        JdbcTemplate exportTemplate = new JdbcTemplate(dataSource);
+        exportTemplate.setFetchSize(exportFetchSize);
+        this.exportJdbcTemplate = new NamedParameterJdbcTemplate(exportTemplate);
+
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Search orders with composite filters.
+     *
+     * @param criteria Filters (all optional)
+     * @param page     Page number (0-indexed)
+     * @param size     Page size, capped at app.admin.order-search.max-page-size
+     * @param sortBy   createdAt, totalAmount, orderNumber or status
+     * @param sortDir  ASC or DESC
+     * @return Page of flat order rows
+     */
+    @Transactional(readOnly = true)
+    public Page<AdminOrderRow> search(OrderSearchCriteria criteria, int page, int size, String sortBy, String sortDir) {
+        validate(criteria);
+
+        String sortColumn = SORT_COLUMNS.get(sortBy);
+        if (sortColumn == null) {
+            throw new ApplicationException("Unsupported sort field: " + sortBy + ". Use one of " + SORT_COLUMNS.keySet(),
+                    ErrorType.VALIDATION_ERROR);
+        }
+        Sort.Direction direction = "ASC".equalsIgnoreCase(sortDir) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        int pageNumber = Math.max(page, 0);
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String where = buildWhere(criteria, params);
+
+        Long total = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM orders o " + where, params, Long.class);
+
+        params.addValue("limit", pageSize);
+        params.addValue("offset", (long) pageNumber * pageSize);
+        // id as tie-breaker keeps pages stable when the sort column has duplicates
+        List<AdminOrderRow> rows = jdbcTemplate.query(
+                SELECT_ROWS + where + " ORDER BY " + sortColumn + " " + direction.name() + ", o.id " + direction.name()
+                        + " LIMIT :limit OFFSET :offset",
+                params, ROW_MAPPER);
+
+        return new PageImpl<>(rows, PageRequest.of(pageNumber, pageSize, Sort.by(direction, sortBy)),
+                total != null ? total : 0);
+    }
+
+    /**
+     * Stream every matching order to the output as CSV or JSON Lines.
+     * Runs in a read-only transaction so the driver can use a server-side cursor.
+     *
+     * @return Number of rows written
+     */
+    @Transactional(readOnly = true)
+    public long export(OrderSearchCriteria criteria, ExportFormat format, OutputStream out) throws IOException {
+        validate(criteria);
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = SELECT_ROWS + buildWhere(criteria, params) + " ORDER BY o.id";
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == ExportFormat.CSV) {
+            writer.write(String.join(",", CSV_HEADER));
+            writer.write('\n');
+        }
+
+        long[] count = { 0 };
+        try {
+            exportJdbcTemplate.query(sql, params, rs -> {
+                AdminOrderRow row = ROW_MAPPER.mapRow(rs, 0);
+                try {
+                    if (format == ExportFormat.CSV) {
+                        writeCsv(writer, row);
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(row));
+                        writer.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            // Client went away - stop reading from the cursor
+            throw e.getCause();
+        }
+
+        writer.flush();
+        log.info("Exported {} orders as {}", count[0], format);
+        return count[0];
+    }
+
+    /**
+     * Build the WHERE clause for the set filters, binding values into params.
+     * Comparisons are written to match the composite indexes on orders.
+     */
+    static String buildWhere(OrderSearchCriteria criteria, MapSqlParameterSource params) {
+        StringBuilder where = new StringBuilder("WHERE 1 = 1");
+
+        if (criteria.getStatuses() != null && !criteria.getStatuses().isEmpty()) {
+            where.append(" AND o.status IN (:statuses)");
+            params.addValue("statuses", criteria.getStatuses().stream().map(Order.OrderStatus::name).toList());
+        }
+        if (criteria.getFrom() != null) {
+            where.append(" AND o.created_at >= :fromTs");
+            params.addValue("fromTs", Timestamp.valueOf(criteria.getFrom().atStartOfDay()));
+        }
+        if (criteria.getTo() != null) {
+            where.append(" AND o.created_at < :toTs");
+            params.addValue("toTs", Timestamp.valueOf(criteria.getTo().plusDays(1).atStartOfDay()));
+        }
+        if (criteria.getMinAmount() != null) {
+            where.append(" AND o.total_amount >= :minAmount");
+            params.addValue("minAmount", criteria.getMinAmount());
+        }
+        if (criteria.getMaxAmount() != null) {
+            where.append(" AND o.total_amount <= :maxAmount");
+            params.addValue("maxAmount", criteria.getMaxAmount());
+        }
+        if (hasText(criteria.getCity())) {
+            where.append(" AND LOWER(o.shipping_city) = :city");
+            params.addValue("city", criteria.getCity().trim().toLowerCase(Locale.ROOT));
+        }
+        if (hasText(criteria.getEmail())) {
+            // Guest/older orders have no customer_email - fall back to the account email
+            where.append(" AND (LOWER(o.customer_email) = :email"
+                    + " OR o.user_id IN (SELECT u2.id FROM users u2 WHERE LOWER(u2.email) = :email))");
+            params.addValue("email", criteria.getEmail().trim().toLowerCase(Locale.ROOT));
+        }
+        if (hasText(criteria.getCouponCode())) {
+            // Stored as the shopper typed it; coupons themselves are upper-case
+            where.append(" AND UPPER(o.coupon_code) = :couponCode");
+            params.addValue("couponCode", criteria.getCouponCode().trim().toUpperCase(Locale.ROOT));
+        }
+
+        return where.toString();
+    }
+
+    /**
+     * Reject contradictory filters. Called by the controller before an export
+     * starts streaming, so the client still gets a 400 instead of a broken download.
+     */
+    public void validate(OrderSearchCriteria criteria) {
+        if (criteria.getFrom() != null && criteria.getTo() != null && criteria.getTo().isBefore(criteria.getFrom())) {
+            throw new ApplicationException("'to' date must not be before 'from' date", ErrorType.VALIDATION_ERROR);
+        }
+        if (criteria.getMinAmount() != null && criteria.getMaxAmount() != null
+                && criteria.getMaxAmount().compareTo(criteria.getMinAmount()) < 0) {
+            throw new ApplicationException("'maxAmount' must not be less than 'minAmount'", ErrorType.VALIDATION_ERROR);
+        }
+    }
+
+    private static void writeCsv(Writer writer, AdminOrderRow row) throws IOException {
+        Object[] values = {
+                row.getId(), row.getOrderNumber(), row.getStatus(), row.getCreatedAt(), row.getCustomerName(),
+                row.getCustomerEmail(), row.getShippingCity(), row.getSubtotal(), row.getDiscount(),
+                row.getTotalAmount(), row.getCouponCode(), row.getPaymentMethod(), row.getTrackingNumber() };
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csvValue(values[i]));
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Quote a CSV field when needed (RFC 4180). Values starting with a formula
+     * character are prefixed so spreadsheets don't evaluate them.
+     */
+    static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0 && !(value instanceof Number)) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+}
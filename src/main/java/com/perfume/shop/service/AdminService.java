@@ -11,6 +11,8 @@ import com.perfume.shop.entity.User;
 import com.perfume.shop.repository.OrderRepository;
 import com.perfume.shop.repository.ProductRepository;
 import com.perfume.shop.repository.UserRepository;
+import com.perfume.shop.security.TokenRevocationService;
+import com.perfume.shop.security.UserPrincipalCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -39,6 +41,8 @@ public class AdminService {
     private final ProductService productService;
     private final OrderService orderService;
     private final UserRepository userRepository;
+    private final UserPrincipalCache principalCache;
+    private final TokenRevocationService revocationService;
     private final OrderRepository orderRepository;
     private final ProductRepository productRepository;
     
@@ -181,16 +185,21 @@ public class AdminService {
     public UserResponse updateUserRole(Long id, String roleStr) {
         log.info("Admin updating user {} role to: {}", id, roleStr);
         User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+                .orElseThrow(() -> new RuntimeException("User not found with ID: " + id));
         user.setRole(User.Role.valueOf(roleStr.toUpperCase()));
+        principalCache.evict(user.getEmail());
         return mapUserToResponse(userRepository.save(user));
     }
     
     public UserResponse updateUserStatus(Long id, Boolean active) {
         log.info("Admin updating user {} status to: {}", id, active);
         User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+                .orElseThrow(() -> new RuntimeException("User not found with ID: " + id));
         user.setActive(active);
+        principalCache.evict(user.getEmail());
+        if (!Boolean.TRUE.equals(active)) {
+            revocationService.revokeAllForUser(user.getEmail(), "blocked");
+        }
         return mapUserToResponse(userRepository.save(user));
     }
     
@@ -0,0 +1,48 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.OrderEventPayload;
+import com.perfume.shop.entity.OutboxEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes order business metrics (orders, revenue, status transitions) from the outbox,
+ * so they count committed changes only.
+ */
+@Component
+@RequiredArgsConstructor
+public class AnalyticsOutboxHandler implements OutboxEventHandler {
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public String name() {
+        return "analytics";
+    }
+
+    @Override
+    public boolean supports(OutboxEvent.EventType eventType) {
+        return true;
+    }
+
+    @Override
+    public void handle(OutboxEvent.EventType eventType, OrderEventPayload payload) {
+        Counter.builder("shop.orders.events")
+                .description("Committed order events")
+                .tag("type", eventType.name())
+                .tag("status", String.valueOf(payload.getStatus()))
+                .register(meterRegistry)
+                .increment();
+
+        if (eventType == OutboxEvent.EventType.ORDER_CONFIRMED && payload.getTotalAmount() != null) {
+            DistributionSummary.builder("shop.orders.revenue")
+                    .description("Order value of confirmed orders")
+                    .baseUnit("INR")
+                    .register(meterRegistry)
+                    .record(payload.getTotalAmount().doubleValue());
+        }
+    }
+}
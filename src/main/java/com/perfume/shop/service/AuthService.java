@@ -13,6 +13,8 @@ import com.perfume.shop.repository.CartRepository;
 import com.perfume.shop.repository.UserRepository;
 import com.perfume.shop.security.JwtService;
 import com.perfume.shop.security.PasswordPolicyValidator;
+import com.perfume.shop.security.TokenRevocationService;
+import com.perfume.shop.security.UserPrincipalCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.ObjectProvider;
@@ -47,6 +49,8 @@ public class AuthService implements UserDetailsService {
     private final ObjectProvider<AuthenticationManager> authenticationManagerProvider;
     private final PasswordPolicyValidator passwordPolicyValidator;
     private final EmailService emailService;
+    private final UserPrincipalCache principalCache;
+    private final TokenRevocationService revocationService;
     
     // === Password Reset ===
     @Transactional
@@ -100,6 +104,9 @@ public class AuthService implements UserDetailsService {
         user.setResetToken(null);
         user.setResetTokenExpiry(null);
         userRepository.save(user);
+        principalCache.evict(user.getEmail());
+        // Sessions opened with the old password end here
+        revocationService.revokeAllForUser(user.getEmail(), "password_reset");
     }
     
     @Override
@@ -240,6 +247,11 @@ public class AuthService implements UserDetailsService {
                 throw AuthenticationException.invalidToken();
             }
             
+            if (revocationService.isRevoked(jwtService.verify(refreshToken))) {
+                log.warn("Refresh attempted with revoked token");
+                throw AuthenticationException.invalidToken();
+            }
+            
             // Extract username
             String userEmail = jwtService.extractUsername(refreshToken);
             User user = userRepository.findByEmail(userEmail)
@@ -273,6 +285,23 @@ public class AuthService implements UserDetailsService {
         }
     }
     
+    /**
+     * Logout: revoke the presented access token and, if given, the refresh token
+     */
+    public java.util.Map<String, String> logout(String accessToken, String refreshToken) {
+        for (String token : new String[] { accessToken, refreshToken }) {
+            if (token == null || token.isBlank()) {
+                continue;
+            }
+            try {
+                revocationService.revokeToken(jwtService.verify(token), "logout");
+            } catch (io.jsonwebtoken.JwtException e) {
+                log.debug("Ignoring invalid token on logout: {}", e.getMessage());
+            }
+        }
+        return java.util.Map.of("message", "Logged out successfully");
+    }
+    
     /**
      * Update user role (for admin setup purposes)
      */
@@ -287,6 +316,7 @@ public class AuthService implements UserDetailsService {
             User.Role newRole = User.Role.valueOf(role.toUpperCase());
             user.setRole(newRole);
             userRepository.save(user);
+            principalCache.evict(email);
             log.info("User role updated: {} -> {}", email, role);
             
             return java.util.Map.of("message", "Role updated successfully", "email", email, "role", role);
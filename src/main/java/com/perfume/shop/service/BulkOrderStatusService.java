@@ -0,0 +1,180 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.BulkOrderStatusUpdateResponse;
+import com.perfume.shop.dto.OrderEventPayload;
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.entity.OutboxEvent;
+import com.perfume.shop.exception.ApplicationException;
+import com.perfume.shop.exception.ErrorType;
+import com.perfume.shop.repository.OrderHistoryBatchRepository;
+import com.perfume.shop.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk order status transitions for dispatch days (e.g. mark 300 orders SHIPPED).
+ *
+ * One transaction for the whole request:
+ * - target rows are locked and validated in a single query
+ * - valid orders move with one set-based UPDATE
+ * - history rows go in as one JDBC batch
+ * - notification/analytics/cache events are queued as one outbox batch
+ * - only the affected users' order summaries are evicted
+ *
+ * Only forward fulfilment moves are allowed in bulk. Cancellations and refunds
+ * restore stock per order and stay on the single-order endpoint.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkOrderStatusService {
+
+    // Post-payment fulfilment path, in order
+    private static final List<Order.OrderStatus> FULFILMENT_FLOW = List.of(
+            Order.OrderStatus.CONFIRMED,
+            Order.OrderStatus.PACKED,
+            Order.OrderStatus.HANDOVER,
+            Order.OrderStatus.SHIPPED,
+            Order.OrderStatus.OUT_FOR_DELIVERY,
+            Order.OrderStatus.DELIVERED);
+
+    private final OrderRepository orderRepository;
+    private final OrderHistoryBatchRepository orderHistoryBatchRepository;
+    private final OutboxService outboxService;
+    private final OrderSummaryCache orderSummaryCache;
+
+    @Value("${app.orders.bulk.max-orders:1000}")
+    private int maxOrders;
+
+    /**
+     * Check whether an order may move from one status to another in a bulk update.
+     * Orders can skip steps (PACKED -> SHIPPED) but never move backwards.
+     */
+    public static boolean isBulkTransitionAllowed(Order.OrderStatus from, Order.OrderStatus to) {
+        int fromIndex = FULFILMENT_FLOW.indexOf(from);
+        int toIndex = FULFILMENT_FLOW.indexOf(to);
+        return fromIndex >= 0 && toIndex > fromIndex;
+    }
+
+    /**
+     * Move many orders to a new status.
+     * Orders that are missing or cannot make the transition are skipped and reported;
+     * the rest are updated together.
+     *
+     * @param orderIds  Orders to update (duplicates ignored)
+     * @param status    Target status - must be a fulfilment status after CONFIRMED
+     * @param updatedBy Admin email recorded in history
+     * @param notes     Optional history note
+     * @return Updated ids and per-order rejection reasons
+     */
+    @Transactional
+    public BulkOrderStatusUpdateResponse updateStatuses(List<Long> orderIds, Order.OrderStatus status,
+                                                        String updatedBy, String notes) {
+        if (FULFILMENT_FLOW.indexOf(status) <= 0) {
+            throw new ApplicationException("Bulk updates support " + FULFILMENT_FLOW.subList(1, FULFILMENT_FLOW.size())
+                    + " only. Cancel or refund orders individually.", ErrorType.VALIDATION_ERROR);
+        }
+
+        Set<Long> requestedIds = new LinkedHashSet<>(orderIds);
+        requestedIds.remove(null);
+        if (requestedIds.isEmpty()) {
+            throw new ApplicationException("At least one order ID is required", ErrorType.VALIDATION_ERROR);
+        }
+        if (requestedIds.size() > maxOrders) {
+            throw new ApplicationException("Too many orders in one request: " + requestedIds.size()
+                    + " (max " + maxOrders + ")", ErrorType.VALIDATION_ERROR);
+        }
+
+        // Step 1: Lock and validate all target rows in one query
+        Map<Long, String> rejected = new LinkedHashMap<>();
+        List<Long> validIds = new ArrayList<>();
+        Map<Long, OrderEventPayload> payloads = new HashMap<>();
+        Set<Long> userIds = new HashSet<>();
+
+        for (Object[] row : orderRepository.lockOrderRows(requestedIds)) {
+            Long id = ((Number) row[0]).longValue();
+            Order.OrderStatus current = Order.OrderStatus.valueOf((String) row[1]);
+            Long userId = ((Number) row[2]).longValue();
+
+            if (!isBulkTransitionAllowed(current, status)) {
+                rejected.put(id, "Cannot change status from " + current + " to " + status);
+                continue;
+            }
+
+            validIds.add(id);
+            userIds.add(userId);
+            payloads.put(id, OrderEventPayload.builder()
+                    .orderId(id)
+                    .userId(userId)
+                    .orderNumber((String) row[3])
+                    .totalAmount((BigDecimal) row[4])
+                    .status(status)
+                    .productIds(new ArrayList<>())
+                    .build());
+        }
+        for (Long id : requestedIds) {
+            if (!payloads.containsKey(id) && !rejected.containsKey(id)) {
+                rejected.put(id, "Order not found");
+            }
+        }
+
+        if (validIds.isEmpty()) {
+            return response(status, requestedIds.size(), validIds, rejected);
+        }
+
+        // Step 2: Set-based status update and one history batch
+        LocalDateTime now = LocalDateTime.now();
+        List<Order.OrderStatus> allowedFrom = FULFILMENT_FLOW.subList(0, FULFILMENT_FLOW.indexOf(status));
+        int updated = orderRepository.updateStatusBulk(validIds, allowedFrom, status, now);
+        if (updated != validIds.size()) {
+            // Rows are locked above, so this means the data changed underneath us - don't half-apply
+            throw new RuntimeException("Bulk status update affected " + updated + " of " + validIds.size()
+                    + " orders; aborting");
+        }
+        orderHistoryBatchRepository.insertAll(validIds, status, updatedBy, notes, now);
+
+        // Step 3: One outbox batch for emails, metrics and cache invalidation
+        for (Object[] row : orderRepository.findProductIdsByOrderIds(validIds)) {
+            OrderEventPayload payload = payloads.get(((Number) row[0]).longValue());
+            Long productId = ((Number) row[1]).longValue();
+            if (payload != null && !payload.getProductIds().contains(productId)) {
+                payload.getProductIds().add(productId);
+            }
+        }
+        outboxService.publishAll(OutboxEvent.EventType.ORDER_STATUS_CHANGED,
+                validIds.stream().map(payloads::get).toList());
+
+        // Step 4: Evict only the affected users' order lists
+        userIds.forEach(orderSummaryCache::evict);
+
+        log.info("Bulk status update to {} by {}: {} updated, {} rejected",
+                status, updatedBy, validIds.size(), rejected.size());
+
+        return response(status, requestedIds.size(), validIds, rejected);
+    }
+
+    private static BulkOrderStatusUpdateResponse response(Order.OrderStatus status, int requested,
+                                                          List<Long> updatedIds, Map<Long, String> rejected) {
+        return BulkOrderStatusUpdateResponse.builder()
+                .status(status.name())
+                .requested(requested)
+                .updated(updatedIds.size())
+                .updatedOrderIds(updatedIds)
+                .rejected(rejected)
+                .build();
+    }
+}
@@ -0,0 +1,57 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.OrderEventPayload;
+import com.perfume.shop.entity.OutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidates caches affected by committed order changes: the customer's order
+ * summaries and, when Spring caching is enabled, the product entries whose
+ * stock the change moved.
+ */
+@Component
+@Slf4j
+public class CacheInvalidationOutboxHandler implements OutboxEventHandler {
+
+    private final OrderSummaryCache orderSummaryCache;
+    private final ObjectProvider<CacheManager> cacheManagerProvider;
+
+    public CacheInvalidationOutboxHandler(OrderSummaryCache orderSummaryCache,
+                                          ObjectProvider<CacheManager> cacheManagerProvider) {
+        this.orderSummaryCache = orderSummaryCache;
+        this.cacheManagerProvider = cacheManagerProvider;
+    }
+
+    @Override
+    public String name() {
+        return "cache-invalidation";
+    }
+
+    @Override
+    public boolean supports(OutboxEvent.EventType eventType) {
+        // Confirmation deducts stock; status changes may restore it on cancel/refund
+        return eventType == OutboxEvent.EventType.ORDER_CONFIRMED
+                || eventType == OutboxEvent.EventType.ORDER_STATUS_CHANGED;
+    }
+
+    @Override
+    public void handle(OutboxEvent.EventType eventType, OrderEventPayload payload) {
+        orderSummaryCache.evict(payload.getUserId());
+
+        CacheManager cacheManager = cacheManagerProvider.getIfAvailable();
+        if (cacheManager == null || payload.getProductIds() == null) {
+            return;
+        }
+
+        Cache products = cacheManager.getCache("products");
+        if (products != null) {
+            payload.getProductIds().forEach(products::evict);
+            log.debug("Evicted {} product cache entries for order {}",
+                    payload.getProductIds().size(), payload.getOrderNumber());
+        }
+    }
+}
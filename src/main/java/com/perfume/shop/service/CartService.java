@@ -1,222 +1,324 @@
 package com.perfume.shop.service;
 
 import com.perfume.shop.dto.AddToCartRequest;
+import com.perfume.shop.dto.CartBatchRequest;
+import com.perfume.shop.dto.CartBatchResponse;
 import com.perfume.shop.dto.CartItemResponse;
+import com.perfume.shop.dto.CartOperation;
+import com.perfume.shop.dto.CartOperationResult;
 import com.perfume.shop.dto.CartResponse;
-import com.perfume.shop.entity.Cart;
-import com.perfume.shop.entity.CartItem;
-import com.perfume.shop.entity.Product;
-import com.perfume.shop.entity.ProductVariant;
+import com.perfume.shop.dto.PurchasableItemView;
 import com.perfume.shop.entity.User;
-import com.perfume.shop.repository.CartItemRepository;
-import com.perfume.shop.repository.CartRepository;
+import com.perfume.shop.exception.ApplicationException;
+import com.perfume.shop.exception.ErrorType;
+import com.perfume.shop.exception.ResourceNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Shopping cart operations.
+ *
+ * Carts are read and changed through {@link CartStore}, which keeps the working
+ * cart in memory and writes it to the database behind the request.
+ * Stock checks here are for feedback only; checkout re-validates under lock.
+ *
+ * Mutations deliberately run outside any transaction: the product reads use their
+ * own short repository transactions and CartStore writes through in a transaction of
+ * its own, so a cart change never holds two pooled connections at once.
+ */
 @Service
 @RequiredArgsConstructor
 public class CartService {
 
-    private final CartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
+    private final CartStore cartStore;
     private final ProductService productService;
+    private final PricingEngine pricingEngine;
 
-    private static final BigDecimal TAX_RATE = new BigDecimal("0.18"); // 18% GST
-    private static final BigDecimal SHIPPING_COST = BigDecimal.ZERO; // No delivery cost for now
+    @Value("${app.cart.batch.max-operations:50}")
+    private int maxBatchOperations;
 
     public CartResponse getCart(User user) {
-        Cart cart = getOrCreateCart(user);
-        return mapToCartResponse(cart);
+        return cartStore.read(user.getId(), this::mapToCartResponse);
     }
 
-    @Transactional
     public CartResponse addToCart(User user, AddToCartRequest request) {
-        Cart cart = getOrCreateCart(user);
-        Product product = productService.getProductEntityById(request.getProductId());
-        ProductVariant variant = null;
+        Purchasable item = loadPurchasable(request.getProductId(), request.getVariantId());
+        item.checkAvailable(request.getQuantity());
 
-        if (request.getVariantId() != null) {
-            variant = product.getVariants().stream()
-                    .filter(v -> v.getId().equals(request.getVariantId()))
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("Variant not found"));
+        return cartStore.update(user.getId(),
+                cart -> addLine(cart, item, request.getQuantity()),
+                (cart, line) -> mapToCartResponse(cart));
+    }
 
-            if (!variant.getActive()) {
-                throw new RuntimeException("Variant is not available");
+    /**
+     * Apply several add/update/remove operations to the cart at once.
+     * Products for all operations are loaded in one query and every operation is validated
+     * against that snapshot. Operations are applied in order; one that fails is reported
+     * and does not stop the others. The cart is rendered once, after the last operation.
+     */
+    public CartBatchResponse applyBatch(User user, CartBatchRequest request) {
+        List<CartOperation> operations = request.getOperations();
+        if (operations.size() > maxBatchOperations) {
+            throw new ApplicationException("Too many cart operations in one request: " + operations.size()
+                    + " (max " + maxBatchOperations + ")", ErrorType.VALIDATION_ERROR);
+        }
+
+        // Step 1: One bulk load for the products being added and those behind changed lines
+        Set<Long> productIds = new HashSet<>();
+        List<Long> updatedItemIds = new ArrayList<>();
+        for (CartOperation op : operations) {
+            if (op.getType() == CartOperation.Type.ADD && op.getProductId() != null) {
+                productIds.add(op.getProductId());
+            } else if (op.getType() == CartOperation.Type.UPDATE && op.getItemId() != null) {
+                updatedItemIds.add(op.getItemId());
+            }
+        }
+        if (!updatedItemIds.isEmpty()) {
+            cartStore.read(user.getId(), cart -> {
+                updatedItemIds.forEach(id -> cart.findLine(id).ifPresent(line -> productIds.add(line.getProductId())));
+                return null;
+            });
+        }
+        Map<Long, List<PurchasableItemView>> products = productService.getPurchasableViews(productIds);
+
+        // Step 2: Apply everything under one cart lock and version
+        return cartStore.update(user.getId(), cart -> {
+            List<CartOperationResult> results = new ArrayList<>(operations.size());
+            for (int i = 0; i < operations.size(); i++) {
+                CartOperation op = operations.get(i);
+                try {
+                    Long itemId = apply(cart, op, products);
+                    results.add(CartOperationResult.builder()
+                            .index(i).type(op.getType()).success(true).itemId(itemId).build());
+                } catch (RuntimeException e) {
+                    results.add(CartOperationResult.builder()
+                            .index(i).type(op.getType()).success(false).itemId(op.getItemId())
+                            .error(e.getMessage()).build());
+                }
             }
+            return results;
+        }, (cart, results) -> {
+            // Lines added by this batch have been written by now - report their database ids
+            results.forEach(result -> result.setItemId(cart.resolveId(result.getItemId())));
+            int applied = (int) results.stream().filter(CartOperationResult::isSuccess).count();
+
+            return CartBatchResponse.builder()
+                    .applied(applied)
+                    .failed(operations.size() - applied)
+                    .results(results)
+                    .cart(mapToCartResponse(cart))
+                    .build();
+        });
+    }
 
-            if (variant.getStock() < request.getQuantity()) {
-                throw new RuntimeException("Insufficient stock for selected variant");
+    private Long apply(WorkingCart cart, CartOperation op, Map<Long, List<PurchasableItemView>> products) {
+        switch (op.getType()) {
+            case ADD -> {
+                if (op.getProductId() == null || op.getQuantity() == null || op.getQuantity() <= 0) {
+                    throw new RuntimeException("Product ID and a positive quantity are required");
+                }
+                Purchasable item = Purchasable.of(products.get(op.getProductId()), op.getProductId(), op.getVariantId());
+                item.checkAvailable(op.getQuantity());
+                return addLine(cart, item, op.getQuantity()).getId();
             }
-        } else {
-            // Base product stock check
-            if (product.getStock() < request.getQuantity()) {
-                throw new RuntimeException("Insufficient stock");
+            case UPDATE -> {
+                if (op.getQuantity() == null) {
+                    throw new RuntimeException("Quantity is required");
+                }
+                WorkingCart.Line line = cart.findLine(op.getItemId())
+                        .orElseThrow(() -> new RuntimeException("Cart item not found"));
+                if (op.getQuantity() <= 0) {
+                    cart.removeLine(line);
+                } else {
+                    if (op.getQuantity() > line.getQuantity()) {
+                        Purchasable item = Purchasable.of(products.get(line.getProductId()),
+                                line.getProductId(), line.getVariantId());
+                        item.checkStock(op.getQuantity());
+                        line.setAvailableStock(item.stock());
+                    }
+                    line.setQuantity(op.getQuantity());
+                }
+                return line.getId();
+            }
+            case REMOVE -> {
+                WorkingCart.Line line = cart.findLine(op.getItemId())
+                        .orElseThrow(() -> new RuntimeException("Cart item not found"));
+                cart.removeLine(line);
+                return line.getId();
             }
+            default -> throw new RuntimeException("Unsupported operation: " + op.getType());
         }
+    }
 
-        CartItem existingItem;
-        if (variant != null) {
-            existingItem = cartItemRepository
-                    .findByCartIdAndProductIdAndVariantId(cart.getId(), product.getId(), variant.getId())
-                    .orElse(null);
-        } else {
-            existingItem = cartItemRepository
-                    .findByCartIdAndProductIdAndVariantIsNull(cart.getId(), product.getId())
-                    .orElse(null);
-        }
+    /**
+     * Add a quantity of a product/variant, merging with an existing line
+     */
+    private WorkingCart.Line addLine(WorkingCart cart, Purchasable item, int quantity) {
+        WorkingCart.Line existingItem = cart.findLine(item.productId(), item.variantId()).orElse(null);
 
         if (existingItem != null) {
-            int newQuantity = existingItem.getQuantity() + request.getQuantity();
+            int newQuantity = existingItem.getQuantity() + quantity;
 
             // Re-check stock for total quantity
-            if (variant != null) {
-                if (variant.getStock() < newQuantity) {
-                    throw new RuntimeException("Insufficient stock for selected variant");
-                }
-            } else {
-                if (product.getStock() < newQuantity) {
-                    throw new RuntimeException("Insufficient stock");
-                }
-            }
+            item.checkStock(newQuantity);
 
             existingItem.setQuantity(newQuantity);
-            cartItemRepository.save(existingItem);
-        } else {
-            BigDecimal price;
-            if (variant != null) {
-                price = variant.getDiscountPrice() != null ? variant.getDiscountPrice() : variant.getPrice();
-            } else {
-                price = product.getDiscountPrice() != null ? product.getDiscountPrice() : product.getPrice();
-            }
-
-            CartItem cartItem = CartItem.builder()
-                    .cart(cart)
-                    .product(product)
-                    .variant(variant)
-                    .quantity(request.getQuantity())
-                    .price(price)
-                    .build();
-
-            cart.addItem(cartItem);
-            cartItemRepository.save(cartItem);
+            existingItem.setAvailableStock(item.stock());
+            return existingItem;
         }
 
-        return mapToCartResponse(cart);
+        return cart.addLine(WorkingCart.Line.builder()
+                .productId(item.productId())
+                .variantId(item.variantId())
+                .productName(item.name())
+                .productBrand(item.brand())
+                .productImage(item.image())
+                .variantSize(item.variantSize())
+                .availableStock(item.stock())
+                .quantity(quantity)
+                .price(item.price())
+                .build());
     }
 
-    @Transactional
     public CartResponse updateCartItem(User user, Long itemId, Integer quantity) {
-        Cart cart = getOrCreateCart(user);
-
-        CartItem cartItem = cartItemRepository.findById(itemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-
-        if (!cartItem.getCart().getId().equals(cart.getId())) {
-            throw new RuntimeException("Cart item does not belong to user");
-        }
-
         if (quantity <= 0) {
             return removeFromCart(user, itemId);
         }
 
-        if (cartItem.getVariant() != null) {
-            if (cartItem.getVariant().getStock() < quantity) {
-                throw new RuntimeException("Insufficient stock for selected variant");
-            }
-        } else if (cartItem.getProduct().getStock() < quantity) {
-            throw new RuntimeException("Insufficient stock");
-        }
+        WorkingCart.Line current = cartStore.read(user.getId(), cart -> cart.findLine(itemId)
+                .map(line -> line.toBuilder().build())
+                .orElseThrow(() -> new RuntimeException("Cart item not found")));
 
-        cartItem.setQuantity(quantity);
-        cartItemRepository.save(cartItem);
+        // Only increases need a fresh stock check
+        Integer availableStock = current.getAvailableStock();
+        if (quantity > current.getQuantity()) {
+            Purchasable item = loadPurchasable(current.getProductId(), current.getVariantId());
+            item.checkStock(quantity);
+            availableStock = item.stock();
+        }
 
-        return mapToCartResponse(cart);
+        Integer stock = availableStock;
+        return cartStore.update(user.getId(), cart -> {
+            WorkingCart.Line cartItem = cart.findLine(itemId)
+                    .orElseThrow(() -> new RuntimeException("Cart item not found"));
+            cartItem.setQuantity(quantity);
+            cartItem.setAvailableStock(stock);
+            return cartItem;
+        }, (cart, line) -> mapToCartResponse(cart));
     }
 
-    @Transactional
     public CartResponse removeFromCart(User user, Long itemId) {
-        Cart cart = getOrCreateCart(user);
+        return cartStore.update(user.getId(), cart -> {
+            WorkingCart.Line cartItem = cart.findLine(itemId)
+                    .orElseThrow(() -> new RuntimeException("Cart item not found"));
+            cart.removeLine(cartItem);
+            return cartItem;
+        }, (cart, line) -> mapToCartResponse(cart));
+    }
 
-        CartItem cartItem = cartItemRepository.findById(itemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
+    public void clearCart(User user) {
+        cartStore.update(user.getId(), cart -> {
+            cart.clearLines();
+            return null;
+        });
+    }
 
-        if (!cartItem.getCart().getId().equals(cart.getId())) {
-            throw new RuntimeException("Cart item does not belong to user");
+    /**
+     * Price and stock of one product/variant, read in the repository's own short transaction
+     */
+    private Purchasable loadPurchasable(Long productId, Long variantId) {
+        List<PurchasableItemView> rows = productService.getPurchasableViews(List.of(productId)).get(productId);
+        if (rows == null) {
+            throw new ResourceNotFoundException("Product", productId.toString());
         }
+        return Purchasable.of(rows, productId, variantId);
+    }
 
-        cart.removeItem(cartItem);
-        cartItemRepository.delete(cartItem);
+    /**
+     * What the cart needs to know about a product (or one of its variants) to add it
+     */
+    private record Purchasable(Long productId, Long variantId, String name, String brand, String image,
+                               Integer variantSize, BigDecimal price, int stock, boolean active) {
 
-        return mapToCartResponse(cart);
-    }
+        static Purchasable of(List<PurchasableItemView> rows, Long productId, Long variantId) {
+            if (rows == null || rows.isEmpty()) {
+                throw new RuntimeException("Product not found with id: " + productId);
+            }
+            PurchasableItemView row = variantId == null ? rows.get(0) : rows.stream()
+                    .filter(r -> variantId.equals(r.getVariantId()))
+                    .findFirst()
+                    .orElseThrow(() -> new RuntimeException("Variant not found"));
+            if (variantId == null) {
+                return new Purchasable(productId, null, row.getProductName(), row.getProductBrand(),
+                        row.getProductImage(), null, effectivePrice(row.getProductPrice(), row.getProductDiscountPrice()),
+                        row.getProductStock(), true);
+            }
+            return new Purchasable(productId, variantId, row.getProductName(), row.getProductBrand(),
+                    row.getProductImage(), row.getVariantSize(),
+                    effectivePrice(row.getVariantPrice(), row.getVariantDiscountPrice()),
+                    row.getVariantStock(), Boolean.TRUE.equals(row.getVariantActive()));
+        }
 
-    @Transactional
-    public void clearCart(User user) {
-        Cart cart = getOrCreateCart(user);
-        cart.getItems().clear();
-        cartRepository.save(cart);
-    }
+        private static BigDecimal effectivePrice(BigDecimal price, BigDecimal discountPrice) {
+            return discountPrice != null ? discountPrice : price;
+        }
 
-    private Cart getOrCreateCart(User user) {
-        return cartRepository.findByUserId(user.getId())
-                .orElseGet(() -> {
-                    Cart newCart = Cart.builder()
-                            .user(user)
-                            .build();
-                    return cartRepository.save(newCart);
-                });
+        void checkAvailable(int quantity) {
+            if (!active) {
+                throw new RuntimeException("Variant is not available");
+            }
+            checkStock(quantity);
+        }
+
+        void checkStock(int quantity) {
+            if (stock < quantity) {
+                throw new RuntimeException(variantId != null
+                        ? "Insufficient stock for selected variant" : "Insufficient stock");
+            }
+        }
     }
 
-    private CartResponse mapToCartResponse(Cart cart) {
-        List<CartItemResponse> itemResponses = cart.getItems().stream()
+    private CartResponse mapToCartResponse(WorkingCart cart) {
+        List<CartItemResponse> itemResponses = cart.getLines().stream()
                 .map(this::mapToCartItemResponse)
                 .collect(Collectors.toList());
 
-        BigDecimal subtotal = cart.getItems().stream()
-                .map(CartItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal tax = subtotal.multiply(TAX_RATE);
-        BigDecimal shippingCost = SHIPPING_COST;
-        BigDecimal total = subtotal.add(tax).add(shippingCost);
-
-        int itemCount = cart.getItems().stream()
-                .mapToInt(CartItem::getQuantity)
-                .sum();
+        PricingEngine.Totals totals = pricingEngine.price(
+                pricingEngine.subtotal(cart.getLines(), WorkingCart.Line::getPrice, WorkingCart.Line::getQuantity), 0);
 
         return CartResponse.builder()
-                .id(cart.getId())
+                .id(cart.getCartId())
                 .items(itemResponses)
-                .subtotal(subtotal)
-                .tax(tax)
-                .shippingCost(shippingCost)
-                .total(total)
-                .itemCount(itemCount)
+                .subtotal(totals.subtotalAmount())
+                .tax(totals.taxAmount())
+                .shippingCost(totals.shippingAmount())
+                .total(totals.totalAmount())
+                .itemCount(cart.getItemCount())
                 .build();
     }
 
-    private CartItemResponse mapToCartItemResponse(CartItem item) {
-        String variantSize = item.getVariant() != null ? item.getVariant().getSize() + "ml" : null;
-        Long variantId = item.getVariant() != null ? item.getVariant().getId() : null;
-
+    private CartItemResponse mapToCartItemResponse(WorkingCart.Line item) {
         return CartItemResponse.builder()
                 .id(item.getId())
-                .productId(item.getProduct().getId())
-                .productName(item.getProduct().getName())
-                .productBrand(item.getProduct().getBrand())
-                .productImage(item.getProduct().getImageUrl())
-                .variantId(variantId)
-                .variantSize(variantSize)
+                .productId(item.getProductId())
+                .productName(item.getProductName())
+                .productBrand(item.getProductBrand())
+                .productImage(item.getProductImage())
+                .variantId(item.getVariantId())
+                .variantSize(item.getVariantSize() != null ? item.getVariantSize() + "ml" : null)
                 .quantity(item.getQuantity())
                 .price(item.getPrice())
-                .subtotal(item.getSubtotal())
-                .availableStock(item.getVariant() != null ? item.getVariant().getStock() : item.getProduct().getStock())
+                .subtotal(PricingEngine.toRupees(pricingEngine.lineTotal(item.getPrice(), item.getQuantity())))
+                .availableStock(item.getAvailableStock())
                 .build();
     }
 }
@@ -0,0 +1,437 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.CartItemView;
+import com.perfume.shop.entity.Cart;
+import com.perfume.shop.entity.CartItem;
+import com.perfume.shop.repository.CartItemRepository;
+import com.perfume.shop.repository.CartRepository;
+import com.perfume.shop.repository.ProductRepository;
+import com.perfume.shop.repository.ProductVariantRepository;
+import com.perfume.shop.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Write-behind store for shopping carts.
+ *
+ * The working cart for each active user lives in memory. Cart operations read and
+ * mutate it under a per-user lock and return without touching the database; every
+ * mutation bumps the cart's version. Dirty carts are written to carts/cart_items
+ * on a timer, many carts per transaction, and the database stays the system of record:
+ * - checkout calls {@link #flush(Long)} so it reads the cart the shopper sees
+ * - shutdown flushes everything still dirty
+ * - a failed flush leaves the cart dirty and is retried on the next run
+ * - idle clean carts are dropped from memory and reloaded on next use
+ *
+ * A mutation that adds a line is written through before its response is built, so
+ * clients only ever see database ids; quantity changes and removals stay write-behind.
+ *
+ * Writes are per line: a flush inserts, updates or deletes only the lines the working
+ * cart changed since it was loaded or last written. Two requests (or nodes) that change
+ * different lines of the same cart from stale copies therefore both keep their lines;
+ * on the same line the last write wins, as with the row-by-row writes it replaced.
+ *
+ * Working carts are local to this node's memory: several nodes need sticky routing
+ * per user, and changes not yet flushed are lost if the node crashes. Write-behind is
+ * therefore off by default ({@code app.cart.write-behind.enabled=false}): every mutation
+ * is written through immediately and nothing is kept in memory between requests.
+ * Enable it only on a single node or behind per-user sticky routing.
+ */
+@Component
+@Slf4j
+public class CartStore {
+
+    private final Map<Long, WorkingCart> carts = new ConcurrentHashMap<>();
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate flushTransaction;
+
+    @Value("${app.cart.write-behind.enabled:false}")
+    private boolean writeBehind;
+
+    @Value("${app.cart.write-behind.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.cart.write-behind.idle-minutes:30}")
+    private long idleMinutes;
+
+    public CartStore(CartRepository cartRepository,
+                     CartItemRepository cartItemRepository,
+                     UserRepository userRepository,
+                     ProductRepository productRepository,
+                     ProductVariantRepository productVariantRepository,
+                     PlatformTransactionManager transactionManager) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        this.productVariantRepository = productVariantRepository;
+
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+
+        // Flushes commit on their own, even when called from inside checkout's transaction
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Read a user's working cart, loading it from the database on first use.
+     */
+    public <T> T read(Long userId, Function<WorkingCart, T> reader) {
+        return withCart(userId, false, reader);
+    }
+
+    /**
+     * Change a user's working cart. The change is persisted by the next flush.
+     */
+    public <T> T update(Long userId, Function<WorkingCart, T> mutation) {
+        return update(userId, mutation, (cart, result) -> result);
+    }
+
+    /**
+     * Change a user's working cart, then build the response from it. New lines are
+     * written through between the two steps, so the view sees their database ids.
+     */
+    public <M, T> T update(Long userId, Function<WorkingCart, M> mutation, BiFunction<WorkingCart, M, T> view) {
+        return withCart(userId, true, cart -> {
+            M result = mutation.apply(cart);
+            cart.touch();
+            if (!writeBehind || cart.hasTemporaryLines()) {
+                writeSingle(cart);
+            }
+            return view.apply(cart, result);
+        });
+    }
+
+    /**
+     * Write one user's pending changes now (before checkout reads the cart).
+     */
+    public void flush(Long userId) {
+        WorkingCart cart = carts.get(userId);
+        if (cart == null) {
+            return;
+        }
+        cart.lock.lock();
+        try {
+            if (!cart.isDirty() || cart.isDiscarded()) {
+                return;
+            }
+            writeSingle(cart);
+        } finally {
+            cart.lock.unlock();
+        }
+    }
+
+    /**
+     * Empty a user's working cart once the current transaction commits (or now, outside one).
+     * Used when an order is paid and the database cart is cleared with it.
+     */
+    public void clearAfterCommit(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear(userId);
+                }
+            });
+        } else {
+            clear(userId);
+        }
+    }
+
+    private void clear(Long userId) {
+        WorkingCart cart = carts.get(userId);
+        if (cart == null) {
+            return;
+        }
+        cart.lock.lock();
+        try {
+            if (!cart.isDiscarded() && !cart.getLines().isEmpty()) {
+                cart.clearLines();
+                cart.touch();
+            }
+        } finally {
+            cart.lock.unlock();
+        }
+    }
+
+    /**
+     * Flush dirty carts in batches and drop idle ones from memory
+     */
+    @Scheduled(fixedDelayString = "${app.cart.write-behind.flush-interval-ms:5000}")
+    public void flushDirty() {
+        List<WorkingCart> dirty = carts.values().stream().filter(WorkingCart::isDirty).toList();
+        int flushed = 0;
+        for (int from = 0; from < dirty.size(); from += batchSize) {
+            flushed += writeBatch(dirty.subList(from, Math.min(from + batchSize, dirty.size())));
+        }
+        if (flushed > 0) {
+            log.debug("Flushed {} carts", flushed);
+        }
+
+        evictIdle();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        List<WorkingCart> dirty = carts.values().stream().filter(WorkingCart::isDirty).toList();
+        if (dirty.isEmpty()) {
+            return;
+        }
+        log.info("Flushing {} dirty carts before shutdown", dirty.size());
+        for (WorkingCart cart : dirty) {
+            flush(cart.getUserId());
+        }
+    }
+
+    /**
+     * Number of carts currently held in memory
+     */
+    public int size() {
+        return carts.size();
+    }
+
+    private <T> T withCart(Long userId, boolean mutate, Function<WorkingCart, T> action) {
+        while (true) {
+            WorkingCart cart = carts.get(userId);
+            if (cart == null) {
+                WorkingCart loaded = load(userId);
+                cart = carts.putIfAbsent(userId, loaded);
+                if (cart == null) {
+                    cart = loaded;
+                }
+            }
+
+            cart.lock.lock();
+            try {
+                if (cart.isDiscarded()) {
+                    continue; // evicted while we waited - load again
+                }
+                try {
+                    T result = action.apply(cart);
+                    if (!mutate) {
+                        cart.accessed();
+                    }
+                    return result;
+                } finally {
+                    if (!writeBehind) {
+                        // Write-through: mutations were written by update(), nothing stays in memory
+                        cart.discard();
+                        carts.remove(userId, cart);
+                    }
+                }
+            } finally {
+                cart.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Load a cart with two queries whatever its size: the cart row, then its lines as a flat projection
+     */
+    private WorkingCart load(Long userId) {
+        return readTransaction.execute(status -> cartRepository.findByUserId(userId)
+                .map(cart -> new WorkingCart(userId, cart.getId(),
+                        cartItemRepository.findViewsByUserId(userId).stream().map(CartStore::toLine).toList(),
+                        cart.getLastUpdated()))
+                .orElseGet(() -> new WorkingCart(userId, null, List.of(), null)));
+    }
+
+    private static WorkingCart.Line toLine(CartItemView view) {
+        return WorkingCart.Line.builder()
+                .id(view.getId())
+                .productId(view.getProductId())
+                .variantId(view.getVariantId())
+                .productName(view.getProductName())
+                .productBrand(view.getProductBrand())
+                .productImage(view.getProductImage())
+                .variantSize(view.getVariantSize())
+                .availableStock(view.getAvailableStock())
+                .quantity(view.getQuantity())
+                .price(view.getPrice())
+                .build();
+    }
+
+    /**
+     * Flush one cart. Caller holds the cart's lock.
+     */
+    private void writeSingle(WorkingCart cart) {
+        long version = cart.getVersion();
+        WorkingCart.Changes changes = cart.changes();
+        Map<Long, Persisted> result = flushTransaction.execute(status ->
+                write(List.of(new Pending(cart.getUserId(), cart.getLastUpdated(), changes))));
+        Persisted persisted = result.get(cart.getUserId());
+        cart.markFlushed(version, persisted.cartId(), persisted.itemIds(), changes.lines());
+    }
+
+    /**
+     * Flush a batch of carts in one transaction. Carts being mutated right now are left for the next run.
+     * If the batch fails, its carts are retried one by one so one bad cart does not hold back the rest.
+     *
+     * @return Number of carts flushed
+     */
+    private int writeBatch(List<WorkingCart> batch) {
+        List<WorkingCart> locked = new ArrayList<>();
+        try {
+            List<Pending> pending = new ArrayList<>();
+            Map<Long, Long> versions = new HashMap<>();
+            Map<Long, List<WorkingCart.Line>> written = new HashMap<>();
+            for (WorkingCart cart : batch) {
+                if (!cart.lock.tryLock()) {
+                    continue;
+                }
+                locked.add(cart);
+                if (cart.isDirty() && !cart.isDiscarded()) {
+                    WorkingCart.Changes changes = cart.changes();
+                    pending.add(new Pending(cart.getUserId(), cart.getLastUpdated(), changes));
+                    versions.put(cart.getUserId(), cart.getVersion());
+                    written.put(cart.getUserId(), changes.lines());
+                }
+            }
+            if (pending.isEmpty()) {
+                return 0;
+            }
+
+            try {
+                Map<Long, Persisted> result = flushTransaction.execute(status -> write(pending));
+                for (WorkingCart cart : locked) {
+                    Persisted persisted = result.get(cart.getUserId());
+                    if (persisted != null) {
+                        cart.markFlushed(versions.get(cart.getUserId()), persisted.cartId(), persisted.itemIds(),
+                                written.get(cart.getUserId()));
+                    }
+                }
+                return pending.size();
+            } catch (Exception e) {
+                log.warn("Batch flush of {} carts failed, retrying individually: {}", pending.size(), e.getMessage());
+            }
+
+            int flushed = 0;
+            for (WorkingCart cart : locked) {
+                if (!versions.containsKey(cart.getUserId())) {
+                    continue;
+                }
+                try {
+                    writeSingle(cart);
+                    flushed++;
+                } catch (Exception e) {
+                    log.error("Failed to flush cart for user {}, will retry", cart.getUserId(), e);
+                }
+            }
+            return flushed;
+        } finally {
+            locked.forEach(cart -> cart.lock.unlock());
+        }
+    }
+
+    /**
+     * Write the changed lines of each cart, leaving lines it did not change as they are in the database.
+     * Runs inside the flush transaction.
+     */
+    private Map<Long, Persisted> write(List<Pending> pending) {
+        Map<Long, Cart> existing = new HashMap<>();
+        for (Cart cart : cartRepository.findAllWithItemsByUserIdIn(pending.stream().map(Pending::userId).toList())) {
+            existing.put(cart.getUser().getId(), cart);
+        }
+
+        List<Cart> touched = new ArrayList<>();
+        for (Pending p : pending) {
+            Cart cart = existing.get(p.userId());
+            if (cart == null) {
+                cart = cartRepository.save(Cart.builder().user(userRepository.getReferenceById(p.userId())).build());
+            }
+
+            Map<WorkingCart.LineKey, CartItem> itemsByKey = new HashMap<>();
+            for (CartItem item : cart.getItems()) {
+                itemsByKey.put(keyOf(item), item);
+            }
+
+            for (WorkingCart.Line line : p.changes().upserts()) {
+                CartItem item = itemsByKey.get(line.key());
+                if (item != null) {
+                    item.setQuantity(line.getQuantity());
+                    item.setPrice(line.getPrice());
+                } else {
+                    cart.addItem(CartItem.builder()
+                            .product(productRepository.getReferenceById(line.getProductId()))
+                            .variant(line.getVariantId() != null
+                                    ? productVariantRepository.getReferenceById(line.getVariantId()) : null)
+                            .quantity(line.getQuantity())
+                            .price(line.getPrice())
+                            .build());
+                }
+            }
+            Set<WorkingCart.LineKey> removals = p.changes().removals();
+            if (!removals.isEmpty()) {
+                cart.getItems().removeIf(item -> removals.contains(keyOf(item)));
+            }
+            cart.setLastUpdated(p.lastUpdated());
+            touched.add(cart);
+        }
+
+        // New items get their ids on flush
+        cartRepository.flush();
+
+        Map<Long, Persisted> result = new HashMap<>();
+        for (Cart cart : touched) {
+            Map<WorkingCart.LineKey, Long> itemIds = new HashMap<>();
+            for (CartItem item : cart.getItems()) {
+                itemIds.put(keyOf(item), item.getId());
+            }
+            result.put(cart.getUser().getId(), new Persisted(cart.getId(), itemIds));
+        }
+        return result;
+    }
+
+    private static WorkingCart.LineKey keyOf(CartItem item) {
+        return new WorkingCart.LineKey(item.getProduct().getId(),
+                item.getVariant() != null ? item.getVariant().getId() : null);
+    }
+
+    private void evictIdle() {
+        LocalDateTime idleBefore = LocalDateTime.now().minusMinutes(idleMinutes);
+        for (WorkingCart cart : carts.values()) {
+            if (cart.isDirty() || cart.getLastAccessed().isAfter(idleBefore) || !cart.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (!cart.isDirty()) {
+                    cart.discard();
+                    carts.remove(cart.getUserId(), cart);
+                }
+            } finally {
+                cart.lock.unlock();
+            }
+        }
+    }
+
+    private record Pending(Long userId, LocalDateTime lastUpdated, WorkingCart.Changes changes) {
+    }
+
+    private record Persisted(Long cartId, Map<WorkingCart.LineKey, Long> itemIds) {
+    }
+}
@@ -0,0 +1,51 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.OrderEventPayload;
+import com.perfume.shop.entity.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends customer order emails from the outbox; the admin copy has its own handler.
+ * The order is snapshotted in a short read-only transaction and mailed with no
+ * transaction open, so one event sends at most one message.
+ * SMTP failures are recorded as EmailEvents and retried by the email retry scheduler;
+ * only failures to load the order or persist the email event come back as outbox retries.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailOutboxHandler implements OutboxEventHandler {
+
+    private final EmailService emailService;
+
+    @Override
+    public String name() {
+        return "email";
+    }
+
+    @Override
+    public boolean supports(OutboxEvent.EventType eventType) {
+        return true;
+    }
+
+    @Override
+    public void handle(OutboxEvent.EventType eventType, OrderEventPayload payload) {
+        OrderEmail order = emailService.loadOrderEmail(payload.getOrderId());
+
+        switch (eventType) {
+            case ORDER_CONFIRMED -> emailService.sendOrderConfirmation(order);
+            case ORDER_STATUS_CHANGED -> {
+                // A later transition has its own event - don't mail the same current status twice
+                if (order.status() != payload.getStatus()) {
+                    log.debug("Skipping status email for order {}: {} superseded by {}",
+                            order.orderNumber(), payload.getStatus(), order.status());
+                    return;
+                }
+                emailService.sendOrderStatusUpdate(order);
+            }
+            case ORDER_SHIPPED -> emailService.sendShippingNotification(order);
+        }
+    }
+}
@@ -1,80 +1,165 @@
 package com.perfume.shop.service;
 
-import com.perfume.shop.entity.EmailEvent;
 import com.perfume.shop.repository.EmailEventRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Scheduled service for retrying failed emails.
- * 
- * Runs every 5 minutes to:
- * - Find emails ready for retry (nextRetryAt <= now)
- * - Attempt to resend them
- * - Update status based on result
- * - Use exponential backoff between retries
+ *
+ * Each poll claims due emails in bounded pages (FOR UPDATE SKIP LOCKED plus a
+ * lease on the row, so any number of nodes can run it without resending the same
+ * email) and hands them to the retry executor - never more than the executor has
+ * room for. After an SMTP outage the backlog drains at the executor's pace over
+ * several polls instead of flooding it in one go. A lease that outlives its
+ * worker (node died) expires and the row becomes due again.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class EmailRetryScheduler {
-    
+
     private final EmailEventRepository emailEventRepository;
     private final EmailService emailService;
-    
+    private final TransactionTemplate transactionTemplate;
+    private final AsyncTaskExecutor retryExecutor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Value("${app.email.retry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.email.retry.page-size:25}")
+    private int pageSize;
+
+    @Value("${app.email.retry.max-per-poll:200}")
+    private int maxPerPoll;
+
+    @Value("${app.email.retry.lease-seconds:600}")
+    private long leaseSeconds;
+
+    // A PENDING email without a retry time is still being sent by its first attempt
+    @Value("${app.email.retry.first-attempt-grace-minutes:10}")
+    private long firstAttemptGraceMinutes;
+
+    public EmailRetryScheduler(EmailEventRepository emailEventRepository,
+                               EmailService emailService,
+                               TransactionTemplate transactionTemplate,
+                               @Qualifier("emailRetryExecutor") AsyncTaskExecutor retryExecutor) {
+        this.emailEventRepository = emailEventRepository;
+        this.emailService = emailService;
+        this.transactionTemplate = transactionTemplate;
+        this.retryExecutor = retryExecutor;
+    }
+
     /**
-     * Retry emails that are pending and ready for retry.
-     * Runs every 5 minutes (300000 milliseconds).
+     * Claim and dispatch emails that are due for retry.
      * Initial delay of 1 minute before first run.
      */
-    @Scheduled(fixedDelay = 300000, initialDelay = 60000)
+    @Scheduled(fixedDelayString = "${app.email.retry.poll-interval-ms:60000}", initialDelay = 60000)
     public void retryFailedEmails() {
-        log.debug("Email retry scheduler started");
-        
+        if (!enabled) {
+            return;
+        }
+
+        int dispatched = 0;
         try {
-            // Find all emails that are ready for retry
-            List<EmailEvent> emailsToRetry = emailEventRepository.findPendingEmailsForRetry();
-            
-            if (emailsToRetry.isEmpty()) {
-                log.debug("No emails ready for retry");
-                return;
-            }
-            
-            log.info("Found {} emails ready for retry", emailsToRetry.size());
-            
-            // Attempt to resend each email
-            for (EmailEvent emailEvent : emailsToRetry) {
-                try {
-                    log.debug("Retrying email: id={}, orderId={}, type={}, attempt={}/{}", 
-                            emailEvent.getId(),
-                            emailEvent.getOrder().getId(),
-                            emailEvent.getEmailType(),
-                            emailEvent.getAttemptCount(),
-                            emailEvent.getMaxRetries());
-                    
-                    // Call email service to retry
-                    emailService.retryFailedEmail(emailEvent);
-                    
-                } catch (Exception e) {
-                    log.error("Error during email retry process: id={}, orderId={}", 
-                            emailEvent.getId(), 
-                            emailEvent.getOrder().getId(), 
-                            e);
+            while (dispatched < maxPerPoll) {
+                int limit = Math.min(Math.min(pageSize, freeSlots()), maxPerPoll - dispatched);
+                if (limit <= 0) {
+                    log.debug("Email retry executor is saturated, remaining retries wait for the next poll");
+                    break;
+                }
+
+                List<Long> ids = claimBatch(limit);
+                if (ids.isEmpty()) {
+                    break;
+                }
+
+                dispatched += dispatch(ids);
+
+                if (ids.size() < limit) {
+                    break;
                 }
             }
-            
-            log.debug("Email retry scheduler completed");
-            
         } catch (Exception e) {
             log.error("Fatal error in email retry scheduler", e);
         }
+
+        if (dispatched > 0) {
+            log.info("Dispatched {} email retries", dispatched);
+        }
     }
-    
+
+    /**
+     * Lock and lease one page of due emails
+     */
+    List<Long> claimBatch(int limit) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = emailEventRepository.lockDueIds(now, now.minusMinutes(firstAttemptGraceMinutes), limit);
+            if (!ids.isEmpty()) {
+                emailEventRepository.claim(ids, now.plusSeconds(leaseSeconds));
+            }
+            return ids;
+        });
+    }
+
+    /**
+     * Submit claimed emails; anything the executor turns away is released for the next poll
+     */
+    private int dispatch(List<Long> ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            inFlight.incrementAndGet();
+            try {
+                retryExecutor.execute(() -> retry(id));
+            } catch (RejectedExecutionException e) {
+                inFlight.decrementAndGet();
+                emailEventRepository.releaseClaims(List.copyOf(ids.subList(i, ids.size())));
+                return i;
+            }
+        }
+        return ids.size();
+    }
+
+    private void retry(Long emailEventId) {
+        try {
+            emailService.retryFailedEmail(emailEventId);
+        } catch (Exception e) {
+            log.error("Error during email retry process: id={}", emailEventId, e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Idle threads plus free queue slots of the retry executor; in virtual thread
+     * mode, the retries its concurrency limit still admits
+     */
+    int freeSlots() {
+        if (retryExecutor instanceof ThreadPoolTaskExecutor threadPool) {
+            ThreadPoolExecutor pool = threadPool.getThreadPoolExecutor();
+            long free = (long) pool.getMaximumPoolSize() - pool.getActiveCount() + pool.getQueue().remainingCapacity();
+            return (int) Math.min(free, Integer.MAX_VALUE);
+        }
+        if (retryExecutor instanceof SimpleAsyncTaskExecutor perTask && perTask.isThrottleActive()) {
+            return Math.max(0, perTask.getConcurrencyLimit() - inFlight.get());
+        }
+        return pageSize;
+    }
+
     /**
      * Cleanup task to mark permanently failed emails.
      * Runs daily at 2 AM.
@@ -83,29 +168,26 @@ public class EmailRetryScheduler {
     @Scheduled(cron = "0 0 2 * * *")
     public void cleanupFailedEmails() {
         log.info("Email cleanup scheduler started");
-        
+
         try {
             // This is handled automatically by the EmailService
             // when it detects attemptCount >= maxRetries
-            
-            // You could add additional cleanup logic here:
-            // - Archive old email events
-            // - Send alerts for permanently failed emails
-            // - Generate reports
-            
+
+            // Archiving old email events is done by EventRetentionService
+
             log.info("Email cleanup scheduler completed");
-            
+
         } catch (Exception e) {
             log.error("Fatal error in email cleanup scheduler", e);
         }
     }
-    
+
     /**
-     * Health check - returns count of pending emails.
+     * Health check - returns count of emails due for retry.
      * Useful for monitoring.
      */
     public long getPendingEmailCount() {
-        List<EmailEvent> pending = emailEventRepository.findPendingEmailsForRetry();
-        return pending.size();
+        LocalDateTime now = LocalDateTime.now();
+        return emailEventRepository.countDueForRetry(now, now.minusMinutes(firstAttemptGraceMinutes));
     }
 }
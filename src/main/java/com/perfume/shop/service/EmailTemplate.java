@@ -0,0 +1,161 @@
+package com.perfume.shop.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Email template compiled once into literal segments and typed slots.
+ *
+ * Placeholders are written as {@code {{name}}} or {@code {{name:type}}} with type
+ * {@code text} (default), {@code int}, {@code money} (two decimals, HALF_UP) or
+ * {@code html} (a trusted markup string or a {@link Fragment}). Arguments are passed
+ * positionally in the order of the declared parameter names; a name may appear
+ * several times in the template. Rendering appends straight into the caller's buffer,
+ * so nested fragments (item rows) never allocate intermediate strings.
+ */
+public final class EmailTemplate {
+
+    /**
+     * Markup written directly into the enclosing template's buffer
+     */
+    @FunctionalInterface
+    public interface Fragment {
+        void writeTo(StringBuilder out);
+    }
+
+    enum SlotType {
+        TEXT, INT, MONEY, HTML
+    }
+
+    private final String name;
+    private final String[] params;
+    private final String[] literals; // literals[i] precedes slot i; one more literal than slots
+    private final int[] slotArgs;
+    private final SlotType[] slotTypes;
+    private final int estimatedSize;
+
+    private EmailTemplate(String name, String[] params, String[] literals, int[] slotArgs, SlotType[] slotTypes) {
+        this.name = name;
+        this.params = params;
+        this.literals = literals;
+        this.slotArgs = slotArgs;
+        this.slotTypes = slotTypes;
+        int size = 0;
+        for (String literal : literals) {
+            size += literal.length();
+        }
+        this.estimatedSize = size + slotArgs.length * 16;
+    }
+
+    /**
+     * Parse a template. Fails fast on unknown or unused parameters so a broken template stops startup.
+     */
+    public static EmailTemplate compile(String name, String source, String... params) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slotArgs = new ArrayList<>();
+        List<SlotType> slotTypes = new ArrayList<>();
+        boolean[] used = new boolean[params.length];
+
+        int pos = 0;
+        while (true) {
+            int open = source.indexOf("{{", pos);
+            if (open < 0) {
+                break;
+            }
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) {
+                throw new IllegalStateException("Unclosed placeholder in email template " + name + " at " + open);
+            }
+
+            String placeholder = source.substring(open + 2, close).trim();
+            int colon = placeholder.indexOf(':');
+            String param = colon < 0 ? placeholder : placeholder.substring(0, colon).trim();
+            SlotType type = colon < 0 ? SlotType.TEXT : parseType(name, placeholder.substring(colon + 1).trim());
+
+            int arg = Arrays.asList(params).indexOf(param);
+            if (arg < 0) {
+                throw new IllegalStateException("Undeclared placeholder '" + param + "' in email template " + name);
+            }
+            used[arg] = true;
+
+            literals.add(source.substring(pos, open));
+            slotArgs.add(arg);
+            slotTypes.add(type);
+            pos = close + 2;
+        }
+        literals.add(source.substring(pos));
+
+        for (int i = 0; i < params.length; i++) {
+            if (!used[i]) {
+                throw new IllegalStateException("Parameter '" + params[i] + "' is not used in email template " + name);
+            }
+        }
+
+        return new EmailTemplate(name, params.clone(), literals.toArray(String[]::new),
+                slotArgs.stream().mapToInt(Integer::intValue).toArray(), slotTypes.toArray(SlotType[]::new));
+    }
+
+    private static SlotType parseType(String template, String type) {
+        return switch (type) {
+            case "text" -> SlotType.TEXT;
+            case "int" -> SlotType.INT;
+            case "money" -> SlotType.MONEY;
+            case "html" -> SlotType.HTML;
+            default -> throw new IllegalStateException("Unknown placeholder type '" + type + "' in email template " + template);
+        };
+    }
+
+    /**
+     * Append the rendered template to {@code out}
+     */
+    public void render(StringBuilder out, Object... args) {
+        if (args.length != params.length) {
+            throw new IllegalArgumentException("Email template " + name + " expects " + params.length
+                    + " arguments " + Arrays.toString(params) + " but got " + args.length);
+        }
+
+        out.ensureCapacity(out.length() + estimatedSize);
+        for (int i = 0; i < slotArgs.length; i++) {
+            out.append(literals[i]);
+            write(out, slotTypes[i], args[slotArgs[i]]);
+        }
+        out.append(literals[slotArgs.length]);
+    }
+
+    private static void write(StringBuilder out, SlotType type, Object value) {
+        if (value == null) {
+            out.append("null"); // same as String.format
+            return;
+        }
+        switch (type) {
+            case INT -> out.append(((Number) value).longValue());
+            case MONEY -> out.append(money(value));
+            case HTML -> {
+                if (value instanceof Fragment fragment) {
+                    fragment.writeTo(out);
+                } else {
+                    out.append((CharSequence) value);
+                }
+            }
+            default -> {
+                if (value instanceof CharSequence text) {
+                    out.append(text);
+                } else {
+                    out.append(value);
+                }
+            }
+        }
+    }
+
+    private static String money(Object value) {
+        BigDecimal amount = value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+        return amount.setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,81 @@
+package com.perfume.shop.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compiled email templates, loaded from classpath:templates/email once at startup.
+ *
+ * Rendering goes into a per-thread reusable buffer, so a send costs one copy of
+ * the finished HTML instead of a String.format pass plus intermediate strings per
+ * section. Fragments must render into the buffer they are handed, never through
+ * {@link #render}, which owns the thread's buffer.
+ */
+@Component
+@Slf4j
+public class EmailTemplates {
+
+    private static final String LOCATION = "templates/email/";
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_BUFFER_SIZE));
+
+    final EmailTemplate itemRow = load("item-row.html", "name", "quantity", "price");
+    final EmailTemplate orderConfirmation = load("order-confirmation.html",
+            "customerName", "orderNumber", "orderDate", "items", "subtotal", "tax", "shipping", "total",
+            "address", "city", "country", "zipCode");
+
+    final EmailTemplate statusUpdate = load("status-update.html",
+            "statusColor", "statusEmoji", "firstName", "orderNumber", "status", "orderDate", "total",
+            "statusMessage", "additionalInfo");
+    final EmailTemplate statusTracking = load("status-tracking.html", "trackingNumber");
+    final EmailTemplate statusItems = load("status-items.html", "items");
+    final EmailTemplate statusItemRow = load("status-item-row.html", "name", "quantity", "price");
+    final EmailTemplate statusNextOutForDelivery = load("status-next-out-for-delivery.html");
+    final EmailTemplate statusNextDelivered = load("status-next-delivered.html");
+    final EmailTemplate statusNextCancelled = load("status-next-cancelled.html");
+    final EmailTemplate statusNextRefunded = load("status-next-refunded.html", "total");
+
+    final EmailTemplate adminItemRow = load("admin-item-row.html", "name", "quantity", "price");
+    final EmailTemplate adminNotification = load("admin-notification.html",
+            "orderNumber", "customerName", "customerEmail", "status", "orderDate", "items",
+            "address", "city", "country", "zipCode", "phone", "subtotal", "shipping", "tax", "total");
+
+    final EmailTemplate shipping = load("shipping.html", "customerName", "orderNumber", "trackingNumber");
+
+    final EmailTemplate abandonedCart = load("abandoned-cart.html", "firstName", "items", "total", "supportEmail");
+
+    /**
+     * Render a top-level template into this thread's buffer and return the HTML
+     */
+    public String render(EmailTemplate template, Object... args) {
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        try {
+            template.render(out, args);
+            return out.toString();
+        } finally {
+            if (out.capacity() > MAX_POOLED_BUFFER_SIZE) {
+                BUFFER.remove(); // don't pin an oversized buffer to the thread
+            } else {
+                out.setLength(0);
+            }
+        }
+    }
+
+    static EmailTemplate load(String file, String... params) {
+        try (InputStream in = new ClassPathResource(LOCATION + file).getInputStream()) {
+            return EmailTemplate.compile(file, new String(in.readAllBytes(), StandardCharsets.UTF_8), params);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load email template " + file, e);
+        }
+    }
+}
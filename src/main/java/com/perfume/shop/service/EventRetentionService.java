@@ -0,0 +1,180 @@
+package com.perfume.shop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfume.shop.repository.EventArchiveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Retention for the webhook_events and email_events tables.
+ *
+ * Rows that reached a final status and are older than their retention window
+ * are moved into event_archive in small batches, each in its own short
+ * transaction: lock the batch (SKIP LOCKED), write it as one gzipped JSON chunk,
+ * delete it. Keeping the live tables small keeps inserts and idempotency
+ * lookups fast; the archive keeps the raw payloads for audits.
+ */
+@Service
+@Slf4j
+public class EventRetentionService {
+
+    /**
+     * Live event tables and which of their rows are finished
+     */
+    enum Source {
+        WEBHOOK_EVENTS("webhook_events", "status IN ('DONE', 'FAILED')"),
+        EMAIL_EVENTS("email_events", "status IN ('SENT', 'FAILED', 'BOUNCED')");
+
+        final String table;
+        final String retiredFilter;
+
+        Source(String table, String retiredFilter) {
+            this.table = table;
+            this.retiredFilter = retiredFilter;
+        }
+    }
+
+    private final EventArchiveRepository eventArchiveRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.retention.webhook-events-days:30}")
+    private int webhookEventsDays;
+
+    @Value("${app.retention.email-events-days:90}")
+    private int emailEventsDays;
+
+    @Value("${app.retention.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.retention.max-batches-per-run:200}")
+    private int maxBatchesPerRun;
+
+    public EventRetentionService(EventArchiveRepository eventArchiveRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        this.eventArchiveRepository = eventArchiveRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Archive retired events nightly, bounded per run so a large backlog is drained over several nights
+     */
+    @Scheduled(cron = "${app.retention.cron:0 15 4 * * *}")
+    public void archiveRetiredEvents() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        archive(Source.WEBHOOK_EVENTS, now.minusDays(webhookEventsDays));
+        archive(Source.EMAIL_EVENTS, now.minusDays(emailEventsDays));
+    }
+
+    /**
+     * Archive one table's retired rows created before {@code cutoff}
+     *
+     * @return Number of rows archived
+     */
+    int archive(Source source, LocalDateTime cutoff) {
+        int total = 0;
+
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                Integer archived = transactionTemplate.execute(status -> archiveBatch(source, cutoff));
+                if (archived == null || archived == 0) {
+                    break;
+                }
+                total += archived;
+                if (archived < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Archiving {} failed after {} rows", source.table, total, e);
+        }
+
+        if (total > 0) {
+            Counter.builder("shop.retention.archived")
+                    .description("Event rows moved to the compressed archive")
+                    .tag("source", source.table)
+                    .register(meterRegistry)
+                    .increment(total);
+            log.info("Archived {} {} rows created before {}", total, source.table, cutoff);
+        }
+        return total;
+    }
+
+    /**
+     * Lock, archive and delete one batch. Must run inside a transaction.
+     */
+    int archiveBatch(Source source, LocalDateTime cutoff) {
+        List<Map<String, Object>> rows = eventArchiveRepository.lockRetiredRows(
+                source.table, source.retiredFilter, cutoff, batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = new ArrayList<>(rows.size());
+        LocalDateTime from = null;
+        LocalDateTime to = null;
+        for (Map<String, Object> row : rows) {
+            ids.add(((Number) column(row, "id")).longValue());
+            LocalDateTime createdAt = toLocalDateTime(column(row, "created_at"));
+            from = from == null || createdAt.isBefore(from) ? createdAt : from;
+            to = to == null || createdAt.isAfter(to) ? createdAt : to;
+        }
+
+        eventArchiveRepository.insertChunk(source.table, ids.get(0), ids.get(ids.size() - 1), rows.size(),
+                from, to, compress(rows));
+        eventArchiveRepository.deleteByIds(source.table, ids);
+        return rows.size();
+    }
+
+    byte[] compress(List<Map<String, Object>> rows) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gzip, rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compress event archive chunk", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Column lookup that tolerates upper-case labels (H2)
+     */
+    private static Object column(Map<String, Object> row, String name) {
+        Object value = row.get(name);
+        return value != null ? value : row.get(name.toUpperCase());
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+}
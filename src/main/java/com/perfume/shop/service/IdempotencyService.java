@@ -0,0 +1,315 @@
+package com.perfume.shop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.perfume.shop.entity.IdempotencyRecord;
+import com.perfume.shop.entity.User;
+import com.perfume.shop.exception.ApplicationException;
+import com.perfume.shop.exception.ErrorType;
+import com.perfume.shop.repository.IdempotencyRecordRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency layer for non-repeatable endpoints (checkout, payment verification).
+ *
+ * The first response for a user's Idempotency-Key is kept in a TTL-bounded
+ * in-memory store backed by the idempotency_keys table, and replayed for
+ * any retry carrying the same key. Concurrent duplicates on this node wait
+ * for the in-flight execution; duplicates arriving on another node while the
+ * first one is still running get 409 Conflict and can retry.
+ *
+ * Requests without the header are executed as before.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${app.idempotency.cache-max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${app.idempotency.wait-timeout-seconds:30}")
+    private long waitTimeoutSeconds;
+
+    @Value("${app.idempotency.lock-timeout-seconds:120}")
+    private long lockTimeoutSeconds;
+
+    private Cache<String, StoredResponse> responseCache;
+
+    // Executions currently running on this node, keyed by user/endpoint/key
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        this.responseCache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofHours(ttlHours))
+                .maximumSize(cacheMaxSize)
+                .build();
+    }
+
+    /**
+     * Execute an action at most once per Idempotency-Key.
+     *
+     * @param idempotencyKey Value of the Idempotency-Key header (may be null)
+     * @param user Authenticated user; keys are scoped per user
+     * @param endpoint Logical endpoint name, e.g. "orders.checkout"
+     * @param request Request body, used to detect key reuse with a different payload
+     * @param responseType Type used to deserialize a stored response on replay
+     * @param action The operation to run for the first request
+     * @return The original response, or a replay of it for duplicates
+     */
+    public <T> ResponseEntity<T> execute(String idempotencyKey, User user, String endpoint, Object request,
+                                         TypeReference<T> responseType, Supplier<ResponseEntity<T>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+
+        String key = idempotencyKey.trim();
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new ApplicationException(
+                    "Idempotency-Key must be at most " + MAX_KEY_LENGTH + " characters",
+                    ErrorType.VALIDATION_ERROR);
+        }
+
+        String scope = user.getId() + ":" + endpoint + ":" + key;
+        String requestHash = hashRequest(request);
+
+        while (true) {
+            StoredResponse cached = responseCache.getIfPresent(scope);
+            if (cached != null) {
+                log.info("Replaying stored response for {} (key: {})", endpoint, key);
+                return replay(cached, requestHash, responseType);
+            }
+
+            CompletableFuture<StoredResponse> execution = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(scope, execution);
+
+            if (running != null) {
+                // Duplicate of a request that is still running on this node
+                StoredResponse result = awaitExecution(running);
+                if (result != null) {
+                    log.info("Replaying in-flight response for {} (key: {})", endpoint, key);
+                    return replay(result, requestHash, responseType);
+                }
+                // The first execution failed and stored nothing - this request may run it
+                continue;
+            }
+
+            try {
+                return executeOnce(scope, key, user.getId(), endpoint, requestHash, responseType, action, execution);
+            } finally {
+                // Never leave waiters hanging; a null result lets them retry
+                execution.complete(null);
+                inFlight.remove(scope, execution);
+            }
+        }
+    }
+
+    /**
+     * Remove expired idempotency records.
+     * Runs daily at 3:30 AM.
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    private <T> ResponseEntity<T> executeOnce(String scope, String key, Long userId, String endpoint,
+                                              String requestHash, TypeReference<T> responseType,
+                                              Supplier<ResponseEntity<T>> action,
+                                              CompletableFuture<StoredResponse> execution) {
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyRecord record;
+
+        Optional<IdempotencyRecord> existing =
+                idempotencyRecordRepository.findByUserIdAndEndpointAndIdempotencyKey(userId, endpoint, key);
+
+        if (existing.isPresent() && existing.get().getExpiresAt().isAfter(now)) {
+            record = existing.get();
+
+            if (record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                StoredResponse stored = StoredResponse.from(record);
+                responseCache.put(scope, stored);
+                execution.complete(stored);
+                log.info("Replaying persisted response for {} (key: {})", endpoint, key);
+                return replay(stored, requestHash, responseType);
+            }
+
+            if (!record.getRequestHash().equals(requestHash)) {
+                throw keyReused();
+            }
+            if (record.getLockedAt().isAfter(now.minusSeconds(lockTimeoutSeconds))) {
+                throw stillProcessing();
+            }
+
+            // Previous execution was abandoned (node crash) - take it over
+            log.warn("Taking over abandoned idempotent execution for {} (key: {})", endpoint, key);
+            record.setLockedAt(now);
+            record.setExpiresAt(now.plusHours(ttlHours));
+            try {
+                record = idempotencyRecordRepository.saveAndFlush(record);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                throw stillProcessing();
+            }
+        } else {
+            existing.ifPresent(idempotencyRecordRepository::delete);
+            try {
+                record = idempotencyRecordRepository.saveAndFlush(IdempotencyRecord.builder()
+                        .idempotencyKey(key)
+                        .userId(userId)
+                        .endpoint(endpoint)
+                        .requestHash(requestHash)
+                        .status(IdempotencyRecord.Status.IN_PROGRESS)
+                        .lockedAt(now)
+                        .expiresAt(now.plusHours(ttlHours))
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                // Another node inserted the same key first
+                throw stillProcessing();
+            }
+        }
+
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            // Nothing to replay - release the key so the client can retry
+            releaseQuietly(record);
+            throw e;
+        }
+
+        StoredResponse stored = new StoredResponse(requestHash, response.getStatusCode().value(),
+                writeBody(response.getBody()));
+        try {
+            record.setStatus(IdempotencyRecord.Status.COMPLETED);
+            record.setResponseStatus(stored.status());
+            record.setResponseBody(stored.body());
+            idempotencyRecordRepository.save(record);
+        } catch (Exception e) {
+            // The in-memory store still covers retries on this node
+            log.error("Failed to persist idempotent response for {} (key: {}): {}", endpoint, key, e.getMessage());
+        }
+
+        responseCache.put(scope, stored);
+        execution.complete(stored);
+        return response;
+    }
+
+    private StoredResponse awaitExecution(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.get(waitTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw stillProcessing();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw stillProcessing();
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(StoredResponse stored, String requestHash, TypeReference<T> responseType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw keyReused();
+        }
+        try {
+            T body = stored.body() != null ? objectMapper.readValue(stored.body(), responseType) : null;
+            return ResponseEntity.status(stored.status())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(body);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to replay stored response: " + e.getMessage(), e);
+        }
+    }
+
+    private void releaseQuietly(IdempotencyRecord record) {
+        try {
+            idempotencyRecordRepository.delete(record);
+        } catch (Exception e) {
+            log.warn("Failed to release idempotency key {}: {}", record.getIdempotencyKey(), e.getMessage());
+        }
+    }
+
+    private String writeBody(Object body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize response: " + e.getMessage(), e);
+        }
+    }
+
+    private String hashRequest(Object request) {
+        try {
+            byte[] json = request != null ? objectMapper.writeValueAsBytes(request) : new byte[0];
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to hash request: " + e.getMessage(), e);
+        }
+    }
+
+    private ApplicationException stillProcessing() {
+        return new ApplicationException(
+                "A request with this Idempotency-Key is still being processed. Please retry shortly.",
+                ErrorType.CONFLICT, 409);
+    }
+
+    private ApplicationException keyReused() {
+        return new ApplicationException(
+                "Idempotency-Key has already been used with a different request",
+                ErrorType.VALIDATION_ERROR, 422);
+    }
+
+    /**
+     * Response captured for replay: request fingerprint, HTTP status and JSON body.
+     */
+    private record StoredResponse(String requestHash, int status, String body) {
+
+        static StoredResponse from(IdempotencyRecord record) {
+            return new StoredResponse(record.getRequestHash(),
+                    record.getResponseStatus() != null ? record.getResponseStatus() : 200,
+                    record.getResponseBody());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.InvoiceRow;
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.entity.OrderItem;
+import com.perfume.shop.entity.User;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Immutable snapshot of everything printed on an invoice.
+ *
+ * Captured from the Order entity on the caller's thread (inside its session),
+ * so rendering on the invoice pool never touches lazy associations. The
+ * content hash identifies the rendered bytes: any change to a printed field
+ * produces a new cache entry.
+ */
+public record InvoiceDocument(
+        Long orderId,
+        String orderNumber,
+        String invoiceDate,
+        String status,
+        String customerName,
+        String customerEmail,
+        String customerPhone,
+        String shippingAddress,
+        String shippingCity,
+        String shippingZipCode,
+        String shippingCountry,
+        String shippingPhone,
+        String paymentMethod,
+        List<Line> lines,
+        BigDecimal subtotal,
+        BigDecimal tax,
+        BigDecimal shippingCost,
+        BigDecimal totalAmount
+) {
+
+    /**
+     * Bump when the layout in InvoiceRenderer changes so cached files are re-rendered.
+     */
+    static final int LAYOUT_VERSION = 1;
+
+    /**
+     * Printed for an item whose product has since been deleted
+     */
+    static final String UNAVAILABLE_PRODUCT = "Product no longer available";
+
+    public record Line(String productName, int quantity, BigDecimal price, BigDecimal subtotal) {
+    }
+
+    public static InvoiceDocument from(Order order) {
+        User user = order.getUser();
+        String customerName = user.getFirstName() + " " + (user.getLastName() != null ? user.getLastName() : "");
+
+        List<Line> lines = order.getItems().stream()
+                .map(InvoiceDocument::toLine)
+                .toList();
+
+        return new InvoiceDocument(
+                order.getId(),
+                order.getOrderNumber(),
+                order.getCreatedAt().toString().substring(0, 10),
+                String.valueOf(order.getStatus()),
+                customerName,
+                user.getEmail(),
+                user.getPhoneNumber(),
+                order.getShippingAddress(),
+                order.getShippingCity(),
+                order.getShippingZipCode(),
+                order.getShippingCountry(),
+                order.getShippingPhone(),
+                order.getPaymentMethod(),
+                lines,
+                order.getSubtotal(),
+                order.getTax(),
+                order.getShippingCost() != null ? order.getShippingCost() : BigDecimal.ZERO,
+                order.getTotalAmount());
+    }
+
+    /**
+     * Build snapshots from OrderRepository.findInvoiceRows output (one row per item, grouped by order).
+     * An order without items comes as a single row with null item columns.
+     */
+    public static List<InvoiceDocument> fromRows(List<InvoiceRow> rows) {
+        List<InvoiceDocument> documents = new ArrayList<>();
+        InvoiceRow header = null;
+        List<Line> lines = new ArrayList<>();
+
+        for (InvoiceRow row : rows) {
+            if (header != null && !header.getOrderId().equals(row.getOrderId())) {
+                documents.add(fromRow(header, lines));
+                lines = new ArrayList<>();
+            }
+            header = row;
+            if (row.getQuantity() == null) {
+                continue;
+            }
+            BigDecimal price = row.getPrice();
+            int quantity = row.getQuantity();
+            String productName = row.getProductName() != null ? row.getProductName() : UNAVAILABLE_PRODUCT;
+            lines.add(new Line(productName, quantity, price, price.multiply(BigDecimal.valueOf(quantity))));
+        }
+        if (header != null) {
+            documents.add(fromRow(header, lines));
+        }
+        return documents;
+    }
+
+    private static InvoiceDocument fromRow(InvoiceRow row, List<Line> lines) {
+        return new InvoiceDocument(
+                row.getOrderId(),
+                row.getOrderNumber(),
+                row.getCreatedAt().toString().substring(0, 10),
+                String.valueOf(row.getStatus()),
+                row.getFirstName() + " " + (row.getLastName() != null ? row.getLastName() : ""),
+                row.getEmail(),
+                row.getPhoneNumber(),
+                row.getShippingAddress(),
+                row.getShippingCity(),
+                row.getShippingZipCode(),
+                row.getShippingCountry(),
+                row.getShippingPhone(),
+                row.getPaymentMethod(),
+                List.copyOf(lines),
+                row.getSubtotal(),
+                row.getTax(),
+                row.getShippingCost() != null ? row.getShippingCost() : BigDecimal.ZERO,
+                row.getTotalAmount());
+    }
+
+    private static Line toLine(OrderItem item) {
+        String productName = item.getProduct() != null ? item.getProduct().getName() : UNAVAILABLE_PRODUCT;
+        return new Line(productName, item.getQuantity(), item.getPrice(), item.getSubtotal());
+    }
+
+    /**
+     * SHA-256 over every printed field, truncated to 32 hex chars.
+     */
+    public String contentHash() {
+        StringBuilder canonical = new StringBuilder(256 + lines.size() * 64)
+                .append(LAYOUT_VERSION).append('\u001F')
+                .append(orderNumber).append('\u001F')
+                .append(invoiceDate).append('\u001F')
+                .append(status).append('\u001F')
+                .append(customerName).append('\u001F')
+                .append(customerEmail).append('\u001F')
+                .append(customerPhone).append('\u001F')
+                .append(shippingAddress).append('\u001F')
+                .append(shippingCity).append('\u001F')
+                .append(shippingZipCode).append('\u001F')
+                .append(shippingCountry).append('\u001F')
+                .append(shippingPhone).append('\u001F')
+                .append(paymentMethod).append('\u001F')
+                .append(plain(subtotal)).append('\u001F')
+                .append(plain(tax)).append('\u001F')
+                .append(plain(shippingCost)).append('\u001F')
+                .append(plain(totalAmount));
+        for (Line line : lines) {
+            canonical.append('\u001E')
+                    .append(line.productName()).append('\u001F')
+                    .append(line.quantity()).append('\u001F')
+                    .append(plain(line.price())).append('\u001F')
+                    .append(plain(line.subtotal()));
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String plain(BigDecimal value) {
+        return value != null ? value.toPlainString() : "";
+    }
+}
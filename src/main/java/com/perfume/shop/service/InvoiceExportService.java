@@ -0,0 +1,175 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a ZIP of invoices for a date range (GST filing).
+ *
+ * Orders are read with keyset paging on id, one page at a time, as flat rows
+ * rather than entities. Each page is rendered (or taken from the invoice cache)
+ * in parallel on the invoice pool and entries are written in completion order.
+ * At most one page of snapshots is held in memory, and PDF bytes are copied
+ * from the cache files straight into the response.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceExportService {
+
+    // Unpaid and cancelled/refunded orders have no tax invoice
+    private static final Set<Order.OrderStatus> NON_INVOICEABLE = EnumSet.of(
+            Order.OrderStatus.PLACED, Order.OrderStatus.CANCELLED, Order.OrderStatus.REFUNDED);
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final OrderRepository orderRepository;
+    private final InvoiceService invoiceService;
+
+    @Value("${app.invoice.export-page-size:100}")
+    private int pageSize;
+
+    /**
+     * Check whether invoices can be exported for a status filter.
+     */
+    public static boolean isInvoiceable(Order.OrderStatus status) {
+        return !NON_INVOICEABLE.contains(status);
+    }
+
+    /**
+     * Write all invoices created between the given dates (inclusive) as a ZIP.
+     *
+     * @param from First day (inclusive)
+     * @param to Last day (inclusive)
+     * @param status Optional status filter; all paid, non-cancelled orders when null
+     * @param out Response stream - not closed by this method
+     */
+    public void exportZip(LocalDate from, LocalDate to, Order.OrderStatus status, OutputStream out)
+            throws IOException {
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+        if (status != null && !isInvoiceable(status)) {
+            throw new IllegalArgumentException("Invoices are not available for " + status + " orders");
+        }
+        Set<Order.OrderStatus> statuses = status != null
+                ? EnumSet.of(status)
+                : EnumSet.complementOf(EnumSet.copyOf(NON_INVOICEABLE));
+
+        long startedAt = System.currentTimeMillis();
+        int exported = 0;
+        List<String> errors = new ArrayList<>();
+
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        // PDFs are already compressed - spend as little CPU as possible re-deflating them
+        zip.setLevel(Deflater.BEST_SPEED);
+
+        long afterId = 0L;
+        while (true) {
+            List<Long> ids = orderRepository.findInvoiceExportIds(afterId, start, end, statuses,
+                    PageRequest.of(0, pageSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+
+            List<InvoiceDocument> page = InvoiceDocument.fromRows(orderRepository.findInvoiceRows(ids));
+            exported += writePage(zip, page, errors);
+            zip.flush();
+        }
+
+        if (!errors.isEmpty()) {
+            zip.putNextEntry(new ZipEntry("export-errors.txt"));
+            zip.write(String.join("\n", errors).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+
+        zip.finish();
+        zip.flush();
+
+        log.info("Exported {} invoices for {} to {} (status: {}) in {} ms, {} failed",
+                exported, from, to, status != null ? status : "ALL", System.currentTimeMillis() - startedAt,
+                errors.size());
+    }
+
+    /**
+     * Render a page in parallel and write each invoice as soon as it is ready.
+     */
+    private int writePage(ZipOutputStream zip, List<InvoiceDocument> page, List<String> errors) throws IOException {
+        BlockingQueue<Rendered> completed = new LinkedBlockingQueue<>();
+        for (InvoiceDocument invoice : page) {
+            invoiceService.getInvoiceAsync(invoice)
+                    .whenComplete((path, error) -> completed.add(new Rendered(invoice, path, error)));
+        }
+
+        int written = 0;
+        for (int i = 0; i < page.size(); i++) {
+            Rendered rendered;
+            try {
+                rendered = completed.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Invoice export interrupted", e);
+            }
+
+            if (rendered.error() != null) {
+                log.warn("Skipping invoice for order {}: {}", rendered.invoice().orderNumber(),
+                        rendered.error().getMessage());
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(rendered.invoice().orderNumber() + ": " + rendered.error().getMessage());
+                }
+                continue;
+            }
+
+            try (InputStream pdf = Files.newInputStream(rendered.path())) {
+                putEntry(zip, rendered.invoice(), pdf);
+            } catch (NoSuchFileException e) {
+                // Re-rendered for a newer order state while we were exporting
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(rendered.invoice().orderNumber() + ": invoice changed during export");
+                }
+                continue;
+            }
+            written++;
+        }
+        return written;
+    }
+
+    private void putEntry(ZipOutputStream zip, InvoiceDocument invoice, InputStream pdf) throws IOException {
+        try {
+            zip.putNextEntry(new ZipEntry("Invoice_" + invoice.orderNumber() + ".pdf"));
+        } catch (ZipException e) {
+            // Order numbers are not strictly unique - disambiguate with the id
+            zip.putNextEntry(new ZipEntry("Invoice_" + invoice.orderNumber() + "_" + invoice.orderId() + ".pdf"));
+        }
+        pdf.transferTo(zip);
+        zip.closeEntry();
+    }
+
+    private record Rendered(InvoiceDocument invoice, Path path, Throwable error) {
+    }
+}
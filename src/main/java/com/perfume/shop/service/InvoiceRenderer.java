@@ -0,0 +1,236 @@
+package com.perfume.shop.service;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.Font;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+import org.springframework.stereotype.Component;
+
+import java.awt.Color;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+import static com.perfume.shop.service.InvoiceStyles.*;
+
+/**
+ * Renders the startup-style tax invoice with OpenPDF.
+ *
+ * Stateless and thread-safe: works only from an {@link InvoiceDocument}
+ * snapshot and the shared {@link InvoiceStyles}.
+ */
+@Component
+public class InvoiceRenderer {
+
+    private static final String[] ITEM_HEADERS = { "#", "PRODUCT DETAILS", "QTY", "UNIT PRICE", "AMOUNT" };
+
+    /**
+     * Render the invoice as PDF into the given stream. The stream is not closed.
+     */
+    public void render(InvoiceDocument invoice, OutputStream out) {
+        Document document = new Document(PageSize.A4, 50, 50, 50, 50);
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            writer.setCloseStream(false);
+            document.open();
+
+            addHeader(document, invoice);
+            addAddresses(document, invoice);
+            addItems(document, invoice);
+            addSummary(document, invoice);
+            addFooter(document, invoice);
+
+            document.close();
+        } catch (DocumentException e) {
+            throw new RuntimeException("Failed to generate invoice PDF", e);
+        }
+    }
+
+    private void addHeader(Document document, InvoiceDocument invoice) throws DocumentException {
+        Paragraph companyName = new Paragraph("MUWAS", TITLE);
+        companyName.setAlignment(Element.ALIGN_LEFT);
+        document.add(companyName);
+
+        Paragraph tagline = new Paragraph("Luxury Fragrances & Premium Scents", SUBTITLE);
+        tagline.setAlignment(Element.ALIGN_LEFT);
+        tagline.setSpacingAfter(15);
+        document.add(tagline);
+
+        PdfPTable headerTable = new PdfPTable(2);
+        headerTable.setWidthPercentage(100);
+        headerTable.setWidths(new float[] { 1, 1 });
+
+        // Company Contact Details
+        PdfPCell companyCell = new PdfPCell();
+        companyCell.setBorder(Rectangle.NO_BORDER);
+        companyCell.addElement(new Paragraph("No 3, Modi Ibrahim Street, Ambur, Tamil Nadu 635802", SMALL));
+        companyCell.addElement(new Paragraph("Phone: +91 9629004158", SMALL));
+        companyCell.addElement(new Paragraph("Email: muwas2021@gmail.com", SMALL));
+        companyCell.addElement(new Paragraph("GSTIN: 33AAAAA0000A1Z5 | PAN: AAAAA0000A", SMALL));
+        headerTable.addCell(companyCell);
+
+        // Invoice Details
+        PdfPCell invoiceCell = new PdfPCell();
+        invoiceCell.setBorder(Rectangle.NO_BORDER);
+        invoiceCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        Paragraph taxInvoice = new Paragraph("TAX INVOICE", HEADING);
+        taxInvoice.setAlignment(Element.ALIGN_RIGHT);
+        invoiceCell.addElement(taxInvoice);
+        invoiceCell.addElement(new Paragraph("Invoice No: " + invoice.orderNumber(), BOLD));
+        invoiceCell.addElement(new Paragraph("Date: " + invoice.invoiceDate(), NORMAL));
+        invoiceCell.addElement(new Paragraph("Status: " + invoice.status(), NORMAL));
+        headerTable.addCell(invoiceCell);
+
+        headerTable.setSpacingAfter(20);
+        document.add(headerTable);
+    }
+
+    private void addAddresses(Document document, InvoiceDocument invoice) throws DocumentException {
+        PdfPTable addressTable = new PdfPTable(2);
+        addressTable.setWidthPercentage(100);
+        addressTable.setWidths(new float[] { 1, 1 });
+        addressTable.setSpacingAfter(20);
+
+        // Bill To
+        PdfPCell billToCell = new PdfPCell();
+        billToCell.setBackgroundColor(BILL_TO_BACKGROUND);
+        billToCell.setPadding(10);
+        billToCell.addElement(new Paragraph("BILL TO", BOLD));
+        billToCell.addElement(new Paragraph(invoice.customerName(), HEADING));
+        billToCell.addElement(new Paragraph(invoice.customerEmail(), NORMAL));
+        if (invoice.customerPhone() != null) {
+            billToCell.addElement(new Paragraph(invoice.customerPhone(), NORMAL));
+        }
+        addressTable.addCell(billToCell);
+
+        // Ship To
+        PdfPCell shipToCell = new PdfPCell();
+        shipToCell.setBackgroundColor(SHIP_TO_BACKGROUND);
+        shipToCell.setPadding(10);
+        shipToCell.addElement(new Paragraph("SHIP TO", BOLD));
+        shipToCell.addElement(new Paragraph(invoice.customerName(), HEADING));
+        shipToCell.addElement(new Paragraph(invoice.shippingAddress(), NORMAL));
+        shipToCell.addElement(new Paragraph(invoice.shippingCity() + ", " + invoice.shippingZipCode(), NORMAL));
+        shipToCell.addElement(new Paragraph(invoice.shippingCountry(), NORMAL));
+        if (invoice.shippingPhone() != null) {
+            shipToCell.addElement(new Paragraph("Phone: " + invoice.shippingPhone(), NORMAL));
+        }
+        addressTable.addCell(shipToCell);
+
+        document.add(addressTable);
+    }
+
+    private void addItems(Document document, InvoiceDocument invoice) throws DocumentException {
+        PdfPTable itemsTable = new PdfPTable(5);
+        itemsTable.setWidthPercentage(100);
+        itemsTable.setWidths(new float[] { 0.5f, 3, 0.8f, 1.2f, 1.5f });
+        itemsTable.setSpacingAfter(20);
+
+        for (String header : ITEM_HEADERS) {
+            PdfPCell headerCell = new PdfPCell(new Phrase(header, TABLE_HEADER));
+            headerCell.setBackgroundColor(PRIMARY);
+            headerCell.setPadding(8);
+            headerCell.setHorizontalAlignment(Element.ALIGN_LEFT);
+            if (header.equals("QTY")) {
+                headerCell.setHorizontalAlignment(Element.ALIGN_CENTER);
+            } else if (header.equals("UNIT PRICE") || header.equals("AMOUNT")) {
+                headerCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+            }
+            itemsTable.addCell(headerCell);
+        }
+
+        int index = 1;
+        for (InvoiceDocument.Line line : invoice.lines()) {
+            Color background = index % 2 == 0 ? LIGHT_GRAY : Color.WHITE;
+
+            itemsTable.addCell(itemCell(String.valueOf(index), NORMAL, Element.ALIGN_LEFT, background));
+            itemsTable.addCell(itemCell(line.productName(), BOLD, Element.ALIGN_LEFT, background));
+            itemsTable.addCell(itemCell(String.valueOf(line.quantity()), NORMAL, Element.ALIGN_CENTER, background));
+            itemsTable.addCell(itemCell("₹" + line.price(), NORMAL, Element.ALIGN_RIGHT, background));
+            itemsTable.addCell(itemCell("₹" + line.subtotal(), BOLD, Element.ALIGN_RIGHT, background));
+
+            index++;
+        }
+
+        document.add(itemsTable);
+    }
+
+    private void addSummary(Document document, InvoiceDocument invoice) throws DocumentException {
+        PdfPTable summaryTable = new PdfPTable(2);
+        summaryTable.setWidthPercentage(40);
+        summaryTable.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        summaryTable.setWidths(new float[] { 1.5f, 1 });
+
+        summaryTable.addCell(summaryCell("Subtotal:", NORMAL, false));
+        summaryTable.addCell(summaryCell("₹" + invoice.subtotal(), BOLD, true));
+
+        summaryTable.addCell(summaryCell("GST (18%):", NORMAL, false));
+        summaryTable.addCell(summaryCell("₹" + invoice.tax(), BOLD, true));
+
+        summaryTable.addCell(summaryCell("Shipping:", NORMAL, false));
+        summaryTable.addCell(summaryCell(
+                invoice.shippingCost().compareTo(BigDecimal.ZERO) > 0 ? "₹" + invoice.shippingCost() : "FREE",
+                BOLD, true));
+
+        PdfPCell totalLabelCell = new PdfPCell(new Phrase("TOTAL:", TOTAL));
+        totalLabelCell.setBackgroundColor(PRIMARY);
+        totalLabelCell.setPadding(10);
+        totalLabelCell.setHorizontalAlignment(Element.ALIGN_LEFT);
+        summaryTable.addCell(totalLabelCell);
+
+        PdfPCell totalAmountCell = new PdfPCell(new Phrase("₹" + invoice.totalAmount(), TOTAL));
+        totalAmountCell.setBackgroundColor(PRIMARY);
+        totalAmountCell.setPadding(10);
+        totalAmountCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        summaryTable.addCell(totalAmountCell);
+
+        summaryTable.setSpacingAfter(30);
+        document.add(summaryTable);
+    }
+
+    private void addFooter(Document document, InvoiceDocument invoice) throws DocumentException {
+        Paragraph paymentInfo = new Paragraph("Payment Information", BOLD);
+        paymentInfo.setSpacingAfter(5);
+        document.add(paymentInfo);
+
+        Paragraph paymentDetails = new Paragraph(
+                "Payment Method: " + invoice.paymentMethod() + " | Order Status: " + invoice.status(), NORMAL);
+        paymentDetails.setSpacingAfter(25);
+        document.add(paymentDetails);
+
+        Paragraph thankYou = new Paragraph("🎉 Thank you for shopping with us!", HEADING);
+        thankYou.setAlignment(Element.ALIGN_CENTER);
+        thankYou.setSpacingAfter(10);
+        document.add(thankYou);
+
+        Paragraph footerText = new Paragraph(
+                "We appreciate your business and look forward to serving you again.\nNeed help? Contact us at muwas2021@gmail.com or call +91 9894722186",
+                SMALL);
+        footerText.setAlignment(Element.ALIGN_CENTER);
+        document.add(footerText);
+    }
+
+    private PdfPCell itemCell(String text, Font font, int alignment, Color background) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, font));
+        cell.setPadding(8);
+        cell.setHorizontalAlignment(alignment);
+        cell.setBackgroundColor(background);
+        return cell;
+    }
+
+    private PdfPCell summaryCell(String text, Font font, boolean alignRight) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, font));
+        cell.setBorder(Rectangle.NO_BORDER);
+        cell.setPadding(5);
+        if (alignRight) {
+            cell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        }
+        return cell;
+    }
+}
@@ -0,0 +1,332 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.entity.Order;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Invoice subsystem: renders invoice PDFs on the bounded invoice pool and keeps
+ * them in a content-addressed disk cache.
+ *
+ * Files are named {orderId}-{contentHash}.pdf, so a cached invoice is valid for
+ * exactly the order state it was rendered from; any printed change yields a new
+ * file and the stale one is removed. Repeat downloads, email attachments and
+ * admin exports only hash the snapshot and stream the file.
+ *
+ * The cache is bounded: a cache hit refreshes the file's modification time, and
+ * a scheduled sweep removes files not used within the retention window, then the
+ * least recently used ones until the directory fits its size cap. An evicted
+ * invoice is simply rendered again on its next download.
+ */
+@Service
+@Slf4j
+public class InvoiceService {
+
+    private final InvoiceRenderer invoiceRenderer;
+    private final ThreadPoolTaskExecutor invoiceExecutor;
+
+    @Value("${app.invoice.cache-dir:${java.io.tmpdir}/perfume-shop/invoices}")
+    private String cacheDir;
+
+    @Value("${app.invoice.cache-max-age-days:30}")
+    private long maxAgeDays;
+
+    @Value("${app.invoice.cache-max-size-mb:1024}")
+    private long maxSizeMb;
+
+    private Path cacheRoot;
+
+    // Renders in progress, keyed by file name, so concurrent requests share one render
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public InvoiceService(InvoiceRenderer invoiceRenderer,
+                          @Qualifier("invoiceExecutor") ThreadPoolTaskExecutor invoiceExecutor) {
+        this.invoiceRenderer = invoiceRenderer;
+        this.invoiceExecutor = invoiceExecutor;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        cacheRoot = Paths.get(cacheDir);
+        Files.createDirectories(cacheRoot);
+        log.info("Invoice cache directory: {}", cacheRoot.toAbsolutePath());
+    }
+
+    /**
+     * Invoices are pre-rendered once an order reaches a state whose invoice will not change.
+     */
+    public static boolean isFinalState(Order.OrderStatus status) {
+        return status == Order.OrderStatus.DELIVERED;
+    }
+
+    /**
+     * Get the cached invoice file for an order, rendering it on the invoice pool if needed.
+     * Must be called while the order's items and user can still be loaded.
+     *
+     * @param order Order to invoice
+     * @return Path to the rendered PDF
+     */
+    public Path getInvoice(Order order) {
+        return getInvoice(InvoiceDocument.from(order));
+    }
+
+    /**
+     * Get the cached invoice file for a snapshot, rendering it on the invoice pool if needed.
+     */
+    public Path getInvoice(InvoiceDocument invoice) {
+        try {
+            return getInvoiceAsync(invoice).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Failed to generate invoice PDF", cause);
+        }
+    }
+
+    /**
+     * Resolve a snapshot to its cached file without blocking the caller.
+     * Cache hits complete immediately; misses render on the invoice pool.
+     * If the pool is saturated the render runs on the calling thread.
+     */
+    public CompletableFuture<Path> getInvoiceAsync(InvoiceDocument invoice) {
+        return resolve(invoice, false);
+    }
+
+    private CompletableFuture<Path> resolve(InvoiceDocument invoice, boolean inline) {
+        String fileName = invoice.orderId() + "-" + invoice.contentHash() + ".pdf";
+        Path target = cacheRoot.resolve(fileName);
+
+        if (Files.exists(target)) {
+            touch(target);
+            return CompletableFuture.completedFuture(target);
+        }
+
+        CompletableFuture<Path> render = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(fileName, render);
+        if (running != null) {
+            return running;
+        }
+
+        Runnable task = () -> {
+            try {
+                render.complete(renderToCache(invoice, target));
+            } catch (Throwable t) {
+                render.completeExceptionally(t);
+            } finally {
+                inFlight.remove(fileName, render);
+            }
+        };
+
+        if (inline) {
+            task.run();
+            return render;
+        }
+        try {
+            invoiceExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("Invoice pool saturated, rendering {} inline", invoice.orderNumber());
+            task.run();
+        }
+        return render;
+    }
+
+    /**
+     * Queue a background render once the current transaction commits, so the
+     * worker sees the committed state. Skipped silently when the pool is full -
+     * the invoice is then rendered on first download instead.
+     */
+    public void prerenderAfterCommit(Order order) {
+        InvoiceDocument invoice = InvoiceDocument.from(order);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    prerender(invoice);
+                }
+            });
+        } else {
+            prerender(invoice);
+        }
+    }
+
+    private void prerender(InvoiceDocument invoice) {
+        String fileName = invoice.orderId() + "-" + invoice.contentHash() + ".pdf";
+        if (Files.exists(cacheRoot.resolve(fileName)) || inFlight.containsKey(fileName)) {
+            return;
+        }
+        try {
+            invoiceExecutor.execute(() -> resolve(invoice, true).whenComplete((path, error) -> {
+                if (error != null) {
+                    log.warn("Background invoice render failed for order {}: {}",
+                            invoice.orderNumber(), error.getMessage());
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            log.debug("Invoice pool saturated, skipping pre-render for order {}", invoice.orderNumber());
+        }
+    }
+
+    /**
+     * Render into a temp file in the cache directory, then atomically move it into place.
+     * Older renders of the same order are removed afterwards.
+     */
+    private Path renderToCache(InvoiceDocument invoice, Path target) {
+        if (Files.exists(target)) {
+            return target;
+        }
+
+        long start = System.currentTimeMillis();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(cacheRoot, "invoice-", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                invoiceRenderer.render(invoice, out);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Rendered invoice for order {} in {} ms", invoice.orderNumber(),
+                    System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write invoice for order " + invoice.orderNumber(), e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Best effort - stray temp files are harmless
+                }
+            }
+        }
+
+        evictStaleRenders(invoice.orderId(), target);
+        return target;
+    }
+
+    private void evictStaleRenders(Long orderId, Path current) {
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(cacheRoot, orderId + "-*.pdf")) {
+            for (Path path : stale) {
+                if (!path.equals(current)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Could not evict stale invoices for order {}: {}", orderId, e.getMessage());
+        }
+    }
+
+    /**
+     * Bound the disk cache: drop invoices unused for longer than the retention
+     * window and stray temp files, then the least recently used invoices until
+     * the cache fits its size cap.
+     */
+    @Scheduled(cron = "${app.invoice.cache-sweep-cron:0 0 5 * * *}")
+    public void enforceRetention() {
+        Instant expiredBefore = Instant.now().minus(Duration.ofDays(maxAgeDays));
+        // Renders finish in seconds; an hour-old temp file belongs to a crashed render
+        Instant abandonedBefore = Instant.now().minus(Duration.ofHours(1));
+        long maxBytes = maxSizeMb * 1024 * 1024;
+
+        List<CachedFile> kept = new ArrayList<>();
+        long totalBytes = 0;
+        int removed = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheRoot)) {
+            for (Path path : files) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue; // removed concurrently
+                }
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                Instant lastUsed = attributes.lastModifiedTime().toInstant();
+                String name = path.getFileName().toString();
+
+                boolean expired = name.endsWith(".pdf")
+                        ? lastUsed.isBefore(expiredBefore)
+                        : name.endsWith(".tmp") && lastUsed.isBefore(abandonedBefore);
+                if (expired) {
+                    removed += delete(path) ? 1 : 0;
+                } else if (name.endsWith(".pdf")) {
+                    kept.add(new CachedFile(path, attributes.size(), lastUsed));
+                    totalBytes += attributes.size();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Invoice cache sweep failed: {}", e.getMessage());
+            return;
+        }
+
+        if (totalBytes > maxBytes) {
+            kept.sort(Comparator.comparing(CachedFile::lastUsed));
+            for (CachedFile file : kept) {
+                if (totalBytes <= maxBytes) {
+                    break;
+                }
+                if (delete(file.path())) {
+                    totalBytes -= file.size();
+                    removed++;
+                }
+            }
+        }
+
+        if (removed > 0) {
+            log.info("Invoice cache sweep removed {} files, {} MB kept", removed, totalBytes / (1024 * 1024));
+        }
+    }
+
+    /**
+     * Mark a cached invoice as recently used, for the size-capped sweep
+     */
+    private void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.debug("Could not touch cached invoice {}: {}", path.getFileName(), e.getMessage());
+        }
+    }
+
+    private boolean delete(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Could not remove cached invoice {}: {}", path.getFileName(), e.getMessage());
+            return false;
+        }
+    }
+
+    private record CachedFile(Path path, long size, Instant lastUsed) {
+    }
+}
@@ -0,0 +1,34 @@
+package com.perfume.shop.service;
+
+import com.lowagie.text.Font;
+
+import java.awt.Color;
+
+/**
+ * Colors and fonts used by the invoice layout.
+ *
+ * Created once and shared by every render. Treat them as read-only:
+ * OpenPDF only reads font and color settings while laying out text.
+ */
+final class InvoiceStyles {
+
+    // Application theme
+    static final Color PRIMARY = new Color(26, 32, 44); // Deep Slate
+    static final Color DARK = new Color(17, 24, 39);
+    static final Color GRAY = new Color(107, 114, 128);
+    static final Color LIGHT_GRAY = new Color(243, 244, 246);
+    static final Color BILL_TO_BACKGROUND = new Color(250, 245, 255);
+    static final Color SHIP_TO_BACKGROUND = new Color(255, 247, 237);
+
+    static final Font TITLE = new Font(Font.HELVETICA, 32, Font.BOLD, PRIMARY);
+    static final Font SUBTITLE = new Font(Font.HELVETICA, 11, Font.NORMAL, GRAY);
+    static final Font HEADING = new Font(Font.HELVETICA, 14, Font.BOLD, DARK);
+    static final Font NORMAL = new Font(Font.HELVETICA, 10, Font.NORMAL, DARK);
+    static final Font BOLD = new Font(Font.HELVETICA, 10, Font.BOLD, DARK);
+    static final Font SMALL = new Font(Font.HELVETICA, 8, Font.NORMAL, GRAY);
+    static final Font TABLE_HEADER = new Font(Font.HELVETICA, 9, Font.BOLD, Color.WHITE);
+    static final Font TOTAL = new Font(Font.HELVETICA, 13, Font.BOLD, Color.WHITE);
+
+    private InvoiceStyles() {
+    }
+}
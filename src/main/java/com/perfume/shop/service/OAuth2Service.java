@@ -4,9 +4,12 @@ import com.perfume.shop.dto.AuthResponse;
 import com.perfume.shop.entity.User;
 import com.perfume.shop.repository.UserRepository;
 import com.perfume.shop.security.JwtService;
+import com.perfume.shop.security.UserPrincipalCache;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.HttpEntity;
@@ -19,6 +22,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
@@ -27,8 +33,23 @@ public class OAuth2Service {
 
     private final UserRepository userRepository;
     private final JwtService jwtService;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final UserPrincipalCache principalCache;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private RestTemplate restTemplate;
+    private Semaphore providerCalls;
+
+    @Value("${app.oauth.client.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    @Value("${app.oauth.client.read-timeout-ms:5000}")
+    private int readTimeoutMs;
+
+    // Bounds provider calls when request threads are virtual and no longer limit them
+    @Value("${app.oauth.client.max-concurrent-calls:20}")
+    private int maxConcurrentCalls;
+
+    @Value("${app.oauth.client.wait-ms:500}")
+    private long callWaitMs;
 
     @Value("${google.client-secret:}")
     private String googleClientSecret;
@@ -39,6 +60,15 @@ public class OAuth2Service {
     @Value("${microsoft.client-secret:}")
     private String microsoftClientSecret;
 
+    @PostConstruct
+    public void init() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMs);
+        requestFactory.setReadTimeout(readTimeoutMs);
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.providerCalls = new Semaphore(maxConcurrentCalls);
+    }
+
     /**
      * Authenticate with Google OAuth2 token
      */
@@ -48,7 +78,8 @@ public class OAuth2Service {
             
             // Validate token with Google
             String googleTokenInfoUrl = "https://oauth2.googleapis.com/tokeninfo?id_token=" + idToken;
-            ResponseEntity<String> response = restTemplate.getForEntity(googleTokenInfoUrl, String.class);
+            ResponseEntity<String> response = callProvider(
+                    () -> restTemplate.getForEntity(googleTokenInfoUrl, String.class));
             
             JsonNode tokenInfo = objectMapper.readTree(response.getBody());
             String email = tokenInfo.get("email").asText();
@@ -72,7 +103,8 @@ public class OAuth2Service {
             
             // Get user info from Facebook
             String facebookGraphUrl = "https://graph.facebook.com/me?fields=id,email,name,picture&access_token=" + accessToken;
-            ResponseEntity<String> response = restTemplate.getForEntity(facebookGraphUrl, String.class);
+            ResponseEntity<String> response = callProvider(
+                    () -> restTemplate.getForEntity(facebookGraphUrl, String.class));
             
             JsonNode userInfo = objectMapper.readTree(response.getBody());
             String email = userInfo.get("email").asText();
@@ -100,10 +132,10 @@ public class OAuth2Service {
             headers.setBearerAuth(accessToken);
             HttpEntity<String> entity = new HttpEntity<>(headers);
             
-            ResponseEntity<String> response = restTemplate.getForEntity(
+            ResponseEntity<String> response = callProvider(() -> restTemplate.getForEntity(
                 "https://graph.microsoft.com/v1.0/me",
                 String.class
-            );
+            ));
             
             JsonNode userInfo = objectMapper.readTree(response.getBody());
             String email = userInfo.get("userPrincipalName").asText();
@@ -117,6 +149,27 @@ public class OAuth2Service {
         }
     }
 
+    /**
+     * Run a provider call within the concurrency limit
+     */
+    private <T> T callProvider(Supplier<T> call) {
+        boolean permitted;
+        try {
+            permitted = providerCalls.tryAcquire(callWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permitted = false;
+        }
+        if (!permitted) {
+            throw new RuntimeException("OAuth provider is busy, please try again");
+        }
+        try {
+            return call.get();
+        } finally {
+            providerCalls.release();
+        }
+    }
+
     /**
      * Find existing OAuth user or create new one
      */
@@ -157,6 +210,7 @@ public class OAuth2Service {
             }
 
             user = userRepository.save(user);
+            principalCache.evict(email);
             log.info("User authenticated via {}: {}", provider, email);
 
             // Generate JWT token
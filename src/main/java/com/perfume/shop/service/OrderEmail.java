@@ -0,0 +1,74 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.entity.OrderItem;
+import com.perfume.shop.entity.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Immutable snapshot of everything an order email prints (and its invoice attachment).
+ *
+ * Captured inside a short read-only transaction, so building and sending the
+ * message happens with no transaction open and no database connection held.
+ */
+public record OrderEmail(
+        Long orderId,
+        String orderNumber,
+        Order.OrderStatus status,
+        LocalDateTime createdAt,
+        String trackingNumber,
+        String customerFirstName,
+        String customerEmail,
+        String shippingAddress,
+        String shippingCity,
+        String shippingCountry,
+        String shippingZipCode,
+        String shippingPhone,
+        List<Item> items,
+        BigDecimal subtotal,
+        BigDecimal tax,
+        BigDecimal shippingCost,
+        BigDecimal totalAmount,
+        InvoiceDocument invoice
+) {
+
+    public record Item(String productName, int quantity, BigDecimal price) {
+    }
+
+    public static OrderEmail from(Order order) {
+        User user = order.getUser();
+
+        List<Item> items = order.getItems() == null ? List.of() : order.getItems().stream()
+                .map(OrderEmail::toItem)
+                .toList();
+
+        return new OrderEmail(
+                order.getId(),
+                order.getOrderNumber(),
+                order.getStatus(),
+                order.getCreatedAt(),
+                order.getTrackingNumber(),
+                user.getFirstName(),
+                user.getEmail(),
+                order.getShippingAddress(),
+                order.getShippingCity(),
+                order.getShippingCountry(),
+                order.getShippingZipCode(),
+                order.getShippingPhone(),
+                items,
+                order.getSubtotal(),
+                order.getTax(),
+                order.getShippingCost(),
+                order.getTotalAmount(),
+                InvoiceDocument.from(order));
+    }
+
+    private static Item toItem(OrderItem item) {
+        String productName = item.getProduct() != null
+                ? item.getProduct().getName() : InvoiceDocument.UNAVAILABLE_PRODUCT;
+        return new Item(productName, item.getQuantity(), item.getPrice());
+    }
+}
@@ -0,0 +1,126 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.repository.OrderHistoryBatchRepository;
+import com.perfume.shop.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Scheduled expiry of unpaid orders.
+ *
+ * Orders stay PLACED until Razorpay payment is confirmed; shoppers who abandon
+ * the payment popup leave them behind. This job cancels PLACED orders older than
+ * the configured window that never got a Razorpay order. Orders that did may
+ * have been paid at the gateway with both confirmations lost, so payment
+ * reconciliation decides on them; they only expire here after the much longer
+ * gateway window, once reconciliation has stopped looking at them. Work is done
+ * in bounded batches, each in its own transaction:
+ * - rows are claimed with FOR UPDATE SKIP LOCKED, so several nodes can run the
+ *   job at once and orders locked by a payment confirmation are left alone
+ * - one set-based UPDATE changes the status of the whole batch
+ * - history rows are written with one JDBC batch insert
+ *
+ * No stock is restored: stock is only deducted when payment is confirmed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderExpiryService {
+
+    static final String EXPIRY_NOTE = "Order expired - payment not completed";
+
+    private final OrderRepository orderRepository;
+    private final OrderHistoryBatchRepository orderHistoryBatchRepository;
+    private final OrderSummaryCache orderSummaryCache;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.orders.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.orders.expiry.unpaid-minutes:60}")
+    private long unpaidMinutes;
+
+    @Value("${app.orders.expiry.gateway-unpaid-hours:48}")
+    private long gatewayUnpaidHours;
+
+    @Value("${app.orders.expiry.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.orders.expiry.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    /**
+     * Expire stale unpaid orders.
+     * Runs every 5 minutes by default, bounded per run so a large backlog is drained over several runs.
+     */
+    @Scheduled(fixedDelayString = "${app.orders.expiry.poll-interval-ms:300000}", initialDelay = 120000)
+    public void expireUnpaidOrders() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(unpaidMinutes);
+        LocalDateTime gatewayCutoff = LocalDateTime.now().minusHours(gatewayUnpaidHours);
+        int total = 0;
+
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                Integer expired = transactionTemplate.execute(status -> expireBatch(cutoff, gatewayCutoff));
+                if (expired == null || expired == 0) {
+                    break;
+                }
+                total += expired;
+                if (expired < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Unpaid order expiry failed after expiring {} orders", total, e);
+        }
+
+        if (total > 0) {
+            log.info("Expired {} unpaid orders created before {}", total, cutoff);
+        }
+    }
+
+    /**
+     * Claim and cancel one batch. Must run inside a transaction.
+     *
+     * @return Number of orders expired
+     */
+    int expireBatch(LocalDateTime cutoff, LocalDateTime gatewayCutoff) {
+        List<Object[]> rows = orderRepository.lockStaleOrders(Order.OrderStatus.PLACED.name(), cutoff, gatewayCutoff,
+                batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> orderIds = new ArrayList<>(rows.size());
+        Set<Long> userIds = new HashSet<>();
+        for (Object[] row : rows) {
+            orderIds.add(((Number) row[0]).longValue());
+            userIds.add(((Number) row[1]).longValue());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int updated = orderRepository.updateStatusBulk(orderIds, List.of(Order.OrderStatus.PLACED),
+                Order.OrderStatus.CANCELLED, now);
+        orderHistoryBatchRepository.insertAll(orderIds, Order.OrderStatus.CANCELLED, "SYSTEM", EXPIRY_NOTE, now);
+
+        userIds.forEach(orderSummaryCache::evict);
+
+        log.debug("Expired batch of {} unpaid orders", updated);
+        return updated;
+    }
+}
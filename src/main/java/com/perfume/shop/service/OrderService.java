@@ -2,9 +2,12 @@ package com.perfume.shop.service;
 
 import com.perfume.shop.dto.*;
 import com.perfume.shop.entity.*;
+import com.perfume.shop.exception.PaymentGatewayException;
+import com.perfume.shop.exception.PaymentOnCancelledOrderException;
 import com.perfume.shop.repository.CartRepository;
 import com.perfume.shop.repository.OrderHistoryRepository;
 import com.perfume.shop.repository.OrderRepository;
+import com.perfume.shop.repository.PaymentRefundTaskRepository;
 import com.perfume.shop.repository.ProductRepository;
 import com.perfume.shop.repository.ProductVariantRepository;
 import com.stripe.exception.StripeException;
@@ -13,16 +16,16 @@ import com.stripe.param.PaymentIntentCreateParams;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -30,281 +33,20 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Slf4j
 public class OrderService {
-    /**
-     * Generate modern startup-style PDF invoice for an order using OpenPDF
-     */
-    public byte[] generateInvoicePdf(Order order) {
-        try {
-            com.lowagie.text.Document document = new com.lowagie.text.Document(com.lowagie.text.PageSize.A4, 50, 50, 50,
-                    50);
-            java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
-            com.lowagie.text.pdf.PdfWriter writer = com.lowagie.text.pdf.PdfWriter.getInstance(document, baos);
-            document.open();
-
-            // Define Colors - Application Theme
-            java.awt.Color primaryColor = new java.awt.Color(26, 32, 44); // Deep Slate
-            java.awt.Color accentColor = new java.awt.Color(245, 158, 11); // Warm Gold
-            java.awt.Color darkColor = new java.awt.Color(17, 24, 39);
-            java.awt.Color grayColor = new java.awt.Color(107, 114, 128);
-            java.awt.Color lightGray = new java.awt.Color(243, 244, 246);
-
-            // Define Fonts
-            com.lowagie.text.Font titleFont = new com.lowagie.text.Font(com.lowagie.text.Font.HELVETICA, 32,
-                    com.lowagie.text.Font.BOLD, primaryColor);
-            com.lowagie.text.Font subtitleFont = new com.lowagie.text.Font(com.lowagie.text.Font.HELVETICA, 11,
-                    com.lowagie.text.Font.NORMAL, grayColor);
-            com.lowagie.text.Font headingFont = new com.lowagie.text.Font(com.lowagie.text.Font.HELVETICA, 14,
-                    com.lowagie.text.Font.BOLD, darkColor);
-            com.lowagie.text.Font normalFont = new com.lowagie.text.Font(com.lowagie.text.Font.HELVETICA, 10,
-                    com.lowagie.text.Font.NORMAL, darkColor);
-            com.lowagie.text.Font boldFont = new com.lowagie.text.Font(com.lowagie.text.Font.HELVETICA, 10,
-                    com.lowagie.text.Font.BOLD, darkColor);
-            com.lowagie.text.Font smallFont = new com.lowagie.text.Font(com.lowagie.text.Font.HELVETICA, 8,
-                    com.lowagie.text.Font.NORMAL, grayColor);
-
-            // Header Section
-            com.lowagie.text.Paragraph companyName = new com.lowagie.text.Paragraph("MUWAS", titleFont);
-            companyName.setAlignment(com.lowagie.text.Element.ALIGN_LEFT);
-            document.add(companyName);
-
-            com.lowagie.text.Paragraph tagline = new com.lowagie.text.Paragraph("Luxury Fragrances & Premium Scents",
-                    subtitleFont);
-            tagline.setAlignment(com.lowagie.text.Element.ALIGN_LEFT);
-            tagline.setSpacingAfter(15);
-            document.add(tagline);
-
-            // Invoice Info Section
-            com.lowagie.text.pdf.PdfPTable headerTable = new com.lowagie.text.pdf.PdfPTable(2);
-            headerTable.setWidthPercentage(100);
-            headerTable.setWidths(new float[] { 1, 1 });
-
-            // Company Contact Details
-            com.lowagie.text.pdf.PdfPCell companyCell = new com.lowagie.text.pdf.PdfPCell();
-            companyCell.setBorder(com.lowagie.text.Rectangle.NO_BORDER);
-            companyCell.addElement(new com.lowagie.text.Paragraph("No 3, Modi Ibrahim Street, Ambur, Tamil Nadu 635802", smallFont));
-            companyCell.addElement(new com.lowagie.text.Paragraph("Phone: +91 9629004158", smallFont));
-            companyCell.addElement(new com.lowagie.text.Paragraph("Email: muwas2021@gmail.com", smallFont));
-            companyCell
-                    .addElement(new com.lowagie.text.Paragraph("GSTIN: 33AAAAA0000A1Z5 | PAN: AAAAA0000A", smallFont));
-            headerTable.addCell(companyCell);
-
-            // Invoice Details
-            com.lowagie.text.pdf.PdfPCell invoiceCell = new com.lowagie.text.pdf.PdfPCell();
-            invoiceCell.setBorder(com.lowagie.text.Rectangle.NO_BORDER);
-            invoiceCell.setHorizontalAlignment(com.lowagie.text.Element.ALIGN_RIGHT);
-            com.lowagie.text.Paragraph taxInvoice = new com.lowagie.text.Paragraph("TAX INVOICE", headingFont);
-            taxInvoice.setAlignment(com.lowagie.text.Element.ALIGN_RIGHT);
-            invoiceCell.addElement(taxInvoice);
-            invoiceCell.addElement(new com.lowagie.text.Paragraph("Invoice No: " + order.getOrderNumber(), boldFont));
-            invoiceCell.addElement(new com.lowagie.text.Paragraph(
-                    "Date: " + order.getCreatedAt().toString().substring(0, 10), normalFont));
-            invoiceCell.addElement(new com.lowagie.text.Paragraph("Status: " + order.getStatus(), normalFont));
-            headerTable.addCell(invoiceCell);
-
-            headerTable.setSpacingAfter(20);
-            document.add(headerTable);
-
-            // Bill To & Ship To Section
-            com.lowagie.text.pdf.PdfPTable addressTable = new com.lowagie.text.pdf.PdfPTable(2);
-            addressTable.setWidthPercentage(100);
-            addressTable.setWidths(new float[] { 1, 1 });
-            addressTable.setSpacingAfter(20);
-
-            // Bill To
-            com.lowagie.text.pdf.PdfPCell billToCell = new com.lowagie.text.pdf.PdfPCell();
-            billToCell.setBackgroundColor(new java.awt.Color(250, 245, 255));
-            billToCell.setPadding(10);
-            billToCell.addElement(new com.lowagie.text.Paragraph("BILL TO", boldFont));
-            String customerName = order.getUser().getFirstName() + " "
-                    + (order.getUser().getLastName() != null ? order.getUser().getLastName() : "");
-            billToCell.addElement(new com.lowagie.text.Paragraph(customerName, headingFont));
-            billToCell.addElement(new com.lowagie.text.Paragraph(order.getUser().getEmail(), normalFont));
-            if (order.getUser().getPhoneNumber() != null) {
-                billToCell.addElement(new com.lowagie.text.Paragraph(order.getUser().getPhoneNumber(), normalFont));
-            }
-            addressTable.addCell(billToCell);
-
-            // Ship To
-            com.lowagie.text.pdf.PdfPCell shipToCell = new com.lowagie.text.pdf.PdfPCell();
-            shipToCell.setBackgroundColor(new java.awt.Color(255, 247, 237));
-            shipToCell.setPadding(10);
-            shipToCell.addElement(new com.lowagie.text.Paragraph("SHIP TO", boldFont));
-            shipToCell.addElement(new com.lowagie.text.Paragraph(customerName, headingFont));
-            shipToCell.addElement(new com.lowagie.text.Paragraph(order.getShippingAddress(), normalFont));
-            shipToCell.addElement(new com.lowagie.text.Paragraph(
-                    order.getShippingCity() + ", " + order.getShippingZipCode(), normalFont));
-            shipToCell.addElement(new com.lowagie.text.Paragraph(order.getShippingCountry(), normalFont));
-            if (order.getShippingPhone() != null) {
-                shipToCell.addElement(new com.lowagie.text.Paragraph("Phone: " + order.getShippingPhone(), normalFont));
-            }
-            addressTable.addCell(shipToCell);
-
-            document.add(addressTable);
-
-            // Items Table
-            com.lowagie.text.pdf.PdfPTable itemsTable = new com.lowagie.text.pdf.PdfPTable(5);
-            itemsTable.setWidthPercentage(100);
-            itemsTable.setWidths(new float[] { 0.5f, 3, 0.8f, 1.2f, 1.5f });
-            itemsTable.setSpacingAfter(20);
-
-            // Table Header
-            com.lowagie.text.Font tableHeaderFont = new com.lowagie.text.Font(com.lowagie.text.Font.HELVETICA, 9,
-                    com.lowagie.text.Font.BOLD, java.awt.Color.WHITE);
-            String[] headers = { "#", "PRODUCT DETAILS", "QTY", "UNIT PRICE", "AMOUNT" };
-            for (String header : headers) {
-                com.lowagie.text.pdf.PdfPCell headerCell = new com.lowagie.text.pdf.PdfPCell(
-                        new com.lowagie.text.Phrase(header, tableHeaderFont));
-                headerCell.setBackgroundColor(primaryColor);
-                headerCell.setPadding(8);
-                headerCell.setHorizontalAlignment(com.lowagie.text.Element.ALIGN_LEFT);
-                if (header.equals("QTY")) {
-                    headerCell.setHorizontalAlignment(com.lowagie.text.Element.ALIGN_CENTER);
-                } else if (header.equals("UNIT PRICE") || header.equals("AMOUNT")) {
-                    headerCell.setHorizontalAlignment(com.lowagie.text.Element.ALIGN_RIGHT);
-                }
-                itemsTable.addCell(headerCell);
-            }
-
-            // Table Items
-            int index = 1;
-            java.math.BigDecimal itemSubtotal = java.math.BigDecimal.ZERO;
-            for (OrderItem item : order.getItems()) {
-                itemSubtotal = itemSubtotal.add(item.getSubtotal());
-
-                // Index
-                com.lowagie.text.pdf.PdfPCell indexCell = new com.lowagie.text.pdf.PdfPCell(
-                        new com.lowagie.text.Phrase(String.valueOf(index), normalFont));
-                indexCell.setPadding(8);
-                indexCell.setBackgroundColor(index % 2 == 0 ? lightGray : java.awt.Color.WHITE);
-                itemsTable.addCell(indexCell);
-
-                // Product Name
-                com.lowagie.text.pdf.PdfPCell nameCell = new com.lowagie.text.pdf.PdfPCell(
-                        new com.lowagie.text.Phrase(item.getProduct().getName(), boldFont));
-                nameCell.setPadding(8);
-                nameCell.setBackgroundColor(index % 2 == 0 ? lightGray : java.awt.Color.WHITE);
-                itemsTable.addCell(nameCell);
-
-                // Quantity
-                com.lowagie.text.pdf.PdfPCell qtyCell = new com.lowagie.text.pdf.PdfPCell(
-                        new com.lowagie.text.Phrase(String.valueOf(item.getQuantity()), normalFont));
-                qtyCell.setPadding(8);
-                qtyCell.setHorizontalAlignment(com.lowagie.text.Element.ALIGN_CENTER);
-                qtyCell.setBackgroundColor(index % 2 == 0 ? lightGray : java.awt.Color.WHITE);
-                itemsTable.addCell(qtyCell);
-
-                // Price
-                com.lowagie.text.pdf.PdfPCell priceCell = new com.lowagie.text.pdf.PdfPCell(
-                        new com.lowagie.text.Phrase("₹" + item.getPrice(), normalFont));
-                priceCell.setPadding(8);
-                priceCell.setHorizontalAlignment(com.lowagie.text.Element.ALIGN_RIGHT);
-                priceCell.setBackgroundColor(index % 2 == 0 ? lightGray : java.awt.Color.WHITE);
-                itemsTable.addCell(priceCell);
-
-                // Amount
-                com.lowagie.text.pdf.PdfPCell amountCell = new com.lowagie.text.pdf.PdfPCell(
-                        new com.lowagie.text.Phrase("₹" + item.getSubtotal(), boldFont));
-                amountCell.setPadding(8);
-                amountCell.setHorizontalAlignment(com.lowagie.text.Element.ALIGN_RIGHT);
-                amountCell.setBackgroundColor(index % 2 == 0 ? lightGray : java.awt.Color.WHITE);
-                itemsTable.addCell(amountCell);
-
-                index++;
-            }
-
-            document.add(itemsTable);
-
-            // Summary Section
-            com.lowagie.text.pdf.PdfPTable summaryTable = new com.lowagie.text.pdf.PdfPTable(2);
-            summaryTable.setWidthPercentage(40);
-            summaryTable.setHorizontalAlignment(com.lowagie.text.Element.ALIGN_RIGHT);
-            summaryTable.setWidths(new float[] { 1.5f, 1 });
-
-            // Subtotal
-            summaryTable.addCell(createSummaryCell("Subtotal:", normalFont, false));
-            summaryTable.addCell(createSummaryCell("₹" + order.getSubtotal(), boldFont, true));
-
-            // Tax
-            summaryTable.addCell(createSummaryCell("GST (18%):", normalFont, false));
-            summaryTable.addCell(createSummaryCell("₹" + order.getTax(), boldFont, true));
-
-            // Shipping
-            summaryTable.addCell(createSummaryCell("Shipping:", normalFont, false));
-            summaryTable.addCell(createSummaryCell(
-                    order.getShippingCost().compareTo(java.math.BigDecimal.ZERO) > 0 ? "₹" + order.getShippingCost()
-                            : "FREE",
-                    boldFont, true));
-
-            // Total
-            com.lowagie.text.Font totalFont = new com.lowagie.text.Font(com.lowagie.text.Font.HELVETICA, 13,
-                    com.lowagie.text.Font.BOLD, java.awt.Color.WHITE);
-            com.lowagie.text.pdf.PdfPCell totalLabelCell = new com.lowagie.text.pdf.PdfPCell(
-                    new com.lowagie.text.Phrase("TOTAL:", totalFont));
-            totalLabelCell.setBackgroundColor(primaryColor);
-            totalLabelCell.setPadding(10);
-            totalLabelCell.setHorizontalAlignment(com.lowagie.text.Element.ALIGN_LEFT);
-            summaryTable.addCell(totalLabelCell);
-
-            com.lowagie.text.pdf.PdfPCell totalAmountCell = new com.lowagie.text.pdf.PdfPCell(
-                    new com.lowagie.text.Phrase("₹" + order.getTotalAmount(), totalFont));
-            totalAmountCell.setBackgroundColor(primaryColor);
-            totalAmountCell.setPadding(10);
-            totalAmountCell.setHorizontalAlignment(com.lowagie.text.Element.ALIGN_RIGHT);
-            summaryTable.addCell(totalAmountCell);
-
-            summaryTable.setSpacingAfter(30);
-            document.add(summaryTable);
-
-            // Payment Information
-            com.lowagie.text.Paragraph paymentInfo = new com.lowagie.text.Paragraph("Payment Information", boldFont);
-            paymentInfo.setSpacingAfter(5);
-            document.add(paymentInfo);
-
-            com.lowagie.text.Paragraph paymentDetails = new com.lowagie.text.Paragraph(
-                    "Payment Method: " + order.getPaymentMethod() + " | Order Status: " + order.getStatus(),
-                    normalFont);
-            paymentDetails.setSpacingAfter(25);
-            document.add(paymentDetails);
-
-            // Footer
-            com.lowagie.text.Paragraph thankYou = new com.lowagie.text.Paragraph("🎉 Thank you for shopping with us!",
-                    headingFont);
-            thankYou.setAlignment(com.lowagie.text.Element.ALIGN_CENTER);
-            thankYou.setSpacingAfter(10);
-            document.add(thankYou);
-
-            com.lowagie.text.Paragraph footerText = new com.lowagie.text.Paragraph(
-                    "We appreciate your business and look forward to serving you again.\nNeed help? Contact us at muwas2021@gmail.com or call +91 9894722186",
-                    smallFont);
-            footerText.setAlignment(com.lowagie.text.Element.ALIGN_CENTER);
-            document.add(footerText);
-
-            document.close();
-            return baos.toByteArray();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate invoice PDF", e);
-        }
-    }
-
-    private com.lowagie.text.pdf.PdfPCell createSummaryCell(String text, com.lowagie.text.Font font,
-            boolean alignRight) {
-        com.lowagie.text.pdf.PdfPCell cell = new com.lowagie.text.pdf.PdfPCell(new com.lowagie.text.Phrase(text, font));
-        cell.setBorder(com.lowagie.text.Rectangle.NO_BORDER);
-        cell.setPadding(5);
-        if (alignRight) {
-            cell.setHorizontalAlignment(com.lowagie.text.Element.ALIGN_RIGHT);
-        }
-        return cell;
-    }
 
     private final OrderRepository orderRepository;
     private final CartRepository cartRepository;
     private final ProductRepository productRepository;
     private final ProductVariantRepository productVariantRepository;
     private final OrderHistoryRepository orderHistoryRepository;
-    private final EmailService emailService;
+    private final OutboxService outboxService;
     private final RazorpayService razorpayService;
     private final CouponService couponService;
+    private final InvoiceService invoiceService;
+    private final OrderSummaryCache orderSummaryCache;
+    private final PricingEngine pricingEngine;
+    private final CartStore cartStore;
+    private final PaymentRefundTaskRepository paymentRefundTaskRepository;
 
     @Value("${app.stripe.api-key}")
     private String stripeApiKey;
@@ -312,9 +54,6 @@ public class OrderService {
     @Value("${app.razorpay.key-id}")
     private String razorpayKeyId;
 
-    private static final BigDecimal TAX_RATE = new BigDecimal("0.18"); // 18% GST
-    private static final BigDecimal SHIPPING_COST = BigDecimal.ZERO; // No delivery cost for now
-
     /**
      * Transactional checkout flow with Razorpay integration.
      * Stock validation and price locking are done, but stock is NOT deducted until
@@ -326,7 +65,8 @@ public class OrderService {
     public RazorpayOrderResponse createOrder(User user, CheckoutRequest request) {
         log.info("Creating order for user: {}", user.getId());
 
-        // Step 1: Retrieve and validate cart
+        // Step 1: Write any pending cart changes, then retrieve and validate cart
+        cartStore.flush(user.getId());
         Cart cart = cartRepository.findByUserId(user.getId())
                 .orElseThrow(() -> new RuntimeException("Cart not found"));
 
@@ -394,26 +134,20 @@ public class OrderService {
             item.setPrice(currentPrice);
         }
 
-        // Step 5: Calculate totals with locked prices
-        BigDecimal subtotal = cart.getItems().stream()
-                .map(CartItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal tax = subtotal.multiply(TAX_RATE);
-        BigDecimal actualShippingCost = SHIPPING_COST;
-        BigDecimal total = subtotal.add(tax).add(actualShippingCost);
+        // Step 5: Calculate subtotal with locked prices (in paise, see PricingEngine)
+        long subtotalPaise = pricingEngine.subtotal(cart.getItems(), CartItem::getPrice, CartItem::getQuantity);
 
         // Step 5.5: Apply coupon discount if provided
-        BigDecimal discount = BigDecimal.ZERO;
+        long discountPaise = 0;
         String appliedCouponCode = null;
         if (request.getCouponCode() != null && !request.getCouponCode().trim().isEmpty()) {
             try {
-                var couponValidation = couponService.validateCoupon(request.getCouponCode(), subtotal, user);
+                var couponValidation = couponService.validateCoupon(request.getCouponCode(),
+                        PricingEngine.toRupees(subtotalPaise), user);
                 if (couponValidation.getValid()) {
-                    discount = couponValidation.getDiscountAmount();
-                    total = total.subtract(discount);
+                    discountPaise = PricingEngine.toPaise(couponValidation.getDiscountAmount());
                     appliedCouponCode = request.getCouponCode();
-                    log.info("Coupon {} applied. Discount: {}", appliedCouponCode, discount);
+                    log.info("Coupon {} applied. Discount: {}", appliedCouponCode, couponValidation.getDiscountAmount());
                 }
             } catch (Exception e) {
                 log.warn("Coupon validation failed: {}", e.getMessage());
@@ -421,6 +155,8 @@ public class OrderService {
             }
         }
 
+        PricingEngine.Totals totals = pricingEngine.price(subtotalPaise, discountPaise);
+
         // Step 6: Generate unique order number
         String orderNumber = generateOrderNumber();
 
@@ -430,12 +166,12 @@ public class OrderService {
                 .customerName(user.getFirstName() + (user.getLastName() != null ? " " + user.getLastName() : ""))
                 .customerEmail(user.getEmail())
                 .orderNumber(orderNumber)
-                .subtotal(subtotal)
-                .tax(tax)
-                .shippingCost(actualShippingCost)
-                .discount(discount)
+                .subtotal(totals.subtotalAmount())
+                .tax(totals.taxAmount())
+                .shippingCost(totals.shippingAmount())
+                .discount(totals.discountAmount())
                 .couponCode(appliedCouponCode)
-                .totalAmount(total)
+                .totalAmount(totals.totalAmount())
                 .status(Order.OrderStatus.PLACED)
                 .shippingRecipientName(request.getRecipientName())
                 .shippingAddress(request.getShippingAddress())
@@ -464,11 +200,12 @@ public class OrderService {
 
         // Step 9: Persist order (stock not deducted yet)
         order = orderRepository.save(order);
-        log.info("Order created: {} with total: {}", orderNumber, total);
+        log.info("Order created: {} with total: {}", orderNumber, order.getTotalAmount());
+        orderSummaryCache.evict(user.getId());
 
         // Step 10: Create Razorpay Order
-        // Convert amount to paise (multiply by 100 for INR)
-        Long amountInPaise = total.multiply(new BigDecimal("100")).longValue();
+        // Razorpay takes the amount in paise - use the computed total directly, no re-conversion
+        Long amountInPaise = totals.total();
 
         RazorpayOrderRequest razorpayRequest = RazorpayOrderRequest.builder()
                 .amount(amountInPaise)
@@ -494,6 +231,9 @@ public class OrderService {
                     .orderNumber(orderNumber)
                     .build();
 
+        } catch (PaymentGatewayException e) {
+            log.error("Razorpay order creation failed for order: {}: {}", orderNumber, e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Razorpay order creation failed for order: {}", orderNumber, e);
             throw new RuntimeException("Payment initialization failed: " + e.getMessage());
@@ -506,16 +246,25 @@ public class OrderService {
      * Called by webhook or frontend after payment verification.
      * Atomically deducts stock and updates order status.
      * Implements comprehensive idempotency and error handling.
+     *
+     * @throws PaymentOnCancelledOrderException if the order was already cancelled; the
+     *         payment is recorded as a refund task and that record commits
      */
-    @Transactional
+    @Transactional(noRollbackFor = PaymentOnCancelledOrderException.class)
     public Order confirmPayment(String razorpayOrderId, String razorpayPaymentId) {
         log.info("Confirming payment for Razorpay order: {}", razorpayOrderId);
 
-        // Step 1: Find order by Razorpay order ID
-        Order order = orderRepository.findByRazorpayOrderId(razorpayOrderId)
+        // Step 1: Find and lock order by Razorpay order ID (serializes with unpaid-order expiry)
+        Order order = orderRepository.findByRazorpayOrderIdForUpdate(razorpayOrderId)
                 .orElseThrow(() -> new RuntimeException("Order not found for Razorpay order ID: " + razorpayOrderId));
 
-        // Step 2: Check idempotency - if already confirmed, return existing order
+        // Step 2: Check idempotency - if already confirmed, return existing order.
+        // A payment for a cancelled order (expired or payment failed) charged the customer
+        // without an order: record it for an admin to refund or reinstate, and fail the call.
+        if (order.getStatus() == Order.OrderStatus.CANCELLED) {
+            recordRefundTask(order, razorpayPaymentId);
+            throw new PaymentOnCancelledOrderException(order.getOrderNumber(), razorpayPaymentId);
+        }
         if (order.getStatus() != Order.OrderStatus.PLACED) {
             log.warn("Order {} already has status: {}. Skipping confirmation.", order.getOrderNumber(),
                     order.getStatus());
@@ -628,6 +377,7 @@ public class OrderService {
         // Step 9: Create order history entry
         createOrderHistoryEntry(order, Order.OrderStatus.CONFIRMED, "SYSTEM",
                 "Payment confirmed via Razorpay. Payment ID: " + razorpayPaymentId);
+        orderSummaryCache.evict(order.getUser().getId());
 
         log.info("Payment confirmed for order: {} with payment ID: {}", order.getOrderNumber(), razorpayPaymentId);
 
@@ -637,6 +387,7 @@ public class OrderService {
             if (cart != null) {
                 cart.getItems().clear();
                 cartRepository.save(cart);
+                cartStore.clearAfterCommit(order.getUser().getId());
                 log.debug("Cleared cart for user: {}", order.getUser().getId());
             }
         } catch (Exception e) {
@@ -644,18 +395,36 @@ public class OrderService {
             // Don't fail transaction if cart clearing fails
         }
 
-        // Step 10: Send confirmation emails asynchronously
-        try {
-            emailService.sendOrderConfirmation(order);
-            emailService.sendAdminOrderNotification(order);
-        } catch (Exception e) {
-            log.error("Failed to send order confirmation emails for order: {}", order.getOrderNumber(), e);
-            // Don't fail transaction if email fails
-        }
+        // Step 10: Queue confirmation emails and other side effects - committed with the order
+        outboxService.publish(OutboxEvent.EventType.ORDER_CONFIRMED, order);
 
         return order;
     }
 
+
+    /**
+     * Record a payment on a cancelled order once; the caller holds the order row lock,
+     * so redeliveries of the same payment cannot race each other here.
+     */
+    private void recordRefundTask(Order order, String razorpayPaymentId) {
+        String paymentId = razorpayPaymentId != null ? razorpayPaymentId : "unknown:" + order.getRazorpayOrderId();
+        if (paymentRefundTaskRepository.existsByRazorpayPaymentId(paymentId)) {
+            log.warn("Payment {} for cancelled order {} already recorded for refund", paymentId, order.getOrderNumber());
+            return;
+        }
+
+        paymentRefundTaskRepository.save(PaymentRefundTask.builder()
+                .orderId(order.getId())
+                .orderNumber(order.getOrderNumber())
+                .razorpayOrderId(order.getRazorpayOrderId())
+                .razorpayPaymentId(paymentId)
+                .amount(order.getTotalAmount())
+                .status(PaymentRefundTask.Status.OPEN)
+                .createdAt(LocalDateTime.now())
+                .build());
+        log.error("Payment {} received for cancelled order {} (expired or payment failed) - refund task recorded",
+                paymentId, order.getOrderNumber());
+    }
     /**
      * Legacy Stripe payment confirmation (keeping for backward compatibility if
      * needed)
@@ -714,32 +483,46 @@ public class OrderService {
 
         order.setStatus(Order.OrderStatus.PLACED);
         order = orderRepository.save(order);
+        orderSummaryCache.evict(order.getUser().getId());
 
         Cart cart = cartRepository.findByUserId(order.getUser().getId()).orElse(null);
         if (cart != null) {
             cart.getItems().clear();
             cartRepository.save(cart);
+            cartStore.clearAfterCommit(order.getUser().getId());
         }
 
-        try {
-            emailService.sendOrderConfirmation(order);
-        } catch (Exception e) {
-            log.error("Failed to send order confirmation email", e);
-        }
+        outboxService.publish(OutboxEvent.EventType.ORDER_CONFIRMED, order);
 
         return order;
     }
 
-    @Cacheable(value = "orders", key = "'user_' + #user.id")
-    public List<Order> getUserOrders(User user) {
-        return orderRepository.findByUserOrderByCreatedAtDesc(user);
+    /**
+     * Order summaries for the "my orders" page, cached per user.
+     */
+    public List<OrderSummaryDto> getUserOrders(User user) {
+        return orderSummaryCache.get(user.getId(), orderRepository::findSummariesByUserId);
+    }
+
+    public Page<OrderSummaryDto> getUserOrdersPage(User user, Pageable pageable) {
+        return orderRepository.findSummariesByUserId(user.getId(), pageable);
     }
 
-    public Page<Order> getUserOrdersPage(User user, Pageable pageable) {
-        return orderRepository.findByUserOrderByCreatedAtDesc(user, pageable);
+    /**
+     * Order with items, products and variants loaded in one query, for rendering order details.
+     */
+    @Transactional(readOnly = true)
+    public Order getOrderDetails(Long id, User user) {
+        Order order = orderRepository.findWithDetailsById(id)
+                .orElseThrow(() -> new RuntimeException("Order not found"));
+
+        if (!order.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Access denied");
+        }
+
+        return order;
     }
 
-    @Cacheable(value = "orders", key = "#id")
     public Order getOrderById(Long id, User user) {
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
@@ -767,7 +550,6 @@ public class OrderService {
     }
 
     @Transactional
-    @CacheEvict(value = "orders", allEntries = true)
     public Order updateOrderStatus(Long orderId, Order.OrderStatus status) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
@@ -793,15 +575,15 @@ public class OrderService {
 
         // Create history entry
         createOrderHistoryEntry(order, status, "SYSTEM", null);
+        orderSummaryCache.evict(order.getUser().getId());
 
-        // Send notification email
-        try {
-            emailService.sendOrderStatusUpdate(order);
-            log.info("Email notification triggered for order {} status change to {}", order.getOrderNumber(), status);
-        } catch (Exception e) {
-            log.error("Failed to trigger email notification for order {}", order.getOrderNumber(), e);
+        if (InvoiceService.isFinalState(status)) {
+            invoiceService.prerenderAfterCommit(order);
         }
 
+        // Notification email, metrics and cache invalidation go through the outbox
+        outboxService.publish(OutboxEvent.EventType.ORDER_STATUS_CHANGED, order);
+
         return order;
     }
 
@@ -832,16 +614,15 @@ public class OrderService {
 
         // Create history entry
         createOrderHistoryEntry(order, status, updatedBy, notes);
+        orderSummaryCache.evict(order.getUser().getId());
 
-        // Send notification email
-        try {
-            emailService.sendOrderStatusUpdate(order);
-            log.info("Email notification triggered for order {} status change to {} by {}", order.getOrderNumber(),
-                    status, updatedBy);
-        } catch (Exception e) {
-            log.error("Failed to trigger email notification for order {}", order.getOrderNumber(), e);
+        if (InvoiceService.isFinalState(status)) {
+            invoiceService.prerenderAfterCommit(order);
         }
 
+        // Notification email, metrics and cache invalidation go through the outbox
+        outboxService.publish(OutboxEvent.EventType.ORDER_STATUS_CHANGED, order);
+
         return order;
     }
 
@@ -886,8 +667,9 @@ public class OrderService {
 
         // Create history entry
         createOrderHistoryEntry(order, Order.OrderStatus.SHIPPED, "SYSTEM", "Tracking number added: " + trackingNumber);
+        orderSummaryCache.evict(order.getUser().getId());
 
-        emailService.sendShippingNotification(order);
+        outboxService.publish(OutboxEvent.EventType.ORDER_SHIPPED, order);
 
         return order;
     }
@@ -913,6 +695,26 @@ public class OrderService {
         return datePrefix + sequentialNumber;
     }
 
+    /**
+     * Cancel an order whose Razorpay payment failed, if it is still awaiting payment.
+     * Takes the same row lock as {@link #confirmPayment}, so a confirmation that got
+     * there first is never overwritten.
+     *
+     * @return the cancelled order, or empty if the order is unknown or no longer PLACED
+     */
+    @Transactional
+    public Optional<Order> cancelForFailedPayment(String razorpayOrderId, String reason) {
+        Order order = orderRepository.findByRazorpayOrderIdForUpdate(razorpayOrderId).orElse(null);
+        if (order == null || order.getStatus() != Order.OrderStatus.PLACED) {
+            return Optional.empty();
+        }
+
+        order.setStatus(Order.OrderStatus.CANCELLED);
+        createOrderHistoryEntry(order, Order.OrderStatus.CANCELLED, "SYSTEM", "Payment failed: " + reason);
+        orderSummaryCache.evict(order.getUser().getId());
+        return Optional.of(order);
+    }
+
     /**
      * Cancel order if payment hasn't been confirmed
      */
@@ -937,6 +739,7 @@ public class OrderService {
 
         // Create history entry
         createOrderHistoryEntry(order, Order.OrderStatus.CANCELLED, user.getEmail(), "Order cancelled by user");
+        orderSummaryCache.evict(user.getId());
 
         return order;
     }
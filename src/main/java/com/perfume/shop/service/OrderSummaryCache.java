@@ -0,0 +1,60 @@
+package com.perfume.shop.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.perfume.shop.dto.OrderSummaryDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Per-user cache of "my orders" summaries.
+ *
+ * Entries are bounded and short-lived, and evicted only for the user whose
+ * order changed. Eviction is repeated after commit so a read that races with
+ * the transaction cannot re-cache the old state.
+ */
+@Component
+public class OrderSummaryCache {
+
+    private final Cache<Long, List<OrderSummaryDto>> summariesByUser;
+
+    public OrderSummaryCache(@Value("${app.orders.summary-cache.max-size:10000}") long maxSize,
+                             @Value("${app.orders.summary-cache.ttl-minutes:10}") long ttlMinutes) {
+        this.summariesByUser = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    /**
+     * Get a user's order summaries, loading them on a miss.
+     */
+    public List<OrderSummaryDto> get(Long userId, Function<Long, List<OrderSummaryDto>> loader) {
+        return summariesByUser.get(userId, id -> List.copyOf(loader.apply(id)));
+    }
+
+    /**
+     * Evict one user's summaries now and, inside a transaction, again after commit.
+     */
+    public void evict(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        summariesByUser.invalidate(userId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    summariesByUser.invalidate(userId);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.OrderEventPayload;
+import com.perfume.shop.entity.OutboxEvent;
+
+/**
+ * Consumer of outbox events. Every handler bean that supports an event type
+ * gets its own outbox row, delivered at least once - handlers must tolerate
+ * a repeat of an event they already handled.
+ */
+public interface OutboxEventHandler {
+
+    /**
+     * Stable name stored on the outbox row; renaming a handler orphans its pending rows
+     */
+    String name();
+
+    boolean supports(OutboxEvent.EventType eventType);
+
+    /**
+     * Deliver one event. Throwing schedules a retry with backoff.
+     */
+    void handle(OutboxEvent.EventType eventType, OrderEventPayload payload) throws Exception;
+}
@@ -0,0 +1,84 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.entity.OutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Scheduled worker that drains the outbox.
+ *
+ * Each poll claims batches of due rows (FOR UPDATE SKIP LOCKED, so any number
+ * of nodes can run the relay) and fans them out on the outbox pool. The claim
+ * query skips an event while an earlier one of the same order and handler is
+ * unfinished, so handlers never see an order's events out of sequence, whichever
+ * node delivers them - so a batch holds at most one event per order and handler,
+ * and every claimed event can run on its own.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxService outboxService;
+    private final Executor outboxExecutor;
+
+    @Value("${app.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.outbox.max-batches-per-poll:10}")
+    private int maxBatchesPerPoll;
+
+    public OutboxRelay(OutboxService outboxService,
+                       @Qualifier("outboxExecutor") Executor outboxExecutor) {
+        this.outboxService = outboxService;
+        this.outboxExecutor = outboxExecutor;
+    }
+
+    /**
+     * Poll for due events. Bounded per run so a large backlog does not hold
+     * the shared scheduler thread.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:2000}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < maxBatchesPerPoll; i++) {
+                List<OutboxEvent> batch = outboxService.claimBatch(batchSize);
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                dispatch(batch);
+
+                if (batch.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Outbox relay run failed", e);
+        }
+    }
+
+    private void dispatch(List<OutboxEvent> batch) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            futures.add(CompletableFuture.runAsync(() -> outboxService.process(event), outboxExecutor));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        log.debug("Outbox relay dispatched {} events", batch.size());
+    }
+}
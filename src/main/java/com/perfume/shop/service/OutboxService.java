@@ -0,0 +1,196 @@
+package com.perfume.shop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfume.shop.dto.OrderEventPayload;
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.entity.OutboxEvent;
+import com.perfume.shop.repository.OutboxEventBatchRepository;
+import com.perfume.shop.repository.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox for order side effects.
+ *
+ * Order changes call {@link #publish} inside their own transaction, so the
+ * outbox rows commit or roll back together with the order. The relay then
+ * claims due rows, hands them to their handler and records the outcome.
+ * Failed deliveries back off exponentially until max attempts, then park as FAILED.
+ */
+@Service
+@Slf4j
+public class OutboxService {
+
+    private static final String AGGREGATE_ORDER = "ORDER";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxEventBatchRepository outboxEventBatchRepository;
+    private final List<OutboxEventHandler> handlers;
+    private final Map<String, OutboxEventHandler> handlersByName;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.outbox.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${app.outbox.backoff-seconds:30}")
+    private long backoffSeconds;
+
+    @Value("${app.outbox.retention-days:7}")
+    private int retentionDays;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository,
+                         OutboxEventBatchRepository outboxEventBatchRepository,
+                         List<OutboxEventHandler> handlers,
+                         ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxEventBatchRepository = outboxEventBatchRepository;
+        this.handlers = handlers;
+        this.handlersByName = handlers.stream()
+                .collect(Collectors.toMap(OutboxEventHandler::name, Function.identity()));
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Record an order event for every handler that consumes it.
+     * Joins the caller's transaction - publishing outside one is a bug.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(OutboxEvent.EventType eventType, Order order) {
+        List<OutboxEvent> events = new ArrayList<>();
+        addEvents(events, eventType, OrderEventPayload.from(order), LocalDateTime.now());
+
+        outboxEventRepository.saveAll(events);
+        log.debug("Queued {} outbox events of type {} for order {}", events.size(), eventType, order.getOrderNumber());
+    }
+
+    /**
+     * Record the same event for many orders with one JDBC batch insert (bulk order changes).
+     * Joins the caller's transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publishAll(OutboxEvent.EventType eventType, List<OrderEventPayload> payloads) {
+        List<OutboxEvent> events = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (OrderEventPayload payload : payloads) {
+            addEvents(events, eventType, payload, now);
+        }
+
+        outboxEventBatchRepository.insertAll(events);
+        log.debug("Queued {} outbox events of type {} for {} orders", events.size(), eventType, payloads.size());
+    }
+
+    private void addEvents(List<OutboxEvent> events, OutboxEvent.EventType eventType,
+                           OrderEventPayload payload, LocalDateTime now) {
+        String json = writePayload(payload);
+        for (OutboxEventHandler handler : handlers) {
+            if (handler.supports(eventType)) {
+                events.add(OutboxEvent.builder()
+                        .aggregateType(AGGREGATE_ORDER)
+                        .aggregateId(payload.getOrderId())
+                        .eventType(eventType)
+                        .handler(handler.name())
+                        .payload(json)
+                        .maxAttempts(maxAttempts)
+                        .nextAttemptAt(now)
+                        .build());
+            }
+        }
+    }
+
+    /**
+     * Claim up to {@code limit} due events for this node.
+     * Claimed rows are leased; if this node dies the lease expires and another node picks them up.
+     */
+    @Transactional
+    public List<OutboxEvent> claimBatch(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = outboxEventRepository.lockDueIds(now, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        outboxEventRepository.claim(ids, OutboxEvent.Status.PROCESSING, now.plusSeconds(leaseSeconds));
+        return outboxEventRepository.findByIdInOrderByIdAsc(ids);
+    }
+
+    /**
+     * Deliver a claimed event to its handler and record the outcome.
+     *
+     * @return true if the handler succeeded
+     */
+    public boolean process(OutboxEvent event) {
+        OutboxEventHandler handler = handlersByName.get(event.getHandler());
+        if (handler == null) {
+            log.error("No outbox handler registered for '{}' (event {})", event.getHandler(), event.getId());
+            outboxEventRepository.release(event.getId(), OutboxEvent.Status.FAILED, LocalDateTime.now(),
+                    "No handler registered: " + event.getHandler());
+            return false;
+        }
+
+        try {
+            handler.handle(event.getEventType(), readPayload(event));
+            outboxEventRepository.markDone(event.getId(), OutboxEvent.Status.DONE, LocalDateTime.now());
+            return true;
+        } catch (Exception e) {
+            recordFailure(event, e);
+            return false;
+        }
+    }
+
+    /**
+     * Purge delivered events daily; FAILED rows are kept for inspection
+     */
+    @Scheduled(cron = "0 45 3 * * *")
+    public void purgeProcessed() {
+        int deleted = outboxEventRepository.deleteProcessedBefore(
+                OutboxEvent.Status.DONE, LocalDateTime.now().minusDays(retentionDays));
+        if (deleted > 0) {
+            log.info("Purged {} delivered outbox events", deleted);
+        }
+    }
+
+    private void recordFailure(OutboxEvent event, Exception e) {
+        String error = RetryPolicy.errorOf(e);
+
+        if (event.getAttempts() >= event.getMaxAttempts()) {
+            log.error("Outbox event {} ({} -> {}) failed permanently after {} attempts",
+                    event.getId(), event.getEventType(), event.getHandler(), event.getAttempts(), e);
+            outboxEventRepository.release(event.getId(), OutboxEvent.Status.FAILED, LocalDateTime.now(), error);
+            return;
+        }
+
+        LocalDateTime nextAttempt = LocalDateTime.now()
+                .plusSeconds(RetryPolicy.backoffSeconds(backoffSeconds, event.getAttempts()));
+        log.warn("Outbox event {} ({} -> {}) failed on attempt {}/{}, retrying at {}: {}",
+                event.getId(), event.getEventType(), event.getHandler(),
+                event.getAttempts(), event.getMaxAttempts(), nextAttempt, error);
+        outboxEventRepository.release(event.getId(), OutboxEvent.Status.PENDING, nextAttempt, error);
+    }
+
+    private String writePayload(OrderEventPayload payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize outbox payload for order " + payload.getOrderId(), e);
+        }
+    }
+
+    private OrderEventPayload readPayload(OutboxEvent event) throws JsonProcessingException {
+        return objectMapper.readValue(event.getPayload(), OrderEventPayload.class);
+    }
+}
@@ -0,0 +1,418 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.PaymentReconciliationReport;
+import com.perfume.shop.dto.UnconfirmedOrderView;
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.exception.ApplicationException;
+import com.perfume.shop.exception.ErrorType;
+import com.perfume.shop.exception.PaymentOnCancelledOrderException;
+import com.perfume.shop.repository.OrderHistoryBatchRepository;
+import com.perfume.shop.repository.OrderRepository;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * Scheduled reconciliation of unconfirmed Razorpay payments.
+ *
+ * Orders stay PLACED when both the client-side verify-payment call and the
+ * payment.authorized webhook are lost. This job pages through recent PLACED
+ * orders that have a Razorpay order (keyset paging by id) and asks the gateway
+ * for their payments, with bounded parallelism and a request rate limit:
+ * - a captured or authorized payment confirms the order via {@link OrderService#confirmPayment}
+ * - orders whose payments all failed, and that are past the cancel window, are
+ *   cancelled in one set-based transaction per page
+ * - orders with no payment at all past the unpaid-order window are expired the same
+ *   way; unpaid-order expiry leaves gateway orders to this job
+ * - anything else is left for the shopper or the webhook
+ *
+ * It then checks CANCELLED orders with a Razorpay order and no refund task:
+ * a payment that went through after the cancel is passed to confirmPayment, which
+ * records it for an admin to refund or reinstate. That pass looks back past the
+ * gateway expiry window (plus the normal lookback), so gateway orders that unpaid-order
+ * expiry cancelled without asking the gateway are still checked for a day afterwards.
+ * Each run produces a {@link PaymentReconciliationReport}.
+ */
+@Service
+@Slf4j
+public class PaymentReconciliationService {
+
+    static final String CANCEL_NOTE = "Payment failed at gateway (reconciliation)";
+
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final OrderHistoryBatchRepository orderHistoryBatchRepository;
+    private final OrderSummaryCache orderSummaryCache;
+    private final RazorpayGatewayClient gatewayClient;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor executor;
+    private final MeterRegistry meterRegistry;
+    private final Timer runTimer;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private Bucket rateLimiter;
+    private volatile PaymentReconciliationReport lastReport;
+
+    @Value("${app.payments.reconciliation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.payments.reconciliation.lookback-hours:24}")
+    private long lookbackHours;
+
+    @Value("${app.payments.reconciliation.min-age-minutes:15}")
+    private long minAgeMinutes;
+
+    @Value("${app.payments.reconciliation.cancel-after-minutes:45}")
+    private long cancelAfterMinutes;
+
+    @Value("${app.orders.expiry.unpaid-minutes:60}")
+    private long unpaidMinutes;
+
+    @Value("${app.orders.expiry.gateway-unpaid-hours:48}")
+    private long gatewayUnpaidHours;
+
+    @Value("${app.payments.reconciliation.page-size:100}")
+    private int pageSize;
+
+    @Value("${app.payments.reconciliation.max-orders-per-run:2000}")
+    private int maxOrdersPerRun;
+
+    @Value("${app.payments.reconciliation.requests-per-second:10}")
+    private int requestsPerSecond;
+
+    public PaymentReconciliationService(OrderRepository orderRepository,
+                                        OrderService orderService,
+                                        OrderHistoryBatchRepository orderHistoryBatchRepository,
+                                        OrderSummaryCache orderSummaryCache,
+                                        RazorpayGatewayClient gatewayClient,
+                                        TransactionTemplate transactionTemplate,
+                                        @Qualifier("reconciliationExecutor") Executor executor,
+                                        MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.orderHistoryBatchRepository = orderHistoryBatchRepository;
+        this.orderSummaryCache = orderSummaryCache;
+        this.gatewayClient = gatewayClient;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.runTimer = Timer.builder("shop.payments.reconciliation.run")
+                .description("Time for one payment reconciliation run against the gateway")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        this.rateLimiter = Bucket.builder()
+                .addLimit(Bandwidth.classic(requestsPerSecond,
+                        Refill.greedy(requestsPerSecond, Duration.ofSeconds(1))))
+                .build();
+    }
+
+    /**
+     * Reconcile every 10 minutes by default
+     */
+    @Scheduled(fixedDelayString = "${app.payments.reconciliation.poll-interval-ms:600000}", initialDelay = 180000)
+    public void scheduledReconcile() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            reconcile();
+        } catch (ApplicationException e) {
+            log.debug("Skipping scheduled payment reconciliation: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Payment reconciliation run failed", e);
+        }
+    }
+
+    /**
+     * Run one reconciliation pass now (scheduler or admin trigger).
+     * Only one pass runs per node at a time.
+     */
+    public PaymentReconciliationReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            throw new ApplicationException("Payment reconciliation is already running", ErrorType.CONFLICT, 409);
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            PaymentReconciliationReport report = doReconcile();
+            lastReport = report;
+
+            if (report.getConfirmed() > 0 || report.getCancelled() > 0 || report.getExpired() > 0
+                    || report.getRefundTasks() > 0 || report.getErrors() > 0) {
+                log.info("📊 Payment reconciliation: {} scanned, {} confirmed, {} cancelled, {} expired, "
+                                + "{} refund tasks, {} pending, {} errors{}",
+                        report.getScanned(), report.getConfirmed(), report.getCancelled(), report.getExpired(),
+                        report.getRefundTasks(), report.getPending(), report.getErrors(),
+                        report.isAborted() ? " (aborted: gateway unavailable)" : "");
+            } else {
+                log.debug("Payment reconciliation: {} scanned, nothing to change", report.getScanned());
+            }
+            return report;
+        } finally {
+            sample.stop(runTimer);
+            running.set(false);
+        }
+    }
+
+    public PaymentReconciliationReport getLastReport() {
+        return lastReport;
+    }
+
+    private PaymentReconciliationReport doReconcile() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime from = startedAt.minusHours(lookbackHours);
+        // Blind expiry cancels gateway orders at gatewayUnpaidHours - keep checking them a lookback longer
+        LocalDateTime cancelledFrom = startedAt.minusHours(Math.max(lookbackHours, gatewayUnpaidHours) + lookbackHours);
+        LocalDateTime to = startedAt.minusMinutes(minAgeMinutes);
+        Cutoffs cutoffs = new Cutoffs(startedAt.minusMinutes(cancelAfterMinutes), startedAt.minusMinutes(unpaidMinutes));
+
+        PaymentReconciliationReport report = PaymentReconciliationReport.builder()
+                .startedAt(startedAt)
+                .confirmedOrders(new ArrayList<>())
+                .cancelledOrders(new ArrayList<>())
+                .expiredOrders(new ArrayList<>())
+                .refundTaskOrders(new ArrayList<>())
+                .failedOrders(new LinkedHashMap<>())
+                .build();
+
+        boolean completed = reconcilePages(report, (afterId, page) -> orderRepository.findUnconfirmedRazorpayOrders(
+                Order.OrderStatus.PLACED, from, to, afterId, page), cutoffs);
+        if (completed) {
+            reconcilePages(report, (afterId, page) -> orderRepository.findRazorpayOrdersWithoutRefundTask(
+                    Order.OrderStatus.CANCELLED, cancelledFrom, to, afterId, page), null);
+        }
+
+        report.setDurationMs(Duration.between(startedAt, LocalDateTime.now()).toMillis());
+        return report;
+    }
+
+    /**
+     * Page through one order query by id until it runs dry or the run's budget is spent.
+     *
+     * @param cutoffs null for cancelled orders, which are only checked for payments that went through
+     * @return false if the run was aborted because the gateway circuit opened
+     */
+    private boolean reconcilePages(PaymentReconciliationReport report,
+                                   BiFunction<Long, Pageable, List<UnconfirmedOrderView>> pages,
+                                   Cutoffs cutoffs) {
+        long afterId = 0;
+        while (report.getScanned() < maxOrdersPerRun) {
+            int limit = Math.min(pageSize, maxOrdersPerRun - report.getScanned());
+            List<UnconfirmedOrderView> page = pages.apply(afterId, PageRequest.of(0, limit));
+            if (page.isEmpty()) {
+                break;
+            }
+
+            afterId = page.get(page.size() - 1).getId();
+            report.setScanned(report.getScanned() + page.size());
+            apply(checkAll(page, cutoffs), report);
+
+            if (gatewayClient.getCircuitState() == CircuitBreaker.State.OPEN) {
+                log.warn("Payment gateway circuit is open - stopping reconciliation after {} orders", report.getScanned());
+                report.setAborted(true);
+                return false;
+            }
+            if (page.size() < limit) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ask the gateway about a page of orders, at most {@code concurrency} at a time
+     */
+    private List<Decision> checkAll(List<UnconfirmedOrderView> page, Cutoffs cutoffs) {
+        List<CompletableFuture<Decision>> futures = new ArrayList<>(page.size());
+        for (UnconfirmedOrderView order : page) {
+            futures.add(CompletableFuture.supplyAsync(() -> check(order, cutoffs), executor));
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    Decision check(UnconfirmedOrderView order, Cutoffs cutoffs) {
+        try {
+            rateLimiter.asBlocking().consume(1);
+            JSONArray payments = gatewayClient.fetchOrderPayments(order.getRazorpayOrderId()).optJSONArray("items");
+            if (payments == null || payments.length() == 0) {
+                if (cutoffs == null) {
+                    return new Decision(order, Action.NONE, null, null);
+                }
+                boolean expire = order.getCreatedAt().isBefore(cutoffs.expireBefore());
+                return new Decision(order, expire ? Action.EXPIRE : Action.PENDING, null, null);
+            }
+
+            boolean allFailed = true;
+            for (int i = 0; i < payments.length(); i++) {
+                JSONObject payment = payments.getJSONObject(i);
+                String status = payment.optString("status");
+                if ("captured".equals(status) || "authorized".equals(status)) {
+                    return new Decision(order, Action.CONFIRM, payment.getString("id"), null);
+                }
+                allFailed &= "failed".equals(status);
+            }
+
+            if (cutoffs == null) {
+                return new Decision(order, Action.NONE, null, null);
+            }
+            boolean cancel = allFailed && order.getCreatedAt().isBefore(cutoffs.cancelBefore());
+            return new Decision(order, cancel ? Action.CANCEL : Action.PENDING, null, null);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Decision(order, Action.ERROR, null, "Interrupted");
+        } catch (Exception e) {
+            return new Decision(order, Action.ERROR, null, e.getMessage());
+        }
+    }
+
+    private void apply(List<Decision> decisions, PaymentReconciliationReport report) {
+        List<UnconfirmedOrderView> toCancel = new ArrayList<>();
+        List<UnconfirmedOrderView> toExpire = new ArrayList<>();
+
+        for (Decision decision : decisions) {
+            UnconfirmedOrderView order = decision.order();
+            switch (decision.action()) {
+                case CONFIRM -> {
+                    try {
+                        orderService.confirmPayment(order.getRazorpayOrderId(), decision.paymentId());
+                        report.setConfirmed(report.getConfirmed() + 1);
+                        report.getConfirmedOrders().add(order.getOrderNumber());
+                        count("confirmed");
+                        log.info("Reconciled payment {} for order {}", decision.paymentId(), order.getOrderNumber());
+                    } catch (PaymentOnCancelledOrderException e) {
+                        report.setRefundTasks(report.getRefundTasks() + 1);
+                        report.getRefundTaskOrders().add(order.getOrderNumber());
+                        count("refund");
+                        log.warn("Payment {} found on cancelled order {} - recorded for refund",
+                                decision.paymentId(), order.getOrderNumber());
+                    } catch (Exception e) {
+                        recordError(report, order, e.getMessage());
+                    }
+                }
+                case CANCEL -> toCancel.add(order);
+                case EXPIRE -> toExpire.add(order);
+                case PENDING -> {
+                    report.setPending(report.getPending() + 1);
+                    count("pending");
+                }
+                case ERROR -> recordError(report, order, decision.error());
+                case NONE -> {
+                }
+            }
+        }
+
+        if (!toCancel.isEmpty()) {
+            cancelAll(toCancel, CANCEL_NOTE, report, report.getCancelledOrders(), "cancelled");
+        }
+        if (!toExpire.isEmpty()) {
+            cancelAll(toExpire, OrderExpiryService.EXPIRY_NOTE, report, report.getExpiredOrders(), "expired");
+        }
+    }
+
+    /**
+     * Cancel a page's failed-payment or expired orders in one transaction.
+     * Orders that moved on or are locked by a confirmation in flight are skipped.
+     */
+    private void cancelAll(List<UnconfirmedOrderView> orders, String note, PaymentReconciliationReport report,
+                           List<String> outcome, String result) {
+        Map<Long, UnconfirmedOrderView> byId = new LinkedHashMap<>();
+        orders.forEach(order -> byId.put(order.getId(), order));
+
+        try {
+            List<Long> cancelled = transactionTemplate.execute(status -> {
+                List<Long> locked = orderRepository.lockOrderIdsInStatus(byId.keySet(), Order.OrderStatus.PLACED.name());
+                if (locked.isEmpty()) {
+                    return List.<Long>of();
+                }
+
+                LocalDateTime now = LocalDateTime.now();
+                orderRepository.updateStatusBulk(locked, List.of(Order.OrderStatus.PLACED),
+                        Order.OrderStatus.CANCELLED, now);
+                orderHistoryBatchRepository.insertAll(locked, Order.OrderStatus.CANCELLED, "SYSTEM", note, now);
+                return locked;
+            });
+
+            Set<Long> userIds = new HashSet<>();
+            for (Long id : cancelled) {
+                UnconfirmedOrderView order = byId.get(id);
+                userIds.add(order.getUserId());
+                outcome.add(order.getOrderNumber());
+            }
+            userIds.forEach(orderSummaryCache::evict);
+
+            report.setCancelled(report.getCancelledOrders().size());
+            report.setExpired(report.getExpiredOrders().size());
+            report.setPending(report.getPending() + orders.size() - cancelled.size());
+            count(result, cancelled.size());
+        } catch (Exception e) {
+            log.error("Failed to cancel {} {} orders", orders.size(), result, e);
+            orders.forEach(order -> recordError(report, order, e.getMessage()));
+        }
+    }
+
+    private void recordError(PaymentReconciliationReport report, UnconfirmedOrderView order, String error) {
+        log.warn("Could not reconcile order {} ({}): {}", order.getOrderNumber(), order.getRazorpayOrderId(), error);
+        report.setErrors(report.getErrors() + 1);
+        report.getFailedOrders().put(order.getOrderNumber(), error);
+        count("error");
+    }
+
+    private void count(String result) {
+        count(result, 1);
+    }
+
+    private void count(String result, int amount) {
+        Counter.builder("shop.payments.reconciliation")
+                .description("Orders checked by payment reconciliation, by outcome")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment(amount);
+    }
+
+    enum Action {
+        CONFIRM,
+        CANCEL,
+        EXPIRE,
+        PENDING,
+        ERROR,
+        NONE // Cancelled order without a payment that went through
+    }
+
+    record Decision(UnconfirmedOrderView order, Action action, String paymentId, String error) {
+    }
+
+    record Cutoffs(LocalDateTime cancelBefore, LocalDateTime expireBefore) {
+    }
+}
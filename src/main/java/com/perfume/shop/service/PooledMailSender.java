@@ -0,0 +1,448 @@
+package com.perfume.shop.service;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JavaMailSender that delivers over a small pool of long-lived, authenticated SMTP sessions.
+ *
+ * send() queues the messages and blocks until they are delivered, so callers keep
+ * their synchronous success/failure handling. Each connection worker owns one SMTP
+ * session and drains the queues in batches: the connect, STARTTLS and AUTH handshake
+ * is paid once per session instead of once per message. A session is recycled after
+ * a number of messages or when idle, and re-established (with one retry of the
+ * message) when the server drops it.
+ *
+ * Messages travel in two lanes. Order mail is TRANSACTIONAL; messages marked
+ * "Precedence: bulk" (abandoned cart reminders) are MARKETING. Workers always serve
+ * the transactional lane first, and the marketing lane is capped in connections and
+ * messages per second, so a marketing burst cannot delay an order confirmation.
+ * Each lane's queue is bounded: a full lane fails the send, and the caller's durable
+ * backlog (outbox, email_events, claimed carts) retries it later.
+ */
+@Slf4j
+public class PooledMailSender extends JavaMailSenderImpl implements DisposableBean {
+
+    public static final String PRECEDENCE_HEADER = "Precedence";
+    public static final String BULK_PRECEDENCE = "bulk";
+
+    public enum MailLane {
+        TRANSACTIONAL, MARKETING
+    }
+
+    /**
+     * Per-lane limits. maxConnections and messagesPerSecond of 0 mean unlimited.
+     */
+    public record LaneConfig(int queueCapacity, int maxConnections, int messagesPerSecond) {
+    }
+
+    private static final long THROTTLED_WAIT_MS = 50;
+
+    private final MeterRegistry meterRegistry;
+    private final int connections;
+    private final int batchSize;
+    private final int maxMessagesPerConnection;
+    private final long idleTimeoutMs;
+    private final long sendTimeoutMs;
+
+    private final Map<MailLane, Lane> lanes = new EnumMap<>(MailLane.class);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition messagesAvailable = lock.newCondition();
+    private final List<ConnectionWorker> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public PooledMailSender(MeterRegistry meterRegistry, int connections, int batchSize,
+                            int maxMessagesPerConnection, long idleTimeoutMs, long sendTimeoutMs,
+                            LaneConfig transactional, LaneConfig marketing) {
+        this.meterRegistry = meterRegistry;
+        this.connections = connections;
+        this.batchSize = batchSize;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.sendTimeoutMs = sendTimeoutMs;
+        lanes.put(MailLane.TRANSACTIONAL, new Lane(MailLane.TRANSACTIONAL, transactional));
+        lanes.put(MailLane.MARKETING, new Lane(MailLane.MARKETING, marketing));
+    }
+
+    /**
+     * Start the connection workers. Sessions are opened lazily on the first message.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+
+        for (int i = 0; i < connections; i++) {
+            ConnectionWorker worker = new ConnectionWorker(i);
+            workers.add(worker);
+            Thread thread = new Thread(worker, "smtp-connection-" + i);
+            thread.setDaemon(true);
+            worker.thread = thread;
+            thread.start();
+        }
+        log.info("SMTP pool started: host={}, connections={}, batchSize={}", getHost(), connections, batchSize);
+    }
+
+    @Override
+    public synchronized void destroy() {
+        running = false;
+        workers.forEach(worker -> worker.thread.interrupt());
+
+        for (Lane lane : lanes.values()) {
+            PendingMessage pending;
+            while ((pending = lane.queue.poll()) != null) {
+                pending.result.completeExceptionally(new MailSendException("Mail sender is shutting down"));
+            }
+        }
+    }
+
+    /**
+     * Lane for a message: bulk/list precedence is marketing, everything else transactional
+     */
+    static MailLane laneOf(MimeMessage message) {
+        try {
+            String precedence = message.getHeader(PRECEDENCE_HEADER, null);
+            if (precedence != null && (precedence.equalsIgnoreCase(BULK_PRECEDENCE)
+                    || precedence.equalsIgnoreCase("list"))) {
+                return MailLane.MARKETING;
+            }
+        } catch (MessagingException e) {
+            log.debug("Could not read precedence header, sending as transactional", e);
+        }
+        return MailLane.TRANSACTIONAL;
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+        if (!running) {
+            throw new MailSendException("Mail sender is not running");
+        }
+
+        List<PendingMessage> pending = new ArrayList<>(mimeMessages.length);
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+
+        for (int i = 0; i < mimeMessages.length; i++) {
+            Object original = originalMessages != null ? originalMessages[i] : mimeMessages[i];
+            PendingMessage message = new PendingMessage(mimeMessages[i], original);
+            Lane lane = lanes.get(laneOf(mimeMessages[i]));
+            if (lane.queue.offer(message)) {
+                pending.add(message);
+                signal();
+            } else {
+                lane.rejected.increment();
+                failedMessages.put(original, new MailSendException("Mail lane " + lane.name + " is full"));
+            }
+        }
+
+        for (PendingMessage message : pending) {
+            try {
+                message.result.get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                failedMessages.put(message.original, (Exception) e.getCause());
+            } catch (TimeoutException e) {
+                message.result.cancel(false);
+                failedMessages.put(message.original, new MailSendException("Timed out waiting for SMTP delivery"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedMessages.put(message.original, e);
+            }
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            messagesAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Park a worker that found nothing it could deliver. Throttled marketing mail is
+     * re-checked after a short pause; otherwise the worker sleeps until signalled.
+     */
+    private void awaitMessages() throws InterruptedException {
+        lock.lock();
+        try {
+            if (!lanes.get(MailLane.TRANSACTIONAL).queue.isEmpty()) {
+                return;
+            }
+            long millis = lanes.get(MailLane.MARKETING).queue.isEmpty() ? idleTimeoutMs : THROTTLED_WAIT_MS;
+            messagesAvailable.await(millis, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class PendingMessage {
+        final MimeMessage message;
+        final Object original;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        PendingMessage(MimeMessage message, Object original) {
+            this.message = message;
+            this.original = original;
+        }
+    }
+
+    /**
+     * One priority lane: bounded queue, connection cap and rate limit
+     */
+    private final class Lane {
+
+        final String name;
+        final BlockingQueue<PendingMessage> queue;
+        final Semaphore connectionPermits; // null = may use every connection
+        final Bucket rateLimiter; // null = unthrottled
+        final Timer waitTimer;
+        final Counter rejected;
+
+        Lane(MailLane lane, LaneConfig config) {
+            this.name = lane.name().toLowerCase();
+            this.queue = new ArrayBlockingQueue<>(config.queueCapacity());
+            this.connectionPermits = config.maxConnections() > 0 ? new Semaphore(config.maxConnections()) : null;
+            this.rateLimiter = config.messagesPerSecond() > 0
+                    ? Bucket.builder()
+                            .addLimit(Bandwidth.classic(config.messagesPerSecond(),
+                                    Refill.greedy(config.messagesPerSecond(), Duration.ofSeconds(1))))
+                            .build()
+                    : null;
+
+            Gauge.builder("shop.mail.lane.depth", queue, BlockingQueue::size)
+                    .description("Messages waiting in a mail lane")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            this.waitTimer = Timer.builder("shop.mail.lane.wait")
+                    .description("Time a message waited in its lane before a connection picked it up")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("shop.mail.lane.rejected")
+                    .description("Messages refused because their lane was full")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Move up to {@code max} messages into {@code batch}, within the lane's rate limit.
+         * The caller holds a connection permit for this lane.
+         */
+        int take(List<PendingMessage> batch, int max) {
+            int taken = 0;
+            while (taken < max && !queue.isEmpty()) {
+                if (rateLimiter != null && !rateLimiter.tryConsume(1)) {
+                    break;
+                }
+                PendingMessage message = queue.poll();
+                if (message == null) {
+                    if (rateLimiter != null) {
+                        rateLimiter.addTokens(1);
+                    }
+                    break;
+                }
+                waitTimer.record(System.nanoTime() - message.enqueuedAt, TimeUnit.NANOSECONDS);
+                batch.add(message);
+                taken++;
+            }
+            return taken;
+        }
+    }
+
+    /**
+     * One SMTP session and the thread that feeds it
+     */
+    private final class ConnectionWorker implements Runnable {
+
+        private final Counter sent;
+        private final Counter failed;
+        private final Counter connects;
+        private final Timer batchTimer;
+
+        private Thread thread;
+        private Transport transport;
+        private int messagesOnConnection;
+        private long lastUsed = System.nanoTime();
+
+        ConnectionWorker(int index) {
+            String connection = String.valueOf(index);
+            this.sent = Counter.builder("shop.mail.smtp.messages")
+                    .description("Messages handed to the SMTP server, per pooled connection")
+                    .tags("connection", connection, "result", "sent")
+                    .register(meterRegistry);
+            this.failed = Counter.builder("shop.mail.smtp.messages")
+                    .description("Messages handed to the SMTP server, per pooled connection")
+                    .tags("connection", connection, "result", "failed")
+                    .register(meterRegistry);
+            this.connects = Counter.builder("shop.mail.smtp.connects")
+                    .description("SMTP sessions opened (connect, STARTTLS, AUTH)")
+                    .tag("connection", connection)
+                    .register(meterRegistry);
+            this.batchTimer = Timer.builder("shop.mail.smtp.batch")
+                    .description("Time to deliver one batch over a pooled connection")
+                    .tag("connection", connection)
+                    .register(meterRegistry);
+        }
+
+        @Override
+        public void run() {
+            List<PendingMessage> batch = new ArrayList<>(batchSize);
+            while (running) {
+                try {
+                    if (!deliverNext(MailLane.TRANSACTIONAL, batch) && !deliverNext(MailLane.MARKETING, batch)) {
+                        if (transport != null && System.nanoTime() - lastUsed > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs)) {
+                            close(); // idle: let the server-side session go
+                        }
+                        awaitMessages();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            close();
+        }
+
+        /**
+         * Deliver one batch from a lane if the lane has work, a free connection slot and rate budget
+         */
+        private boolean deliverNext(MailLane laneType, List<PendingMessage> batch) {
+            Lane lane = lanes.get(laneType);
+            if (lane.queue.isEmpty()) {
+                return false;
+            }
+            if (lane.connectionPermits != null && !lane.connectionPermits.tryAcquire()) {
+                return false;
+            }
+            try {
+                if (lane.take(batch, batchSize) == 0) {
+                    return false;
+                }
+                batchTimer.record(() -> deliver(batch));
+                lastUsed = System.nanoTime();
+                return true;
+            } finally {
+                batch.forEach(message -> message.result.completeExceptionally(
+                        new MailSendException("Message was not delivered")));
+                batch.clear();
+                if (lane.connectionPermits != null) {
+                    lane.connectionPermits.release();
+                }
+            }
+        }
+
+        /**
+         * Completes every message of the batch, successfully or not
+         */
+        private void deliver(List<PendingMessage> batch) {
+            for (PendingMessage pending : batch) {
+                if (pending.result.isDone()) {
+                    continue; // caller gave up
+                }
+                try {
+                    send(pending.message);
+                    sent.increment();
+                    pending.result.complete(null);
+                } catch (Exception e) {
+                    failed.increment();
+                    pending.result.completeExceptionally(e);
+                }
+            }
+        }
+
+        private void send(MimeMessage message) throws MessagingException {
+            prepare(message);
+            Address[] addresses = message.getAllRecipients();
+            Address[] recipients = addresses != null ? addresses : new Address[0];
+
+            ensureConnected();
+            try {
+                transport.sendMessage(message, recipients);
+            } catch (MessagingException e) {
+                if (transport.isConnected()) {
+                    throw e; // rejected message (e.g. recipient), the session is fine
+                }
+                log.warn("SMTP connection {} dropped, reconnecting: {}", thread.getName(), e.getMessage());
+                close();
+                ensureConnected();
+                transport.sendMessage(message, recipients);
+            }
+            messagesOnConnection++;
+        }
+
+        private void prepare(MimeMessage message) throws MessagingException {
+            if (message.getSentDate() == null) {
+                message.setSentDate(new Date());
+            }
+            String messageId = message.getMessageID();
+            message.saveChanges();
+            if (messageId != null) {
+                // Preserve explicitly specified message id...
+                message.setHeader("Message-ID", messageId);
+            }
+        }
+
+        private void ensureConnected() throws MessagingException {
+            if (transport != null && messagesOnConnection >= maxMessagesPerConnection) {
+                close(); // servers cap messages per session
+            }
+            if (transport == null) {
+                transport = connectTransport();
+                messagesOnConnection = 0;
+                connects.increment();
+            }
+        }
+
+        private void close() {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close SMTP connection {}", thread.getName(), e);
+            }
+            transport = null;
+        }
+    }
+}
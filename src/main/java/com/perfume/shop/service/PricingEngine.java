@@ -0,0 +1,109 @@
+package com.perfume.shop.service;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cart and order price arithmetic.
+ *
+ * All amounts are whole paise held in a {@code long}; BigDecimal rupees are only
+ * used at the edges (entity prices in, API/entity totals out).
+ *
+ * Rounding rules:
+ * - prices are rounded HALF_UP to the paisa when converted in
+ * - tax is computed on the pre-discount subtotal and rounded HALF_UP to the paisa
+ * - discounts are capped at the subtotal, so the total never goes negative
+ * - arithmetic overflow throws rather than wrapping
+ */
+@Component
+public class PricingEngine {
+
+    public static final long TAX_RATE_BASIS_POINTS = 1800;  // 18% GST
+    public static final long SHIPPING_COST_PAISE = 0;       // No delivery cost for now
+
+    private static final long BASIS_POINTS = 10_000;
+
+    /**
+     * Price breakdown in paise
+     */
+    public record Totals(long subtotal, long tax, long shipping, long discount, long total) {
+
+        public BigDecimal subtotalAmount() {
+            return toRupees(subtotal);
+        }
+
+        public BigDecimal taxAmount() {
+            return toRupees(tax);
+        }
+
+        public BigDecimal shippingAmount() {
+            return toRupees(shipping);
+        }
+
+        public BigDecimal discountAmount() {
+            return toRupees(discount);
+        }
+
+        public BigDecimal totalAmount() {
+            return toRupees(total);
+        }
+    }
+
+    /**
+     * Convert a rupee amount to paise, rounding HALF_UP. Null is treated as zero.
+     */
+    public static long toPaise(BigDecimal rupees) {
+        if (rupees == null) {
+            return 0;
+        }
+        return rupees.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Convert paise to a rupee amount with scale 2
+     */
+    public static BigDecimal toRupees(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    /**
+     * Price of one line: unit price x quantity
+     */
+    public long lineTotal(BigDecimal unitPrice, int quantity) {
+        return Math.multiplyExact(toPaise(unitPrice), (long) quantity);
+    }
+
+    /**
+     * Sum of all line totals
+     */
+    public <T> long subtotal(Collection<T> items, Function<T, BigDecimal> unitPrice, ToIntFunction<T> quantity) {
+        long subtotal = 0;
+        for (T item : items) {
+            subtotal = Math.addExact(subtotal, lineTotal(unitPrice.apply(item), quantity.applyAsInt(item)));
+        }
+        return subtotal;
+    }
+
+    /**
+     * GST on an amount, rounded HALF_UP to the paisa
+     */
+    public long tax(long amountPaise) {
+        long scaled = Math.multiplyExact(amountPaise, TAX_RATE_BASIS_POINTS);
+        return Math.floorDiv(Math.addExact(scaled, BASIS_POINTS / 2), BASIS_POINTS);
+    }
+
+    /**
+     * Totals for a subtotal and a discount. The discount is capped at the subtotal.
+     */
+    public Totals price(long subtotalPaise, long discountPaise) {
+        long discount = Math.min(Math.max(discountPaise, 0), subtotalPaise);
+        long tax = tax(subtotalPaise);
+        long total = Math.addExact(Math.addExact(subtotalPaise, tax), SHIPPING_COST_PAISE) - discount;
+        return new Totals(subtotalPaise, tax, SHIPPING_COST_PAISE, discount, total);
+    }
+}
@@ -3,6 +3,7 @@ package com.perfume.shop.service;
 import com.perfume.shop.dto.ProductFilterRequest;
 import com.perfume.shop.dto.ProductRequest;
 import com.perfume.shop.dto.ProductResponse;
+import com.perfume.shop.dto.PurchasableItemView;
 import com.perfume.shop.entity.Product;
 import com.perfume.shop.entity.ProductVariant;
 import com.perfume.shop.exception.ResourceNotFoundException;
@@ -19,7 +20,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -53,6 +56,17 @@ public class ProductService {
                 .orElseThrow(() -> new ResourceNotFoundException("Product", id.toString()));
     }
 
+    /**
+     * Price and stock rows for many products at once, grouped by product id
+     */
+    public Map<Long, List<PurchasableItemView>> getPurchasableViews(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        return productRepository.findPurchasableViews(productIds).stream()
+                .collect(Collectors.groupingBy(PurchasableItemView::getProductId));
+    }
+
     @Cacheable(value = "categories", key = "#category + '_' + #pageable.pageNumber + '_' + #pageable.pageSize")
     public Page<ProductResponse> getProductsByCategory(String category, Pageable pageable) {
         return productRepository.findByCategoryAndActiveTrue(category, pageable)
@@ -0,0 +1,213 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.exception.PaymentGatewayException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared HTTP client for the Razorpay REST API.
+ *
+ * One HttpClient for the whole application, so connections are pooled and
+ * reused across checkouts instead of being set up per call. Every call has a
+ * connect and a request timeout, passes a bulkhead that caps concurrent
+ * gateway calls, and a circuit breaker that fails fast with a 503 while the
+ * gateway is unhealthy. Gateway 4xx answers do not trip the breaker.
+ */
+@Component
+@Slf4j
+public class RazorpayGatewayClient {
+
+    private static final String METRIC_REQUESTS = "shop.razorpay.requests";
+    private static final String METRIC_REJECTED = "shop.razorpay.rejected";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.razorpay.base-url:https://api.razorpay.com/v1}")
+    private String baseUrl;
+
+    @Value("${app.razorpay.key-id}")
+    private String keyId;
+
+    @Value("${app.razorpay.key-secret}")
+    private String keySecret;
+
+    @Value("${app.razorpay.client.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${app.razorpay.client.request-timeout-ms:5000}")
+    private long requestTimeoutMs;
+
+    @Value("${app.razorpay.client.max-concurrent-calls:20}")
+    private int maxConcurrentCalls;
+
+    @Value("${app.razorpay.client.bulkhead-wait-ms:200}")
+    private long bulkheadWaitMs;
+
+    @Value("${app.razorpay.client.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${app.razorpay.client.circuit.open-seconds:30}")
+    private long openSeconds;
+
+    private HttpClient httpClient;
+    private Semaphore bulkhead;
+    private CircuitBreaker circuitBreaker;
+    private String authorization;
+
+    public RazorpayGatewayClient(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1) // keep-alive pool, reused across calls
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, Duration.ofSeconds(openSeconds));
+        this.authorization = "Basic " + Base64.getEncoder()
+                .encodeToString((keyId + ":" + keySecret).getBytes(StandardCharsets.UTF_8));
+
+        Gauge.builder("shop.razorpay.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("Razorpay circuit state (0=closed, 1=open, 2=half-open)")
+                .register(meterRegistry);
+        Gauge.builder("shop.razorpay.inflight", bulkhead, permits -> maxConcurrentCalls - permits.availablePermits())
+                .description("Razorpay calls in flight")
+                .register(meterRegistry);
+
+        log.info("Razorpay client configured: baseUrl={}, maxConcurrentCalls={}, requestTimeoutMs={}",
+                baseUrl, maxConcurrentCalls, requestTimeoutMs);
+    }
+
+    /**
+     * Create an order (POST /orders)
+     */
+    public JSONObject createOrder(JSONObject orderRequest) {
+        return execute("create_order", request("/orders")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(orderRequest.toString())));
+    }
+
+    /**
+     * List the payments attempted against an order (GET /orders/{id}/payments)
+     */
+    public JSONObject fetchOrderPayments(String razorpayOrderId) {
+        String path = "/orders/" + URLEncoder.encode(razorpayOrderId, StandardCharsets.UTF_8) + "/payments";
+        return execute("fetch_order_payments", request(path).GET());
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofMillis(requestTimeoutMs))
+                .header("Authorization", authorization)
+                .header("Accept", "application/json");
+    }
+
+    private JSONObject execute(String operation, HttpRequest.Builder builder) {
+        boolean permitted;
+        try {
+            permitted = bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permitted = false;
+        }
+        if (!permitted) {
+            reject(operation, "bulkhead_full");
+            throw PaymentGatewayException.unavailable("Payment gateway is busy. Please try again in a few moments.");
+        }
+
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.release();
+            reject(operation, "circuit_open");
+            throw PaymentGatewayException.unavailable(
+                    "Payment gateway is temporarily unavailable. Please try again in a few moments.");
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "io_error";
+        boolean reported = false;
+        try {
+            HttpResponse<String> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+            int status = response.statusCode();
+
+            reported = true;
+            if (status >= 500 || status == 429) {
+                outcome = "server_error";
+                circuitBreaker.onFailure();
+                throw PaymentGatewayException.unavailable("Payment gateway error (HTTP " + status + ")");
+            }
+
+            circuitBreaker.onSuccess();
+            if (status >= 400) {
+                outcome = "client_error";
+                throw PaymentGatewayException.rejected(
+                        "Payment gateway rejected " + operation + " (HTTP " + status + "): " + response.body(), status);
+            }
+
+            outcome = "success";
+            return new JSONObject(response.body());
+
+        } catch (HttpTimeoutException e) {
+            outcome = "timeout";
+            reported = true;
+            circuitBreaker.onFailure();
+            throw PaymentGatewayException.unavailable("Payment gateway timed out");
+        } catch (IOException e) {
+            reported = true;
+            circuitBreaker.onFailure();
+            throw PaymentGatewayException.unavailable("Payment gateway unreachable: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reported = true;
+            circuitBreaker.onFailure();
+            throw PaymentGatewayException.unavailable("Payment gateway call interrupted");
+        } finally {
+            if (!reported) {
+                // Unchecked failure before any outcome: free a HALF_OPEN trial slot
+                outcome = "error";
+                circuitBreaker.release();
+            }
+            bulkhead.release();
+            sample.stop(Timer.builder(METRIC_REQUESTS)
+                    .description("Razorpay API calls")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private void reject(String operation, String reason) {
+        log.warn("Razorpay {} rejected locally: {}", operation, reason);
+        Counter.builder(METRIC_REJECTED)
+                .description("Razorpay calls failed fast without reaching the gateway")
+                .tag("operation", operation)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -3,9 +3,8 @@ package com.perfume.shop.service;
 import com.perfume.shop.dto.RazorpayOrderRequest;
 import com.perfume.shop.dto.RazorpayOrderResponse;
 import com.perfume.shop.dto.RazorpayPaymentVerificationRequest;
+import com.perfume.shop.exception.PaymentGatewayException;
 import com.perfume.shop.security.CryptoUtil;
-import com.razorpay.RazorpayClient;
-import com.razorpay.RazorpayException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONObject;
@@ -22,7 +21,7 @@ import java.util.HexFormat;
 /**
  * Service for Razorpay payment gateway integration.
  * Handles:
- * - Order creation in Razorpay
+ * - Order creation in Razorpay (via the shared, pooled {@link RazorpayGatewayClient})
  * - Payment signature verification (HMAC SHA256)
  * - Production-ready error handling with secure crypto operations
  * - Timing attack prevention with constant-time comparison
@@ -32,6 +31,8 @@ import java.util.HexFormat;
 @Slf4j
 public class RazorpayService {
     
+    private final RazorpayGatewayClient gatewayClient;
+    
     @Value("${app.razorpay.key-id}")
     private String razorpayKeyId;
     
@@ -91,8 +92,6 @@ public class RazorpayService {
             
             log.info("Creating Razorpay order for amount: {}", request.getAmount());
             
-            RazorpayClient client = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
-            
             JSONObject orderRequest = new JSONObject();
             orderRequest.put("amount", request.getAmount()); // Amount in paise/cents
             orderRequest.put("currency", request.getCurrency());
@@ -107,9 +106,9 @@ public class RazorpayService {
             orderRequest.put("notes", notes);
             
             // Create order in Razorpay
-            com.razorpay.Order razorpayOrder = client.Orders.create(orderRequest);
+            JSONObject razorpayOrder = gatewayClient.createOrder(orderRequest);
             
-            String razorpayOrderId = razorpayOrder.get("id").toString();
+            String razorpayOrderId = razorpayOrder.getString("id");
             log.info("Razorpay order created: {} for receipt: {}", razorpayOrderId, request.getReceipt());
             
             // Return order details for frontend
@@ -123,14 +122,12 @@ public class RazorpayService {
                     .customerPhone(request.getCustomerPhone())
                     .build();
             
-        } catch (RazorpayException e) {
+        } catch (PaymentGatewayException e) {
             log.error("Razorpay API error: {} - {}", e.getMessage(), e.getClass().getSimpleName());
             
             // If authentication fails, fall back to demo mode
-            if (e.getMessage().contains("Authentication failed") || 
-                e.getMessage().contains("BAD_REQUEST_ERROR") ||
-                e.getMessage().contains("401") ||
-                e.getMessage().contains("403")) {
+            int gatewayStatus = e.getGatewayStatus();
+            if (gatewayStatus == 400 || gatewayStatus == 401 || gatewayStatus == 403) {
                 
                 log.warn("⚠️  Razorpay authentication failed. Falling back to DEMO MODE.");
                 log.warn("Please verify your Razorpay Key ID and Secret are valid test credentials.");
@@ -150,9 +147,9 @@ public class RazorpayService {
                         .build();
             }
             
-            // For other errors, throw the exception
-            log.error("Razorpay order creation failed: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to create Razorpay order: " + e.getMessage());
+            // Gateway down, saturated or circuit open - fail fast with the gateway error
+            log.error("Razorpay order creation failed: {}", e.getMessage());
+            throw e;
         }
     }
     
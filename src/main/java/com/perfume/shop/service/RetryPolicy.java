@@ -0,0 +1,35 @@
+package com.perfume.shop.service;
+
+/**
+ * Retry arithmetic shared by the leased work queues (outbox events, webhook events).
+ *
+ * Failed attempts back off exponentially from a per-queue base delay, and the
+ * error recorded on the row is cut to fit its column.
+ */
+final class RetryPolicy {
+
+    static final long MAX_BACKOFF_SECONDS = 3600;
+    static final int MAX_ERROR_LENGTH = 1000;
+
+    private RetryPolicy() {
+    }
+
+    /**
+     * Exponential backoff: base, 2x base, 4x base ... capped at one hour
+     */
+    static long backoffSeconds(long baseSeconds, int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(baseSeconds << exponent, MAX_BACKOFF_SECONDS);
+    }
+
+    /**
+     * Error text recorded for a failed attempt
+     */
+    static String errorOf(Exception e) {
+        return truncate(e.getClass().getSimpleName() + ": " + e.getMessage(), MAX_ERROR_LENGTH);
+    }
+
+    static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(0, max) : value;
+    }
+}
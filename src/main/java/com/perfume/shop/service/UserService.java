@@ -6,6 +6,7 @@ import com.perfume.shop.entity.User;
 import com.perfume.shop.exception.UserNotFoundException;
 import com.perfume.shop.repository.UserRepository;
 import com.perfume.shop.security.PasswordPolicyValidator;
+import com.perfume.shop.security.UserPrincipalCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -24,6 +25,7 @@ public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final PasswordPolicyValidator passwordPolicyValidator;
+    private final UserPrincipalCache principalCache;
     
     /**
      * Get user by ID
@@ -57,6 +59,7 @@ public class UserService {
         user.setZipCode(request.getZipCode());
         
         User updatedUser = userRepository.save(user);
+        principalCache.evict(user.getEmail());
         log.info("User profile updated: {}", user.getEmail());
         
         return updatedUser;
@@ -90,6 +93,7 @@ public class UserService {
         // Update password
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        principalCache.evict(user.getEmail());
         
         log.info("Password changed successfully for user: {}", user.getEmail());
     }
@@ -0,0 +1,258 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.entity.WebhookEvent;
+import com.perfume.shop.exception.PaymentOnCancelledOrderException;
+import com.perfume.shop.repository.WebhookEventAppendRepository;
+import com.perfume.shop.repository.WebhookEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Two-stage Razorpay webhook pipeline.
+ *
+ * Stage one ({@link #ingest}) runs on the request thread: it appends the raw
+ * event with a single insert - the unique event id is the dedup check - and
+ * the controller acks. Stage two runs on the webhook worker: claimed events are
+ * applied to their order and the outcome recorded. Failures back off
+ * exponentially until max attempts, then park as FAILED.
+ */
+@Service
+@Slf4j
+public class WebhookEventService {
+
+    private final WebhookEventRepository webhookEventRepository;
+    private final WebhookEventAppendRepository webhookEventAppendRepository;
+    private final OrderService orderService;
+    private final Counter acceptedCounter;
+    private final Counter duplicateCounter;
+    private final Counter appliedCounter;
+    private final Counter failedCounter;
+
+    @Value("${app.webhooks.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.webhooks.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${app.webhooks.backoff-seconds:15}")
+    private long backoffSeconds;
+
+    public WebhookEventService(WebhookEventRepository webhookEventRepository,
+                               WebhookEventAppendRepository webhookEventAppendRepository,
+                               OrderService orderService,
+                               MeterRegistry meterRegistry) {
+        this.webhookEventRepository = webhookEventRepository;
+        this.webhookEventAppendRepository = webhookEventAppendRepository;
+        this.orderService = orderService;
+        this.acceptedCounter = Counter.builder("shop.webhooks.received")
+                .tag("result", "accepted")
+                .description("Webhook events appended to the ingestion queue")
+                .register(meterRegistry);
+        this.duplicateCounter = Counter.builder("shop.webhooks.received")
+                .tag("result", "duplicate")
+                .description("Redelivered webhook events acked without queueing")
+                .register(meterRegistry);
+        this.appliedCounter = Counter.builder("shop.webhooks.processed")
+                .tag("result", "applied")
+                .description("Webhook events applied by the worker")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("shop.webhooks.processed")
+                .tag("result", "failed")
+                .description("Webhook event processing attempts that failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Durably queue a verified Razorpay event.
+     *
+     * @return true if queued, false if the event id had already been received
+     * @throws org.json.JSONException if the payload is not a Razorpay event
+     */
+    public boolean ingest(String payload) {
+        JSONObject event = new JSONObject(payload);
+        WebhookEvent webhookEvent = WebhookEvent.builder()
+                .eventId(event.getString("id"))
+                .eventType(event.getString("event"))
+                .orderKey(orderKeyOf(event))
+                .payload(payload)
+                .build();
+
+        if (!webhookEventAppendRepository.append(webhookEvent)) {
+            duplicateCounter.increment();
+            log.info("Webhook event {} already received. Returning success for idempotency.", webhookEvent.getEventId());
+            return false;
+        }
+
+        acceptedCounter.increment();
+        log.debug("Queued Razorpay event: {} of type: {}", webhookEvent.getEventId(), webhookEvent.getEventType());
+        return true;
+    }
+
+    /**
+     * Claim up to {@code limit} due events for this node.
+     * Claimed rows are leased; if this node dies the lease expires and another node picks them up.
+     */
+    @Transactional
+    public List<WebhookEvent> claimBatch(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = webhookEventRepository.lockDueIds(now, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        webhookEventRepository.claim(ids, WebhookEvent.Status.PROCESSING, now.plusSeconds(leaseSeconds));
+        return webhookEventRepository.findByIdInOrderByIdAsc(ids);
+    }
+
+    /**
+     * Apply a claimed event and record the outcome.
+     *
+     * @return true if the event was applied
+     */
+    public boolean process(WebhookEvent webhookEvent) {
+        try {
+            JSONObject event = new JSONObject(webhookEvent.getPayload());
+            String result = switch (webhookEvent.getEventType()) {
+                case "payment.authorized" -> handlePaymentAuthorized(event);
+                case "payment.failed" -> handlePaymentFailed(event);
+                case "order.paid" -> handleOrderPaid(event);
+                default -> {
+                    log.debug("Unhandled event type: {}", webhookEvent.getEventType());
+                    yield "Event type not handled: " + webhookEvent.getEventType();
+                }
+            };
+
+            webhookEventRepository.markDone(webhookEvent.getId(), WebhookEvent.Status.DONE,
+                    RetryPolicy.truncate(result, 500), LocalDateTime.now());
+            appliedCounter.increment();
+            return true;
+        } catch (Exception e) {
+            recordFailure(webhookEvent, e);
+            return false;
+        }
+    }
+
+    /**
+     * Handle payment.authorized event from Razorpay.
+     * Confirms the order and deducts stock atomically.
+     */
+    private String handlePaymentAuthorized(JSONObject event) {
+        JSONObject entity = event.getJSONObject("payload").getJSONObject("payment").getJSONObject("entity");
+
+        String razorpayPaymentId = entity.getString("id");
+        String razorpayOrderId = entity.getString("order_id");
+        String status = entity.getString("status");
+
+        log.info("Payment authorized: {} for order: {} with status: {}",
+                razorpayPaymentId, razorpayOrderId, status);
+
+        // Verify payment status
+        if (!"authorized".equals(status)) {
+            log.warn("Payment {} has status {} instead of authorized", razorpayPaymentId, status);
+            return "Payment status is " + status + ", not authorized";
+        }
+
+        // Confirm payment - this will atomically deduct stock
+        Order order;
+        try {
+            order = orderService.confirmPayment(razorpayOrderId, razorpayPaymentId);
+        } catch (PaymentOnCancelledOrderException e) {
+            // Recorded for refund; retrying cannot change the outcome
+            return "Order " + e.getOrderNumber() + " was already cancelled - payment "
+                    + razorpayPaymentId + " recorded for refund";
+        }
+
+        log.info("Payment confirmation completed for order: {}", order.getOrderNumber());
+        return "Payment confirmed successfully for order: " + order.getOrderNumber();
+    }
+
+    /**
+     * Handle payment.failed event from Razorpay.
+     * Logs the failure and cancels the order if it is still awaiting payment.
+     */
+    private String handlePaymentFailed(JSONObject event) {
+        JSONObject entity = event.getJSONObject("payload").getJSONObject("payment").getJSONObject("entity");
+
+        String razorpayPaymentId = entity.getString("id");
+        String razorpayOrderId = entity.optString("order_id", "N/A");
+        String reason = entity.optString("description", "Unknown reason");
+        String errorCode = entity.optString("error_code", "N/A");
+
+        log.warn("Payment failed: {} for order: {}. Reason: {} (Error Code: {})",
+                razorpayPaymentId, razorpayOrderId, reason, errorCode);
+
+        // Cancel under the order's row lock, so a concurrent confirmation is never overwritten
+        if (!"N/A".equals(razorpayOrderId)) {
+            orderService.cancelForFailedPayment(razorpayOrderId, reason)
+                    .ifPresent(order -> log.info("Order {} marked as cancelled due to payment failure",
+                            order.getOrderNumber()));
+        }
+
+        return "Payment failure logged: " + reason + " (Code: " + errorCode + ")";
+    }
+
+    /**
+     * Handle order.paid event from Razorpay.
+     * This is an additional confirmation that the order has been paid.
+     */
+    private String handleOrderPaid(JSONObject event) {
+        JSONObject entity = event.getJSONObject("payload").getJSONObject("order").getJSONObject("entity");
+
+        String razorpayOrderId = entity.getString("id");
+        String status = entity.getString("status");
+
+        log.info("Order paid event received: {} with status: {}", razorpayOrderId, status);
+        return "Order paid event processed: " + status;
+    }
+
+    private void recordFailure(WebhookEvent webhookEvent, Exception e) {
+        failedCounter.increment();
+        String error = RetryPolicy.errorOf(e);
+        LocalDateTime now = LocalDateTime.now();
+
+        if (webhookEvent.getAttempts() >= maxAttempts) {
+            log.error("Webhook event {} ({}) failed permanently after {} attempts",
+                    webhookEvent.getEventId(), webhookEvent.getEventType(), webhookEvent.getAttempts(), e);
+            webhookEventRepository.release(webhookEvent.getId(), WebhookEvent.Status.FAILED, now, error, now);
+            return;
+        }
+
+        LocalDateTime nextAttempt = now.plusSeconds(RetryPolicy.backoffSeconds(backoffSeconds, webhookEvent.getAttempts()));
+        log.warn("Webhook event {} ({}) failed on attempt {}/{}, retrying at {}: {}",
+                webhookEvent.getEventId(), webhookEvent.getEventType(),
+                webhookEvent.getAttempts(), maxAttempts, nextAttempt, error);
+        webhookEventRepository.release(webhookEvent.getId(), WebhookEvent.Status.PENDING, nextAttempt, error, now);
+    }
+
+    /**
+     * Razorpay order id the event belongs to, used to keep each order's events in sequence
+     */
+    static String orderKeyOf(JSONObject event) {
+        JSONObject payload = event.optJSONObject("payload");
+        if (payload == null) {
+            return null;
+        }
+
+        JSONObject payment = payload.optJSONObject("payment");
+        if (payment != null && payment.optJSONObject("entity") != null) {
+            String orderId = payment.getJSONObject("entity").optString("order_id", "");
+            return orderId.isEmpty() ? null : orderId;
+        }
+
+        JSONObject order = payload.optJSONObject("order");
+        if (order != null && order.optJSONObject("entity") != null) {
+            String orderId = order.getJSONObject("entity").optString("id", "");
+            return orderId.isEmpty() ? null : orderId;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,83 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.entity.WebhookEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Scheduled worker that drains the webhook ingestion queue.
+ *
+ * Each poll claims batches of due events (FOR UPDATE SKIP LOCKED, so any number
+ * of nodes can run the worker) and applies them on the webhook pool. The claim
+ * query holds back an event while an earlier one for the same order is pending
+ * or in flight, so a batch never carries two events for one order and each
+ * order sees its events in arrival order, retries included.
+ */
+@Component
+@Slf4j
+public class WebhookEventWorker {
+
+    private final WebhookEventService webhookEventService;
+    private final Executor webhookExecutor;
+
+    @Value("${app.webhooks.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.webhooks.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.webhooks.max-batches-per-poll:10}")
+    private int maxBatchesPerPoll;
+
+    public WebhookEventWorker(WebhookEventService webhookEventService,
+                              @Qualifier("webhookExecutor") Executor webhookExecutor) {
+        this.webhookEventService = webhookEventService;
+        this.webhookExecutor = webhookExecutor;
+    }
+
+    /**
+     * Poll for due events. Bounded per run so a large backlog does not hold
+     * the shared scheduler thread.
+     */
+    @Scheduled(fixedDelayString = "${app.webhooks.poll-interval-ms:500}")
+    public void drain() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < maxBatchesPerPoll; i++) {
+                List<WebhookEvent> batch = webhookEventService.claimBatch(batchSize);
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                dispatch(batch);
+
+                if (batch.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Webhook worker run failed", e);
+        }
+    }
+
+    private void dispatch(List<WebhookEvent> batch) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(batch.size());
+        for (WebhookEvent event : batch) {
+            futures.add(CompletableFuture.runAsync(() -> webhookEventService.process(event), webhookExecutor));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        log.debug("Webhook worker processed {} events", batch.size());
+    }
+}
@@ -0,0 +1,215 @@
+package com.perfume.shop.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory working copy of a user's cart, owned by {@link CartStore}.
+ *
+ * Every mutation bumps {@link #getVersion()}; the cart is dirty while the version
+ * is ahead of the last flushed version. A new line carries a temporary negative id
+ * until {@link CartStore} writes it, which it does before any response is built;
+ * the temporary id keeps resolving afterwards for results recorded mid-mutation.
+ *
+ * The cart also remembers its lines as last loaded or written, so a flush writes
+ * only the lines this copy changed ({@link #changes()}) and never overwrites or
+ * deletes lines another request or node wrote in the meantime.
+ *
+ * Not thread-safe on its own - callers go through {@link CartStore}, which holds {@link #lock}.
+ */
+@Getter
+public class WorkingCart {
+
+    /**
+     * Identity of a line: one line per product/variant pair, as in cart_items
+     */
+    public record LineKey(Long productId, Long variantId) {
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder(toBuilder = true)
+    public static class Line {
+        private Long id;
+        private Long productId;
+        private Long variantId;
+        private String productName;
+        private String productBrand;
+        private String productImage;
+        private Integer variantSize;
+        private Integer availableStock;
+        private Integer quantity;
+        private BigDecimal price;
+
+        public LineKey key() {
+            return new LineKey(productId, variantId);
+        }
+    }
+
+    /**
+     * Lines to write since the last load or flush: added or changed lines, and keys of removed ones
+     */
+    record Changes(List<Line> lines, List<Line> upserts, Set<LineKey> removals) {
+    }
+
+    @Getter(AccessLevel.NONE)
+    final ReentrantLock lock = new ReentrantLock();
+
+    private final Long userId;
+    private Long cartId;
+    private final List<Line> lines;
+    private final Map<Long, Long> idAliases = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    private Map<LineKey, Line> persistedLines;
+    private long version;
+    private long flushedVersion;
+    private long nextTempId = -1;
+    private LocalDateTime lastUpdated;
+    private LocalDateTime lastAccessed;
+    private boolean discarded;
+
+    WorkingCart(Long userId, Long cartId, List<Line> lines, LocalDateTime lastUpdated) {
+        this.userId = userId;
+        this.cartId = cartId;
+        this.lines = new ArrayList<>(lines);
+        this.persistedLines = byKey(snapshotLines());
+        this.lastUpdated = lastUpdated;
+        this.lastAccessed = LocalDateTime.now();
+    }
+
+    public boolean isDirty() {
+        return version > flushedVersion;
+    }
+
+    boolean hasTemporaryLines() {
+        return lines.stream().anyMatch(line -> line.getId() != null && line.getId() < 0);
+    }
+
+    /**
+     * Database id for a line id recorded before the line was written
+     */
+    public Long resolveId(Long id) {
+        return id != null ? idAliases.getOrDefault(id, id) : null;
+    }
+
+    public int getItemCount() {
+        return lines.stream().mapToInt(Line::getQuantity).sum();
+    }
+
+    /**
+     * Find a line by its current or temporary id
+     */
+    public Optional<Line> findLine(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        Long resolved = idAliases.getOrDefault(id, id);
+        return lines.stream().filter(line -> Objects.equals(line.getId(), resolved)).findFirst();
+    }
+
+    public Optional<Line> findLine(Long productId, Long variantId) {
+        LineKey key = new LineKey(productId, variantId);
+        return lines.stream().filter(line -> line.key().equals(key)).findFirst();
+    }
+
+    /**
+     * Add a new line with a temporary id
+     */
+    public Line addLine(Line line) {
+        line.setId(nextTempId--);
+        lines.add(line);
+        return line;
+    }
+
+    public void removeLine(Line line) {
+        lines.remove(line);
+    }
+
+    public void clearLines() {
+        lines.clear();
+    }
+
+    /**
+     * Record a mutation
+     */
+    void touch() {
+        version++;
+        lastUpdated = LocalDateTime.now();
+        lastAccessed = lastUpdated;
+    }
+
+    void accessed() {
+        lastAccessed = LocalDateTime.now();
+    }
+
+    void discard() {
+        discarded = true;
+    }
+
+    /**
+     * Copy of the lines as of the current version, for flushing outside the cart
+     */
+    List<Line> snapshotLines() {
+        return lines.stream().map(line -> line.toBuilder().build()).toList();
+    }
+
+    /**
+     * What a flush has to write: the current lines compared with the lines as last loaded or written
+     */
+    Changes changes() {
+        List<Line> snapshot = snapshotLines();
+        List<Line> upserts = new ArrayList<>();
+        Set<LineKey> removals = new HashSet<>(persistedLines.keySet());
+        for (Line line : snapshot) {
+            removals.remove(line.key());
+            Line before = persistedLines.get(line.key());
+            if (before == null || !Objects.equals(before.getQuantity(), line.getQuantity())
+                    || !Objects.equals(before.getPrice(), line.getPrice())) {
+                upserts.add(line);
+            }
+        }
+        return new Changes(snapshot, upserts, removals);
+    }
+
+    /**
+     * Apply the result of a successful flush of {@code flushedAt}, which wrote {@code written}.
+     * Temporary ids are swapped for database ids; later mutations stay dirty.
+     */
+    void markFlushed(long flushedAt, Long persistedCartId, Map<LineKey, Long> persistedIds, List<Line> written) {
+        this.cartId = persistedCartId;
+        if (flushedAt >= flushedVersion) {
+            this.persistedLines = byKey(written);
+        }
+        for (Line line : lines) {
+            Long persistedId = persistedIds.get(line.key());
+            if (line.getId() != null && line.getId() < 0 && persistedId != null) {
+                idAliases.put(line.getId(), persistedId);
+                line.setId(persistedId);
+            }
+        }
+        this.flushedVersion = Math.max(flushedVersion, flushedAt);
+    }
+
+    private static Map<LineKey, Line> byKey(List<Line> lines) {
+        Map<LineKey, Line> byKey = new HashMap<>();
+        lines.forEach(line -> byKey.put(line.key(), line));
+        return byKey;
+    }
+}
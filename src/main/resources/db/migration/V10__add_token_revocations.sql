@@ -0,0 +1,16 @@
+-- JWT revocation list: single tokens (by jti) and per-user "not before" cut-offs
+CREATE TABLE IF NOT EXISTS token_revocations (
+    id BIGSERIAL PRIMARY KEY,
+    token_id VARCHAR(64),
+    user_email VARCHAR(100),
+    not_before TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    reason VARCHAR(50),
+    created_at TIMESTAMP NOT NULL
+);
+
+-- Incremental sync between nodes: WHERE created_at > ? AND expires_at > ?
+CREATE INDEX IF NOT EXISTS idx_token_revocation_created ON token_revocations(created_at);
+
+-- Purge: DELETE ... WHERE expires_at < ?
+CREATE INDEX IF NOT EXISTS idx_token_revocation_expires ON token_revocations(expires_at);
@@ -0,0 +1,3 @@
+-- Outbox claim: an event waits while an earlier event of the same order and handler is unfinished
+CREATE INDEX IF NOT EXISTS idx_outbox_unfinished_lane ON outbox_events(aggregate_type, aggregate_id, handler, id)
+    WHERE status IN ('PENDING', 'PROCESSING');
@@ -0,0 +1,16 @@
+-- Payments captured for orders that were already cancelled: each needs a refund or a reinstated order
+CREATE TABLE IF NOT EXISTS payment_refund_tasks (
+    id BIGSERIAL PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    order_number VARCHAR(100) NOT NULL,
+    razorpay_order_id VARCHAR(100) NOT NULL,
+    razorpay_payment_id VARCHAR(100) NOT NULL,
+    amount DECIMAL(10, 2),
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    resolved_at TIMESTAMP,
+    CONSTRAINT uk_refund_task_payment UNIQUE (razorpay_payment_id)
+);
+
+-- Admin work queue: WHERE status = 'OPEN' ORDER BY created_at
+CREATE INDEX IF NOT EXISTS idx_refund_task_status ON payment_refund_tasks(status, created_at);
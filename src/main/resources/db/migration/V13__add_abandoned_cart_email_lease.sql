@@ -0,0 +1,5 @@
+-- Abandoned cart email claims: nodes lease carts while sending, and only successful sends mark a cart as emailed
+ALTER TABLE carts ADD COLUMN IF NOT EXISTS abandoned_email_locked_until TIMESTAMP;
+
+-- Failed sends per cart: after app.abandoned-cart.max-attempts the cart is marked done instead of released again
+ALTER TABLE carts ADD COLUMN IF NOT EXISTS abandoned_email_attempts INTEGER NOT NULL DEFAULT 0;
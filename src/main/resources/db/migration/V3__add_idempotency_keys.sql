@@ -0,0 +1,20 @@
+-- Idempotency keys for checkout and payment verification
+-- Stores the first response per (user, endpoint, key) so client retries are replayed
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    id BIGSERIAL PRIMARY KEY,
+    idempotency_key VARCHAR(100) NOT NULL,
+    user_id BIGINT NOT NULL,
+    endpoint VARCHAR(100) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    response_status INTEGER,
+    response_body TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    locked_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    version BIGINT,
+    CONSTRAINT uk_idempotency_scope UNIQUE (user_id, endpoint, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_expires ON idempotency_keys(expires_at);
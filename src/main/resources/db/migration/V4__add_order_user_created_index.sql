@@ -0,0 +1,5 @@
+-- "My orders" summary query: WHERE user_id = ? ORDER BY created_at DESC
+CREATE INDEX IF NOT EXISTS idx_order_user_created ON orders(user_id, created_at);
+
+-- Item count / first image subqueries
+CREATE INDEX IF NOT EXISTS idx_order_item_order ON order_items(order_id);
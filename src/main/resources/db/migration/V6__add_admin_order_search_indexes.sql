@@ -0,0 +1,13 @@
+-- Admin order search / export filters
+-- Status + date range (most common: "all SHIPPED orders last week")
+CREATE INDEX IF NOT EXISTS idx_order_status_created ON orders(status, created_at);
+
+-- City + date range, matched case-insensitively
+CREATE INDEX IF NOT EXISTS idx_order_city_created ON orders(LOWER(shipping_city), created_at);
+
+-- Customer lookup by email (order copy and account email)
+CREATE INDEX IF NOT EXISTS idx_order_customer_email ON orders(LOWER(customer_email));
+CREATE INDEX IF NOT EXISTS idx_user_email_lower ON users(LOWER(email));
+
+-- Coupon usage reports
+CREATE INDEX IF NOT EXISTS idx_order_coupon_created ON orders(UPPER(coupon_code), created_at);
@@ -0,0 +1,16 @@
+-- Webhook ingestion queue: the endpoint appends events and acks, the webhook worker applies them
+ALTER TABLE webhook_events ALTER COLUMN processed_at DROP NOT NULL;
+
+ALTER TABLE webhook_events ADD COLUMN IF NOT EXISTS order_key VARCHAR(100);
+ALTER TABLE webhook_events ADD COLUMN IF NOT EXISTS status VARCHAR(20) NOT NULL DEFAULT 'PENDING';
+ALTER TABLE webhook_events ADD COLUMN IF NOT EXISTS attempts INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE webhook_events ADD COLUMN IF NOT EXISTS next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE webhook_events ADD COLUMN IF NOT EXISTS locked_until TIMESTAMP;
+
+-- Events received before the queue existed were handled inline; keep failures for inspection
+UPDATE webhook_events SET status = CASE WHEN processed THEN 'DONE' ELSE 'FAILED' END;
+
+-- Worker claim: WHERE status = ? AND next_attempt_at <= ? ... FOR UPDATE SKIP LOCKED
+CREATE INDEX IF NOT EXISTS idx_webhook_status_next ON webhook_events(status, next_attempt_at);
+-- Per-order ordering check in the claim query
+CREATE INDEX IF NOT EXISTS idx_webhook_order_key ON webhook_events(order_key);
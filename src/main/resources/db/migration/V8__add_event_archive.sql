@@ -0,0 +1,20 @@
+-- Event retention: finished webhook/email events older than their retention window
+-- are moved here in batches, one gzipped JSON array per chunk
+CREATE TABLE IF NOT EXISTS event_archive (
+    id BIGSERIAL PRIMARY KEY,
+    source VARCHAR(50) NOT NULL,
+    first_id BIGINT NOT NULL,
+    last_id BIGINT NOT NULL,
+    row_count INTEGER NOT NULL,
+    from_created_at TIMESTAMP NOT NULL,
+    to_created_at TIMESTAMP NOT NULL,
+    archived_at TIMESTAMP NOT NULL,
+    data BYTEA NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_event_archive_source_created ON event_archive(source, from_created_at);
+
+-- Duplicates the unique constraint on event_id
+DROP INDEX IF EXISTS idx_webhook_event_id;
+-- Boolean column, superseded by idx_webhook_status_next since V7
+DROP INDEX IF EXISTS idx_webhook_processed;
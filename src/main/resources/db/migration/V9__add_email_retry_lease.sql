@@ -0,0 +1,5 @@
+-- Email retry claims: retry workers lease rows so several nodes never resend the same email
+ALTER TABLE email_events ADD COLUMN IF NOT EXISTS locked_until TIMESTAMP;
+
+-- Retry claim: WHERE status = 'PENDING' AND next_retry_at <= ? ... FOR UPDATE SKIP LOCKED
+CREATE INDEX IF NOT EXISTS idx_email_status_next_retry ON email_events(status, next_retry_at);
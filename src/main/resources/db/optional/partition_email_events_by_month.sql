@@ -0,0 +1,65 @@
+-- OPTIONAL (PostgreSQL only): range-partition email_events by month.
+--
+-- Not applied automatically. With monthly partitions, retention can also drop a
+-- whole month once EventRetentionService has archived it, instead of deleting rows.
+-- Run during a maintenance window; the copy holds an exclusive lock on email_events.
+--
+-- webhook_events stays unpartitioned: a partitioned table can only enforce a
+-- unique key that includes the partition column, and the unique event_id is the
+-- ingestion dedup check.
+--
+-- Hibernate must not manage this table afterwards (ddl-auto: validate or none).
+
+BEGIN;
+
+LOCK TABLE email_events IN ACCESS EXCLUSIVE MODE;
+
+ALTER TABLE email_events RENAME TO email_events_unpartitioned;
+-- Free the constraint and index names for the new table
+ALTER INDEX IF EXISTS email_events_pkey RENAME TO email_events_unpartitioned_pkey;
+DROP INDEX IF EXISTS idx_email_order_id;
+DROP INDEX IF EXISTS idx_email_type;
+DROP INDEX IF EXISTS idx_email_status;
+DROP INDEX IF EXISTS idx_email_created;
+
+CREATE TABLE email_events (
+    LIKE email_events_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Partitions from the oldest row up to two months ahead
+DO $$
+DECLARE
+    month_start DATE := date_trunc('month', COALESCE(
+            (SELECT MIN(created_at) FROM email_events_unpartitioned), now()))::date;
+    last_month DATE := (date_trunc('month', now()) + INTERVAL '2 months')::date;
+BEGIN
+    WHILE month_start <= last_month LOOP
+        EXECUTE format(
+            'CREATE TABLE IF NOT EXISTS %I PARTITION OF email_events FOR VALUES FROM (%L) TO (%L)',
+            'email_events_' || to_char(month_start, 'YYYY_MM'),
+            month_start,
+            (month_start + INTERVAL '1 month')::date);
+        month_start := (month_start + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO email_events SELECT * FROM email_events_unpartitioned;
+
+-- Keep id generation on the existing sequence
+ALTER SEQUENCE IF EXISTS email_events_id_seq OWNED BY email_events.id;
+
+CREATE INDEX IF NOT EXISTS idx_email_order_id ON email_events(order_id);
+CREATE INDEX IF NOT EXISTS idx_email_type ON email_events(email_type);
+CREATE INDEX IF NOT EXISTS idx_email_status ON email_events(status);
+CREATE INDEX IF NOT EXISTS idx_email_created ON email_events(created_at);
+
+DROP TABLE email_events_unpartitioned;
+
+COMMIT;
+
+-- Monthly job (e.g. pg_cron) to keep a partition ahead:
+--   CREATE TABLE IF NOT EXISTS email_events_YYYY_MM PARTITION OF email_events
+--       FOR VALUES FROM ('YYYY-MM-01') TO ('<next month>-01');
+-- Once a month has been archived and is empty:
+--   DROP TABLE email_events_YYYY_MM;
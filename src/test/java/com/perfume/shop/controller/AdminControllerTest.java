@@ -0,0 +1,178 @@
+package com.perfume.shop.controller;
+
+import com.perfume.shop.dto.ApiResponse;
+import com.perfume.shop.dto.UserResponse;
+import com.perfume.shop.entity.PaymentRefundTask;
+import com.perfume.shop.entity.User;
+import com.perfume.shop.exception.ApplicationException;
+import com.perfume.shop.repository.OrderRepository;
+import com.perfume.shop.repository.PaymentRefundTaskRepository;
+import com.perfume.shop.repository.ProductRepository;
+import com.perfume.shop.repository.UserRepository;
+import com.perfume.shop.security.TokenRevocationService;
+import com.perfume.shop.security.UserPrincipalCache;
+import com.perfume.shop.service.AdminService;
+import com.perfume.shop.service.OrderService;
+import com.perfume.shop.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the AdminController user endpoints, through the real AdminService
+ * Covers: principal cache eviction and token revocation on block, unblock, status and role changes,
+ * resolving refund tasks only once
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AdminController Tests")
+class AdminControllerTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private UserPrincipalCache principalCache;
+
+    @Mock
+    private TokenRevocationService revocationService;
+
+    @Mock
+    private PaymentRefundTaskRepository paymentRefundTaskRepository;
+
+    @InjectMocks
+    private AdminController adminController;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        AdminService adminService = new AdminService(productService, orderService, userRepository,
+                principalCache, revocationService, orderRepository, productRepository);
+        ReflectionTestUtils.setField(adminController, "adminService", adminService);
+
+        user = User.builder()
+                .email("user@example.com")
+                .password("encoded")
+                .firstName("Test")
+                .lastName("User")
+                .role(User.Role.CUSTOMER)
+                .active(true)
+                .build();
+        user.setId(1L);
+        lenient().when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        lenient().when(userRepository.save(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    @DisplayName("Blocking a user should evict the cached principal and revoke their tokens")
+    void testBlockUser() {
+        // When
+        ResponseEntity<ApiResponse> response = adminController.blockUser(1L);
+
+        // Then
+        assertThat(response.getBody().getMessage()).isEqualTo("User blocked successfully");
+        assertThat(user.getActive()).isFalse();
+        verify(userRepository).save(user);
+        verify(principalCache).evict("user@example.com");
+        verify(revocationService).revokeAllForUser("user@example.com", "blocked");
+    }
+
+    @Test
+    @DisplayName("Unblocking a user should evict the cached principal without revoking tokens")
+    void testUnblockUser() {
+        // Given
+        user.setActive(false);
+
+        // When
+        adminController.unblockUser(1L);
+
+        // Then
+        assertThat(user.getActive()).isTrue();
+        verify(principalCache).evict("user@example.com");
+        verifyNoInteractions(revocationService);
+    }
+
+    @Test
+    @DisplayName("Deactivating through the status endpoint should revoke tokens")
+    void testUpdateUserStatus() {
+        // When
+        ResponseEntity<UserResponse> response = adminController.updateUserStatus(1L, Map.of("active", false));
+
+        // Then
+        assertThat(response.getBody().getActive()).isFalse();
+        verify(principalCache).evict("user@example.com");
+        verify(revocationService).revokeAllForUser("user@example.com", "blocked");
+    }
+
+    @Test
+    @DisplayName("Changing a role should evict the cached principal")
+    void testUpdateUserRole() {
+        // When
+        ResponseEntity<UserResponse> response = adminController.updateUserRole(1L, Map.of("role", "ADMIN"));
+
+        // Then
+        assertThat(user.getRole()).isEqualTo(User.Role.ADMIN);
+        assertThat(response.getBody().getRole()).isEqualTo("ADMIN");
+        verify(principalCache).evict("user@example.com");
+        verifyNoInteractions(revocationService);
+    }
+
+    @Test
+    @DisplayName("Resolving an open refund task should close it")
+    void testResolveRefundTask() {
+        // Given
+        PaymentRefundTask task = PaymentRefundTask.builder().id(5L).status(PaymentRefundTask.Status.REFUNDED).build();
+        when(paymentRefundTaskRepository.resolveOpen(eq(5L), eq(PaymentRefundTask.Status.REFUNDED), any()))
+                .thenReturn(1);
+        when(paymentRefundTaskRepository.findById(5L)).thenReturn(Optional.of(task));
+
+        // When
+        ResponseEntity<PaymentRefundTask> response =
+                adminController.resolveRefundTask(5L, PaymentRefundTask.Status.REFUNDED);
+
+        // Then
+        assertThat(response.getBody().getStatus()).isEqualTo(PaymentRefundTask.Status.REFUNDED);
+        verify(paymentRefundTaskRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Resolving an already resolved refund task should be rejected")
+    void testResolveRefundTaskTwice() {
+        // Given - a second admin already refunded it
+        PaymentRefundTask task = PaymentRefundTask.builder().id(5L).status(PaymentRefundTask.Status.REFUNDED).build();
+        when(paymentRefundTaskRepository.resolveOpen(eq(5L), eq(PaymentRefundTask.Status.REINSTATED), any()))
+                .thenReturn(0);
+        when(paymentRefundTaskRepository.findById(5L)).thenReturn(Optional.of(task));
+
+        // When & Then
+        assertThatThrownBy(() -> adminController.resolveRefundTask(5L, PaymentRefundTask.Status.REINSTATED))
+                .isInstanceOf(ApplicationException.class)
+                .hasMessageContaining("already REFUNDED");
+        assertThat(task.getStatus()).isEqualTo(PaymentRefundTask.Status.REFUNDED);
+    }
+}
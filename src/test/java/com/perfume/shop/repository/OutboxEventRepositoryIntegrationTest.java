@@ -0,0 +1,99 @@
+package com.perfume.shop.repository;
+
+import com.perfume.shop.entity.OutboxEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Integration tests for the outbox claim query
+ * Covers: per-order, per-handler delivery order across batches and nodes
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+@DisplayName("OutboxEventRepository Integration Tests")
+class OutboxEventRepositoryIntegrationTest {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        outboxEventRepository.deleteAll();
+        now = LocalDateTime.now();
+    }
+
+    @Test
+    @DisplayName("Should claim only the earliest unfinished event of an order and handler")
+    void testLaterEventsHeldBehindEarlierOne() {
+        // Given
+        OutboxEvent confirmed = save(1L, "email", OutboxEvent.EventType.ORDER_CONFIRMED);
+        OutboxEvent shipped = save(1L, "email", OutboxEvent.EventType.ORDER_SHIPPED);
+        OutboxEvent cache = save(1L, "cache-invalidation", OutboxEvent.EventType.ORDER_CONFIRMED);
+        OutboxEvent otherOrder = save(2L, "email", OutboxEvent.EventType.ORDER_CONFIRMED);
+
+        // When
+        List<Long> ids = outboxEventRepository.lockDueIds(now, 50);
+
+        // Then
+        assertThat(ids).containsExactly(confirmed.getId(), cache.getId(), otherOrder.getId());
+        assertThat(ids).doesNotContain(shipped.getId());
+    }
+
+    @Test
+    @DisplayName("Should keep a later event waiting while the earlier one backs off")
+    void testLaterEventWaitsForRetry() {
+        // Given
+        OutboxEvent confirmed = save(1L, "email", OutboxEvent.EventType.ORDER_CONFIRMED);
+        OutboxEvent shipped = save(1L, "email", OutboxEvent.EventType.ORDER_SHIPPED);
+        confirmed.setNextAttemptAt(now.plusMinutes(5));
+        outboxEventRepository.saveAndFlush(confirmed);
+
+        // When / Then
+        assertThat(outboxEventRepository.lockDueIds(now, 50)).isEmpty();
+
+        // Once the earlier event is delivered the later one becomes due
+        confirmed.setStatus(OutboxEvent.Status.DONE);
+        outboxEventRepository.saveAndFlush(confirmed);
+        assertThat(outboxEventRepository.lockDueIds(now, 50)).containsExactly(shipped.getId());
+    }
+
+    @Test
+    @DisplayName("Should release a later event once the earlier one failed permanently")
+    void testFailedEventDoesNotBlockLane() {
+        // Given
+        OutboxEvent confirmed = save(1L, "email", OutboxEvent.EventType.ORDER_CONFIRMED);
+        OutboxEvent shipped = save(1L, "email", OutboxEvent.EventType.ORDER_SHIPPED);
+        confirmed.setStatus(OutboxEvent.Status.FAILED);
+        outboxEventRepository.saveAndFlush(confirmed);
+
+        // When
+        List<Long> ids = outboxEventRepository.lockDueIds(now, 50);
+
+        // Then
+        assertThat(ids).containsExactly(shipped.getId());
+    }
+
+    private OutboxEvent save(Long orderId, String handler, OutboxEvent.EventType eventType) {
+        return outboxEventRepository.saveAndFlush(OutboxEvent.builder()
+                .aggregateType("ORDER")
+                .aggregateId(orderId)
+                .eventType(eventType)
+                .handler(handler)
+                .payload("{}")
+                .nextAttemptAt(now.minusSeconds(1))
+                .build());
+    }
+}
@@ -0,0 +1,77 @@
+package com.perfume.shop.security;
+
+import com.perfume.shop.entity.User;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for JwtService verification
+ * Covers: parse-once VerifiedToken, verified-token cache, tampered tokens, grace period
+ */
+@DisplayName("JwtService Tests")
+class JwtServiceTest {
+
+    private static final String SECRET = "dGhpc2lzYXNlY3JldGtleWZvcnRlc3RpbmdwdXJwb3Nlc29ubHljaGFuZ2VpdGlucHJvZHVjdGlvbg==";
+
+    private final User user = User.builder().email("test@example.com").role(User.Role.CUSTOMER).build();
+
+    private JwtService jwtService(long expirationMs, long cacheSize) {
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", expirationMs);
+        ReflectionTestUtils.setField(jwtService, "refreshTokenExpiration", 604800000L);
+        ReflectionTestUtils.setField(jwtService, "gracePeriodMs", 60000L);
+        ReflectionTestUtils.setField(jwtService, "verifiedCacheSize", cacheSize);
+        jwtService.init();
+        return jwtService;
+    }
+
+    @Test
+    @DisplayName("Should verify a token once and serve repeats from the cache")
+    void testVerifyAndCache() {
+        // Given
+        JwtService jwtService = jwtService(86400000L, 100);
+        String jwt = jwtService.generateToken(user);
+
+        // When
+        VerifiedToken first = jwtService.verify(jwt);
+        VerifiedToken second = jwtService.verify(jwt);
+
+        // Then
+        assertThat(first.subject()).isEqualTo("test@example.com");
+        assertThat(first.refresh()).isFalse();
+        assertThat(second).isSameAs(first);
+        assertThat(jwtService.isTokenValid(first, user)).isTrue();
+        assertThat(jwtService.isRefreshToken(jwtService.generateRefreshToken(user))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should reject a token with a tampered signature")
+    void testTamperedToken() {
+        JwtService jwtService = jwtService(86400000L, 100);
+        String jwt = jwtService.generateToken(user);
+        String tampered = jwt.substring(0, jwt.length() - 2) + (jwt.endsWith("AA") ? "BB" : "AA");
+
+        assertThatThrownBy(() -> jwtService.verify(tampered)).isInstanceOf(JwtException.class);
+        assertThat(jwtService.isTokenValid(tampered, user)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should accept expired tokens only within the grace period")
+    void testGracePeriod() {
+        // Expired 30s ago - within the 60s grace period
+        JwtService recent = jwtService(-30000L, 100);
+        VerifiedToken withinGrace = recent.verify(recent.generateToken(user));
+        assertThat(recent.isTokenExpired(withinGrace)).isTrue();
+        assertThat(recent.isTokenValid(withinGrace, user)).isTrue();
+
+        // Expired 2 minutes ago
+        JwtService stale = jwtService(-120000L, 100);
+        VerifiedToken pastGrace = stale.verify(stale.generateToken(user));
+        assertThat(stale.isTokenValid(pastGrace, user)).isFalse();
+    }
+}
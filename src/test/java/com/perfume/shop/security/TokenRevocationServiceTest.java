@@ -0,0 +1,166 @@
+package com.perfume.shop.security;
+
+import com.perfume.shop.entity.TokenRevocation;
+import com.perfume.shop.repository.TokenRevocationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for TokenRevocationService and its Bloom filter
+ * Covers: single-token revocation, per-user cut-off, apply on commit only, sync from other nodes,
+ * no false negatives
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TokenRevocationService Tests")
+class TokenRevocationServiceTest {
+
+    @Mock
+    private TokenRevocationRepository revocationRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TokenRevocationService revocationService;
+
+    @BeforeEach
+    void setUp() {
+        revocationService = new TokenRevocationService(revocationRepository, meterRegistry);
+        ReflectionTestUtils.setField(revocationService, "enabled", true);
+        ReflectionTestUtils.setField(revocationService, "expectedEntries", 1000L);
+        ReflectionTestUtils.setField(revocationService, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(revocationService, "syncOverlapSeconds", 60L);
+        ReflectionTestUtils.setField(revocationService, "refreshTokenExpirationMs", 604800000L);
+        ReflectionTestUtils.setField(revocationService, "gracePeriodMs", 60000L);
+
+        when(revocationRepository.findByExpiresAtAfter(any())).thenReturn(List.of());
+        lenient().when(revocationRepository.save(any(TokenRevocation.class))).thenAnswer(inv -> inv.getArgument(0));
+        revocationService.init();
+    }
+
+    private static VerifiedToken token(String id, String subject, long issuedAtMs) {
+        return new VerifiedToken(subject, id, issuedAtMs, System.currentTimeMillis() + 3600_000, false);
+    }
+
+    @Test
+    @DisplayName("Should reject a logged-out token and keep other tokens valid")
+    void testRevokeToken() {
+        // Given
+        VerifiedToken loggedOut = token("jti-1", "user@example.com", System.currentTimeMillis());
+        VerifiedToken other = token("jti-2", "user@example.com", System.currentTimeMillis());
+
+        // When
+        revocationService.revokeToken(loggedOut, "logout");
+
+        // Then
+        assertThat(revocationService.isRevoked(loggedOut)).isTrue();
+        assertThat(revocationService.isRevoked(other)).isFalse();
+        verify(revocationRepository).save(argThat(row -> "jti-1".equals(row.getTokenId())
+                && row.getExpiresAt().isAfter(LocalDateTime.now().plusMinutes(59))));
+        assertThat(meterRegistry.get("shop.security.revocation.rejected").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should reject tokens issued before a user-wide revocation only")
+    void testRevokeAllForUser() {
+        // Given
+        VerifiedToken before = token("jti-old", "blocked@example.com", System.currentTimeMillis() - 60_000);
+
+        // When
+        revocationService.revokeAllForUser("blocked@example.com", "blocked");
+        VerifiedToken after = token("jti-new", "blocked@example.com", System.currentTimeMillis() + 1_000);
+
+        // Then
+        assertThat(revocationService.isRevoked(before)).isTrue();
+        assertThat(revocationService.isRevoked(after)).isFalse();
+        assertThat(revocationService.isRevoked(token("jti-x", "someone@example.com", 0))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should apply a revocation made inside a transaction only once it commits")
+    void testRevokeAppliedAfterCommit() {
+        // Given
+        VerifiedToken before = token("jti-old", "reset@example.com", System.currentTimeMillis() - 60_000);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            revocationService.revokeAllForUser("reset@example.com", "password_reset");
+
+            // Then
+            assertThat(revocationService.isRevoked(before)).isFalse();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(revocationService.isRevoked(before)).isTrue();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should leave tokens valid when the revoking transaction rolls back")
+    void testRevokeRolledBack() {
+        // Given
+        VerifiedToken loggedOut = token("jti-1", "user@example.com", System.currentTimeMillis());
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            revocationService.revokeToken(loggedOut, "logout");
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Then
+        assertThat(revocationService.isRevoked(loggedOut)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should pick up revocations recorded by another node")
+    void testSync() {
+        // Given
+        TokenRevocation remote = TokenRevocation.builder()
+                .tokenId("jti-remote")
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .reason("logout")
+                .createdAt(LocalDateTime.now())
+                .build();
+        when(revocationRepository.findByCreatedAtAfterAndExpiresAtAfter(any(), any())).thenReturn(List.of(remote));
+
+        // When
+        revocationService.sync();
+
+        // Then
+        assertThat(revocationService.isRevoked(token("jti-remote", "user@example.com", 0))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Bloom filter should never miss an added value and rarely match an absent one")
+    void testBloomFilter() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        List<String> added = IntStream.range(0, 10_000)
+                .mapToObj(i -> UUID.randomUUID().toString())
+                .toList();
+        added.forEach(filter::put);
+
+        assertThat(added).allMatch(filter::mightContain);
+
+        long falsePositives = IntStream.range(0, 10_000)
+                .filter(i -> filter.mightContain(UUID.randomUUID().toString()))
+                .count();
+        assertThat(falsePositives).isLessThan(300); // ~1% expected
+    }
+}
@@ -0,0 +1,74 @@
+package com.perfume.shop.security;
+
+import com.perfume.shop.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for UserPrincipalCache
+ * Covers: one load per user, copies per caller, explicit eviction
+ */
+@DisplayName("UserPrincipalCache Tests")
+class UserPrincipalCacheTest {
+
+    private UserPrincipalCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, UserDetails> loader = email -> {
+        loads.incrementAndGet();
+        User user = User.builder()
+                .email(email)
+                .firstName("Test")
+                .lastName("User")
+                .role(User.Role.CUSTOMER)
+                .active(true)
+                .build();
+        user.setId(7L);
+        return user;
+    };
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserPrincipalCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        cache.init();
+    }
+
+    @Test
+    @DisplayName("Should load a user once and hand out independent copies")
+    void testCachedCopies() {
+        // When
+        User first = (User) cache.get("test@example.com", loader);
+        first.setRole(User.Role.ADMIN); // a request modifying its principal
+        User second = (User) cache.get("test@example.com", loader);
+
+        // Then
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getId()).isEqualTo(7L);
+        assertThat(second.getRole()).isEqualTo(User.Role.CUSTOMER);
+    }
+
+    @Test
+    @DisplayName("Should reload after eviction")
+    void testEvict() {
+        // Given
+        cache.get("test@example.com", loader);
+
+        // When
+        cache.evict("test@example.com");
+        cache.get("test@example.com", loader);
+
+        // Then
+        assertThat(loads.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,152 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.AbandonedCartLine;
+import com.perfume.shop.repository.CartItemRepository;
+import com.perfume.shop.repository.CartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AbandonedCartService
+ * Covers: batch claiming, leases, set-based marking, release of failed sends with an attempt cap, metrics
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AbandonedCartService Tests")
+class AbandonedCartServiceTest {
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AbandonedCartService abandonedCartService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        abandonedCartService = new AbandonedCartService(cartRepository, cartItemRepository, emailService,
+                transactionTemplate, Runnable::run, meterRegistry);
+        ReflectionTestUtils.setField(abandonedCartService, "enabled", true);
+        ReflectionTestUtils.setField(abandonedCartService, "idleMinutes", 30L);
+        ReflectionTestUtils.setField(abandonedCartService, "batchSize", 2);
+        ReflectionTestUtils.setField(abandonedCartService, "maxBatchesPerRun", 5);
+        ReflectionTestUtils.setField(abandonedCartService, "leaseMinutes", 10L);
+        ReflectionTestUtils.setField(abandonedCartService, "maxAttempts", 3);
+
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    private AbandonedCartLine line(Long cartId, String email) {
+        return AbandonedCartLine.builder()
+                .cartId(cartId)
+                .email(email)
+                .firstName("Test")
+                .productName("Test Perfume")
+                .quantity(1)
+                .price(new BigDecimal("100.00"))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should lease a claimed batch, send each cart once and mark them emailed with one update")
+    void testProcessBatch() {
+        // Given
+        when(cartRepository.lockAbandonedCartIds(any(LocalDateTime.class), any(LocalDateTime.class), eq(2))).thenReturn(List.of(1L, 2L));
+        when(cartItemRepository.findAbandonedCartLines(List.of(1L, 2L))).thenReturn(List.of(
+                line(1L, "a@example.com"), line(1L, "a@example.com"), line(2L, "b@example.com")));
+
+        // When
+        AbandonedCartService.BatchResult result = abandonedCartService.processBatch(LocalDateTime.now());
+
+        // Then
+        assertThat(result.claimed()).isEqualTo(2);
+        assertThat(result.sent()).isEqualTo(2);
+        verify(cartRepository).claimAbandonedEmail(eq(List.of(1L, 2L)),
+                argThat(lockedUntil -> lockedUntil.isAfter(LocalDateTime.now().plusMinutes(9))));
+        verify(emailService, times(2)).sendAbandonedCartEmail(anyList());
+        verify(cartRepository).markAbandonedEmailSent(List.of(1L, 2L));
+        verify(cartRepository, never()).releaseAbandonedEmailClaims(anyCollection(), anyInt());
+        assertThat(meterRegistry.get("shop.abandoned_carts.emails").tag("result", "sent").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should only mark sent carts and release those whose email failed")
+    void testFailedSendsReleased() {
+        // Given
+        when(cartRepository.lockAbandonedCartIds(any(LocalDateTime.class), any(LocalDateTime.class), eq(2))).thenReturn(List.of(1L, 2L));
+        List<AbandonedCartLine> failing = List.of(line(2L, "b@example.com"));
+        when(cartItemRepository.findAbandonedCartLines(List.of(1L, 2L))).thenReturn(List.of(
+                line(1L, "a@example.com"), failing.get(0)));
+        doThrow(new RuntimeException("SMTP down")).when(emailService).sendAbandonedCartEmail(failing);
+
+        // When
+        AbandonedCartService.BatchResult result = abandonedCartService.processBatch(LocalDateTime.now());
+
+        // Then
+        assertThat(result.sent()).isEqualTo(1);
+        assertThat(result.failed()).isEqualTo(1);
+        verify(cartRepository).markAbandonedEmailSent(List.of(1L));
+        verify(cartRepository).releaseAbandonedEmailClaims(List.of(2L), 3);
+    }
+
+    @Test
+    @DisplayName("Should keep claiming batches until a partial batch")
+    void testProcessAbandonedCartsPages() {
+        // Given
+        when(cartRepository.lockAbandonedCartIds(any(LocalDateTime.class), any(LocalDateTime.class), eq(2)))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(3L));
+        when(cartItemRepository.findAbandonedCartLines(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> line(id, id + "@example.com")).toList();
+        });
+
+        // When
+        abandonedCartService.processAbandonedCarts();
+
+        // Then
+        verify(cartRepository, times(2)).lockAbandonedCartIds(any(LocalDateTime.class), any(LocalDateTime.class), eq(2));
+        verify(emailService, times(3)).sendAbandonedCartEmail(anyList());
+    }
+
+    @Test
+    @DisplayName("Should do nothing when no carts are abandoned")
+    void testNoAbandonedCarts() {
+        // Given
+        when(cartRepository.lockAbandonedCartIds(any(LocalDateTime.class), any(LocalDateTime.class), eq(2))).thenReturn(List.of());
+
+        // When
+        abandonedCartService.processAbandonedCarts();
+
+        // Then
+        verify(cartRepository, never()).claimAbandonedEmail(anyCollection(), any());
+        verify(cartRepository, never()).markAbandonedEmailSent(anyCollection());
+        verifyNoInteractions(emailService);
+    }
+}
@@ -0,0 +1,72 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.OrderSearchCriteria;
+import com.perfume.shop.entity.Order;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for AdminOrderQueryService
+ * Covers: filter-to-SQL translation, CSV escaping
+ */
+@DisplayName("AdminOrderQueryService Tests")
+class AdminOrderQueryServiceTest {
+
+    @Test
+    @DisplayName("Should only add clauses for filters that are set")
+    void testBuildWhereNoFilters() {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+
+        String where = AdminOrderQueryService.buildWhere(new OrderSearchCriteria(), params);
+
+        assertThat(where).isEqualTo("WHERE 1 = 1");
+        assertThat(params.getParameterNames()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should combine status, date range, amount and city filters")
+    void testBuildWhereCompositeFilters() {
+        OrderSearchCriteria criteria = OrderSearchCriteria.builder()
+                .statuses(List.of(Order.OrderStatus.SHIPPED, Order.OrderStatus.DELIVERED))
+                .from(LocalDate.of(2026, 2, 2))
+                .to(LocalDate.of(2026, 2, 8))
+                .minAmount(new BigDecimal("5000"))
+                .city("  Mumbai ")
+                .email("Buyer@Example.com")
+                .couponCode("save10")
+                .build();
+        MapSqlParameterSource params = new MapSqlParameterSource();
+
+        String where = AdminOrderQueryService.buildWhere(criteria, params);
+
+        assertThat(where).contains("o.status IN (:statuses)", "o.created_at >= :fromTs", "o.created_at < :toTs",
+                "o.total_amount >= :minAmount", "LOWER(o.shipping_city) = :city",
+                "LOWER(o.customer_email) = :email", "UPPER(o.coupon_code) = :couponCode");
+        assertThat(where).doesNotContain(":maxAmount");
+        assertThat(params.getValue("statuses")).isEqualTo(List.of("SHIPPED", "DELIVERED"));
+        // 'to' is inclusive: upper bound is the start of the next day
+        assertThat(params.getValue("toTs")).isEqualTo(Timestamp.valueOf(LocalDate.of(2026, 2, 9).atStartOfDay()));
+        assertThat(params.getValue("city")).isEqualTo("mumbai");
+        assertThat(params.getValue("email")).isEqualTo("buyer@example.com");
+        assertThat(params.getValue("couponCode")).isEqualTo("SAVE10");
+    }
+
+    @Test
+    @DisplayName("Should quote CSV values with separators and neutralize formulas")
+    void testCsvValue() {
+        assertThat(AdminOrderQueryService.csvValue(null)).isEmpty();
+        assertThat(AdminOrderQueryService.csvValue("Mumbai")).isEqualTo("Mumbai");
+        assertThat(AdminOrderQueryService.csvValue("Doe, Jane")).isEqualTo("\"Doe, Jane\"");
+        assertThat(AdminOrderQueryService.csvValue("say \"hi\"")).isEqualTo("\"say \"\"hi\"\"\"");
+        assertThat(AdminOrderQueryService.csvValue("=SUM(A1)")).isEqualTo("'=SUM(A1)");
+        assertThat(AdminOrderQueryService.csvValue(new BigDecimal("-10.00"))).isEqualTo("-10.00");
+    }
+}
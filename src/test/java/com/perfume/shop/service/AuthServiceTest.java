@@ -13,6 +13,8 @@ import com.perfume.shop.repository.CartRepository;
 import com.perfume.shop.repository.UserRepository;
 import com.perfume.shop.security.JwtService;
 import com.perfume.shop.security.PasswordPolicyValidator;
+import com.perfume.shop.security.TokenRevocationService;
+import com.perfume.shop.security.UserPrincipalCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -71,6 +73,12 @@ class AuthServiceTest {
     @Mock
     private EmailService emailService;
 
+    @Mock
+    private UserPrincipalCache principalCache;
+
+    @Mock
+    private TokenRevocationService revocationService;
+
     @InjectMocks
     private AuthService authService;
 
@@ -381,6 +389,8 @@ class AuthServiceTest {
         verify(userRepository).save(argThat(user -> 
             user.getResetToken() == null && user.getResetTokenExpiry() == null
         ));
+        verify(principalCache).evict(testUser.getEmail());
+        verify(revocationService).revokeAllForUser(testUser.getEmail(), "password_reset");
     }
 
     @Test
@@ -0,0 +1,112 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.BulkOrderStatusUpdateResponse;
+import com.perfume.shop.dto.OrderEventPayload;
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.entity.OutboxEvent;
+import com.perfume.shop.exception.ApplicationException;
+import com.perfume.shop.repository.OrderHistoryBatchRepository;
+import com.perfume.shop.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for BulkOrderStatusService
+ * Covers: transition validation, set-based update, batched history and outbox events
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BulkOrderStatusService Tests")
+class BulkOrderStatusServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderHistoryBatchRepository orderHistoryBatchRepository;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Spy
+    private OrderSummaryCache orderSummaryCache = new OrderSummaryCache(10000, 10);
+
+    @InjectMocks
+    private BulkOrderStatusService bulkOrderStatusService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(bulkOrderStatusService, "maxOrders", 1000);
+    }
+
+    @Test
+    @DisplayName("Should only allow forward fulfilment transitions")
+    void testTransitionRules() {
+        assertThat(BulkOrderStatusService.isBulkTransitionAllowed(Order.OrderStatus.PACKED, Order.OrderStatus.SHIPPED)).isTrue();
+        assertThat(BulkOrderStatusService.isBulkTransitionAllowed(Order.OrderStatus.CONFIRMED, Order.OrderStatus.SHIPPED)).isTrue();
+        assertThat(BulkOrderStatusService.isBulkTransitionAllowed(Order.OrderStatus.SHIPPED, Order.OrderStatus.PACKED)).isFalse();
+        assertThat(BulkOrderStatusService.isBulkTransitionAllowed(Order.OrderStatus.PLACED, Order.OrderStatus.SHIPPED)).isFalse();
+        assertThat(BulkOrderStatusService.isBulkTransitionAllowed(Order.OrderStatus.CANCELLED, Order.OrderStatus.SHIPPED)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should update valid orders in one batch and report rejected ones")
+    @SuppressWarnings("unchecked")
+    void testBulkShip() {
+        when(orderRepository.lockOrderRows(any())).thenReturn(List.of(
+                new Object[] { 1L, "PACKED", 10L, "ORD-1", new BigDecimal("100.00") },
+                new Object[] { 2L, "CONFIRMED", 11L, "ORD-2", new BigDecimal("200.00") },
+                new Object[] { 3L, "PLACED", 12L, "ORD-3", new BigDecimal("300.00") }));
+        when(orderRepository.updateStatusBulk(eq(List.of(1L, 2L)), any(), eq(Order.OrderStatus.SHIPPED), any()))
+                .thenReturn(2);
+        when(orderRepository.findProductIdsByOrderIds(List.of(1L, 2L))).thenReturn(List.of(
+                new Object[] { 1L, 100L },
+                new Object[] { 2L, 100L },
+                new Object[] { 2L, 101L }));
+
+        BulkOrderStatusUpdateResponse response = bulkOrderStatusService.updateStatuses(
+                List.of(1L, 2L, 3L, 4L, 1L), Order.OrderStatus.SHIPPED, "admin@test.com", "Dispatch batch");
+
+        assertThat(response.getRequested()).isEqualTo(4);
+        assertThat(response.getUpdatedOrderIds()).containsExactly(1L, 2L);
+        assertThat(response.getRejected()).containsOnlyKeys(3L, 4L);
+        assertThat(response.getRejected().get(4L)).isEqualTo("Order not found");
+
+        verify(orderHistoryBatchRepository).insertAll(eq(List.of(1L, 2L)), eq(Order.OrderStatus.SHIPPED),
+                eq("admin@test.com"), eq("Dispatch batch"), any());
+
+        ArgumentCaptor<List<OrderEventPayload>> payloads = ArgumentCaptor.forClass(List.class);
+        verify(outboxService).publishAll(eq(OutboxEvent.EventType.ORDER_STATUS_CHANGED), payloads.capture());
+        assertThat(payloads.getValue()).hasSize(2);
+        assertThat(payloads.getValue().get(1).getProductIds()).containsExactly(100L, 101L);
+
+        verify(orderSummaryCache).evict(10L);
+        verify(orderSummaryCache).evict(11L);
+        verify(orderSummaryCache, never()).evict(12L);
+    }
+
+    @Test
+    @DisplayName("Should reject cancellation in bulk")
+    void testBulkCancelRejected() {
+        assertThatThrownBy(() -> bulkOrderStatusService.updateStatuses(
+                List.of(1L), Order.OrderStatus.CANCELLED, "admin@test.com", null))
+                .isInstanceOf(ApplicationException.class)
+                .hasMessageContaining("individually");
+
+        verifyNoInteractions(orderRepository);
+    }
+}
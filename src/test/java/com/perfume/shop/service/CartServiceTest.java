@@ -1,24 +1,38 @@
 package com.perfume.shop.service;
 
 import com.perfume.shop.dto.AddToCartRequest;
+import com.perfume.shop.dto.CartBatchRequest;
+import com.perfume.shop.dto.CartBatchResponse;
+import com.perfume.shop.dto.CartItemResponse;
+import com.perfume.shop.dto.CartOperation;
+import com.perfume.shop.dto.CartOperationResult;
 import com.perfume.shop.dto.CartResponse;
-import com.perfume.shop.entity.Cart;
-import com.perfume.shop.entity.CartItem;
+import com.perfume.shop.dto.PurchasableItemView;
 import com.perfume.shop.entity.Product;
 import com.perfume.shop.entity.User;
-import com.perfume.shop.repository.CartItemRepository;
-import com.perfume.shop.repository.CartRepository;
+import com.perfume.shop.exception.ApplicationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Optional;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -29,21 +43,21 @@ import static org.mockito.Mockito.*;
 class CartServiceTest {
 
     @Mock
-    private CartRepository cartRepository;
-
-    @Mock
-    private CartItemRepository cartItemRepository;
+    private CartStore cartStore;
 
     @Mock
     private ProductService productService;
 
+    @Spy
+    private PricingEngine pricingEngine = new PricingEngine();
+
     @InjectMocks
     private CartService cartService;
 
     private User testUser;
-    private Cart testCart;
+    private WorkingCart testCart;
     private Product testProduct;
-    private CartItem testCartItem;
+    private WorkingCart.Line testCartItem;
 
     @BeforeEach
     void setUp() {
@@ -60,26 +74,57 @@ class CartServiceTest {
                 .build();
         testProduct.setId(1L);
 
-        testCart = Cart.builder()
-                .user(testUser)
-                .items(new ArrayList<>())
-                .build();
-        testCart.setId(1L);
+        testCart = new WorkingCart(testUser.getId(), 1L, List.of(), null);
 
-        testCartItem = CartItem.builder()
-                .cart(testCart)
-                .product(testProduct)
+        testCartItem = WorkingCart.Line.builder()
+                .id(1L)
+                .productId(testProduct.getId())
+                .productName(testProduct.getName())
+                .availableStock(50)
                 .quantity(2)
                 .price(new BigDecimal("100.00"))
                 .build();
-        testCartItem.setId(1L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void useWorkingCart() {
+        lenient().when(cartStore.read(eq(testUser.getId()), any())).thenAnswer(invocation ->
+                ((Function<WorkingCart, Object>) invocation.getArgument(1)).apply(testCart));
+        lenient().when(cartStore.update(eq(testUser.getId()), any())).thenAnswer(invocation ->
+                ((Function<WorkingCart, Object>) invocation.getArgument(1)).apply(testCart));
+        lenient().when(cartStore.update(eq(testUser.getId()), any(), any())).thenAnswer(invocation -> {
+            Object result = ((Function<WorkingCart, Object>) invocation.getArgument(1)).apply(testCart);
+            writeNewLines();
+            return ((BiFunction<WorkingCart, Object, Object>) invocation.getArgument(2)).apply(testCart, result);
+        });
+    }
+
+    private void stubProductRow() {
+        when(productService.getPurchasableViews(List.of(testProduct.getId()))).thenReturn(Map.of(
+                testProduct.getId(), List.of(PurchasableItemView.builder()
+                        .productId(testProduct.getId())
+                        .productName(testProduct.getName())
+                        .productPrice(testProduct.getPrice())
+                        .productStock(testProduct.getStock())
+                        .build())));
+    }
+
+    /**
+     * What CartStore does between mutation and view: new lines get database ids
+     */
+    private void writeNewLines() {
+        Map<WorkingCart.LineKey, Long> persistedIds = new HashMap<>();
+        for (WorkingCart.Line line : testCart.getLines()) {
+            persistedIds.put(line.key(), line.getId() < 0 ? 100L - line.getId() : line.getId());
+        }
+        testCart.markFlushed(testCart.getVersion(), testCart.getCartId(), persistedIds, testCart.snapshotLines());
     }
 
     @Test
     @DisplayName("Should get cart for user")
     void testGetCart() {
         // Given
-        when(cartRepository.findByUserId(testUser.getId())).thenReturn(Optional.of(testCart));
+        useWorkingCart();
 
         // When
         CartResponse response = cartService.getCart(testUser);
@@ -87,42 +132,49 @@ class CartServiceTest {
         // Then
         assertThat(response).isNotNull();
         assertThat(response.getId()).isEqualTo(1L);
+        verify(cartStore, never()).update(any(), any());
+        verify(cartStore, never()).update(any(), any(), any());
     }
 
     @Test
-    @DisplayName("Should create cart if not exists")
-    void testGetCartCreateNew() {
+    @DisplayName("Should add item to cart")
+    void testAddToCart() {
         // Given
-        when(cartRepository.findByUserId(testUser.getId())).thenReturn(Optional.empty());
-        when(cartRepository.save(any(Cart.class))).thenReturn(testCart);
+        AddToCartRequest request = new AddToCartRequest();
+        request.setProductId(1L);
+        request.setQuantity(2);
+
+        useWorkingCart();
+        stubProductRow();
 
         // When
-        CartResponse response = cartService.getCart(testUser);
+        CartResponse response = cartService.addToCart(testUser, request);
 
         // Then
-        assertThat(response).isNotNull();
-        verify(cartRepository).save(any(Cart.class));
+        assertThat(response.getItems()).hasSize(1);
+        assertThat(response.getItems().get(0).getId()).isEqualTo(101L);
+        assertThat(response.getItemCount()).isEqualTo(2);
+        verify(cartStore).update(eq(testUser.getId()), any(), any());
     }
 
     @Test
-    @DisplayName("Should add item to cart")
-    void testAddToCart() {
+    @DisplayName("Should merge quantity when adding a product already in the cart")
+    void testAddToCartExistingItem() {
         // Given
+        testCart.getLines().add(testCartItem);
         AddToCartRequest request = new AddToCartRequest();
         request.setProductId(1L);
-        request.setQuantity(2);
+        request.setQuantity(3);
 
-        when(cartRepository.findByUserId(testUser.getId())).thenReturn(Optional.of(testCart));
-        when(productService.getProductEntityById(1L)).thenReturn(testProduct);
-        when(cartItemRepository.findByCartIdAndProductId(1L, 1L)).thenReturn(Optional.empty());
-        when(cartItemRepository.save(any(CartItem.class))).thenReturn(testCartItem);
+        useWorkingCart();
+        stubProductRow();
 
         // When
         CartResponse response = cartService.addToCart(testUser, request);
 
         // Then
-        assertThat(response).isNotNull();
-        verify(cartItemRepository).save(any(CartItem.class));
+        assertThat(response.getItems()).hasSize(1);
+        assertThat(response.getItems().get(0).getQuantity()).isEqualTo(5);
     }
 
     @Test
@@ -133,112 +185,203 @@ class CartServiceTest {
         request.setProductId(1L);
         request.setQuantity(100);
 
-        when(cartRepository.findByUserId(testUser.getId())).thenReturn(Optional.of(testCart));
-        when(productService.getProductEntityById(1L)).thenReturn(testProduct);
+        stubProductRow();
 
         // When & Then
         assertThatThrownBy(() -> cartService.addToCart(testUser, request))
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("Insufficient stock");
+        verifyNoInteractions(cartStore);
     }
 
     @Test
     @DisplayName("Should update cart item quantity")
     void testUpdateCartItem() {
         // Given
-        testCart.getItems().add(testCartItem);
-        when(cartRepository.findByUserId(testUser.getId())).thenReturn(Optional.of(testCart));
-        when(cartItemRepository.findById(1L)).thenReturn(Optional.of(testCartItem));
-        when(cartItemRepository.save(any(CartItem.class))).thenReturn(testCartItem);
+        testCart.getLines().add(testCartItem);
+        useWorkingCart();
+        stubProductRow();
 
         // When
         CartResponse response = cartService.updateCartItem(testUser, 1L, 5);
 
         // Then
-        assertThat(response).isNotNull();
-        verify(cartItemRepository).save(argThat(item -> item.getQuantity() == 5));
+        assertThat(response.getItems().get(0).getQuantity()).isEqualTo(5);
+        assertThat(testCartItem.getQuantity()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Should not reload product when decreasing quantity")
+    void testUpdateCartItemDecrease() {
+        // Given
+        testCart.getLines().add(testCartItem);
+        useWorkingCart();
+
+        // When
+        cartService.updateCartItem(testUser, 1L, 1);
+
+        // Then
+        assertThat(testCartItem.getQuantity()).isEqualTo(1);
+        verifyNoInteractions(productService);
     }
 
     @Test
     @DisplayName("Should remove item when quantity is zero")
     void testUpdateCartItemZeroQuantity() {
         // Given
-        testCart.getItems().add(testCartItem);
-        when(cartRepository.findByUserId(testUser.getId())).thenReturn(Optional.of(testCart));
-        when(cartItemRepository.findById(1L)).thenReturn(Optional.of(testCartItem));
-        doNothing().when(cartItemRepository).delete(any(CartItem.class));
+        testCart.getLines().add(testCartItem);
+        useWorkingCart();
 
         // When
         CartResponse response = cartService.updateCartItem(testUser, 1L, 0);
 
         // Then
-        assertThat(response).isNotNull();
-        verify(cartItemRepository).delete(testCartItem);
+        assertThat(response.getItems()).isEmpty();
+        assertThat(testCart.getLines()).isEmpty();
     }
 
     @Test
     @DisplayName("Should remove item from cart")
     void testRemoveFromCart() {
         // Given
-        testCart.getItems().add(testCartItem);
-        when(cartRepository.findByUserId(testUser.getId())).thenReturn(Optional.of(testCart));
-        when(cartItemRepository.findById(1L)).thenReturn(Optional.of(testCartItem));
-        doNothing().when(cartItemRepository).delete(any(CartItem.class));
+        testCart.getLines().add(testCartItem);
+        useWorkingCart();
 
         // When
         CartResponse response = cartService.removeFromCart(testUser, 1L);
 
         // Then
-        assertThat(response).isNotNull();
-        verify(cartItemRepository).delete(testCartItem);
+        assertThat(response.getItems()).isEmpty();
     }
 
     @Test
-    @DisplayName("Should throw exception when removing item from another user's cart")
+    @DisplayName("Should throw exception when removing item that is not in the user's cart")
     void testRemoveFromCartUnauthorized() {
-        // Given
-        Cart anotherCart = Cart.builder().build();
-        anotherCart.setId(2L);
-        testCartItem.setCart(anotherCart);
-
-        when(cartRepository.findByUserId(testUser.getId())).thenReturn(Optional.of(testCart));
-        when(cartItemRepository.findById(1L)).thenReturn(Optional.of(testCartItem));
+        // Given - item 2 belongs to another user's cart
+        testCart.getLines().add(testCartItem);
+        useWorkingCart();
 
         // When & Then
-        assertThatThrownBy(() -> cartService.removeFromCart(testUser, 1L))
+        assertThatThrownBy(() -> cartService.removeFromCart(testUser, 2L))
                 .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("does not belong to user");
+                .hasMessageContaining("Cart item not found");
+        assertThat(testCart.getLines()).hasSize(1);
     }
 
     @Test
     @DisplayName("Should clear cart")
     void testClearCart() {
         // Given
-        testCart.getItems().add(testCartItem);
-        when(cartRepository.findByUserId(testUser.getId())).thenReturn(Optional.of(testCart));
-        when(cartRepository.save(any(Cart.class))).thenReturn(testCart);
+        testCart.getLines().add(testCartItem);
+        useWorkingCart();
 
         // When
         cartService.clearCart(testUser);
 
         // Then
-        verify(cartRepository).save(argThat(cart -> cart.getItems().isEmpty()));
+        assertThat(testCart.getLines()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should apply batch operations with one product load and report each result")
+    void testApplyBatch() {
+        // Given
+        ReflectionTestUtils.setField(cartService, "maxBatchOperations", 50);
+        testCart.getLines().add(testCartItem);
+        useWorkingCart();
+        when(productService.getPurchasableViews(Set.of(1L, 2L))).thenReturn(Map.of(
+                1L, List.of(PurchasableItemView.builder().productId(1L).productName("Test Perfume")
+                        .productPrice(new BigDecimal("100.00")).productStock(50).build()),
+                2L, List.of(PurchasableItemView.builder().productId(2L).productName("Second Perfume")
+                        .productPrice(new BigDecimal("80.00")).productStock(1).build())));
+
+        CartBatchRequest request = CartBatchRequest.builder().operations(List.of(
+                CartOperation.builder().type(CartOperation.Type.ADD).productId(2L).quantity(1).build(),
+                CartOperation.builder().type(CartOperation.Type.UPDATE).itemId(1L).quantity(3).build(),
+                CartOperation.builder().type(CartOperation.Type.ADD).productId(2L).quantity(1).build(),
+                CartOperation.builder().type(CartOperation.Type.REMOVE).itemId(9L).build())).build();
+
+        // When
+        CartBatchResponse response = cartService.applyBatch(testUser, request);
+
+        // Then
+        assertThat(response.getApplied()).isEqualTo(2);
+        assertThat(response.getFailed()).isEqualTo(2);
+        assertThat(response.getResults()).extracting(CartOperationResult::isSuccess)
+                .containsExactly(true, true, false, false);
+        assertThat(response.getResults().get(2).getError()).contains("Insufficient stock");
+        assertThat(response.getResults().get(3).getError()).contains("Cart item not found");
+        // The added line is reported with its database id, never the temporary one
+        assertThat(response.getResults().get(0).getItemId()).isEqualTo(101L);
+        assertThat(response.getCart().getItems()).extracting(CartItemResponse::getId).doesNotContainNull()
+                .allMatch(id -> id > 0);
+        assertThat(response.getCart().getItems()).hasSize(2);
+        assertThat(response.getCart().getItemCount()).isEqualTo(4);
+        verify(cartStore, times(1)).update(eq(testUser.getId()), any(), any());
+        verify(productService, times(1)).getPurchasableViews(any());
+    }
+
+    @Test
+    @DisplayName("Should reject batches over the operation limit")
+    void testApplyBatchTooLarge() {
+        // Given
+        ReflectionTestUtils.setField(cartService, "maxBatchOperations", 1);
+        CartBatchRequest request = CartBatchRequest.builder().operations(List.of(
+                CartOperation.builder().type(CartOperation.Type.REMOVE).itemId(1L).build(),
+                CartOperation.builder().type(CartOperation.Type.REMOVE).itemId(2L).build())).build();
+
+        // When & Then
+        assertThatThrownBy(() -> cartService.applyBatch(testUser, request))
+                .isInstanceOf(ApplicationException.class)
+                .hasMessageContaining("Too many cart operations");
+        verifyNoInteractions(cartStore);
     }
 
     @Test
     @DisplayName("Should calculate cart totals correctly")
     void testCartTotalsCalculation() {
         // Given
-        testCart.getItems().add(testCartItem);
-        when(cartRepository.findByUserId(testUser.getId())).thenReturn(Optional.of(testCart));
+        testCart.getLines().add(testCartItem);
+        useWorkingCart();
 
         // When
         CartResponse response = cartService.getCart(testUser);
 
         // Then
         assertThat(response.getSubtotal()).isEqualByComparingTo(new BigDecimal("200.00"));
-        assertThat(response.getTax()).isEqualByComparingTo(new BigDecimal("20.00"));
-        assertThat(response.getTotal()).isEqualByComparingTo(new BigDecimal("220.00"));
+        assertThat(response.getTax()).isEqualByComparingTo(new BigDecimal("36.00"));
+        assertThat(response.getTotal()).isEqualByComparingTo(new BigDecimal("236.00"));
         assertThat(response.getItemCount()).isEqualTo(2);
     }
+
+    @Test
+    @DisplayName("Should not hold a transaction around cart mutations while CartStore writes")
+    void testMutationsRunOutsideTransaction() {
+        // Given - CartService behind the same transaction advice Spring applies
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        ProxyFactory proxyFactory = new ProxyFactory(cartService);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor((TransactionManager) transactionManager,
+                new AnnotationTransactionAttributeSource()));
+        CartService proxied = (CartService) proxyFactory.getProxy();
+
+        ReflectionTestUtils.setField(cartService, "maxBatchOperations", 50);
+        testCart.getLines().add(testCartItem);
+        useWorkingCart();
+        stubProductRow();
+        when(productService.getPurchasableViews(Set.of())).thenReturn(Map.of());
+        AddToCartRequest request = new AddToCartRequest();
+        request.setProductId(1L);
+        request.setQuantity(1);
+
+        // When
+        proxied.addToCart(testUser, request);
+        proxied.updateCartItem(testUser, 1L, 5);
+        proxied.applyBatch(testUser, CartBatchRequest.builder().operations(List.of(
+                CartOperation.builder().type(CartOperation.Type.REMOVE).itemId(1L).build())).build());
+
+        // Then - the store's own write transaction is the only one a mutation opens
+        verify(cartStore, times(3)).update(eq(testUser.getId()), any(), any());
+        verifyNoInteractions(transactionManager);
+    }
 }
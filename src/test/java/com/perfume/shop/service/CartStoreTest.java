@@ -0,0 +1,271 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.CartItemView;
+import com.perfume.shop.entity.Cart;
+import com.perfume.shop.entity.CartItem;
+import com.perfume.shop.entity.Product;
+import com.perfume.shop.entity.User;
+import com.perfume.shop.repository.CartItemRepository;
+import com.perfume.shop.repository.CartRepository;
+import com.perfume.shop.repository.ProductRepository;
+import com.perfume.shop.repository.ProductVariantRepository;
+import com.perfume.shop.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for CartStore
+ * Covers: in-memory mutations, batched flush reconciliation, temporary id aliasing, write-through mode,
+ * per-line writes from overlapping requests
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CartStore Tests")
+class CartStoreTest {
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductVariantRepository productVariantRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CartStore cartStore;
+    private User testUser;
+    private Product testProduct;
+    private Cart testCart;
+
+    @BeforeEach
+    void setUp() {
+        cartStore = new CartStore(cartRepository, cartItemRepository, userRepository, productRepository,
+                productVariantRepository, transactionManager);
+        ReflectionTestUtils.setField(cartStore, "writeBehind", true);
+        ReflectionTestUtils.setField(cartStore, "batchSize", 100);
+        ReflectionTestUtils.setField(cartStore, "idleMinutes", 30L);
+
+        testUser = User.builder().email("test@example.com").build();
+        testUser.setId(1L);
+
+        testProduct = Product.builder().name("Test Perfume").price(new BigDecimal("100.00")).stock(50).build();
+        testProduct.setId(7L);
+
+        testCart = Cart.builder().user(testUser).items(new ArrayList<>()).build();
+        testCart.setId(10L);
+
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(testCart));
+    }
+
+    private WorkingCart.Line line(int quantity) {
+        return WorkingCart.Line.builder()
+                .productId(testProduct.getId())
+                .quantity(quantity)
+                .price(new BigDecimal("100.00"))
+                .build();
+    }
+
+    private void givenSavedLine(int quantity) {
+        when(cartItemRepository.findViewsByUserId(1L)).thenReturn(List.of(
+                CartItemView.builder().id(5L).productId(7L).quantity(quantity).price(new BigDecimal("100.00")).build()));
+    }
+
+    @Test
+    @DisplayName("Should keep quantity changes in memory until flushed")
+    void testMutationsStayInMemory() {
+        // Given
+        givenSavedLine(1);
+
+        // When
+        cartStore.update(1L, cart -> {
+            cart.findLine(5L).orElseThrow().setQuantity(3);
+            return null;
+        });
+        int quantity = cartStore.read(1L, cart -> cart.findLine(5L).orElseThrow().getQuantity());
+
+        // Then
+        assertThat(quantity).isEqualTo(3);
+        verify(cartRepository, times(1)).findByUserId(1L);
+        verify(cartRepository, never()).flush();
+        verify(cartRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Should load cart lines from the flat projection without touching entity items")
+    void testLoadUsesProjection() {
+        // Given
+        when(cartItemRepository.findViewsByUserId(1L)).thenReturn(List.of(
+                CartItemView.builder().id(5L).productId(7L).productName("Test Perfume")
+                        .availableStock(50).quantity(2).price(new BigDecimal("100.00")).build()));
+
+        // When
+        WorkingCart.Line line = cartStore.read(1L, cart -> cart.findLine(5L).orElseThrow());
+
+        // Then
+        assertThat(line.getProductName()).isEqualTo("Test Perfume");
+        assertThat(line.getQuantity()).isEqualTo(2);
+        verify(cartItemRepository, times(1)).findViewsByUserId(1L);
+    }
+
+    @Test
+    @DisplayName("Should write new lines through before the response is built")
+    void testNewLinesWrittenThrough() {
+        // Given
+        when(cartRepository.findAllWithItemsByUserIdIn(List.of(1L))).thenReturn(List.of(testCart));
+        when(productRepository.getReferenceById(7L)).thenReturn(testProduct);
+        doAnswer(invocation -> {
+            testCart.getItems().forEach(item -> item.setId(100L));
+            return null;
+        }).when(cartRepository).flush();
+
+        // When
+        Long tempId = cartStore.update(1L, cart -> cart.addLine(line(2)).getId(), (cart, id) -> {
+            assertThat(cart.getLines()).extracting(WorkingCart.Line::getId).containsExactly(100L);
+            assertThat(cart.resolveId(id)).isEqualTo(100L);
+            return id;
+        });
+
+        // Then
+        assertThat(tempId).isNegative();
+        assertThat(testCart.getItems()).hasSize(1);
+        assertThat(testCart.getItems().get(0).getQuantity()).isEqualTo(2);
+        cartStore.read(1L, cart -> {
+            assertThat(cart.isDirty()).isFalse();
+            assertThat(cart.findLine(tempId)).get().extracting(WorkingCart.Line::getId).isEqualTo(100L);
+            assertThat(cart.findLine(100L)).isPresent();
+            return null;
+        });
+    }
+
+    @Test
+    @DisplayName("Should update and remove existing items on flush")
+    void testFlushReconcilesExistingItems() {
+        // Given
+        Product other = Product.builder().name("Other").price(new BigDecimal("50.00")).stock(5).build();
+        other.setId(8L);
+        CartItem kept = CartItem.builder().cart(testCart).product(testProduct).quantity(1)
+                .price(new BigDecimal("100.00")).build();
+        kept.setId(5L);
+        CartItem removed = CartItem.builder().cart(testCart).product(other).quantity(1)
+                .price(new BigDecimal("50.00")).build();
+        removed.setId(6L);
+        testCart.getItems().addAll(List.of(kept, removed));
+        when(cartItemRepository.findViewsByUserId(1L)).thenReturn(List.of(
+                CartItemView.builder().id(5L).productId(7L).quantity(1).price(new BigDecimal("100.00")).build(),
+                CartItemView.builder().id(6L).productId(8L).quantity(1).price(new BigDecimal("50.00")).build()));
+        when(cartRepository.findAllWithItemsByUserIdIn(List.of(1L))).thenReturn(List.of(testCart));
+
+        cartStore.update(1L, cart -> {
+            cart.findLine(5L).orElseThrow().setQuantity(4);
+            cart.removeLine(cart.findLine(6L).orElseThrow());
+            return null;
+        });
+
+        // When
+        cartStore.flushDirty();
+
+        // Then
+        assertThat(testCart.getItems()).containsExactly(kept);
+        assertThat(kept.getQuantity()).isEqualTo(4);
+        verify(productRepository, never()).getReferenceById(any());
+    }
+
+    @Test
+    @DisplayName("Should leave cart dirty when flush fails")
+    void testFailedFlushStaysDirty() {
+        // Given
+        givenSavedLine(1);
+        cartStore.update(1L, cart -> {
+            cart.findLine(5L).orElseThrow().setQuantity(2);
+            return null;
+        });
+        when(cartRepository.findAllWithItemsByUserIdIn(any())).thenThrow(new RuntimeException("DB down"));
+
+        // When
+        cartStore.flushDirty();
+
+        // Then
+        assertThat(cartStore.read(1L, WorkingCart::isDirty)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should clear working cart after payment")
+    void testClearAfterCommit() {
+        // Given
+        givenSavedLine(1);
+
+        // When - no transaction active, so the clear applies immediately
+        cartStore.clearAfterCommit(1L);
+
+        // Then
+        assertThat(cartStore.read(1L, cart -> cart.getLines().isEmpty())).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should write through and not keep carts when write-behind is disabled")
+    void testWriteThrough() {
+        // Given
+        ReflectionTestUtils.setField(cartStore, "writeBehind", false);
+        when(cartRepository.findAllWithItemsByUserIdIn(List.of(1L))).thenReturn(List.of(testCart));
+        when(productRepository.getReferenceById(7L)).thenReturn(testProduct);
+
+        // When
+        cartStore.update(1L, cart -> cart.addLine(line(1)));
+
+        // Then
+        assertThat(testCart.getItems()).hasSize(1);
+        assertThat(cartStore.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should keep both lines when two overlapping requests add different products to one cart")
+    void testOverlappingAddsKeepBothLines() {
+        // Given - two nodes in write-through mode sharing one database cart
+        ReflectionTestUtils.setField(cartStore, "writeBehind", false);
+        CartStore otherNode = new CartStore(cartRepository, cartItemRepository, userRepository, productRepository,
+                productVariantRepository, transactionManager);
+        ReflectionTestUtils.setField(otherNode, "writeBehind", false);
+        ReflectionTestUtils.setField(otherNode, "batchSize", 100);
+
+        Product other = Product.builder().name("Other").price(new BigDecimal("50.00")).stock(5).build();
+        other.setId(8L);
+        when(cartRepository.findAllWithItemsByUserIdIn(List.of(1L))).thenReturn(List.of(testCart));
+        when(productRepository.getReferenceById(7L)).thenReturn(testProduct);
+        when(productRepository.getReferenceById(8L)).thenReturn(other);
+
+        // When - this node loads the (empty) cart, the other node adds and writes its line, then this node writes
+        cartStore.update(1L, cart -> {
+            otherNode.update(1L, otherCart -> otherCart.addLine(line(1)));
+            return cart.addLine(WorkingCart.Line.builder()
+                    .productId(8L).quantity(2).price(new BigDecimal("50.00")).build());
+        });
+
+        // Then - the stale copy did not delete the line written in between
+        assertThat(testCart.getItems())
+                .extracting(item -> item.getProduct().getId(), CartItem::getQuantity)
+                .containsExactlyInAnyOrder(tuple(7L, 1), tuple(8L, 2));
+    }
+}
@@ -0,0 +1,80 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.OrderEventPayload;
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.entity.OutboxEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the customer and admin email outbox handlers
+ * Covers: one message per event, superseded status emails
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Email outbox handler Tests")
+class EmailOutboxHandlerTest {
+
+    @Mock
+    private EmailService emailService;
+
+    private EmailOutboxHandler customerHandler;
+    private AdminEmailOutboxHandler adminHandler;
+    private OrderEmail orderEmail;
+
+    @BeforeEach
+    void setUp() {
+        customerHandler = new EmailOutboxHandler(emailService);
+        adminHandler = new AdminEmailOutboxHandler(emailService);
+
+        orderEmail = new OrderEmail(1L, "ORD-20260213-001", Order.OrderStatus.SHIPPED, LocalDateTime.now(),
+                "TRK-1", "Test", "test@example.com", "1 Street", "Mumbai", "India", "400001", null,
+                List.of(), new BigDecimal("100.00"), new BigDecimal("18.00"), BigDecimal.ZERO,
+                new BigDecimal("118.00"), null);
+        lenient().when(emailService.loadOrderEmail(1L)).thenReturn(orderEmail);
+    }
+
+    private OrderEventPayload payload(Order.OrderStatus status) {
+        return OrderEventPayload.builder().orderId(1L).status(status).build();
+    }
+
+    @Test
+    @DisplayName("Should send only the customer confirmation for a confirmed order")
+    void testConfirmedSendsCustomerMailOnly() {
+        customerHandler.handle(OutboxEvent.EventType.ORDER_CONFIRMED, payload(Order.OrderStatus.PLACED));
+
+        verify(emailService).sendOrderConfirmation(orderEmail);
+        verify(emailService, never()).sendAdminOrderNotification(any());
+    }
+
+    @Test
+    @DisplayName("Should send the admin notification from its own handler")
+    void testAdminHandler() {
+        assertThat(adminHandler.supports(OutboxEvent.EventType.ORDER_CONFIRMED)).isTrue();
+        assertThat(adminHandler.supports(OutboxEvent.EventType.ORDER_SHIPPED)).isFalse();
+
+        adminHandler.handle(OutboxEvent.EventType.ORDER_CONFIRMED, payload(Order.OrderStatus.PLACED));
+
+        verify(emailService).sendAdminOrderNotification(orderEmail);
+        verify(emailService, never()).sendOrderConfirmation(any());
+    }
+
+    @Test
+    @DisplayName("Should skip a status email superseded by a later transition")
+    void testSupersededStatusSkipped() {
+        customerHandler.handle(OutboxEvent.EventType.ORDER_STATUS_CHANGED, payload(Order.OrderStatus.PACKED));
+
+        verify(emailService, never()).sendOrderStatusUpdate(any());
+    }
+}
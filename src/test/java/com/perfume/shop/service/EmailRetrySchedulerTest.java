@@ -0,0 +1,165 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.repository.EmailEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for EmailRetryScheduler
+ * Covers: claims bounded by executor capacity (pooled and virtual thread mode), paging with a per-poll cap, COUNT-based monitoring
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("EmailRetryScheduler Tests")
+class EmailRetrySchedulerTest {
+
+    @Mock
+    private EmailEventRepository emailEventRepository;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private ThreadPoolTaskExecutor retryExecutor;
+
+    private EmailRetryScheduler scheduler(int threads, int queueCapacity, int pageSize, int maxPerPoll) {
+        retryExecutor = new ThreadPoolTaskExecutor();
+        retryExecutor.setCorePoolSize(threads);
+        retryExecutor.setMaxPoolSize(threads);
+        retryExecutor.setQueueCapacity(queueCapacity);
+        retryExecutor.initialize();
+
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        EmailRetryScheduler scheduler = new EmailRetryScheduler(emailEventRepository, emailService,
+                transactionTemplate, retryExecutor);
+        ReflectionTestUtils.setField(scheduler, "enabled", true);
+        ReflectionTestUtils.setField(scheduler, "pageSize", pageSize);
+        ReflectionTestUtils.setField(scheduler, "maxPerPoll", maxPerPoll);
+        ReflectionTestUtils.setField(scheduler, "leaseSeconds", 600L);
+        ReflectionTestUtils.setField(scheduler, "firstAttemptGraceMinutes", 10L);
+        return scheduler;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (retryExecutor != null) {
+            retryExecutor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should claim no more emails than the retry executor can take")
+    void testClaimBoundedByExecutorCapacity() throws InterruptedException {
+        // Given - the only thread is busy, two queue slots are free
+        EmailRetryScheduler scheduler = scheduler(1, 2, 25, 200);
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        retryExecutor.execute(() -> {
+            busy.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        busy.await();
+        when(emailEventRepository.lockDueIds(any(), any(), eq(2))).thenReturn(List.of(11L, 12L));
+
+        // When
+        scheduler.retryFailedEmails();
+        release.countDown();
+
+        // Then - the queue was full after the page, so the poll stopped there
+        verify(emailEventRepository).claim(eq(List.of(11L, 12L)), any(LocalDateTime.class));
+        verify(emailEventRepository, times(1)).lockDueIds(any(), any(), anyInt());
+        verify(emailService, timeout(2000)).retryFailedEmail(11L);
+        verify(emailService, timeout(2000)).retryFailedEmail(12L);
+        verify(emailEventRepository, never()).releaseClaims(any());
+    }
+
+    @Test
+    @DisplayName("Should claim no more emails than the virtual thread executor's concurrency limit admits")
+    void testClaimBoundedByVirtualThreadLimit() throws InterruptedException {
+        // Given - per-task virtual threads, at most two retries at once
+        SimpleAsyncTaskExecutor virtualExecutor = new SimpleAsyncTaskExecutor("email-retry-task-");
+        virtualExecutor.setVirtualThreads(true);
+        virtualExecutor.setConcurrencyLimit(2);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        EmailRetryScheduler scheduler = new EmailRetryScheduler(emailEventRepository, emailService,
+                transactionTemplate, virtualExecutor);
+        ReflectionTestUtils.setField(scheduler, "enabled", true);
+        ReflectionTestUtils.setField(scheduler, "pageSize", 25);
+        ReflectionTestUtils.setField(scheduler, "maxPerPoll", 200);
+        ReflectionTestUtils.setField(scheduler, "leaseSeconds", 600L);
+        ReflectionTestUtils.setField(scheduler, "firstAttemptGraceMinutes", 10L);
+
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(emailService).retryFailedEmail(anyLong());
+        when(emailEventRepository.lockDueIds(any(), any(), eq(2))).thenReturn(List.of(21L, 22L));
+
+        // When
+        scheduler.retryFailedEmails();
+
+        // Then - both slots were taken, so the poll stopped after one page
+        assertThat(scheduler.freeSlots()).isZero();
+        verify(emailEventRepository, times(1)).lockDueIds(any(), any(), anyInt());
+        release.countDown();
+        verify(emailService, timeout(2000)).retryFailedEmail(21L);
+        verify(emailService, timeout(2000)).retryFailedEmail(22L);
+        virtualExecutor.close();
+    }
+
+    @Test
+    @DisplayName("Should claim in pages and stop at the per-poll cap")
+    void testPagingWithPerPollCap() {
+        // Given
+        EmailRetryScheduler scheduler = scheduler(4, 100, 2, 3);
+        when(emailEventRepository.lockDueIds(any(), any(), eq(2))).thenReturn(List.of(1L, 2L));
+        when(emailEventRepository.lockDueIds(any(), any(), eq(1))).thenReturn(List.of(3L));
+
+        // When
+        scheduler.retryFailedEmails();
+
+        // Then
+        verify(emailEventRepository, times(2)).lockDueIds(any(), any(), anyInt());
+        verify(emailService, timeout(2000)).retryFailedEmail(1L);
+        verify(emailService, timeout(2000)).retryFailedEmail(2L);
+        verify(emailService, timeout(2000)).retryFailedEmail(3L);
+    }
+
+    @Test
+    @DisplayName("Should count due retries with a COUNT query")
+    void testPendingEmailCount() {
+        // Given
+        EmailRetryScheduler scheduler = scheduler(1, 1, 25, 200);
+        when(emailEventRepository.countDueForRetry(any(), any())).thenReturn(42L);
+
+        // When & Then
+        assertThat(scheduler.getPendingEmailCount()).isEqualTo(42L);
+        verify(emailEventRepository, never()).lockDueIds(any(), any(), anyInt());
+    }
+}
@@ -0,0 +1,97 @@
+package com.perfume.shop.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for EmailTemplate and the compiled templates in EmailTemplates
+ * Covers: typed placeholders, repeated names, fragments, startup validation, real templates
+ */
+@DisplayName("EmailTemplate Tests")
+class EmailTemplateTest {
+
+    @Test
+    @DisplayName("Should render typed placeholders and repeated names")
+    void testRender() {
+        // Given
+        EmailTemplate template = EmailTemplate.compile("test",
+                "<b style=\"color: {{color}}\">{{name}}</b> x {{qty:int}} = ₹{{price:money}} <i style=\"color: {{color}}\">100%</i>",
+                "color", "name", "qty", "price");
+
+        // When
+        StringBuilder out = new StringBuilder();
+        template.render(out, "#fff", "Oud", 3, new BigDecimal("10.005"));
+
+        // Then
+        assertThat(out.toString()).isEqualTo(
+                "<b style=\"color: #fff\">Oud</b> x 3 = ₹10.01 <i style=\"color: #fff\">100%</i>");
+    }
+
+    @Test
+    @DisplayName("Should write fragments into the enclosing buffer")
+    void testFragment() {
+        // Given
+        EmailTemplate row = EmailTemplate.compile("row", "<li>{{name}}</li>", "name");
+        EmailTemplate list = EmailTemplate.compile("list", "<ul>{{items:html}}</ul>", "items");
+
+        // When
+        StringBuilder out = new StringBuilder();
+        list.render(out, (EmailTemplate.Fragment) buffer -> {
+            row.render(buffer, "a");
+            row.render(buffer, "b");
+        });
+
+        // Then
+        assertThat(out.toString()).isEqualTo("<ul><li>a</li><li>b</li></ul>");
+    }
+
+    @Test
+    @DisplayName("Should reject broken templates at compile time and wrong argument counts at render time")
+    void testValidation() {
+        assertThatThrownBy(() -> EmailTemplate.compile("t", "{{missing}}", "name"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("missing");
+        assertThatThrownBy(() -> EmailTemplate.compile("t", "{{name}}", "name", "unused"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("unused");
+        assertThatThrownBy(() -> EmailTemplate.compile("t", "{{name:date}}", "name"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> EmailTemplate.compile("t", "{{name", "name"))
+                .isInstanceOf(IllegalStateException.class);
+
+        EmailTemplate template = EmailTemplate.compile("t", "{{a}}{{b}}", "a", "b");
+        assertThatThrownBy(() -> template.render(new StringBuilder(), "only-one"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should load and render the order confirmation template")
+    void testOrderConfirmationTemplate() {
+        // Given
+        EmailTemplates emailTemplates = new EmailTemplates();
+        LocalDateTime createdAt = LocalDateTime.of(2026, 3, 1, 10, 30);
+
+        // When
+        String html = emailTemplates.render(emailTemplates.orderConfirmation, "customer", "ORD-1", createdAt,
+                (EmailTemplate.Fragment) out -> emailTemplates.itemRow.render(out, "Oud", 2, new BigDecimal("99.5")),
+                new BigDecimal("199.00"), new BigDecimal("35.82"), BigDecimal.ZERO, new BigDecimal("234.82"),
+                "12 Rose Street", "Chennai", "India", "600001");
+
+        // Then
+        assertThat(html)
+                .contains("Hi <strong>customer</strong>")
+                .contains(">ORD-1<")
+                .contains(createdAt.toString())
+                .contains("Qty: 2")
+                .contains("₹99.50")
+                .contains("₹234.82")
+                .contains("width: 100%;")
+                .contains("GST (18%)")
+                .doesNotContain("{{");
+    }
+}
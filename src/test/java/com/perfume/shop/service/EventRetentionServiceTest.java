@@ -0,0 +1,143 @@
+package com.perfume.shop.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfume.shop.repository.EventArchiveRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for EventRetentionService
+ * Covers: gzipped archive chunks, batched deletes, per-run batch limit
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("EventRetentionService Tests")
+class EventRetentionServiceTest {
+
+    @Mock
+    private EventArchiveRepository eventArchiveRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimpleMeterRegistry meterRegistry;
+    private EventRetentionService retentionService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        retentionService = new EventRetentionService(eventArchiveRepository, transactionTemplate,
+                objectMapper, meterRegistry);
+        ReflectionTestUtils.setField(retentionService, "batchSize", 2);
+        ReflectionTestUtils.setField(retentionService, "maxBatchesPerRun", 10);
+
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    private static Map<String, Object> row(long id, LocalDateTime createdAt) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("event_id", "evt_" + id);
+        row.put("status", "DONE");
+        row.put("created_at", Timestamp.valueOf(createdAt));
+        return row;
+    }
+
+    private List<Map<String, Object>> decompress(byte[] data) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return objectMapper.readValue(in, new TypeReference<>() {});
+        }
+    }
+
+    @Test
+    @DisplayName("Should archive each batch as a gzipped chunk and delete exactly its rows")
+    void testArchiveInBatches() throws IOException {
+        // Given
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(30);
+        LocalDateTime t1 = cutoff.minusDays(3);
+        LocalDateTime t2 = cutoff.minusDays(2);
+        LocalDateTime t3 = cutoff.minusDays(1);
+        when(eventArchiveRepository.lockRetiredRows(eq("webhook_events"), anyString(), eq(cutoff), eq(2)))
+                .thenReturn(List.of(row(1L, t1), row(2L, t2)))
+                .thenReturn(List.of(row(7L, t3)));
+
+        // When
+        int archived = retentionService.archive(EventRetentionService.Source.WEBHOOK_EVENTS, cutoff);
+
+        // Then - a partial batch ends the run
+        assertThat(archived).isEqualTo(3);
+        verify(eventArchiveRepository, times(2)).lockRetiredRows(any(), any(), any(), anyInt());
+
+        ArgumentCaptor<byte[]> data = ArgumentCaptor.forClass(byte[].class);
+        verify(eventArchiveRepository).insertChunk(eq("webhook_events"), eq(1L), eq(2L), eq(2),
+                eq(t1), eq(t2), data.capture());
+        verify(eventArchiveRepository).insertChunk(eq("webhook_events"), eq(7L), eq(7L), eq(1),
+                eq(t3), eq(t3), any());
+        verify(eventArchiveRepository).deleteByIds("webhook_events", List.of(1L, 2L));
+        verify(eventArchiveRepository).deleteByIds("webhook_events", List.of(7L));
+
+        List<Map<String, Object>> rows = decompress(data.getValue());
+        assertThat(rows).extracting(r -> r.get("event_id")).containsExactly("evt_1", "evt_2");
+        assertThat(meterRegistry.get("shop.retention.archived").tag("source", "webhook_events").counter().count())
+                .isEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("Should stop after the per-run batch limit")
+    void testMaxBatchesPerRun() {
+        // Given
+        ReflectionTestUtils.setField(retentionService, "maxBatchesPerRun", 2);
+        LocalDateTime createdAt = LocalDateTime.now().minusDays(100);
+        when(eventArchiveRepository.lockRetiredRows(any(), any(), any(), anyInt()))
+                .thenReturn(List.of(row(1L, createdAt), row(2L, createdAt)))
+                .thenReturn(List.of(row(3L, createdAt), row(4L, createdAt)));
+
+        // When
+        int archived = retentionService.archive(EventRetentionService.Source.EMAIL_EVENTS,
+                LocalDateTime.now().minusDays(90));
+
+        // Then
+        assertThat(archived).isEqualTo(4);
+        verify(eventArchiveRepository, times(2)).lockRetiredRows(any(), any(), any(), anyInt());
+        verify(eventArchiveRepository, times(2)).deleteByIds(eq("email_events"), anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should do nothing when no rows are due")
+    void testNothingToArchive() {
+        // Given
+        when(eventArchiveRepository.lockRetiredRows(any(), any(), any(), anyInt())).thenReturn(List.of());
+
+        // When
+        int archived = retentionService.archive(EventRetentionService.Source.WEBHOOK_EVENTS, LocalDateTime.now());
+
+        // Then
+        assertThat(archived).isZero();
+        verify(eventArchiveRepository, never()).insertChunk(any(), anyLong(), anyLong(), anyInt(), any(), any(), any());
+        verify(eventArchiveRepository, never()).deleteByIds(any(), any());
+    }
+}
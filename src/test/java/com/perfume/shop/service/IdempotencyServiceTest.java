@@ -0,0 +1,232 @@
+package com.perfume.shop.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfume.shop.entity.IdempotencyRecord;
+import com.perfume.shop.entity.User;
+import com.perfume.shop.exception.ApplicationException;
+import com.perfume.shop.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for IdempotencyService
+ * Covers: replay, in-flight duplicates, conflicts across nodes, key reuse with a different payload
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("IdempotencyService Tests")
+class IdempotencyServiceTest {
+
+    private static final TypeReference<Map<String, Object>> BODY = new TypeReference<>() {};
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private IdempotencyService idempotencyService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyRecordRepository, new ObjectMapper());
+        ReflectionTestUtils.setField(idempotencyService, "ttlHours", 24L);
+        ReflectionTestUtils.setField(idempotencyService, "cacheMaxSize", 1000L);
+        ReflectionTestUtils.setField(idempotencyService, "waitTimeoutSeconds", 5L);
+        ReflectionTestUtils.setField(idempotencyService, "lockTimeoutSeconds", 120L);
+        idempotencyService.init();
+
+        user = User.builder().email("customer@example.com").build();
+        user.setId(1L);
+
+        lenient().when(idempotencyRecordRepository.findByUserIdAndEndpointAndIdempotencyKey(any(), any(), any()))
+                .thenReturn(Optional.empty());
+        lenient().when(idempotencyRecordRepository.saveAndFlush(any(IdempotencyRecord.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    private ResponseEntity<Map<String, Object>> execute(String key, Object request, AtomicInteger calls) {
+        return idempotencyService.execute(key, user, "orders.checkout", request, BODY, () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.ok(Map.of("orderId", 42));
+        });
+    }
+
+    @Test
+    @DisplayName("Should run the action without a key and store nothing")
+    void testNoKey() {
+        AtomicInteger calls = new AtomicInteger();
+
+        execute(null, Map.of("amount", 100), calls);
+        execute(null, Map.of("amount", 100), calls);
+
+        assertThat(calls).hasValue(2);
+        verifyNoInteractions(idempotencyRecordRepository);
+    }
+
+    @Test
+    @DisplayName("Should replay the first response for a retry with the same key")
+    void testReplay() {
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<Map<String, Object>> first = execute("key-1", Map.of("amount", 100), calls);
+        ResponseEntity<Map<String, Object>> retry = execute("key-1", Map.of("amount", 100), calls);
+
+        assertThat(calls).hasValue(1);
+        assertThat(first.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(retry.getBody()).containsEntry("orderId", 42);
+        verify(idempotencyRecordRepository).save(argThat(record ->
+                record.getStatus() == IdempotencyRecord.Status.COMPLETED && record.getResponseStatus() == 200));
+    }
+
+    @Test
+    @DisplayName("Should replay a response completed on another node")
+    void testReplayPersisted() {
+        AtomicInteger calls = new AtomicInteger();
+        execute("key-1", Map.of("amount", 100), calls);
+        IdempotencyRecord completed = IdempotencyRecord.builder()
+                .idempotencyKey("key-2")
+                .userId(1L)
+                .endpoint("orders.checkout")
+                .requestHash(captureRequestHash())
+                .status(IdempotencyRecord.Status.COMPLETED)
+                .responseStatus(200)
+                .responseBody("{\"orderId\":7}")
+                .lockedAt(LocalDateTime.now().minusMinutes(1))
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .build();
+        when(idempotencyRecordRepository.findByUserIdAndEndpointAndIdempotencyKey(1L, "orders.checkout", "key-2"))
+                .thenReturn(Optional.of(completed));
+
+        ResponseEntity<Map<String, Object>> replayed = execute("key-2", Map.of("amount", 100), calls);
+
+        assertThat(calls).hasValue(1);
+        assertThat(replayed.getBody()).containsEntry("orderId", 7);
+        assertThat(replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    @DisplayName("Should reject a key reused with a different payload")
+    void testKeyReuse() {
+        AtomicInteger calls = new AtomicInteger();
+        execute("key-1", Map.of("amount", 100), calls);
+
+        assertThatThrownBy(() -> execute("key-1", Map.of("amount", 999), calls))
+                .isInstanceOfSatisfying(ApplicationException.class, e -> assertThat(e.getHttpStatus()).isEqualTo(422));
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should answer 409 while the key is still running on another node")
+    void testInFlightOnOtherNode() {
+        AtomicInteger calls = new AtomicInteger();
+        when(idempotencyRecordRepository.saveAndFlush(any(IdempotencyRecord.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_idempotency_scope"));
+
+        assertThatThrownBy(() -> execute("key-1", Map.of("amount", 100), calls))
+                .isInstanceOfSatisfying(ApplicationException.class, e -> assertThat(e.getHttpStatus()).isEqualTo(409));
+        assertThat(calls).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("Should answer 409 for a fresh IN_PROGRESS record with the same payload")
+    void testInProgressRecord() {
+        AtomicInteger calls = new AtomicInteger();
+        execute("key-1", Map.of("amount", 100), calls);
+        IdempotencyRecord running = IdempotencyRecord.builder()
+                .idempotencyKey("key-2")
+                .userId(1L)
+                .endpoint("orders.checkout")
+                .requestHash(captureRequestHash())
+                .status(IdempotencyRecord.Status.IN_PROGRESS)
+                .lockedAt(LocalDateTime.now().minusSeconds(5))
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .build();
+        when(idempotencyRecordRepository.findByUserIdAndEndpointAndIdempotencyKey(1L, "orders.checkout", "key-2"))
+                .thenReturn(Optional.of(running));
+
+        assertThatThrownBy(() -> execute("key-2", Map.of("amount", 100), calls))
+                .isInstanceOfSatisfying(ApplicationException.class, e -> assertThat(e.getHttpStatus()).isEqualTo(409));
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should let a concurrent duplicate on this node wait and replay the first response")
+    void testInFlightOnThisNode() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseEntity<Map<String, Object>>> first = executor.submit(() ->
+                    idempotencyService.execute("key-1", user, "orders.checkout", Map.of("amount", 100), BODY, () -> {
+                        calls.incrementAndGet();
+                        started.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return ResponseEntity.ok(Map.of("orderId", 42));
+                    }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            Future<ResponseEntity<Map<String, Object>>> duplicate = executor.submit(() ->
+                    execute("key-1", Map.of("amount", 100), calls));
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS).getBody()).containsEntry("orderId", 42);
+            ResponseEntity<Map<String, Object>> replayed = duplicate.get(5, TimeUnit.SECONDS);
+            assertThat(replayed.getBody()).containsEntry("orderId", 42);
+            assertThat(replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+            assertThat(calls).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should release the key when the action fails so the client can retry")
+    void testFailureReleasesKey() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> idempotencyService.execute("key-1", user, "orders.checkout", Map.of("amount", 100),
+                BODY, () -> {
+                    throw new IllegalStateException("gateway down");
+                })).isInstanceOf(IllegalStateException.class);
+        verify(idempotencyRecordRepository).delete(any(IdempotencyRecord.class));
+
+        execute("key-1", Map.of("amount", 100), calls);
+        assertThat(calls).hasValue(1);
+    }
+
+    /**
+     * Request hash the service stored for {"amount":100} on the first saveAndFlush
+     */
+    private String captureRequestHash() {
+        ArgumentCaptor<IdempotencyRecord> captor = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(idempotencyRecordRepository, atLeastOnce()).saveAndFlush(captor.capture());
+        return captor.getAllValues().get(0).getRequestHash();
+    }
+}
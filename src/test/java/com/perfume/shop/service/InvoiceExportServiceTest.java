@@ -0,0 +1,173 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.InvoiceRow;
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for InvoiceExportService
+ * Covers: invoiceable statuses, keyset paging, orders without items, render failures
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("InvoiceExportService Tests")
+class InvoiceExportServiceTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private InvoiceService invoiceService;
+
+    @InjectMocks
+    private InvoiceExportService invoiceExportService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(invoiceExportService, "pageSize", 2);
+    }
+
+    private static InvoiceRow row(long orderId, String productName, Integer quantity, String price) {
+        return InvoiceRow.builder()
+                .orderId(orderId)
+                .orderNumber("ORD-" + orderId)
+                .createdAt(LocalDateTime.of(2026, 1, 15, 10, 0))
+                .status(Order.OrderStatus.DELIVERED)
+                .firstName("Aisha")
+                .lastName("Khan")
+                .email("aisha@example.com")
+                .phoneNumber("9999999999")
+                .shippingAddress("12 Rose Street")
+                .shippingCity("Mumbai")
+                .shippingZipCode("400001")
+                .shippingCountry("India")
+                .shippingPhone("9999999999")
+                .paymentMethod("RAZORPAY")
+                .subtotal(new BigDecimal("3000.00"))
+                .tax(new BigDecimal("540.00"))
+                .totalAmount(new BigDecimal("3540.00"))
+                .productName(productName)
+                .quantity(quantity)
+                .price(price != null ? new BigDecimal(price) : null)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Only paid, non-cancelled statuses should be invoiceable")
+    void testInvoiceableStatuses() {
+        assertThat(InvoiceExportService.isInvoiceable(Order.OrderStatus.PLACED)).isFalse();
+        assertThat(InvoiceExportService.isInvoiceable(Order.OrderStatus.CANCELLED)).isFalse();
+        assertThat(InvoiceExportService.isInvoiceable(Order.OrderStatus.REFUNDED)).isFalse();
+        assertThat(InvoiceExportService.isInvoiceable(Order.OrderStatus.DELIVERED)).isTrue();
+
+        assertThatThrownBy(() -> invoiceExportService.exportZip(LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 31),
+                Order.OrderStatus.PLACED, new ByteArrayOutputStream()))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    @DisplayName("Should page through all orders and keep orders whose items are gone")
+    @SuppressWarnings("unchecked")
+    void testExportPages() throws IOException {
+        when(orderRepository.findInvoiceExportIds(eq(0L), any(), any(), any(), any())).thenReturn(List.of(1L, 2L));
+        when(orderRepository.findInvoiceExportIds(eq(2L), any(), any(), any(), any())).thenReturn(List.of(3L));
+        when(orderRepository.findInvoiceExportIds(eq(3L), any(), any(), any(), any())).thenReturn(List.of());
+        when(orderRepository.findInvoiceRows(List.of(1L, 2L))).thenReturn(List.of(
+                row(1L, "Oud Noir", 2, "1500.00"),
+                row(1L, null, 1, "540.00"),
+                row(2L, null, null, null)));
+        when(orderRepository.findInvoiceRows(List.of(3L))).thenReturn(List.of(row(3L, "Rose Attar", 1, "3540.00")));
+
+        List<InvoiceDocument> rendered = new ArrayList<>();
+        when(invoiceService.getInvoiceAsync(any())).thenAnswer(inv -> {
+            InvoiceDocument invoice = inv.getArgument(0);
+            rendered.add(invoice);
+            Path pdf = Files.writeString(cacheDir.resolve(invoice.orderId() + ".pdf"), "%PDF-" + invoice.orderNumber());
+            return CompletableFuture.completedFuture(pdf);
+        });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        invoiceExportService.exportZip(LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 31), null, out);
+
+        assertThat(unzip(out.toByteArray())).containsOnlyKeys(
+                "Invoice_ORD-1.pdf", "Invoice_ORD-2.pdf", "Invoice_ORD-3.pdf");
+        assertThat(rendered).extracting(InvoiceDocument::orderId).containsExactlyInAnyOrder(1L, 2L, 3L);
+        InvoiceDocument first = rendered.stream().filter(i -> i.orderId() == 1L).findFirst().orElseThrow();
+        assertThat(first.lines()).extracting(InvoiceDocument.Line::productName)
+                .containsExactly("Oud Noir", InvoiceDocument.UNAVAILABLE_PRODUCT);
+        assertThat(rendered.stream().filter(i -> i.orderId() == 2L).findFirst().orElseThrow().lines()).isEmpty();
+
+        ArgumentCaptor<Collection<Order.OrderStatus>> statuses = ArgumentCaptor.forClass(Collection.class);
+        verify(orderRepository).findInvoiceExportIds(eq(0L), any(), any(), statuses.capture(), any());
+        assertThat(statuses.getValue()).doesNotContain(
+                Order.OrderStatus.PLACED, Order.OrderStatus.CANCELLED, Order.OrderStatus.REFUNDED);
+    }
+
+    @Test
+    @DisplayName("Should list failed renders in export-errors.txt and keep going")
+    void testRenderFailure() throws IOException {
+        when(orderRepository.findInvoiceExportIds(eq(0L), any(), any(), any(), any())).thenReturn(List.of(1L, 2L));
+        when(orderRepository.findInvoiceExportIds(eq(2L), any(), any(), any(), any())).thenReturn(List.of());
+        when(orderRepository.findInvoiceRows(List.of(1L, 2L))).thenReturn(List.of(
+                row(1L, "Oud Noir", 1, "3540.00"),
+                row(2L, "Rose Attar", 1, "3540.00")));
+        Path pdf = Files.writeString(cacheDir.resolve("1.pdf"), "%PDF-1");
+        when(invoiceService.getInvoiceAsync(any())).thenAnswer(inv -> ((InvoiceDocument) inv.getArgument(0)).orderId() == 1L
+                ? CompletableFuture.completedFuture(pdf)
+                : CompletableFuture.failedFuture(new IllegalStateException("font missing")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        invoiceExportService.exportZip(LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 31),
+                Order.OrderStatus.DELIVERED, out);
+
+        Map<String, String> entries = unzip(out.toByteArray());
+        assertThat(entries).containsOnlyKeys("Invoice_ORD-1.pdf", "export-errors.txt");
+        assertThat(entries.get("export-errors.txt")).isEqualTo("ORD-2: font missing");
+    }
+
+    private static Map<String, String> unzip(byte[] zip) throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+}
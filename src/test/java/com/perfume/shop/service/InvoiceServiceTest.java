@@ -0,0 +1,143 @@
+package com.perfume.shop.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for InvoiceService and InvoiceDocument
+ * Covers: content hash, rendering, disk cache hit/miss, stale render eviction, retention sweep
+ */
+@DisplayName("InvoiceService Tests")
+class InvoiceServiceTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private InvoiceRenderer invoiceRenderer;
+    private ThreadPoolTaskExecutor invoiceExecutor;
+    private InvoiceService invoiceService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        invoiceRenderer = spy(new InvoiceRenderer());
+        invoiceExecutor = new ThreadPoolTaskExecutor();
+        invoiceExecutor.setCorePoolSize(2);
+        invoiceExecutor.setMaxPoolSize(2);
+        invoiceExecutor.setQueueCapacity(10);
+        invoiceExecutor.initialize();
+
+        invoiceService = new InvoiceService(invoiceRenderer, invoiceExecutor);
+        ReflectionTestUtils.setField(invoiceService, "cacheDir", cacheDir.toString());
+        ReflectionTestUtils.setField(invoiceService, "maxAgeDays", 30L);
+        ReflectionTestUtils.setField(invoiceService, "maxSizeMb", 1024L);
+        invoiceService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        invoiceExecutor.shutdown();
+    }
+
+    private static InvoiceDocument invoice(Long orderId, String status, String total) {
+        return new InvoiceDocument(orderId, "ORD-" + orderId, "2026-01-15", status,
+                "Aisha Khan", "aisha@example.com", "9999999999",
+                "12 Rose Street", "Mumbai", "400001", "India", "9999999999", "RAZORPAY",
+                List.of(new InvoiceDocument.Line("Oud Noir", 2, new BigDecimal("1500.00"), new BigDecimal("3000.00"))),
+                new BigDecimal("3000.00"), new BigDecimal("540.00"), BigDecimal.ZERO, new BigDecimal(total));
+    }
+
+    @Test
+    @DisplayName("Content hash should be stable for equal snapshots and change with any printed field")
+    void testContentHash() {
+        InvoiceDocument original = invoice(1L, "DELIVERED", "3540.00");
+
+        assertThat(original.contentHash()).hasSize(32)
+                .isEqualTo(invoice(1L, "DELIVERED", "3540.00").contentHash());
+        assertThat(invoice(1L, "SHIPPED", "3540.00").contentHash()).isNotEqualTo(original.contentHash());
+        assertThat(invoice(1L, "DELIVERED", "3541.00").contentHash()).isNotEqualTo(original.contentHash());
+    }
+
+    @Test
+    @DisplayName("Should render a PDF once and serve repeat requests from the disk cache")
+    void testCacheHitAndMiss() throws IOException {
+        InvoiceDocument document = invoice(1L, "DELIVERED", "3540.00");
+
+        Path first = invoiceService.getInvoice(document);
+        Path second = invoiceService.getInvoice(document);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(first.getFileName().toString()).isEqualTo("1-" + document.contentHash() + ".pdf");
+        assertThat(new String(Files.readAllBytes(first), 0, 4)).isEqualTo("%PDF");
+        verify(invoiceRenderer, times(1)).render(eq(document), any());
+    }
+
+    @Test
+    @DisplayName("Should render again and drop the stale file when the order changes")
+    void testStaleRenderEvicted() {
+        Path shipped = invoiceService.getInvoice(invoice(1L, "SHIPPED", "3540.00"));
+        Path delivered = invoiceService.getInvoice(invoice(1L, "DELIVERED", "3540.00"));
+
+        assertThat(delivered).isNotEqualTo(shipped).exists();
+        assertThat(shipped).doesNotExist();
+        verify(invoiceRenderer, times(2)).render(any(), any());
+    }
+
+    @Test
+    @DisplayName("Sweep should drop invoices unused past the retention window and abandoned temp files")
+    void testRetentionByAge() throws IOException {
+        Path old = invoiceService.getInvoice(invoice(1L, "DELIVERED", "3540.00"));
+        Path recent = invoiceService.getInvoice(invoice(2L, "DELIVERED", "3540.00"));
+        Path strayTemp = Files.createFile(cacheDir.resolve("invoice-123.tmp"));
+        age(old, Duration.ofDays(31));
+        age(strayTemp, Duration.ofHours(2));
+
+        invoiceService.enforceRetention();
+
+        assertThat(old).doesNotExist();
+        assertThat(strayTemp).doesNotExist();
+        assertThat(recent).exists();
+    }
+
+    @Test
+    @DisplayName("Sweep should drop least recently used invoices until the cache fits its size cap")
+    void testRetentionBySize() throws IOException {
+        ReflectionTestUtils.setField(invoiceService, "maxSizeMb", 1L);
+        InvoiceDocument hot = invoice(1L, "DELIVERED", "3540.00");
+        InvoiceDocument cold = invoice(2L, "DELIVERED", "3540.00");
+        // Two 600 KB entries: 1.2 MB against a 1 MB cap
+        Path hotFile = Files.write(cacheDir.resolve("1-" + hot.contentHash() + ".pdf"), new byte[600 * 1024]);
+        Path coldFile = Files.write(cacheDir.resolve("2-" + cold.contentHash() + ".pdf"), new byte[600 * 1024]);
+        age(hotFile, Duration.ofHours(2));
+        age(coldFile, Duration.ofHours(1));
+
+        // A cache hit marks the older file as recently used
+        assertThat(invoiceService.getInvoice(hot)).isEqualTo(hotFile);
+        invoiceService.enforceRetention();
+
+        assertThat(hotFile).exists();
+        assertThat(coldFile).doesNotExist();
+        verify(invoiceRenderer, never()).render(any(), any());
+    }
+
+    private static void age(Path path, Duration age) throws IOException {
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(age)));
+    }
+}
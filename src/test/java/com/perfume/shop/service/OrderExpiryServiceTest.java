@@ -0,0 +1,85 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.repository.OrderHistoryBatchRepository;
+import com.perfume.shop.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for OrderExpiryService
+ * Covers: set-based batch expiry, history batch insert, cache eviction
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OrderExpiryService Tests")
+class OrderExpiryServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderHistoryBatchRepository orderHistoryBatchRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private OrderSummaryCache orderSummaryCache = new OrderSummaryCache(10000, 10);
+
+    @InjectMocks
+    private OrderExpiryService orderExpiryService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderExpiryService, "batchSize", 200);
+    }
+
+    @Test
+    @DisplayName("Should cancel a locked batch with one update and one history batch")
+    void testExpireBatch() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(60);
+        LocalDateTime gatewayCutoff = LocalDateTime.now().minusHours(48);
+        when(orderRepository.lockStaleOrders("PLACED", cutoff, gatewayCutoff, 200)).thenReturn(List.of(
+                new Object[] { 10L, 1L },
+                new Object[] { 11L, 1L },
+                new Object[] { 12L, 2L }));
+        when(orderRepository.updateStatusBulk(eq(List.of(10L, 11L, 12L)), eq(List.of(Order.OrderStatus.PLACED)),
+                eq(Order.OrderStatus.CANCELLED), any())).thenReturn(3);
+
+        int expired = orderExpiryService.expireBatch(cutoff, gatewayCutoff);
+
+        assertThat(expired).isEqualTo(3);
+        verify(orderHistoryBatchRepository).insertAll(eq(List.of(10L, 11L, 12L)), eq(Order.OrderStatus.CANCELLED),
+                eq("SYSTEM"), eq(OrderExpiryService.EXPIRY_NOTE), any());
+        verify(orderSummaryCache).evict(1L);
+        verify(orderSummaryCache).evict(2L);
+    }
+
+    @Test
+    @DisplayName("Should do nothing when no stale orders are found")
+    void testExpireBatchEmpty() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(60);
+        LocalDateTime gatewayCutoff = LocalDateTime.now().minusHours(48);
+        when(orderRepository.lockStaleOrders("PLACED", cutoff, gatewayCutoff, 200)).thenReturn(List.of());
+
+        assertThat(orderExpiryService.expireBatch(cutoff, gatewayCutoff)).isZero();
+
+        verify(orderRepository, never()).updateStatusBulk(any(), any(), any(), any());
+        verifyNoInteractions(orderHistoryBatchRepository);
+    }
+}
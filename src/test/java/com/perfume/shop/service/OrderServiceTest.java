@@ -1,12 +1,15 @@
 package com.perfume.shop.service;
 
 import com.perfume.shop.dto.CheckoutRequest;
+import com.perfume.shop.dto.OrderSummaryDto;
 import com.perfume.shop.dto.RazorpayOrderRequest;
 import com.perfume.shop.dto.RazorpayOrderResponse;
 import com.perfume.shop.entity.*;
+import com.perfume.shop.exception.PaymentOnCancelledOrderException;
 import com.perfume.shop.repository.CartRepository;
 import com.perfume.shop.repository.OrderHistoryRepository;
 import com.perfume.shop.repository.OrderRepository;
+import com.perfume.shop.repository.PaymentRefundTaskRepository;
 import com.perfume.shop.repository.ProductRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -14,6 +17,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
@@ -47,7 +51,7 @@ class OrderServiceTest {
     private OrderHistoryRepository orderHistoryRepository;
 
     @Mock
-    private EmailService emailService;
+    private OutboxService outboxService;
 
     @Mock
     private RazorpayService razorpayService;
@@ -55,6 +59,21 @@ class OrderServiceTest {
     @Mock
     private CouponService couponService;
 
+    @Mock
+    private InvoiceService invoiceService;
+
+    @Spy
+    private OrderSummaryCache orderSummaryCache = new OrderSummaryCache(10000, 10);
+
+    @Spy
+    private PricingEngine pricingEngine = new PricingEngine();
+
+    @Mock
+    private CartStore cartStore;
+
+    @Mock
+    private PaymentRefundTaskRepository paymentRefundTaskRepository;
+
     @InjectMocks
     private OrderService orderService;
 
@@ -216,14 +235,12 @@ class OrderServiceTest {
         orderItem.setId(1L);
         testOrder.getItems().add(orderItem);
 
-        when(orderRepository.findByRazorpayOrderId("order_test_123")).thenReturn(Optional.of(testOrder));
+        when(orderRepository.findByRazorpayOrderIdForUpdate("order_test_123")).thenReturn(Optional.of(testOrder));
         when(productRepository.findAllByIdWithLock(anyList())).thenReturn(Arrays.asList(testProduct));
         when(productRepository.save(any(Product.class))).thenReturn(testProduct);
         when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
         when(cartRepository.findByUserId(testUser.getId())).thenReturn(Optional.of(testCart));
         when(cartRepository.save(any(Cart.class))).thenReturn(testCart);
-        doNothing().when(emailService).sendOrderConfirmation(any(Order.class));
-        doNothing().when(emailService).sendAdminOrderNotification(any(Order.class));
 
         // When
         Order confirmedOrder = orderService.confirmPayment("order_test_123", "pay_test_456");
@@ -232,8 +249,7 @@ class OrderServiceTest {
         assertThat(confirmedOrder).isNotNull();
         assertThat(confirmedOrder.getRazorpayPaymentId()).isEqualTo("pay_test_456");
         verify(productRepository).save(argThat(product -> product.getStock() == 48)); // 50 - 2
-        verify(emailService).sendOrderConfirmation(testOrder);
-        verify(emailService).sendAdminOrderNotification(testOrder);
+        verify(outboxService).publish(OutboxEvent.EventType.ORDER_CONFIRMED, testOrder);
     }
 
     @Test
@@ -241,7 +257,7 @@ class OrderServiceTest {
     void testConfirmPaymentIdempotency() {
         // Given
         testOrder.setStatus(Order.OrderStatus.CONFIRMED);
-        when(orderRepository.findByRazorpayOrderId("order_test_123")).thenReturn(Optional.of(testOrder));
+        when(orderRepository.findByRazorpayOrderIdForUpdate("order_test_123")).thenReturn(Optional.of(testOrder));
 
         // When
         Order result = orderService.confirmPayment("order_test_123", "pay_test_456");
@@ -249,14 +265,46 @@ class OrderServiceTest {
         // Then
         assertThat(result.getStatus()).isEqualTo(Order.OrderStatus.CONFIRMED);
         verify(productRepository, never()).save(any(Product.class)); // Stock not deducted again
-        verify(emailService, never()).sendOrderConfirmation(any(Order.class));
+        verify(outboxService, never()).publish(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should fail and record a refund task for a payment on a cancelled order")
+    void testConfirmPaymentCancelledOrder() {
+        // Given
+        testOrder.setStatus(Order.OrderStatus.CANCELLED);
+        testOrder.setRazorpayOrderId("order_test_123");
+        when(orderRepository.findByRazorpayOrderIdForUpdate("order_test_123")).thenReturn(Optional.of(testOrder));
+        when(paymentRefundTaskRepository.existsByRazorpayPaymentId("pay_test_456")).thenReturn(false);
+
+        // When & Then
+        assertThatThrownBy(() -> orderService.confirmPayment("order_test_123", "pay_test_456"))
+                .isInstanceOf(PaymentOnCancelledOrderException.class);
+        verify(paymentRefundTaskRepository).save(argThat(task -> "pay_test_456".equals(task.getRazorpayPaymentId())
+                && task.getStatus() == PaymentRefundTask.Status.OPEN));
+        verify(productRepository, never()).findAllByIdWithLock(anyList());
+        verify(outboxService, never()).publish(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should record a redelivered payment on a cancelled order only once")
+    void testConfirmPaymentCancelledOrderRedelivered() {
+        // Given
+        testOrder.setStatus(Order.OrderStatus.CANCELLED);
+        when(orderRepository.findByRazorpayOrderIdForUpdate("order_test_123")).thenReturn(Optional.of(testOrder));
+        when(paymentRefundTaskRepository.existsByRazorpayPaymentId("pay_test_456")).thenReturn(true);
+
+        // When & Then
+        assertThatThrownBy(() -> orderService.confirmPayment("order_test_123", "pay_test_456"))
+                .isInstanceOf(PaymentOnCancelledOrderException.class);
+        verify(paymentRefundTaskRepository, never()).save(any());
     }
 
     @Test
     @DisplayName("Should throw exception when order not found for payment confirmation")
     void testConfirmPaymentOrderNotFound() {
         // Given
-        when(orderRepository.findByRazorpayOrderId("invalid_order")).thenReturn(Optional.empty());
+        when(orderRepository.findByRazorpayOrderIdForUpdate("invalid_order")).thenReturn(Optional.empty());
 
         // When & Then
         assertThatThrownBy(() -> orderService.confirmPayment("invalid_order", "pay_test_456"))
@@ -268,7 +316,7 @@ class OrderServiceTest {
     @DisplayName("Should throw exception when payment ID is null")
     void testConfirmPaymentNullPaymentId() {
         // Given
-        when(orderRepository.findByRazorpayOrderId("order_test_123")).thenReturn(Optional.of(testOrder));
+        when(orderRepository.findByRazorpayOrderIdForUpdate("order_test_123")).thenReturn(Optional.of(testOrder));
 
         // When & Then
         assertThatThrownBy(() -> orderService.confirmPayment("order_test_123", null))
@@ -288,17 +336,52 @@ class OrderServiceTest {
         orderItem.setId(1L);
         testOrder.getItems().add(orderItem);
 
-        when(orderRepository.findByRazorpayOrderId("order_test_123")).thenReturn(Optional.of(testOrder));
+        when(orderRepository.findByRazorpayOrderIdForUpdate("order_test_123")).thenReturn(Optional.of(testOrder));
         when(productRepository.findAllByIdWithLock(anyList())).thenReturn(Arrays.asList(testProduct));
 
         // When & Then
         assertThatThrownBy(() -> orderService.confirmPayment("order_test_123", "pay_test_456"))
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("Stock validation failed");
+        verify(outboxService, never()).publish(any(), any());
     }
 
     // ==================== ORDER CANCELLATION TESTS ====================
 
+    @Test
+    @DisplayName("Should cancel a placed order on payment failure under the order lock")
+    void testCancelForFailedPayment() {
+        // Given
+        testOrder.setStatus(Order.OrderStatus.PLACED);
+        when(orderRepository.findByRazorpayOrderIdForUpdate("order_test_123")).thenReturn(Optional.of(testOrder));
+
+        // When
+        Optional<Order> cancelled = orderService.cancelForFailedPayment("order_test_123", "Card declined");
+
+        // Then
+        assertThat(cancelled).contains(testOrder);
+        assertThat(testOrder.getStatus()).isEqualTo(Order.OrderStatus.CANCELLED);
+        verify(orderHistoryRepository).save(argThat(history -> history.getStatus() == Order.OrderStatus.CANCELLED
+                && history.getNotes().equals("Payment failed: Card declined")));
+        verify(orderRepository, never()).findByRazorpayOrderId(any());
+    }
+
+    @Test
+    @DisplayName("Should not cancel an order already confirmed when a payment failure arrives")
+    void testCancelForFailedPaymentAfterConfirmation() {
+        // Given
+        testOrder.setStatus(Order.OrderStatus.CONFIRMED);
+        when(orderRepository.findByRazorpayOrderIdForUpdate("order_test_123")).thenReturn(Optional.of(testOrder));
+
+        // When
+        Optional<Order> cancelled = orderService.cancelForFailedPayment("order_test_123", "Card declined");
+
+        // Then
+        assertThat(cancelled).isEmpty();
+        assertThat(testOrder.getStatus()).isEqualTo(Order.OrderStatus.CONFIRMED);
+        verifyNoInteractions(orderHistoryRepository);
+    }
+
     @Test
     @DisplayName("Should cancel order and restore stock")
     void testCancelOrderSuccess() {
@@ -345,14 +428,13 @@ class OrderServiceTest {
         // Given
         when(orderRepository.findById(1L)).thenReturn(Optional.of(testOrder));
         when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
-        doNothing().when(emailService).sendOrderStatusUpdate(any(Order.class));
 
         // When
         Order updatedOrder = orderService.updateOrderStatus(1L, Order.OrderStatus.SHIPPED);
 
         // Then
         assertThat(updatedOrder.getStatus()).isEqualTo(Order.OrderStatus.SHIPPED);
-        verify(emailService).sendOrderStatusUpdate(testOrder);
+        verify(outboxService).publish(OutboxEvent.EventType.ORDER_STATUS_CHANGED, testOrder);
     }
 
     @Test
@@ -371,7 +453,6 @@ class OrderServiceTest {
         when(orderRepository.findById(1L)).thenReturn(Optional.of(testOrder));
         when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
         when(productRepository.save(any(Product.class))).thenReturn(testProduct);
-        doNothing().when(emailService).sendOrderStatusUpdate(any(Order.class));
 
         // When
         orderService.updateOrderStatus(1L, Order.OrderStatus.CANCELLED);
@@ -411,18 +492,42 @@ class OrderServiceTest {
     }
 
     @Test
-    @DisplayName("Should get user orders")
+    @DisplayName("Should get user order summaries and serve repeats from cache")
     void testGetUserOrders() {
         // Given
-        when(orderRepository.findByUserOrderByCreatedAtDesc(testUser))
-                .thenReturn(Arrays.asList(testOrder));
+        OrderSummaryDto summary = OrderSummaryDto.builder()
+                .id(testOrder.getId())
+                .orderNumber(testOrder.getOrderNumber())
+                .status(testOrder.getStatus().name())
+                .totalAmount(testOrder.getTotalAmount())
+                .itemCount(1)
+                .build();
+        when(orderRepository.findSummariesByUserId(testUser.getId()))
+                .thenReturn(Arrays.asList(summary));
 
         // When
-        List<Order> orders = orderService.getUserOrders(testUser);
+        List<OrderSummaryDto> orders = orderService.getUserOrders(testUser);
+        List<OrderSummaryDto> cached = orderService.getUserOrders(testUser);
 
         // Then
-        assertThat(orders).isNotNull();
         assertThat(orders).hasSize(1);
-        assertThat(orders.get(0).getUser().getId()).isEqualTo(testUser.getId());
+        assertThat(orders.get(0).getOrderNumber()).isEqualTo("ORD-20260213-001");
+        assertThat(cached).isEqualTo(orders);
+        verify(orderRepository, times(1)).findSummariesByUserId(testUser.getId());
+    }
+
+    @Test
+    @DisplayName("Should evict only the affected user's cached orders on status change")
+    void testUpdateOrderStatusEvictsUserCache() {
+        // Given
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(testOrder));
+        when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
+
+        // When
+        orderService.updateOrderStatus(1L, Order.OrderStatus.SHIPPED);
+
+        // Then
+        verify(orderSummaryCache).evict(testUser.getId());
+        verify(orderSummaryCache, never()).evict(2L);
     }
 }
@@ -0,0 +1,182 @@
+package com.perfume.shop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.perfume.shop.dto.OrderEventPayload;
+import com.perfume.shop.entity.*;
+import com.perfume.shop.repository.OutboxEventBatchRepository;
+import com.perfume.shop.repository.OutboxEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for OutboxService
+ * Covers: fan-out per handler, delivery outcome, retry backoff, permanent failure
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OutboxService Tests")
+class OutboxServiceTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private OutboxEventBatchRepository outboxEventBatchRepository;
+
+    @Mock
+    private OutboxEventHandler emailHandler;
+
+    @Mock
+    private OutboxEventHandler cacheHandler;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private OutboxService outboxService;
+    private Order testOrder;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(emailHandler.name()).thenReturn("email");
+        lenient().when(cacheHandler.name()).thenReturn("cache-invalidation");
+
+        outboxService = new OutboxService(outboxEventRepository, outboxEventBatchRepository, List.of(emailHandler, cacheHandler), objectMapper);
+        ReflectionTestUtils.setField(outboxService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(outboxService, "backoffSeconds", 30L);
+        ReflectionTestUtils.setField(outboxService, "leaseSeconds", 120L);
+
+        User user = User.builder().email("test@example.com").build();
+        user.setId(7L);
+
+        Product product = Product.builder().name("Test Perfume").build();
+        product.setId(3L);
+
+        testOrder = Order.builder()
+                .user(user)
+                .orderNumber("ORD-20260213-001")
+                .totalAmount(new BigDecimal("246.00"))
+                .status(Order.OrderStatus.CONFIRMED)
+                .items(new ArrayList<>())
+                .build();
+        testOrder.setId(1L);
+        testOrder.getItems().add(OrderItem.builder().product(product).quantity(1).build());
+    }
+
+    @Test
+    @DisplayName("Should write one outbox row per handler that supports the event")
+    @SuppressWarnings("unchecked")
+    void testPublishFansOutToSupportingHandlers() {
+        when(emailHandler.supports(OutboxEvent.EventType.ORDER_SHIPPED)).thenReturn(true);
+        when(cacheHandler.supports(OutboxEvent.EventType.ORDER_SHIPPED)).thenReturn(false);
+
+        outboxService.publish(OutboxEvent.EventType.ORDER_SHIPPED, testOrder);
+
+        ArgumentCaptor<List<OutboxEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(outboxEventRepository).saveAll(captor.capture());
+        List<OutboxEvent> saved = captor.getValue();
+        assertThat(saved).hasSize(1);
+        assertThat(saved.get(0).getHandler()).isEqualTo("email");
+        assertThat(saved.get(0).getAggregateId()).isEqualTo(1L);
+        assertThat(saved.get(0).getStatus()).isEqualTo(OutboxEvent.Status.PENDING);
+        assertThat(saved.get(0).getMaxAttempts()).isEqualTo(3);
+        assertThat(saved.get(0).getPayload()).contains("\"userId\":7", "\"productIds\":[3]");
+    }
+
+    @Test
+    @DisplayName("Should batch-insert events for many orders in one call")
+    @SuppressWarnings("unchecked")
+    void testPublishAllBatchesRows() {
+        when(emailHandler.supports(OutboxEvent.EventType.ORDER_STATUS_CHANGED)).thenReturn(true);
+        when(cacheHandler.supports(OutboxEvent.EventType.ORDER_STATUS_CHANGED)).thenReturn(true);
+        List<OrderEventPayload> payloads = List.of(
+                OrderEventPayload.builder().orderId(1L).userId(7L).status(Order.OrderStatus.SHIPPED).build(),
+                OrderEventPayload.builder().orderId(2L).userId(8L).status(Order.OrderStatus.SHIPPED).build());
+
+        outboxService.publishAll(OutboxEvent.EventType.ORDER_STATUS_CHANGED, payloads);
+
+        ArgumentCaptor<List<OutboxEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(outboxEventBatchRepository).insertAll(captor.capture());
+        assertThat(captor.getValue()).hasSize(4)
+                .extracting(OutboxEvent::getAggregateId)
+                .containsExactly(1L, 1L, 2L, 2L);
+        verify(outboxEventRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("Should mark event done when its handler succeeds")
+    void testProcessSuccess() throws Exception {
+        OutboxEvent event = claimedEvent("email", 1);
+
+        assertThat(outboxService.process(event)).isTrue();
+
+        ArgumentCaptor<OrderEventPayload> payload = ArgumentCaptor.forClass(OrderEventPayload.class);
+        verify(emailHandler).handle(eq(OutboxEvent.EventType.ORDER_CONFIRMED), payload.capture());
+        assertThat(payload.getValue().getOrderNumber()).isEqualTo("ORD-20260213-001");
+        verify(outboxEventRepository).markDone(eq(event.getId()), eq(OutboxEvent.Status.DONE), any());
+    }
+
+    @Test
+    @DisplayName("Should reschedule failed event with exponential backoff")
+    void testProcessFailureSchedulesRetry() throws Exception {
+        OutboxEvent event = claimedEvent("email", 2);
+        doThrow(new IllegalStateException("SMTP down")).when(emailHandler).handle(any(), any());
+
+        LocalDateTime before = LocalDateTime.now();
+        assertThat(outboxService.process(event)).isFalse();
+
+        ArgumentCaptor<LocalDateTime> nextAttempt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(outboxEventRepository).release(eq(event.getId()), eq(OutboxEvent.Status.PENDING),
+                nextAttempt.capture(), contains("SMTP down"));
+        // Second attempt waits 2x the base backoff
+        assertThat(nextAttempt.getValue()).isAfterOrEqualTo(before.plusSeconds(60));
+        verify(outboxEventRepository, never()).markDone(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should park event as FAILED after max attempts")
+    void testProcessFailurePermanent() throws Exception {
+        OutboxEvent event = claimedEvent("email", 3);
+        doThrow(new IllegalStateException("SMTP down")).when(emailHandler).handle(any(), any());
+
+        assertThat(outboxService.process(event)).isFalse();
+
+        verify(outboxEventRepository).release(eq(event.getId()), eq(OutboxEvent.Status.FAILED),
+                any(), anyString());
+    }
+
+    @Test
+    @DisplayName("Should cap backoff at one hour")
+    void testBackoffCapped() {
+        assertThat(RetryPolicy.backoffSeconds(30, 1)).isEqualTo(30);
+        assertThat(RetryPolicy.backoffSeconds(30, 4)).isEqualTo(240);
+        assertThat(RetryPolicy.backoffSeconds(30, 50)).isEqualTo(3600);
+    }
+
+    private OutboxEvent claimedEvent(String handler, int attempts) throws Exception {
+        return OutboxEvent.builder()
+                .id(42L)
+                .aggregateType("ORDER")
+                .aggregateId(testOrder.getId())
+                .eventType(OutboxEvent.EventType.ORDER_CONFIRMED)
+                .handler(handler)
+                .payload(objectMapper.writeValueAsString(OrderEventPayload.from(testOrder)))
+                .status(OutboxEvent.Status.PROCESSING)
+                .attempts(attempts)
+                .maxAttempts(3)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+    }
+}
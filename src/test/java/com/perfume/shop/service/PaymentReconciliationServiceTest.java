@@ -0,0 +1,274 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.dto.PaymentReconciliationReport;
+import com.perfume.shop.dto.UnconfirmedOrderView;
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.exception.PaymentOnCancelledOrderException;
+import com.perfume.shop.repository.OrderHistoryBatchRepository;
+import com.perfume.shop.repository.OrderRepository;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for PaymentReconciliationService against a local stub gateway
+ * Covers: confirm on captured payment, batched cancel of failed payments, expiry of unpaid orders,
+ * payments on cancelled orders, pending orders, gateway errors in the report, keyset paging
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PaymentReconciliationService Tests")
+class PaymentReconciliationServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private OrderHistoryBatchRepository orderHistoryBatchRepository;
+
+    @Mock
+    private OrderSummaryCache orderSummaryCache;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private HttpServer server;
+    private final Map<String, String> paymentsByOrder = new ConcurrentHashMap<>();
+    private PaymentReconciliationService reconciliationService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/orders/", this::handle);
+        server.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RazorpayGatewayClient gatewayClient = new RazorpayGatewayClient(meterRegistry);
+        ReflectionTestUtils.setField(gatewayClient, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort() + "/v1");
+        ReflectionTestUtils.setField(gatewayClient, "keyId", "rzp_test_key");
+        ReflectionTestUtils.setField(gatewayClient, "keySecret", "secret");
+        ReflectionTestUtils.setField(gatewayClient, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(gatewayClient, "requestTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(gatewayClient, "maxConcurrentCalls", 4);
+        ReflectionTestUtils.setField(gatewayClient, "bulkheadWaitMs", 100L);
+        ReflectionTestUtils.setField(gatewayClient, "failureThreshold", 5);
+        ReflectionTestUtils.setField(gatewayClient, "openSeconds", 60L);
+        gatewayClient.init();
+
+        reconciliationService = new PaymentReconciliationService(orderRepository, orderService,
+                orderHistoryBatchRepository, orderSummaryCache, gatewayClient, transactionTemplate,
+                Runnable::run, meterRegistry);
+        ReflectionTestUtils.setField(reconciliationService, "lookbackHours", 24L);
+        ReflectionTestUtils.setField(reconciliationService, "minAgeMinutes", 15L);
+        ReflectionTestUtils.setField(reconciliationService, "cancelAfterMinutes", 45L);
+        ReflectionTestUtils.setField(reconciliationService, "unpaidMinutes", 60L);
+        ReflectionTestUtils.setField(reconciliationService, "gatewayUnpaidHours", 48L);
+        ReflectionTestUtils.setField(reconciliationService, "pageSize", 10);
+        ReflectionTestUtils.setField(reconciliationService, "maxOrdersPerRun", 100);
+        ReflectionTestUtils.setField(reconciliationService, "requestsPerSecond", 1000);
+        reconciliationService.init();
+
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        // /v1/orders/{id}/payments
+        String razorpayOrderId = exchange.getRequestURI().getPath().split("/")[3];
+        String body = paymentsByOrder.get(razorpayOrderId);
+        int status = body != null ? 200 : 500;
+        byte[] bytes = (body != null ? body : "{\"error\":{}}").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private UnconfirmedOrderView order(long id, String razorpayOrderId, LocalDateTime createdAt) {
+        return UnconfirmedOrderView.builder()
+                .id(id)
+                .userId(100 + id)
+                .orderNumber("ORD-" + id)
+                .razorpayOrderId(razorpayOrderId)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private static String payments(String... statuses) {
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; i < statuses.length; i++) {
+            items.append(i > 0 ? "," : "")
+                    .append("{\"id\":\"pay_").append(i).append("\",\"status\":\"").append(statuses[i]).append("\"}");
+        }
+        return "{\"count\":" + statuses.length + ",\"items\":[" + items + "]}";
+    }
+
+    @Test
+    @DisplayName("Should confirm paid orders, cancel failed and expire unpaid ones in batches and report the rest")
+    void testReconcile() {
+        // Given
+        LocalDateTime old = LocalDateTime.now().minusHours(2);
+        paymentsByOrder.put("order_paid", payments("failed", "captured"));
+        paymentsByOrder.put("order_failed", payments("failed", "failed"));
+        paymentsByOrder.put("order_abandoned", payments());
+        paymentsByOrder.put("order_open", payments());
+        // order_broken has no stub response - the gateway answers 500
+
+        when(orderRepository.findUnconfirmedRazorpayOrders(eq(Order.OrderStatus.PLACED), any(), any(), eq(0L),
+                any(Pageable.class))).thenReturn(List.of(
+                order(1L, "order_paid", old),
+                order(2L, "order_failed", old),
+                order(3L, "order_abandoned", old),
+                order(4L, "order_broken", old),
+                order(5L, "order_open", LocalDateTime.now().minusMinutes(30))));
+        when(orderRepository.lockOrderIdsInStatus(anyCollection(), eq("PLACED")))
+                .thenAnswer(invocation -> List.copyOf(invocation.<Collection<Long>>getArgument(0)));
+
+        // When
+        PaymentReconciliationReport report = reconciliationService.reconcile();
+
+        // Then
+        verify(orderService).confirmPayment("order_paid", "pay_1");
+        verify(orderRepository).updateStatusBulk(eq(List.of(2L)), eq(List.of(Order.OrderStatus.PLACED)),
+                eq(Order.OrderStatus.CANCELLED), any(LocalDateTime.class));
+        verify(orderHistoryBatchRepository).insertAll(eq(List.of(2L)), eq(Order.OrderStatus.CANCELLED),
+                eq("SYSTEM"), eq(PaymentReconciliationService.CANCEL_NOTE), any(LocalDateTime.class));
+        verify(orderRepository).updateStatusBulk(eq(List.of(3L)), eq(List.of(Order.OrderStatus.PLACED)),
+                eq(Order.OrderStatus.CANCELLED), any(LocalDateTime.class));
+        verify(orderHistoryBatchRepository).insertAll(eq(List.of(3L)), eq(Order.OrderStatus.CANCELLED),
+                eq("SYSTEM"), eq(OrderExpiryService.EXPIRY_NOTE), any(LocalDateTime.class));
+        verify(orderSummaryCache).evict(102L);
+        verify(orderSummaryCache).evict(103L);
+
+        assertThat(report.getScanned()).isEqualTo(5);
+        assertThat(report.getConfirmedOrders()).containsExactly("ORD-1");
+        assertThat(report.getCancelledOrders()).containsExactly("ORD-2");
+        assertThat(report.getExpiredOrders()).containsExactly("ORD-3");
+        assertThat(report.getCancelled()).isEqualTo(1);
+        assertThat(report.getExpired()).isEqualTo(1);
+        assertThat(report.getPending()).isEqualTo(1);
+        assertThat(report.getFailedOrders()).containsOnlyKeys("ORD-4");
+        assertThat(reconciliationService.getLastReport()).isSameAs(report);
+    }
+
+    @Test
+    @DisplayName("Should not cancel failed payments inside the cancel window")
+    void testRecentFailedPaymentStaysPending() {
+        // Given
+        paymentsByOrder.put("order_failed", payments("failed"));
+        when(orderRepository.findUnconfirmedRazorpayOrders(any(), any(), any(), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(order(1L, "order_failed", LocalDateTime.now().minusMinutes(20))));
+
+        // When
+        PaymentReconciliationReport report = reconciliationService.reconcile();
+
+        // Then
+        assertThat(report.getPending()).isEqualTo(1);
+        verifyNoInteractions(transactionTemplate, orderService);
+    }
+
+    @Test
+    @DisplayName("Should record payments that went through on cancelled orders for refund")
+    void testPaymentOnCancelledOrder() {
+        // Given
+        LocalDateTime old = LocalDateTime.now().minusHours(2);
+        paymentsByOrder.put("order_late", payments("captured"));
+        paymentsByOrder.put("order_unpaid", payments("failed"));
+        when(orderRepository.findRazorpayOrdersWithoutRefundTask(eq(Order.OrderStatus.CANCELLED), any(), any(),
+                eq(0L), any(Pageable.class))).thenReturn(List.of(
+                order(7L, "order_late", old),
+                order(8L, "order_unpaid", old)));
+        when(orderService.confirmPayment("order_late", "pay_0"))
+                .thenThrow(new PaymentOnCancelledOrderException("ORD-7", "pay_0"));
+
+        // When
+        PaymentReconciliationReport report = reconciliationService.reconcile();
+
+        // Then
+        assertThat(report.getScanned()).isEqualTo(2);
+        assertThat(report.getRefundTasks()).isEqualTo(1);
+        assertThat(report.getRefundTaskOrders()).containsExactly("ORD-7");
+        assertThat(report.getErrors()).isZero();
+        assertThat(report.getPending()).isZero();
+        verify(orderService, never()).confirmPayment(eq("order_unpaid"), any());
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    @Test
+    @DisplayName("Should check cancelled orders older than the lookback, back past the gateway expiry window")
+    void testPaymentOnExpiredGatewayOrderOlderThanLookback() {
+        // Given - a gateway order expired blind at 48h, paid at the gateway all along
+        LocalDateTime expired = LocalDateTime.now().minusHours(50);
+        paymentsByOrder.put("order_expired", payments("captured"));
+        when(orderRepository.findRazorpayOrdersWithoutRefundTask(eq(Order.OrderStatus.CANCELLED),
+                argThat(from -> from.isBefore(expired)), any(), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(order(11L, "order_expired", expired)));
+        when(orderService.confirmPayment("order_expired", "pay_0"))
+                .thenThrow(new PaymentOnCancelledOrderException("ORD-11", "pay_0"));
+
+        // When
+        PaymentReconciliationReport report = reconciliationService.reconcile();
+
+        // Then
+        assertThat(report.getRefundTasks()).isEqualTo(1);
+        assertThat(report.getRefundTaskOrders()).containsExactly("ORD-11");
+        verify(orderRepository).findUnconfirmedRazorpayOrders(eq(Order.OrderStatus.PLACED),
+                argThat(from -> from.isAfter(expired)), any(), eq(0L), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Should page through orders by id until a partial page")
+    void testKeysetPaging() {
+        // Given
+        ReflectionTestUtils.setField(reconciliationService, "pageSize", 2);
+        LocalDateTime recent = LocalDateTime.now().minusMinutes(20);
+        paymentsByOrder.put("order_a", payments());
+        paymentsByOrder.put("order_b", payments());
+        paymentsByOrder.put("order_c", payments());
+        when(orderRepository.findUnconfirmedRazorpayOrders(any(), any(), any(), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(order(1L, "order_a", recent), order(5L, "order_b", recent)));
+        when(orderRepository.findUnconfirmedRazorpayOrders(any(), any(), any(), eq(5L), any(Pageable.class)))
+                .thenReturn(List.of(order(9L, "order_c", recent)));
+
+        // When
+        PaymentReconciliationReport report = reconciliationService.reconcile();
+
+        // Then
+        assertThat(report.getScanned()).isEqualTo(3);
+        assertThat(report.getPending()).isEqualTo(3);
+        verify(orderRepository, times(2)).findUnconfirmedRazorpayOrders(any(), any(), any(), anyLong(),
+                any(Pageable.class));
+    }
+}
@@ -0,0 +1,280 @@
+package com.perfume.shop.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for PooledMailSender against a local in-process SMTP server
+ * Covers: session reuse across concurrent senders, reconnect after a dropped session,
+ * rejected recipients, per-connection metrics, transactional/marketing lanes
+ */
+@DisplayName("PooledMailSender Tests")
+class PooledMailSenderTest {
+
+    private StubSmtpServer server;
+    private SimpleMeterRegistry meterRegistry;
+    private PooledMailSender mailSender;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubSmtpServer();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private void startSender(int connections) {
+        startSender(connections, new PooledMailSender.LaneConfig(100, 0, 0));
+    }
+
+    private void startSender(int connections, PooledMailSender.LaneConfig marketing) {
+        mailSender = new PooledMailSender(meterRegistry, connections, 10, 100, 30_000, 10_000,
+                new PooledMailSender.LaneConfig(100, 0, 0), marketing);
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(server.port());
+        Properties properties = new Properties();
+        properties.put("mail.smtp.timeout", "5000");
+        properties.put("mail.smtp.connectiontimeout", "5000");
+        mailSender.setJavaMailProperties(properties);
+        mailSender.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mailSender.destroy();
+        server.close();
+    }
+
+    private MimeMessage bulkMessage(String to) throws Exception {
+        MimeMessage message = message(to);
+        message.setHeader(PooledMailSender.PRECEDENCE_HEADER, PooledMailSender.BULK_PRECEDENCE);
+        return message;
+    }
+
+    private MimeMessage message(String to) throws Exception {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, false, "UTF-8");
+        helper.setFrom("shop@example.com");
+        helper.setTo(to);
+        helper.setSubject("Order update");
+        helper.setText("<p>Hello</p>", true);
+        return message;
+    }
+
+    private double sentCount() {
+        return meterRegistry.find("shop.mail.smtp.messages").tag("result", "sent").counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    @Test
+    @DisplayName("Should deliver concurrent sends over the pooled sessions")
+    void testSessionsAreReused() throws Exception {
+        // Given
+        startSender(2);
+        ExecutorService callers = Executors.newFixedThreadPool(10);
+
+        // When
+        List<Future<?>> results = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            int n = i;
+            results.add(callers.submit(() -> {
+                mailSender.send(message("customer" + n + "@example.com"));
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        callers.shutdown();
+
+        // Then - at most one session per pooled connection
+        assertThat(server.received.get()).isEqualTo(30);
+        assertThat(server.accepted.get()).isBetween(1, 2);
+        assertThat(sentCount()).isEqualTo(30.0);
+    }
+
+    @Test
+    @DisplayName("Should reconnect and retry when the server drops the session")
+    void testReconnectAfterDroppedSession() throws Exception {
+        // Given
+        startSender(1);
+        mailSender.send(message("first@example.com"));
+        int sessions = server.accepted.get();
+
+        // When
+        server.dropSessions();
+        mailSender.send(message("second@example.com"));
+
+        // Then
+        assertThat(server.received.get()).isEqualTo(2);
+        assertThat(server.accepted.get()).isEqualTo(sessions + 1);
+        assertThat(meterRegistry.get("shop.mail.smtp.connects").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should fail a rejected recipient without dropping the session")
+    void testRejectedRecipient() throws Exception {
+        // Given
+        startSender(1);
+        mailSender.send(message("first@example.com"));
+        int sessions = server.accepted.get();
+
+        // When & Then
+        assertThatThrownBy(() -> mailSender.send(message("reject@example.com")))
+                .isInstanceOf(MailSendException.class);
+        mailSender.send(message("third@example.com"));
+
+        assertThat(server.received.get()).isEqualTo(2);
+        assertThat(server.accepted.get()).isEqualTo(sessions);
+    }
+
+    @Test
+    @DisplayName("Should deliver order mail ahead of rate-limited marketing mail")
+    void testTransactionalLaneIsNotHeldUpByMarketing() throws Exception {
+        // Given - one connection, marketing limited to one message per second
+        startSender(1, new PooledMailSender.LaneConfig(100, 1, 1));
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        List<Future<?>> marketing = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int n = i;
+            marketing.add(callers.submit(() -> {
+                mailSender.send(bulkMessage("lead" + n + "@example.com"));
+                return null;
+            }));
+        }
+
+        // When
+        mailSender.send(message("customer@example.com"));
+
+        // Then - the order mail went out while marketing is still throttled
+        assertThat(marketing).anyMatch(result -> !result.isDone());
+        for (Future<?> result : marketing) {
+            result.get();
+        }
+        callers.shutdown();
+
+        assertThat(server.received.get()).isEqualTo(4);
+        assertThat(meterRegistry.get("shop.mail.lane.wait").tag("lane", "marketing").timer().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("shop.mail.lane.wait").tag("lane", "transactional").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shop.mail.lane.depth").tag("lane", "marketing").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should classify bulk precedence as marketing")
+    void testLaneOf() throws Exception {
+        startSender(1);
+
+        assertThat(PooledMailSender.laneOf(bulkMessage("lead@example.com")))
+                .isEqualTo(PooledMailSender.MailLane.MARKETING);
+        assertThat(PooledMailSender.laneOf(message("customer@example.com")))
+                .isEqualTo(PooledMailSender.MailLane.TRANSACTIONAL);
+    }
+
+    /**
+     * Minimal SMTP server: no AUTH/TLS, rejects recipients starting with "reject@"
+     */
+    private static final class StubSmtpServer implements AutoCloseable {
+
+        final AtomicInteger accepted = new AtomicInteger();
+        final AtomicInteger received = new AtomicInteger();
+
+        private final ServerSocket serverSocket;
+        private final List<Socket> sessions = new CopyOnWriteArrayList<>();
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        StubSmtpServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            executor.submit(this::acceptLoop);
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        void dropSessions() throws IOException {
+            for (Socket session : sessions) {
+                session.close();
+            }
+            sessions.clear();
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    accepted.incrementAndGet();
+                    sessions.add(socket);
+                    executor.submit(() -> handle(socket));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (socket;
+                 BufferedReader in = new BufferedReader(
+                         new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                 Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.ISO_8859_1)) {
+                reply(out, "220 localhost ESMTP stub");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.toUpperCase();
+                    if (command.startsWith("RCPT TO:<REJECT@")) {
+                        reply(out, "550 No such user");
+                    } else if (command.startsWith("DATA")) {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // discard message content
+                        }
+                        received.incrementAndGet();
+                        reply(out, "250 OK queued");
+                    } else if (command.startsWith("QUIT")) {
+                        reply(out, "221 Bye");
+                        return;
+                    } else {
+                        reply(out, "250 OK"); // EHLO, MAIL, RCPT, RSET, NOOP
+                    }
+                }
+            } catch (IOException e) {
+                // session dropped
+            }
+        }
+
+        private static void reply(Writer out, String line) throws IOException {
+            out.write(line + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            dropSessions();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.entity.CartItem;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for PricingEngine
+ * Covers: paise conversion, tax rounding, discount capping, overflow
+ */
+@DisplayName("PricingEngine Tests")
+class PricingEngineTest {
+
+    private final PricingEngine pricingEngine = new PricingEngine();
+
+    @Test
+    @DisplayName("Should convert rupees to paise rounding half up")
+    void testToPaise() {
+        assertThat(PricingEngine.toPaise(new BigDecimal("1299.99"))).isEqualTo(129999L);
+        assertThat(PricingEngine.toPaise(new BigDecimal("10.005"))).isEqualTo(1001L);
+        assertThat(PricingEngine.toPaise(new BigDecimal("10.004"))).isEqualTo(1000L);
+        assertThat(PricingEngine.toPaise(new BigDecimal("500"))).isEqualTo(50000L);
+        assertThat(PricingEngine.toPaise(null)).isZero();
+        assertThat(PricingEngine.toRupees(129999L)).isEqualTo(new BigDecimal("1299.99"));
+    }
+
+    @Test
+    @DisplayName("Should round tax half up to the paisa")
+    void testTaxRounding() {
+        // 18% of 0.03 = 0.0054 -> 0.01
+        assertThat(pricingEngine.tax(3)).isEqualTo(1L);
+        // 18% of 0.02 = 0.0036 -> 0.00
+        assertThat(pricingEngine.tax(2)).isZero();
+        // 18% of 999.99 = 179.9982 -> 180.00
+        assertThat(pricingEngine.tax(99999)).isEqualTo(18000L);
+    }
+
+    @Test
+    @DisplayName("Should price cart items with tax on the subtotal")
+    void testPriceCart() {
+        CartItem first = CartItem.builder().price(new BigDecimal("1299.99")).quantity(3).build();
+        CartItem second = CartItem.builder().price(new BigDecimal("450.50")).quantity(1).build();
+
+        long subtotal = pricingEngine.subtotal(List.of(first, second), CartItem::getPrice, CartItem::getQuantity);
+        PricingEngine.Totals totals = pricingEngine.price(subtotal, 0);
+
+        assertThat(totals.subtotalAmount()).isEqualByComparingTo("4350.47");
+        assertThat(totals.taxAmount()).isEqualByComparingTo("783.08");
+        assertThat(totals.shippingAmount()).isEqualByComparingTo("0.00");
+        assertThat(totals.totalAmount()).isEqualByComparingTo("5133.55");
+        assertThat(totals.total()).isEqualTo(513355L);
+    }
+
+    @Test
+    @DisplayName("Should cap discount at the subtotal")
+    void testDiscountCapped() {
+        PricingEngine.Totals totals = pricingEngine.price(10000, 25000);
+
+        assertThat(totals.discount()).isEqualTo(10000L);
+        assertThat(totals.total()).isEqualTo(1800L);
+    }
+
+    @Test
+    @DisplayName("Should fail on overflow instead of wrapping")
+    void testOverflow() {
+        assertThatThrownBy(() -> pricingEngine.tax(Long.MAX_VALUE / 100))
+                .isInstanceOf(ArithmeticException.class);
+    }
+}
@@ -0,0 +1,182 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.exception.PaymentGatewayException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for RazorpayGatewayClient against a local stub gateway
+ * Covers: authenticated calls, timeouts, circuit breaker fail-fast and trial release, 4xx handling, metrics
+ */
+@DisplayName("RazorpayGatewayClient Tests")
+class RazorpayGatewayClientTest {
+
+    private HttpServer server;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicInteger delayMs = new AtomicInteger();
+    private final AtomicReference<String> authorization = new AtomicReference<>();
+
+    private SimpleMeterRegistry meterRegistry;
+    private RazorpayGatewayClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/orders", this::handle);
+        server.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        client = new RazorpayGatewayClient(meterRegistry);
+        ReflectionTestUtils.setField(client, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort() + "/v1");
+        ReflectionTestUtils.setField(client, "keyId", "rzp_test_key");
+        ReflectionTestUtils.setField(client, "keySecret", "secret");
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(client, "requestTimeoutMs", 300L);
+        ReflectionTestUtils.setField(client, "maxConcurrentCalls", 4);
+        ReflectionTestUtils.setField(client, "bulkheadWaitMs", 50L);
+        ReflectionTestUtils.setField(client, "failureThreshold", 2);
+        ReflectionTestUtils.setField(client, "openSeconds", 60L);
+        client.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        hits.incrementAndGet();
+        authorization.set(exchange.getRequestHeaders().getFirst("Authorization"));
+        exchange.getRequestBody().readAllBytes();
+        try {
+            Thread.sleep(delayMs.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] body = (status.get() == 200 ? "{\"id\":\"order_stub_1\",\"status\":\"created\"}"
+                : "{\"error\":{\"code\":\"STUB_ERROR\"}}").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status.get(), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private JSONObject orderRequest() {
+        return new JSONObject().put("amount", 10000).put("currency", "INR").put("receipt", "ORD-1");
+    }
+
+    @Test
+    @DisplayName("Should create an order with basic auth and record the call")
+    void testCreateOrder() {
+        // When
+        JSONObject order = client.createOrder(orderRequest());
+
+        // Then
+        assertThat(order.getString("id")).isEqualTo("order_stub_1");
+        assertThat(authorization.get()).startsWith("Basic ");
+        assertThat(meterRegistry.get("shop.razorpay.requests").tag("outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should open the circuit after repeated gateway errors and then fail fast")
+    void testCircuitOpensOnServerErrors() {
+        // Given
+        status.set(503);
+
+        // When - two failures reach the gateway and trip the breaker
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> client.createOrder(orderRequest()))
+                    .isInstanceOf(PaymentGatewayException.class)
+                    .hasMessageContaining("HTTP 503");
+        }
+
+        // Then - the next call is rejected without reaching the gateway
+        assertThatThrownBy(() -> client.createOrder(orderRequest()))
+                .isInstanceOf(PaymentGatewayException.class)
+                .hasMessageContaining("temporarily unavailable")
+                .extracting(e -> ((PaymentGatewayException) e).getHttpStatus()).isEqualTo(503);
+        assertThat(hits.get()).isEqualTo(2);
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(meterRegistry.get("shop.razorpay.rejected").tag("reason", "circuit_open").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should free the half-open trial when the call fails without an outcome")
+    void testUncheckedFailureReleasesTrial() throws Exception {
+        // Given - a breaker that opens on one failure and half-opens at once
+        ReflectionTestUtils.setField(client, "circuitBreaker", new CircuitBreaker(1, Duration.ZERO));
+        status.set(503);
+        assertThatThrownBy(() -> client.createOrder(orderRequest())).isInstanceOf(PaymentGatewayException.class);
+
+        HttpClient realClient = (HttpClient) ReflectionTestUtils.getField(client, "httpClient");
+        HttpClient brokenClient = mock(HttpClient.class);
+        when(brokenClient.send(any(), any())).thenThrow(new IllegalStateException("selector closed"));
+        ReflectionTestUtils.setField(client, "httpClient", brokenClient);
+
+        // When - the trial call dies with an unchecked exception
+        assertThatThrownBy(() -> client.createOrder(orderRequest())).isInstanceOf(IllegalStateException.class);
+
+        // Then - the next call gets the trial instead of being rejected forever
+        ReflectionTestUtils.setField(client, "httpClient", realClient);
+        status.set(200);
+        assertThat(client.createOrder(orderRequest()).getString("id")).isEqualTo("order_stub_1");
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(meterRegistry.find("shop.razorpay.rejected").counter()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should count timeouts as gateway failures")
+    void testTimeout() {
+        // Given
+        delayMs.set(1000);
+
+        // When & Then
+        assertThatThrownBy(() -> client.createOrder(orderRequest()))
+                .isInstanceOf(PaymentGatewayException.class)
+                .hasMessageContaining("timed out");
+        assertThat(meterRegistry.get("shop.razorpay.requests").tag("outcome", "timeout").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should surface 4xx answers with their status and keep the circuit closed")
+    void testClientErrorKeepsCircuitClosed() {
+        // Given
+        status.set(401);
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> client.createOrder(orderRequest()))
+                    .isInstanceOf(PaymentGatewayException.class)
+                    .extracting(e -> ((PaymentGatewayException) e).getGatewayStatus()).isEqualTo(401);
+        }
+
+        // Then
+        assertThat(hits.get()).isEqualTo(3);
+        assertThat(client.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+}
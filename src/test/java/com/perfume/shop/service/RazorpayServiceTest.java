@@ -11,6 +11,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 /**
  * Comprehensive unit tests for RazorpayService
@@ -24,7 +25,7 @@ class RazorpayServiceTest {
 
     @BeforeEach
     void setUp() {
-        razorpayService = new RazorpayService();
+        razorpayService = new RazorpayService(mock(RazorpayGatewayClient.class));
         
         // Set test configuration using reflection
         ReflectionTestUtils.setField(razorpayService, "razorpayKeyId", "rzp_test_dummy");
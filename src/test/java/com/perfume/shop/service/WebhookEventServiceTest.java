@@ -0,0 +1,208 @@
+package com.perfume.shop.service;
+
+import com.perfume.shop.entity.Order;
+import com.perfume.shop.entity.WebhookEvent;
+import com.perfume.shop.exception.PaymentOnCancelledOrderException;
+import com.perfume.shop.repository.WebhookEventAppendRepository;
+import com.perfume.shop.repository.WebhookEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for WebhookEventService
+ * Covers: append-only ingestion and dedup, order key extraction, applying events, retry backoff
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WebhookEventService Tests")
+class WebhookEventServiceTest {
+
+    private static final String AUTHORIZED_PAYLOAD = """
+        {"id":"evt_1","event":"payment.authorized","payload":{"payment":{"entity":
+        {"id":"pay_1","order_id":"order_rzp_1","status":"authorized"}}}}
+        """;
+
+    @Mock
+    private WebhookEventRepository webhookEventRepository;
+
+    @Mock
+    private WebhookEventAppendRepository webhookEventAppendRepository;
+
+    @Mock
+    private OrderService orderService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private WebhookEventService webhookEventService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        webhookEventService = new WebhookEventService(webhookEventRepository, webhookEventAppendRepository,
+                orderService, meterRegistry);
+        ReflectionTestUtils.setField(webhookEventService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(webhookEventService, "backoffSeconds", 15L);
+        ReflectionTestUtils.setField(webhookEventService, "leaseSeconds", 120L);
+    }
+
+    private WebhookEvent claimed(int attempts) {
+        WebhookEvent event = WebhookEvent.builder()
+                .eventId("evt_1")
+                .eventType("payment.authorized")
+                .orderKey("order_rzp_1")
+                .payload(AUTHORIZED_PAYLOAD)
+                .status(WebhookEvent.Status.PROCESSING)
+                .attempts(attempts)
+                .build();
+        event.setId(42L);
+        return event;
+    }
+
+    @Test
+    @DisplayName("Should append the raw event with its order key and no lookup")
+    void testIngestAppends() {
+        // Given
+        when(webhookEventAppendRepository.append(any())).thenReturn(true);
+
+        // When
+        boolean queued = webhookEventService.ingest(AUTHORIZED_PAYLOAD);
+
+        // Then
+        assertThat(queued).isTrue();
+        ArgumentCaptor<WebhookEvent> captor = ArgumentCaptor.forClass(WebhookEvent.class);
+        verify(webhookEventAppendRepository).append(captor.capture());
+        assertThat(captor.getValue().getEventId()).isEqualTo("evt_1");
+        assertThat(captor.getValue().getOrderKey()).isEqualTo("order_rzp_1");
+        verifyNoInteractions(webhookEventRepository, orderService);
+    }
+
+    @Test
+    @DisplayName("Should ack redelivered events without queueing them again")
+    void testIngestDuplicate() {
+        // Given
+        when(webhookEventAppendRepository.append(any())).thenReturn(false);
+
+        // When
+        boolean queued = webhookEventService.ingest(AUTHORIZED_PAYLOAD);
+
+        // Then
+        assertThat(queued).isFalse();
+        assertThat(meterRegistry.get("shop.webhooks.received").tag("result", "duplicate").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should extract the Razorpay order id from payment and order events")
+    void testOrderKeyOf() {
+        assertThat(WebhookEventService.orderKeyOf(new JSONObject(AUTHORIZED_PAYLOAD))).isEqualTo("order_rzp_1");
+        assertThat(WebhookEventService.orderKeyOf(new JSONObject(
+                "{\"payload\":{\"order\":{\"entity\":{\"id\":\"order_rzp_2\"}}}}"))).isEqualTo("order_rzp_2");
+        assertThat(WebhookEventService.orderKeyOf(new JSONObject("{\"id\":\"evt_3\"}"))).isNull();
+    }
+
+    @Test
+    @DisplayName("Should confirm payment and mark the event done")
+    void testProcessPaymentAuthorized() {
+        // Given
+        Order order = Order.builder().orderNumber("ORD-1").build();
+        when(orderService.confirmPayment("order_rzp_1", "pay_1")).thenReturn(order);
+
+        // When
+        boolean applied = webhookEventService.process(claimed(1));
+
+        // Then
+        assertThat(applied).isTrue();
+        verify(webhookEventRepository).markDone(eq(42L), eq(WebhookEvent.Status.DONE),
+                contains("ORD-1"), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Should mark a payment on a cancelled order done without claiming it was confirmed")
+    void testProcessPaymentOnCancelledOrder() {
+        // Given
+        when(orderService.confirmPayment("order_rzp_1", "pay_1"))
+                .thenThrow(new PaymentOnCancelledOrderException("ORD-1", "pay_1"));
+
+        // When
+        boolean applied = webhookEventService.process(claimed(1));
+
+        // Then
+        assertThat(applied).isTrue();
+        verify(webhookEventRepository).markDone(eq(42L), eq(WebhookEvent.Status.DONE),
+                contains("recorded for refund"), any(LocalDateTime.class));
+        verify(webhookEventRepository, never()).release(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should cancel the order for a failed payment through the locking order service call")
+    void testProcessPaymentFailed() {
+        // Given
+        WebhookEvent failed = WebhookEvent.builder()
+                .eventId("evt_2")
+                .eventType("payment.failed")
+                .orderKey("order_rzp_1")
+                .payload("""
+                    {"id":"evt_2","event":"payment.failed","payload":{"payment":{"entity":
+                    {"id":"pay_2","order_id":"order_rzp_1","description":"Card declined","error_code":"BAD_REQUEST_ERROR"}}}}
+                    """)
+                .status(WebhookEvent.Status.PROCESSING)
+                .attempts(1)
+                .build();
+        failed.setId(43L);
+        when(orderService.cancelForFailedPayment("order_rzp_1", "Card declined"))
+                .thenReturn(Optional.of(Order.builder().orderNumber("ORD-1").build()));
+
+        // When
+        boolean applied = webhookEventService.process(failed);
+
+        // Then
+        assertThat(applied).isTrue();
+        verify(orderService).cancelForFailedPayment("order_rzp_1", "Card declined");
+        verify(webhookEventRepository).markDone(eq(43L), eq(WebhookEvent.Status.DONE),
+                contains("Card declined"), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Should release a failed event for a backed-off retry")
+    void testProcessFailureRetries() {
+        // Given
+        when(orderService.confirmPayment(any(), any())).thenThrow(new RuntimeException("DB down"));
+
+        // When
+        boolean applied = webhookEventService.process(claimed(2));
+
+        // Then
+        assertThat(applied).isFalse();
+        ArgumentCaptor<LocalDateTime> nextAttempt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(webhookEventRepository).release(eq(42L), eq(WebhookEvent.Status.PENDING), nextAttempt.capture(),
+                contains("DB down"), any(LocalDateTime.class));
+        assertThat(nextAttempt.getValue()).isAfter(LocalDateTime.now().plusSeconds(25));
+    }
+
+    @Test
+    @DisplayName("Should park the event as failed after max attempts")
+    void testProcessFailurePermanent() {
+        // Given
+        when(orderService.confirmPayment(any(), any())).thenThrow(new RuntimeException("DB down"));
+
+        // When
+        webhookEventService.process(claimed(3));
+
+        // Then
+        verify(webhookEventRepository).release(eq(42L), eq(WebhookEvent.Status.FAILED), any(LocalDateTime.class),
+                anyString(), any(LocalDateTime.class));
+    }
+}